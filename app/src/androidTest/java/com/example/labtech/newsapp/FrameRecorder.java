@@ -0,0 +1,75 @@
+package com.example.labtech.newsapp;
+
+import android.app.Instrumentation;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the duration of every frame between start() and stop(), for the benchmarks.
+ */
+class FrameRecorder implements Choreographer.FrameCallback {
+
+    /**
+     * Frames that take longer than this missed the vsync of a 60 Hz display
+     */
+    private static final long JANK_NANOS = 17 * 1000 * 1000;
+
+    private final Instrumentation instrumentation;
+    private final List<Long> frameNanos = new ArrayList<>();
+    private volatile boolean recording;
+
+    FrameRecorder(Instrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    void start() {
+        recording = true;
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(FrameRecorder.this);
+            }
+        });
+    }
+
+    void stop() {
+        recording = false;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameNanos.add(frameTimeNanos);
+        if (recording) {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Returns the number of frames that missed a vsync.
+     */
+    int jankyFrames() {
+        int janky = 0;
+        for (int i = 1; i < frameNanos.size(); i++) {
+            if (frameNanos.get(i) - frameNanos.get(i - 1) > JANK_NANOS) {
+                janky++;
+            }
+        }
+        return janky;
+    }
+
+    @Override
+    public String toString() {
+        long worst = 0;
+        long total = 0;
+        for (int i = 1; i < frameNanos.size(); i++) {
+            long duration = frameNanos.get(i) - frameNanos.get(i - 1);
+            worst = Math.max(worst, duration);
+            total += duration;
+        }
+        int frames = Math.max(frameNanos.size() - 1, 1);
+        return "count=" + frames + " avg=" + total / frames / 1000 + "us worst=" + worst / 1000
+                + "us janky=" + jankyFrames();
+    }
+}
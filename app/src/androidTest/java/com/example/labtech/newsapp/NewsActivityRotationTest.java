@@ -0,0 +1,161 @@
+package com.example.labtech.newsapp;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.test.runner.lifecycle.ActivityLifecycleMonitorRegistry;
+import android.support.test.runner.lifecycle.Stage;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that recreating {@link NewsActivity}, as a rotation does, shows the articles of the
+ * current search again from its retained loaders instead of fetching them again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NewsActivityRotationTest {
+
+    private static final String QUERY = "rotation";
+    private static final long TIMEOUT_MILLIS = 5000;
+    private static final long SETTLE_MILLIS = 500;
+
+    @Rule
+    public ActivityTestRule<NewsActivity> activityRule = new ActivityTestRule<>(NewsActivity.class, false, false);
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private final CountingTransport transport = new CountingTransport();
+    private HttpTransport previousTransport;
+
+    @After
+    public void tearDown() {
+        if (previousTransport != null) {
+            QueryUtils.setTransport(previousTransport);
+        }
+    }
+
+    @Test
+    public void recreate_doesNotFetchAgain() throws Exception {
+        previousTransport = QueryUtils.getTransport();
+        QueryUtils.setTransport(transport);
+        final NewsActivity activity = activityRule.launchActivity(null);
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                activity.searchView.setQuery(QUERY, true);
+            }
+        });
+        waitForRows(activity);
+        settle();
+        int requests = transport.count(QUERY);
+        int rows = activity.newsRecyclerView.getAdapter().getItemCount();
+        assertTrue(requests > 0);
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                activity.recreate();
+            }
+        });
+        instrumentation.waitForIdleSync();
+        NewsActivity recreated = resumedActivity();
+        assertNotSame(activity, recreated);
+        waitForRows(recreated);
+        settle();
+
+        assertEquals(rows, recreated.newsRecyclerView.getAdapter().getItemCount());
+        assertEquals(requests, transport.count(QUERY));
+    }
+
+    private NewsActivity resumedActivity() {
+        final NewsActivity[] resumed = new NewsActivity[1];
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Collection<Activity> activities = ActivityLifecycleMonitorRegistry.getInstance()
+                        .getActivitiesInStage(Stage.RESUMED);
+                for (Activity activity : activities) {
+                    if (activity instanceof NewsActivity) {
+                        resumed[0] = (NewsActivity) activity;
+                    }
+                }
+            }
+        });
+        return resumed[0];
+    }
+
+    private void waitForRows(NewsActivity activity) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (activity.newsRecyclerView.getAdapter().getItemCount() == 0) {
+            assertTrue("no rows shown", System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    private void settle() throws InterruptedException {
+        // Let the revalidation of cached pages complete
+        Thread.sleep(SETTLE_MILLIS);
+        instrumentation.waitForIdleSync();
+    }
+
+    /**
+     * Answers every request with the same page of articles and records the requested URLs.
+     */
+    private static class CountingTransport implements HttpTransport {
+        private final List<String> urls = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public Response execute(URL url, Map<String, String> headers, CancellationToken cancellation,
+                                Gate gate) throws IOException {
+            urls.add(url.toString());
+            byte[] body = searchJson(url.toString()).getBytes(Charset.forName("UTF-8"));
+            return new Response(200, new HashMap<String, String>(), new ByteArrayInputStream(body),
+                    new RequestTimings());
+        }
+
+        int count(String query) {
+            int count = 0;
+            synchronized (urls) {
+                for (String url : urls) {
+                    if (url.contains("q=" + query)) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private static String searchJson(String url) {
+            StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[");
+            for (int i = 0; i < 3; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"webTitle\":\"Article ").append(i)
+                        .append("\",\"sectionName\":\"World news\",\"webUrl\":\"").append(url)
+                        .append("#").append(i)
+                        .append("\",\"webPublicationDate\":\"2017-06-24T10:00:00Z\",\"tags\":[]}");
+            }
+            return json.append("]}}").toString();
+        }
+    }
+}
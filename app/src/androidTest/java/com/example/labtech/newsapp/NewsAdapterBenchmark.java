@@ -0,0 +1,150 @@
+package com.example.labtech.newsapp;
+
+import android.app.Instrumentation;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts onBindViewHolder calls and measures frame times of {@link NewsAdapter} for a refresh
+ * in which 90% of the list is unchanged, compared to rebinding the whole list.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 16)
+public class NewsAdapterBenchmark {
+
+    private static final String LOG_TAG = NewsAdapterBenchmark.class.getSimpleName();
+    private static final int ROWS = 100;
+    private static final long SETTLE_MILLIS = 1000;
+
+    @Rule
+    public ActivityTestRule<NewsActivity> activityRule = new ActivityTestRule<>(NewsActivity.class);
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private CountingAdapter adapter;
+
+    @Test
+    public void refreshWithNinetyPercentUnchanged() throws Exception {
+        final List<Article> oldRows = articles(0, ROWS);
+        // 5 new articles on top, the 5 oldest fall off the end and 5 titles were edited
+        final List<Article> newRows = articles(ROWS, 5);
+        newRows.addAll(oldRows.subList(0, ROWS - 5));
+        for (int i = 0; i < 5; i++) {
+            Article edited = newRows.get(5 + i * 2);
+            newRows.set(5 + i * 2, new Article(edited.getTitle() + " (updated)",
+                    edited.getContributor(), edited.getDatePublished(), edited.getSection(),
+                    edited.getUrl()));
+        }
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                NewsActivity activity = activityRule.getActivity();
+                RecyclerView recyclerView = new RecyclerView(activity);
+                recyclerView.setLayoutManager(new LinearLayoutManager(activity));
+                adapter = new CountingAdapter(activity);
+                recyclerView.setAdapter(adapter);
+                activity.setContentView(recyclerView);
+                adapter.submitList(oldRows);
+            }
+        });
+        settle();
+
+        // Refresh through the diff
+        adapter.binds = 0;
+        FrameRecorder diffFrames = new FrameRecorder(instrumentation);
+        diffFrames.start();
+        final CountDownLatch dispatched = new CountDownLatch(1);
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                dispatched.countDown();
+            }
+        });
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                adapter.submitList(newRows);
+            }
+        });
+        assertTrue(dispatched.await(5, TimeUnit.SECONDS));
+        settle();
+        diffFrames.stop();
+        int diffBinds = adapter.binds;
+
+        // Same refresh by rebinding every row, like clear() + addAll() used to
+        adapter.binds = 0;
+        FrameRecorder fullFrames = new FrameRecorder(instrumentation);
+        fullFrames.start();
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                adapter.notifyDataSetChanged();
+            }
+        });
+        settle();
+        fullFrames.stop();
+        int fullBinds = adapter.binds;
+
+        Log.i(LOG_TAG, "diff refresh: " + diffBinds + " binds, frames " + diffFrames);
+        Log.i(LOG_TAG, "full rebind:  " + fullBinds + " binds, frames " + fullFrames);
+        assertTrue("diff refresh bound " + diffBinds + " rows, full rebind " + fullBinds,
+                diffBinds < fullBinds);
+    }
+
+    private void settle() throws InterruptedException {
+        instrumentation.waitForIdleSync();
+        // Let the item animations run to completion
+        Thread.sleep(SETTLE_MILLIS);
+        instrumentation.waitForIdleSync();
+    }
+
+    private static List<Article> articles(int first, int count) {
+        List<Article> articles = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            articles.add(new Article("Article " + i, "Jane Doe", "2017-06-24", "World news",
+                    "https://www.theguardian.com/world/2017/jun/24/article-" + i));
+        }
+        return articles;
+    }
+
+    /**
+     * {@link NewsAdapter} that counts how many times rows get bound.
+     */
+    private static class CountingAdapter extends NewsAdapter {
+        int binds;
+
+        CountingAdapter(NewsActivity activity) {
+            super(activity, new ArticlePager(ROWS, 0, 0, new ArticlePager.PageRequestListener() {
+                @Override
+                public void onPageRequested(int page) {
+                }
+            }), new OnArticleClickListener() {
+                @Override
+                public void onArticleClick(Article article) {
+                }
+            });
+        }
+
+        @Override
+        public void onBindViewHolder(ViewHolder holder, int position) {
+            binds++;
+            super.onBindViewHolder(holder, position);
+        }
+    }
+}
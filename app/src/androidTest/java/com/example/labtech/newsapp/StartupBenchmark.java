@@ -0,0 +1,149 @@
+package com.example.labtech.newsapp;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the time from creating {@link NewsActivity} until the first frame that shows rows,
+ * as recorded by {@link Metrics#CREATE_TO_FIRST_ROW}, for a start without a snapshot and an
+ * empty article cache and for a start from the snapshot of the last run.
+ * <p>
+ * The activity is started again in the process of the test, so class loading and the shared
+ * singletons are already warm. Responses come from a transport with a fixed latency instead of
+ * the network, so that both starts wait on the same "network".
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    private static final String LOG_TAG = StartupBenchmark.class.getSimpleName();
+    private static final int RUNS = 5;
+    private static final long NETWORK_MILLIS = 300;
+    private static final long TIMEOUT_MILLIS = 10000;
+    private static final long SETTLE_MILLIS = 500;
+
+    @Rule
+    public ActivityTestRule<NewsActivity> activityRule = new ActivityTestRule<>(NewsActivity.class, false, false);
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private final Context context = InstrumentationRegistry.getTargetContext();
+    private HttpTransport previousTransport;
+
+    @Before
+    public void setUp() {
+        previousTransport = QueryUtils.getTransport();
+        QueryUtils.setTransport(new SlowTransport());
+    }
+
+    @After
+    public void tearDown() {
+        QueryUtils.setTransport(previousTransport);
+    }
+
+    @Test
+    public void timeToFirstRow_withAndWithoutSnapshot() throws Exception {
+        Metrics.reset();
+        for (int run = 0; run < RUNS; run++) {
+            ArticleCache.getInstance(context).trimToSize(0);
+            FeedSnapshot.fileOf(context).delete();
+            launchUntilFirstRow(run + 1);
+        }
+        long coldP50 = Metrics.CREATE_TO_FIRST_ROW.percentile(0.5);
+        String cold = Metrics.CREATE_TO_FIRST_ROW.toString();
+
+        Metrics.reset();
+        for (int run = 0; run < RUNS; run++) {
+            snapshot().write(FeedSnapshot.fileOf(context));
+            launchUntilFirstRow(run + 1);
+        }
+        long snapshotP50 = Metrics.CREATE_TO_FIRST_ROW.percentile(0.5);
+        String fromSnapshot = Metrics.CREATE_TO_FIRST_ROW.toString();
+
+        Log.i(LOG_TAG, "create to first row, without snapshot: " + cold);
+        Log.i(LOG_TAG, "create to first row, from snapshot: " + fromSnapshot);
+        // The snapshot is drawn in the first frame, without waiting for the network
+        assertTrue("p50 from snapshot " + snapshotP50 + " us, without " + coldP50 + " us",
+                snapshotP50 < coldP50);
+    }
+
+    /**
+     * Starts the activity, waits until it has drawn rows and finishes it again.
+     */
+    private void launchUntilFirstRow(int expectedCount) throws InterruptedException {
+        final NewsActivity activity = activityRule.launchActivity(null);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (Metrics.CREATE_TO_FIRST_ROW.count() < expectedCount) {
+            assertTrue("no rows shown", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                activity.finish();
+            }
+        });
+        instrumentation.waitForIdleSync();
+        // Let the snapshot written on stop and the loads in flight complete
+        Thread.sleep(SETTLE_MILLIS);
+    }
+
+    private static FeedSnapshot snapshot() {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            articles.add(new Article("Article " + i, Collections.singletonList("Jane Doe"),
+                    1498309453000L - i * 60000L, "World news",
+                    "https://www.theguardian.com/world/2017/jun/24/article-" + i));
+        }
+        return new FeedSnapshot(articles, 0, 0);
+    }
+
+    /**
+     * Answers every request with a page of articles after a fixed latency.
+     */
+    private static class SlowTransport implements HttpTransport {
+
+        @Override
+        public Response execute(URL url, Map<String, String> headers, CancellationToken cancellation,
+                                Gate gate) throws IOException {
+            try {
+                Thread.sleep(NETWORK_MILLIS);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[");
+            for (int i = 0; i < 5; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"webTitle\":\"Article ").append(i)
+                        .append("\",\"sectionName\":\"World news\",\"webUrl\":\"").append(url).append('#').append(i)
+                        .append("\",\"webPublicationDate\":\"2017-06-24T10:00:00Z\",\"tags\":[]}");
+            }
+            byte[] body = json.append("]}}").toString().getBytes(Charset.forName("UTF-8"));
+            return new Response(200, new HashMap<String, String>(), new ByteArrayInputStream(body),
+                    new RequestTimings());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.labtech.newsapp;
+
+import android.app.Instrumentation;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.widget.ImageView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures janky frames and peak memory while quickly scrolling through 500 rows with
+ * thumbnails served by a local {@link MockWebServer}, and checks that the thumbnails are
+ * decoded at the size of their view rather than at full size.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 16)
+public class ThumbnailScrollBenchmark {
+
+    private static final String LOG_TAG = ThumbnailScrollBenchmark.class.getSimpleName();
+    private static final int ROWS = 500;
+    private static final int ROWS_PER_FRAME = 2;
+    private static final long FRAME_MILLIS = 16;
+    private static final long SETTLE_MILLIS = 1000;
+
+    @Rule
+    public ActivityTestRule<NewsActivity> activityRule = new ActivityTestRule<>(NewsActivity.class);
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private MockWebServer server;
+    private RecyclerView recyclerView;
+
+    @Before
+    public void setUp() throws Exception {
+        // The size of a Guardian thumbnail, noisy so that it doesn't compress to nothing
+        final byte[] image = jpeg(500, 300);
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setHeader("Content-Type", "image/jpeg")
+                        .setBody(new Buffer().write(image));
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void fastScrollThroughFiveHundredRows() throws Exception {
+        final List<Article> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Article("Article " + i, Collections.singletonList("Jane Doe"),
+                    1498309453000L - i * 60000L, "World news",
+                    "https://www.theguardian.com/world/2017/jun/24/article-" + i,
+                    server.url("/thumbnails/" + i + ".jpg").toString()));
+        }
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                NewsActivity activity = activityRule.getActivity();
+                recyclerView = new RecyclerView(activity);
+                recyclerView.setLayoutManager(new LinearLayoutManager(activity));
+                NewsAdapter adapter = new NewsAdapter(activity,
+                        new ArticlePager(ROWS, 0, 0, new ArticlePager.PageRequestListener() {
+                            @Override
+                            public void onPageRequested(int page) {
+                            }
+                        }), new NewsAdapter.OnArticleClickListener() {
+                            @Override
+                            public void onArticleClick(Article article) {
+                            }
+                        });
+                recyclerView.setAdapter(adapter);
+                activity.setContentView(recyclerView);
+                adapter.submitList(rows);
+            }
+        });
+        settle();
+
+        Runtime runtime = Runtime.getRuntime();
+        long baselineBytes = usedBytes(runtime);
+        long peakBytes = baselineBytes;
+        FrameRecorder frames = new FrameRecorder(instrumentation);
+        frames.start();
+        while (recyclerView.canScrollVertically(1)) {
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    int rowHeight = recyclerView.getChildAt(0).getHeight();
+                    recyclerView.scrollBy(0, rowHeight * ROWS_PER_FRAME);
+                }
+            });
+            peakBytes = Math.max(peakBytes, usedBytes(runtime));
+            Thread.sleep(FRAME_MILLIS);
+        }
+        settle();
+        frames.stop();
+
+        final int[] oversized = new int[1];
+        final int[] shown = new int[1];
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < recyclerView.getChildCount(); i++) {
+                    ImageView view = (ImageView) recyclerView.getChildAt(i).findViewById(R.id.thumbnail_image_view);
+                    Drawable drawable = view.getDrawable();
+                    if (drawable instanceof BitmapDrawable) {
+                        Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+                        shown[0]++;
+                        // Subsampled by powers of two, so less than twice the view's size
+                        if (bitmap.getWidth() >= view.getWidth() * 2 || bitmap.getHeight() >= view.getHeight() * 2) {
+                            oversized[0]++;
+                        }
+                    }
+                }
+            }
+        });
+
+        Log.i(LOG_TAG, "scrolled " + ROWS + " rows: frames " + frames + ", peak heap +"
+                + (peakBytes - baselineBytes) / 1024 + " KB, " + server.getRequestCount()
+                + " downloads, " + shown[0] + " thumbnails shown at the end");
+        assertTrue(shown[0] > 0);
+        assertTrue(oversized[0] + " thumbnails decoded larger than their view", oversized[0] == 0);
+    }
+
+    private void settle() throws InterruptedException {
+        instrumentation.waitForIdleSync();
+        // Let the visible thumbnails arrive
+        Thread.sleep(SETTLE_MILLIS);
+        instrumentation.waitForIdleSync();
+    }
+
+    /**
+     * Returns the memory used by the Java heap and the native heap, where bitmaps live on
+     * newer versions of Android.
+     */
+    private static long usedBytes(Runtime runtime) {
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+
+    private static byte[] jpeg(int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        Random random = new Random(42);
+        for (int y = 0; y < height; y += 10) {
+            for (int x = 0; x < width; x += 10) {
+                paint.setColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+                canvas.drawRect(x, y, x + 10, y + 10, paint);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 80, bytes);
+        bitmap.recycle();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.labtech.newsapp;
+
+import android.app.Instrumentation;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures frame times and bind times while scrolling through 1,000 rows with long titles,
+ * with the titles laid out ahead of time by {@link TitleLayouts} and with every title laid out
+ * when its row is measured, like a TextView does.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 16)
+public class TitleLayoutScrollBenchmark {
+
+    private static final String LOG_TAG = TitleLayoutScrollBenchmark.class.getSimpleName();
+    private static final int ROWS = 1000;
+    private static final int ROWS_PER_FRAME = 2;
+    private static final long FRAME_MILLIS = 16;
+    private static final long SETTLE_MILLIS = 1000;
+
+    @Rule
+    public ActivityTestRule<NewsActivity> activityRule = new ActivityTestRule<>(NewsActivity.class);
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private RecyclerView recyclerView;
+
+    @Test
+    public void scrollThroughThousandLongTitles() throws Exception {
+        // Different titles for both runs, so that the second one can't reuse any layout
+        String onBind = scroll(false, "on bind");
+        long onBindMisses = Metrics.TITLE_LAYOUT_MISS.count();
+        String prepared = scroll(true, "prepared");
+        long preparedMisses = Metrics.TITLE_LAYOUT_MISS.count();
+
+        Log.i(LOG_TAG, "titles laid out on bind: " + onBind);
+        Log.i(LOG_TAG, "titles prepared ahead:   " + prepared);
+        assertTrue("prepared run laid out " + preparedMisses + " titles on the main thread, "
+                + onBindMisses + " without preparing", preparedMisses < onBindMisses);
+    }
+
+    /**
+     * Scrolls through fresh rows to the end and returns the frame and bind times.
+     */
+    private String scroll(final boolean prepareTitles, String run) throws InterruptedException {
+        final List<Article> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Article(longTitle(run, i), Collections.singletonList("Jane Doe"),
+                    1498309453000L - i * 60000L, "World news",
+                    "https://www.theguardian.com/world/2017/jun/24/article-" + i, null));
+        }
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                NewsActivity activity = activityRule.getActivity();
+                recyclerView = new RecyclerView(activity);
+                recyclerView.setLayoutManager(new LinearLayoutManager(activity));
+                NewsAdapter adapter = new NewsAdapter(activity,
+                        new ArticlePager(ROWS, 0, 0, new ArticlePager.PageRequestListener() {
+                            @Override
+                            public void onPageRequested(int page) {
+                            }
+                        }), new NewsAdapter.OnArticleClickListener() {
+                            @Override
+                            public void onArticleClick(Article article) {
+                            }
+                        });
+                adapter.setPrepareTitles(prepareTitles);
+                recyclerView.setAdapter(adapter);
+                activity.setContentView(recyclerView);
+                adapter.submitList(rows);
+            }
+        });
+        settle();
+
+        Metrics.reset();
+        FrameRecorder frames = new FrameRecorder(instrumentation);
+        frames.start();
+        while (recyclerView.canScrollVertically(1)) {
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    int rowHeight = recyclerView.getChildAt(0).getHeight();
+                    recyclerView.scrollBy(0, rowHeight * ROWS_PER_FRAME);
+                }
+            });
+            Thread.sleep(FRAME_MILLIS);
+        }
+        settle();
+        frames.stop();
+
+        return "frames " + frames + ", bind p50=" + Metrics.BIND_ROW.percentile(0.5)
+                + "us p95=" + Metrics.BIND_ROW.percentile(0.95) + "us, titles laid out on the main thread "
+                + Metrics.TITLE_LAYOUT_MISS.count() + ", prepared " + Metrics.TITLE_LAYOUT_PREPARE.count();
+    }
+
+    private void settle() throws InterruptedException {
+        instrumentation.waitForIdleSync();
+        Thread.sleep(SETTLE_MILLIS);
+        instrumentation.waitForIdleSync();
+    }
+
+    /**
+     * Returns a headline that takes three to four lines on a phone.
+     */
+    private static String longTitle(String run, int i) {
+        return "Article " + i + " (" + run + "): ministers face growing pressure over the handling "
+                + "of the negotiations as the deadline approaches and talks stall again in Brussels";
+    }
+}
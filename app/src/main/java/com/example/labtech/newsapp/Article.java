@@ -1,55 +1,319 @@
 package com.example.labtech.newsapp;
 
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 /**
  * Created by LABTECH on 24/6/2017.
+ * <p>
+ * Kept lean for lists of thousands of articles: section and contributor names are shared
+ * between all the articles that have them, the contributors are kept as a list rather than
+ * one joined string, and the publication date is kept as epoch milliseconds and only
+ * formatted when it is shown.
  */
 
-public class Article {
+public class Article implements Parcelable {
+
+    /**
+     * Shown instead of the contributors of the articles that have none
+     */
+    static final String NO_CONTRIBUTORS = "Contributors N/A";
+
+    /**
+     * Publication date of the articles whose date can't be read, which are shown without a date
+     * rather than as published on 1970-01-01
+     */
+    static final long UNKNOWN_DATE = Long.MIN_VALUE;
+
+    /**
+     * Separates the names of the contributors when they are shown as one string
+     */
+    private static final String CONTRIBUTOR_SEPARATOR = ", ";
+
+    private static final String[] EMPTY = new String[0];
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * One shared instance of every section and contributor name still in use
+     */
+    private static final Map<String, WeakReference<String>> NAMES = new WeakHashMap<>();
+
+    public static final Parcelable.Creator<Article> CREATOR = new Parcelable.Creator<Article>() {
+        @Override
+        public Article createFromParcel(Parcel in) {
+            String title = in.readString();
+            String[] contributors = in.createStringArray();
+            long publishedMillis = in.readLong();
+            String section = in.readString();
+            String url = in.readString();
+            String thumbnailUrl = in.readString();
+            return new Article(title, Arrays.asList(contributors), publishedMillis, section, url,
+                    thumbnailUrl);
+        }
 
+        @Override
+        public Article[] newArray(int size) {
+            return new Article[size];
+        }
+    };
 
     /**
      * Title of the news article
      */
-    private String title;
+    private final String title;
 
     /**
-     * contributor of the news article
+     * contributors of the news article, shared names
      */
-    private String contributor;
+    private final String[] contributors;
 
     /**
-     * article's date of publication
+     * article's date of publication, in milliseconds since the epoch
      */
-    private String datePublished;
+    private final long publishedMillis;
 
     /**
-     * Author of the article's section
+     * Name of the article's section, shared
      */
-    private String section;
+    private final String section;
 
     /**
      * Website URL of the article
      */
-    private String url;
+    private final String url;
+
+    /**
+     * URL of the article's thumbnail image, or null if it has none
+     */
+    private final String thumbnailUrl;
 
 
     /**
      * Constructs a new {@link Article} object.
      *
-     * @param title         is the Title of the book
-     * @param contributor   is the Author of the book
-     * @param datePublished Thumbnail image of the cover of the book
-     * @param section       Thumbnail image of the cover of the book
-     * @param url           Website URL of the article
+     * @param title           is the Title of the article
+     * @param contributors    names of the contributors of the article, may be empty
+     * @param publishedMillis date of publication in milliseconds since the epoch
+     * @param section         name of the article's section
+     * @param url             Website URL of the article
      */
-    public Article(String title, String contributor, String datePublished, String section, String url) {
+    public Article(String title, List<String> contributors, long publishedMillis, String section, String url) {
+        this(title, contributors, publishedMillis, section, url, null);
+    }
+
+    /**
+     * Constructs a new {@link Article} object with a thumbnail.
+     *
+     * @param title           is the Title of the article
+     * @param contributors    names of the contributors of the article, may be empty
+     * @param publishedMillis date of publication in milliseconds since the epoch
+     * @param section         name of the article's section
+     * @param url             Website URL of the article
+     * @param thumbnailUrl    URL of the article's thumbnail image, or null
+     */
+    public Article(String title, List<String> contributors, long publishedMillis, String section, String url,
+                   String thumbnailUrl) {
         this.title = title;
-        this.contributor = contributor;
-        this.datePublished = datePublished;
-        this.section = section;
+        if (contributors.isEmpty()) {
+            this.contributors = EMPTY;
+        } else {
+            this.contributors = new String[contributors.size()];
+            for (int i = 0; i < this.contributors.length; i++) {
+                this.contributors[i] = share(contributors.get(i));
+            }
+        }
+        this.publishedMillis = publishedMillis;
+        this.section = share(section);
         this.url = url;
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    /**
+     * Constructs a new {@link Article} object from the joined contributors and a formatted date.
+     *
+     * @param title         is the Title of the article
+     * @param contributor   names of the contributors separated by ", ", or "Contributors N/A"
+     * @param datePublished date of publication, yyyy-MM-dd optionally followed by the time
+     * @param section       name of the article's section
+     * @param url           Website URL of the article
+     */
+    public Article(String title, String contributor, String datePublished, String section, String url) {
+        this(title, splitContributors(contributor), parseDate(datePublished), section, url);
+    }
+
+    /**
+     * Returns the shared instance of the given name.
+     */
+    static String share(String name) {
+        synchronized (NAMES) {
+            WeakReference<String> reference = NAMES.get(name);
+            String shared = reference != null ? reference.get() : null;
+            if (shared == null) {
+                shared = name;
+                NAMES.put(shared, new WeakReference<>(shared));
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Returns the epoch milliseconds of a UTC date in the form yyyy-MM-dd, optionally followed
+     * by the time as in 2017-06-24T13:04:13Z, or {@link #UNKNOWN_DATE} if the date can't be read.
+     */
+    static long parseDate(String date) {
+        if (date == null || date.length() < 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return UNKNOWN_DATE;
+        }
+        int year = parseDigits(date, 0, 4);
+        int month = parseDigits(date, 5, 7);
+        int day = parseDigits(date, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return UNKNOWN_DATE;
+        }
+        long millis = daysFromCivil(year, month, day) * DAY_MILLIS;
+        if (date.length() >= 19 && date.charAt(10) == 'T') {
+            int hours = parseDigits(date, 11, 13);
+            int minutes = parseDigits(date, 14, 16);
+            int seconds = parseDigits(date, 17, 19);
+            if (hours >= 0 && minutes >= 0 && seconds >= 0) {
+                millis += ((hours * 60L + minutes) * 60L + seconds) * 1000L;
+            }
+        }
+        return millis;
+    }
+
+    /**
+     * Returns the UTC date of the epoch milliseconds in the form yyyy-MM-dd.
+     */
+    static String formatDate(long millis) {
+        long days = millis >= 0 ? millis / DAY_MILLIS : (millis - DAY_MILLIS + 1) / DAY_MILLIS;
+        // Civil date from days since 1970-01-01, see http://howardhinnant.github.io/date_algorithms.html
+        days += 719468;
+        long era = (days >= 0 ? days : days - 146096) / 146097;
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] formatted = new char[10];
+        formatted[0] = (char) ('0' + year / 1000 % 10);
+        formatted[1] = (char) ('0' + year / 100 % 10);
+        formatted[2] = (char) ('0' + year / 10 % 10);
+        formatted[3] = (char) ('0' + year % 10);
+        formatted[4] = '-';
+        formatted[5] = (char) ('0' + month / 10);
+        formatted[6] = (char) ('0' + month % 10);
+        formatted[7] = '-';
+        formatted[8] = (char) ('0' + day / 10);
+        formatted[9] = (char) ('0' + day % 10);
+        return new String(formatted);
+    }
+
+    /**
+     * Returns the UTC date and time of the epoch milliseconds in the form of a
+     * webPublicationDate, such as 2017-06-24T13:04:13Z.
+     */
+    static String formatDateTime(long millis) {
+        long secondOfDay = (millis % DAY_MILLIS + DAY_MILLIS) % DAY_MILLIS / 1000;
+        int hours = (int) (secondOfDay / 3600);
+        int minutes = (int) (secondOfDay / 60 % 60);
+        int seconds = (int) (secondOfDay % 60);
+
+        char[] formatted = new char[20];
+        formatDate(millis).getChars(0, 10, formatted, 0);
+        formatted[10] = 'T';
+        formatted[11] = (char) ('0' + hours / 10);
+        formatted[12] = (char) ('0' + hours % 10);
+        formatted[13] = ':';
+        formatted[14] = (char) ('0' + minutes / 10);
+        formatted[15] = (char) ('0' + minutes % 10);
+        formatted[16] = ':';
+        formatted[17] = (char) ('0' + seconds / 10);
+        formatted[18] = (char) ('0' + seconds % 10);
+        formatted[19] = 'Z';
+        return new String(formatted);
+    }
+
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int parseDigits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static List<String> splitContributors(String contributor) {
+        if (contributor == null || contributor.isEmpty() || NO_CONTRIBUTORS.equals(contributor)) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(contributor.split(CONTRIBUTOR_SEPARATOR));
+    }
+
+    /**
+     * Reads an article written by {@link #writeTo(DataOutput)}.
+     */
+    static Article readFrom(DataInput in) throws IOException {
+        String title = in.readUTF();
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Damaged article, " + count + " contributors");
+        }
+        // Grown as they are read, so that a damaged count runs out of input rather than memory
+        List<String> contributors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            contributors.add(in.readUTF());
+        }
+        long publishedMillis = in.readLong();
+        String section = in.readUTF();
+        String url = in.readUTF();
+        String thumbnailUrl = in.readBoolean() ? in.readUTF() : null;
+        return new Article(title, contributors, publishedMillis, section, url, thumbnailUrl);
     }
 
+    /**
+     * Writes the article in a compact binary form, read back by {@link #readFrom(DataInput)}.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(title);
+        out.writeInt(contributors.length);
+        for (String contributor : contributors) {
+            out.writeUTF(contributor);
+        }
+        out.writeLong(publishedMillis);
+        out.writeUTF(section);
+        out.writeUTF(url);
+        out.writeBoolean(thumbnailUrl != null);
+        if (thumbnailUrl != null) {
+            out.writeUTF(thumbnailUrl);
+        }
+    }
 
     /**
      * Returns the Title of the article
@@ -59,17 +323,43 @@ public class Article {
     }
 
     /**
-     * Returns the Author of the article
+     * Returns the names of the contributors of the article, empty if there are none
+     */
+    public List<String> getContributors() {
+        return Collections.unmodifiableList(Arrays.asList(contributors));
+    }
+
+    /**
+     * Returns the names of the contributors separated by ", ", or "Contributors N/A"
      */
     public String getContributor() {
-        return contributor;
+        if (contributors.length == 0) {
+            return NO_CONTRIBUTORS;
+        }
+        if (contributors.length == 1) {
+            return contributors[0];
+        }
+        StringBuilder joined = new StringBuilder(contributors[0]);
+        for (int i = 1; i < contributors.length; i++) {
+            joined.append(CONTRIBUTOR_SEPARATOR).append(contributors[i]);
+        }
+        return joined.toString();
     }
 
     /**
-     * Returns the date of publication of the article
+     * Returns the date of publication of the article, in the form yyyy-MM-dd, or an empty string
+     * if it is unknown
      */
     public String getDatePublished() {
-        return datePublished;
+        return publishedMillis == UNKNOWN_DATE ? "" : formatDate(publishedMillis);
+    }
+
+    /**
+     * Returns the date of publication of the article in milliseconds since the epoch, or
+     * {@link #UNKNOWN_DATE}
+     */
+    public long getPublishedMillis() {
+        return publishedMillis;
     }
 
     /**
@@ -86,4 +376,26 @@ public class Article {
         return url;
     }
 
+    /**
+     * Returns the url of the article's thumbnail image, or null if it has none
+     */
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(title);
+        dest.writeStringArray(contributors);
+        dest.writeLong(publishedMillis);
+        dest.writeString(section);
+        dest.writeString(url);
+        dest.writeString(thumbnailUrl);
+    }
+
 }
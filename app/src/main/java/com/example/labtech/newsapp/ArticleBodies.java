@@ -0,0 +1,236 @@
+package com.example.labtech.newsapp;
+
+import android.content.Context;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads the bodies of articles for the in-app reader, and fetches the bodies of the rows on
+ * screen ahead of time so that most articles open straight from the {@link ArticleBodyCache}.
+ * <p>
+ * Prefetches run one at a time on a low priority thread, as background requests of the
+ * {@link RequestScheduler}, and only for the rows that were on screen last: rows that scrolled
+ * away before their turn are dropped. They stop once the bytes they downloaded reach the budget
+ * of the app's run.
+ * <p>
+ * How well the prefetching pays off is counted in the {@link Metrics}: articles opened from a
+ * body prefetched in this run count as hits, articles whose body had to be fetched when they
+ * were opened as misses, and the bytes of prefetched bodies that were never opened as waste.
+ */
+public class ArticleBodies {
+
+    /**
+     * Bytes the prefetches may download per run of the app
+     */
+    private static final long MAX_PREFETCH_BYTES = 1024 * 1024;
+
+    private static ArticleBodies instance;
+
+    private final Executor prefetchExecutor;
+    private final Executor loadExecutor;
+    private final ArticleBodyCache cache;
+    private final String contentApiUrl;
+    private final long maxPrefetchBytes;
+
+    /**
+     * Articles waiting to be prefetched, by URL, in the order they are on screen
+     */
+    private final LinkedHashMap<String, Article> pending = new LinkedHashMap<>();
+
+    /**
+     * Bytes downloaded by every prefetch of this run not opened yet, by article URL
+     */
+    private final Map<String, Long> prefetchedBytes = new HashMap<>();
+
+    /**
+     * Bytes downloaded by the prefetches of this run so far
+     */
+    private long spentBytes;
+
+    /**
+     * True while a prefetch task works through the pending articles
+     */
+    private boolean draining;
+
+    /**
+     * Constructs a new {@link ArticleBodies}.
+     *
+     * @param prefetchExecutor runs the prefetches, one at a time
+     * @param loadExecutor     runs the loads of the reader
+     * @param cache            stores the bodies
+     * @param contentApiUrl    address of the Content API the bodies are fetched from
+     * @param maxPrefetchBytes bytes the prefetches may download in total
+     */
+    public ArticleBodies(Executor prefetchExecutor, Executor loadExecutor, ArticleBodyCache cache,
+                         String contentApiUrl, long maxPrefetchBytes) {
+        this.prefetchExecutor = prefetchExecutor;
+        this.loadExecutor = loadExecutor;
+        this.cache = cache;
+        this.contentApiUrl = contentApiUrl;
+        this.maxPrefetchBytes = maxPrefetchBytes;
+    }
+
+    /**
+     * Returns the bodies shared by the whole app.
+     */
+    public static synchronized ArticleBodies getInstance(Context context) {
+        if (instance == null) {
+            instance = new ArticleBodies(
+                    Executors.newSingleThreadExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "body-prefetch");
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        }
+                    }),
+                    Executors.newFixedThreadPool(2),
+                    ArticleBodyCache.getInstance(context),
+                    QueryUtils.GUARDIAN_CONTENT_API_URL,
+                    MAX_PREFETCH_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Prefetches the bodies of the given articles that are not cached yet, in place of the
+     * articles given before that have not been prefetched yet. Rows of dropped pages are null
+     * and skipped.
+     */
+    public void prefetch(List<Article> articles) {
+        synchronized (this) {
+            pending.clear();
+            if (spentBytes >= maxPrefetchBytes) {
+                return;
+            }
+            for (Article article : articles) {
+                if (article != null && !prefetchedBytes.containsKey(article.getUrl())) {
+                    pending.put(article.getUrl(), article);
+                }
+            }
+            if (pending.isEmpty() || draining) {
+                return;
+            }
+            draining = true;
+        }
+        prefetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+    }
+
+    /**
+     * Starts loading the body of the article for the reader, from the cache or else from the
+     * network. The listener is called on one of the executor's threads, unless the load is
+     * canceled first.
+     */
+    public void load(final Article article, final CancellationToken cancellation, final Listener listener) {
+        synchronized (this) {
+            pending.remove(article.getUrl());
+        }
+        loadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (cancellation.isCanceled()) {
+                    return;
+                }
+                String body = cache.get(article.getUrl());
+                Long bytes;
+                synchronized (ArticleBodies.this) {
+                    bytes = prefetchedBytes.remove(article.getUrl());
+                }
+                if (body != null) {
+                    // Bodies cached by an earlier open or run are neither hits nor misses
+                    if (bytes != null) {
+                        Metrics.READER_PREFETCH_HIT.increment();
+                        Metrics.READER_PREFETCH_USED_BYTES.add(bytes);
+                    }
+                } else {
+                    Metrics.READER_PREFETCH_MISS.increment();
+                    String bodyUrl = QueryUtils.buildBodyUrl(contentApiUrl, article.getUrl());
+                    if (bodyUrl != null) {
+                        body = QueryUtils.fetchArticleBody(bodyUrl, cancellation, null,
+                                RequestScheduler.PRIORITY_USER);
+                    }
+                    if (body != null) {
+                        cache.put(article.getUrl(), body);
+                    }
+                }
+                if (!cancellation.isCanceled()) {
+                    listener.onBody(body);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the share of opened articles whose body was prefetched and the bytes downloaded
+     * by prefetches of bodies that were never opened, as one line.
+     */
+    public static String prefetchReport() {
+        long hits = Metrics.READER_PREFETCH_HIT.count();
+        long opened = hits + Metrics.READER_PREFETCH_MISS.count();
+        long wasted = Metrics.READER_PREFETCH_BYTES.count() - Metrics.READER_PREFETCH_USED_BYTES.count();
+        return String.format(Locale.US, "reader.prefetch hit_rate=%.2f opened=%d wasted_bytes=%d",
+                opened == 0 ? 0.0 : (double) hits / opened, opened, wasted);
+    }
+
+    /**
+     * Prefetches the pending articles one after the other until there are none left or the
+     * budget is spent.
+     */
+    private void drain() {
+        while (true) {
+            Article article;
+            synchronized (this) {
+                if (pending.isEmpty() || spentBytes >= maxPrefetchBytes) {
+                    pending.clear();
+                    draining = false;
+                    return;
+                }
+                String url = pending.keySet().iterator().next();
+                article = pending.remove(url);
+            }
+            if (cache.contains(article.getUrl())) {
+                continue;
+            }
+            String bodyUrl = QueryUtils.buildBodyUrl(contentApiUrl, article.getUrl());
+            if (bodyUrl == null) {
+                continue;
+            }
+            RequestTimings usage = new RequestTimings();
+            String body = QueryUtils.fetchArticleBody(bodyUrl, new CancellationToken(), usage,
+                    RequestScheduler.PRIORITY_BACKGROUND);
+            synchronized (this) {
+                spentBytes += usage.getBodyBytes();
+                if (body != null) {
+                    prefetchedBytes.put(article.getUrl(), usage.getBodyBytes());
+                }
+            }
+            Metrics.READER_PREFETCH_BYTES.add(usage.getBodyBytes());
+            if (body != null) {
+                cache.put(article.getUrl(), body);
+            }
+        }
+    }
+
+    /**
+     * Receives the body of an article.
+     */
+    public interface Listener {
+
+        /**
+         * Called with the HTML body of the article, or null if it could not be loaded.
+         */
+        void onBody(String body);
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.labtech.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Size-bounded disk cache of the HTML bodies of articles, keyed by the web URL of the article.
+ * <p>
+ * Every body is one gzip-compressed file, which takes about a quarter of the size of the HTML.
+ * When the cache grows past its maximum size the least recently used bodies are deleted, like
+ * in the {@link ArticleCache}.
+ */
+public class ArticleBodyCache {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = ArticleBodyCache.class.getSimpleName();
+
+    /**
+     * Sub directory of the app's cache directory that holds the bodies
+     */
+    private static final String DIRECTORY_NAME = "bodies";
+
+    /**
+     * Maximum size of the cache on disk, compressed
+     */
+    private static final long MAX_SIZE_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Marks the start of every body file, followed by the format version
+     */
+    private static final int MAGIC = 0x4e414243;
+    private static final int VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static ArticleBodyCache instance;
+
+    private final File directory;
+    private final long maxSizeBytes;
+
+    /**
+     * Sizes of the body files in access order, least recently used first.
+     * Loaded from the file modification times on first use.
+     */
+    private LinkedHashMap<String, Long> lruIndex;
+    private long size;
+
+    /**
+     * Constructs a new {@link ArticleBodyCache}.
+     *
+     * @param directory    where the bodies are stored
+     * @param maxSizeBytes the size above which least recently used bodies are evicted
+     */
+    public ArticleBodyCache(File directory, long maxSizeBytes) {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Returns the cache shared by the whole app.
+     */
+    public static synchronized ArticleBodyCache getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME);
+            instance = new ArticleBodyCache(directory, MAX_SIZE_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns true if the body of the article with the given URL is cached.
+     */
+    public synchronized boolean contains(String articleUrl) {
+        return index().containsKey(fileFor(articleUrl).getName());
+    }
+
+    /**
+     * Returns the cached body of the article with the given URL, or null if there is none.
+     */
+    public synchronized String get(String articleUrl) {
+        File file = fileFor(articleUrl);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown body format");
+            }
+            String body = readAll(new InputStreamReader(in, UTF_8));
+            // Mark the body as recently used, also across restarts of the app
+            index().get(file.getName());
+            file.setLastModified(System.currentTimeMillis());
+            return body;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the body of " + articleUrl, e);
+            remove(file);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores the body of the article with the given URL, compressed, and evicts least recently
+     * used bodies if the cache has grown past its maximum size.
+     */
+    public synchronized void put(String articleUrl, String body) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Could not create the cache directory " + directory);
+            return;
+        }
+        File file = fileFor(articleUrl);
+        // Write to a temporary file first so a crash never leaves a truncated body behind
+        File temp = new File(directory, file.getName() + ".tmp");
+        DataOutputStream data = null;
+        Writer out = null;
+        try {
+            data = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))));
+            out = new OutputStreamWriter(data, UTF_8);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            out.write(body);
+            out.close();
+            out = null;
+            data = null;
+            remove(file);
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp + " to " + file);
+            }
+            index().put(file.getName(), file.length());
+            size += file.length();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the body of " + articleUrl, e);
+            temp.delete();
+            return;
+        } finally {
+            closeQuietly(out);
+            closeQuietly(data);
+        }
+        trimToSize(maxSizeBytes);
+    }
+
+    /**
+     * Deletes least recently used bodies until the cache is not bigger than the given size.
+     */
+    public synchronized void trimToSize(long sizeBytes) {
+        Iterator<Map.Entry<String, Long>> eldest = index().entrySet().iterator();
+        while (size > sizeBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            new File(directory, entry.getKey()).delete();
+            size -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Returns the total size of the compressed bodies on disk.
+     */
+    public synchronized long size() {
+        index();
+        return size;
+    }
+
+    private void remove(File file) {
+        Long length = index().remove(file.getName());
+        if (length != null) {
+            size -= length;
+        }
+        file.delete();
+    }
+
+    /**
+     * Returns the LRU index, building it from the bodies on disk the first time.
+     */
+    private LinkedHashMap<String, Long> index() {
+        if (lruIndex == null) {
+            lruIndex = new LinkedHashMap<>(16, 0.75f, true);
+            size = 0;
+            File[] files = directory.listFiles();
+            if (files != null) {
+                Arrays.sort(files, new Comparator<File>() {
+                    @Override
+                    public int compare(File a, File b) {
+                        long first = a.lastModified();
+                        long second = b.lastModified();
+                        return first < second ? -1 : (first == second ? 0 : 1);
+                    }
+                });
+                for (File file : files) {
+                    lruIndex.put(file.getName(), file.length());
+                    size += file.length();
+                }
+            }
+        }
+        return lruIndex;
+    }
+
+    private File fileFor(String articleUrl) {
+        return new File(directory, ArticleCache.hash(ArticleCache.normalizeUrl(articleUrl)));
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[4096];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            text.append(buffer, 0, read);
+        }
+        return text.toString();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.example.labtech.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Size-bounded disk cache of parsed {@link Article} lists, keyed by the normalized query URL.
+ * <p>
+ * Every entry is one file holding the articles in a compact binary format together with the
+ * ETag and Last-Modified validators of the response they came from, so that the entry can be
+ * revalidated with a conditional request, and the time until which the Cache-Control header
+ * of the response allows using it without asking the server at all. Responses marked no-store
+ * are not stored. When the cache grows past its maximum size the least
+ * recently used files are deleted.
+ */
+public class ArticleCache {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = ArticleCache.class.getSimpleName();
+
+    /**
+     * Sub directory of the app's cache directory that holds the entries
+     */
+    private static final String DIRECTORY_NAME = "articles";
+
+    /**
+     * Maximum size of the cache on disk
+     */
+    private static final long MAX_SIZE_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * Marks the start of every entry file, followed by the format version
+     */
+    private static final int MAGIC = 0x4e415243;
+    private static final int VERSION = 5;
+
+    private static ArticleCache instance;
+
+    private final File directory;
+    private final long maxSizeBytes;
+
+    /**
+     * Sizes of the entry files in access order, least recently used first.
+     * Loaded from the file modification times on first use.
+     */
+    private LinkedHashMap<String, Long> lruIndex;
+    private long size;
+
+    /**
+     * Constructs a new {@link ArticleCache}.
+     *
+     * @param directory    where the entries are stored
+     * @param maxSizeBytes the size above which least recently used entries are evicted
+     */
+    public ArticleCache(File directory, long maxSizeBytes) {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Returns the cache shared by every loader of the app.
+     */
+    public static synchronized ArticleCache getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME);
+            instance = new ArticleCache(directory, MAX_SIZE_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached entry for the given URL, or null if there is none.
+     */
+    public synchronized Entry get(String url) {
+        File file = fileFor(url);
+        if (!file.exists()) {
+            Metrics.ARTICLE_CACHE_MISS.increment();
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            Entry entry = readEntry(in);
+            // Mark the entry as recently used, also across restarts of the app
+            index().get(file.getName());
+            file.setLastModified(System.currentTimeMillis());
+            Metrics.ARTICLE_CACHE_HIT.increment();
+            return entry;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the cache entry for " + url, e);
+            remove(file);
+            Metrics.ARTICLE_CACHE_MISS.increment();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores the entry for the given URL and evicts least recently used entries if the cache
+     * has grown past its maximum size.
+     */
+    public synchronized void put(String url, Entry entry) {
+        if (entry.freshUntilMillis == Entry.NOT_STORABLE) {
+            // Not even the older entry may be used anymore
+            remove(fileFor(url));
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Could not create the cache directory " + directory);
+            return;
+        }
+        File file = fileFor(url);
+        // Write to a temporary file first so a crash never leaves a truncated entry behind
+        File temp = new File(directory, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            writeEntry(out, entry);
+            out.close();
+            out = null;
+            remove(file);
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp + " to " + file);
+            }
+            index().put(file.getName(), file.length());
+            size += file.length();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the cache entry for " + url, e);
+            temp.delete();
+            return;
+        } finally {
+            closeQuietly(out);
+        }
+        trimToSize(maxSizeBytes);
+    }
+
+    /**
+     * Deletes least recently used entries until the cache is not bigger than the given size.
+     */
+    public synchronized void trimToSize(long sizeBytes) {
+        Iterator<Map.Entry<String, Long>> eldest = index().entrySet().iterator();
+        while (size > sizeBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            new File(directory, entry.getKey()).delete();
+            size -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Returns the total size of the entries on disk.
+     */
+    public synchronized long size() {
+        index();
+        return size;
+    }
+
+    private void remove(File file) {
+        Long length = index().remove(file.getName());
+        if (length != null) {
+            size -= length;
+        }
+        file.delete();
+    }
+
+    /**
+     * Returns the LRU index, building it from the entries on disk the first time.
+     */
+    private LinkedHashMap<String, Long> index() {
+        if (lruIndex == null) {
+            lruIndex = new LinkedHashMap<>(16, 0.75f, true);
+            size = 0;
+            File[] files = directory.listFiles();
+            if (files != null) {
+                Arrays.sort(files, new Comparator<File>() {
+                    @Override
+                    public int compare(File a, File b) {
+                        long first = a.lastModified();
+                        long second = b.lastModified();
+                        return first < second ? -1 : (first == second ? 0 : 1);
+                    }
+                });
+                for (File file : files) {
+                    lruIndex.put(file.getName(), file.length());
+                    size += file.length();
+                }
+            }
+        }
+        return lruIndex;
+    }
+
+    private File fileFor(String url) {
+        return new File(directory, hash(normalizeUrl(url)));
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeNullableString(out, entry.etag);
+        writeNullableString(out, entry.lastModified);
+        out.writeLong(entry.freshUntilMillis);
+        out.writeLong(entry.bodyBytes);
+        out.writeLong(entry.parseMicros);
+        out.writeInt(entry.articles.size());
+        for (Article article : entry.articles) {
+            article.writeTo(out);
+        }
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unknown cache entry format");
+        }
+        String etag = readNullableString(in);
+        String lastModified = readNullableString(in);
+        long freshUntilMillis = in.readLong();
+        long bodyBytes = in.readLong();
+        long parseMicros = in.readLong();
+        int count = in.readInt();
+        List<Article> articles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            articles.add(Article.readFrom(in));
+        }
+        return new Entry(articles, etag, lastModified, freshUntilMillis, bodyBytes, parseMicros);
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Returns the URL with a lower case scheme and host, no fragment and its query parameters
+     * sorted, so that equivalent URLs share a cache entry.
+     */
+    static String normalizeUrl(String stringUrl) {
+        URL url;
+        try {
+            url = new URL(stringUrl.trim());
+        } catch (MalformedURLException e) {
+            return stringUrl.trim();
+        }
+        StringBuilder normalized = new StringBuilder();
+        normalized.append(url.getProtocol().toLowerCase(Locale.US))
+                .append("://")
+                .append(url.getHost().toLowerCase(Locale.US));
+        if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+            normalized.append(':').append(url.getPort());
+        }
+        normalized.append(url.getPath().isEmpty() ? "/" : url.getPath());
+        String query = url.getQuery();
+        if (query != null && !query.isEmpty()) {
+            List<String> parameters = new ArrayList<>(Arrays.asList(query.split("&")));
+            parameters.removeAll(Collections.singleton(""));
+            Collections.sort(parameters);
+            for (int i = 0; i < parameters.size(); i++) {
+                normalized.append(i == 0 ? '?' : '&').append(parameters.get(i));
+            }
+        }
+        return normalized.toString();
+    }
+
+    static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(Charset.forName("UTF-8")));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 is available on every Android device, fall back to the hash code just in case
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * A cached list of articles and the validators and freshness of the response it was parsed
+     * from.
+     */
+    public static class Entry {
+
+        /**
+         * Value of {@link #freshUntilMillis} of a response that must not be stored
+         */
+        public static final long NOT_STORABLE = -1;
+
+        /**
+         * Articles parsed from the response
+         */
+        public final List<Article> articles;
+
+        /**
+         * Value of the ETag response header, or null
+         */
+        public final String etag;
+
+        /**
+         * Value of the Last-Modified response header, or null
+         */
+        public final String lastModified;
+
+        /**
+         * Time in milliseconds since the epoch until which the articles may be used without
+         * revalidating them, 0 if they must always be revalidated, or {@link #NOT_STORABLE}
+         */
+        public final long freshUntilMillis;
+
+        /**
+         * Size of the response body the articles were parsed from, and how long parsing it
+         * took, which is what using the entry instead of the network saves. 0 if not known.
+         */
+        public final long bodyBytes;
+        public final long parseMicros;
+
+        public Entry(List<Article> articles, String etag, String lastModified) {
+            this(articles, etag, lastModified, 0, 0, 0);
+        }
+
+        public Entry(List<Article> articles, String etag, String lastModified,
+                     long freshUntilMillis, long bodyBytes, long parseMicros) {
+            this.articles = articles;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.freshUntilMillis = freshUntilMillis;
+            this.bodyBytes = bodyBytes;
+            this.parseMicros = parseMicros;
+        }
+
+        /**
+         * Returns true if the articles may still be used without asking the server.
+         */
+        public boolean isFresh(long nowMillis) {
+            return nowMillis < freshUntilMillis;
+        }
+
+        /**
+         * Returns this entry with the freshness of a 304 Not Modified response, or the entry
+         * itself if the freshness is the same.
+         */
+        Entry revalidated(long newFreshUntilMillis) {
+            if (newFreshUntilMillis == freshUntilMillis) {
+                return this;
+            }
+            return new Entry(articles, etag, lastModified, newFreshUntilMillis, bodyBytes, parseMicros);
+        }
+    }
+}
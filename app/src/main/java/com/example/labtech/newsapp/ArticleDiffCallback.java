@@ -0,0 +1,67 @@
+package com.example.labtech.newsapp;
+
+import android.support.v7.util.DiffUtil;
+
+import java.util.List;
+
+/**
+ * Compares two lists of rows of the {@link NewsAdapter}, so that only the rows that were
+ * inserted, removed, moved or changed get dispatched to the RecyclerView.
+ * <p>
+ * Articles are identified by their URL. A null row stands for an article whose page has been
+ * dropped; it is treated as the same item as whatever was shown at that position before.
+ */
+public class ArticleDiffCallback extends DiffUtil.Callback {
+
+    private final List<Article> oldRows;
+    private final List<Article> newRows;
+
+    /**
+     * Constructs a new {@link ArticleDiffCallback}.
+     *
+     * @param oldRows rows the adapter currently shows
+     * @param newRows rows the adapter is about to show
+     */
+    public ArticleDiffCallback(List<Article> oldRows, List<Article> newRows) {
+        this.oldRows = oldRows;
+        this.newRows = newRows;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return oldRows.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newRows.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        Article oldArticle = oldRows.get(oldItemPosition);
+        Article newArticle = newRows.get(newItemPosition);
+        if (oldArticle == null || newArticle == null) {
+            return oldItemPosition == newItemPosition;
+        }
+        return oldArticle.getUrl().equals(newArticle.getUrl());
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        Article oldArticle = oldRows.get(oldItemPosition);
+        Article newArticle = newRows.get(newItemPosition);
+        if (oldArticle == null || newArticle == null) {
+            return oldArticle == newArticle;
+        }
+        return oldArticle.getTitle().equals(newArticle.getTitle())
+                && oldArticle.getSection().equals(newArticle.getSection())
+                && oldArticle.getPublishedMillis() == newArticle.getPublishedMillis()
+                && oldArticle.getContributors().equals(newArticle.getContributors())
+                && equal(oldArticle.getThumbnailUrl(), newArticle.getThumbnailUrl());
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.labtech.newsapp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Append-only file of articles, read back through a memory mapping: opening it decodes nothing,
+ * and every article is only decoded when it is asked for, so a list of any length opens in the
+ * same time and only the rows that are shown are ever decoded.
+ * <p>
+ * The data file starts with a magic number and the format version, followed by one record per
+ * article: the length of the record, then the fields of the article, every string as its length
+ * in bytes and its UTF-8 bytes (a length of -1 for a missing thumbnail), and the contributors
+ * as their count followed by each of them. The offset of every
+ * record is kept as an int in a second file, named after the first one with ".idx" appended,
+ * so that any article is found without reading the ones before it.
+ * <p>
+ * Records are written before their offsets, so an append that is cut short leaves at worst
+ * records without an offset, which are not part of the list and are cut by the next append.
+ */
+public class ArticleFile extends AbstractList<Article> implements RandomAccess {
+
+    /**
+     * Marks the start of the data file, followed by the format version
+     */
+    private static final int MAGIC = 0x4e414146;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Read-only mapping of the data file, duplicated for every read so that rows can be decoded
+     * on several threads at once
+     */
+    private final ByteBuffer data;
+
+    /**
+     * Read-only mapping of the offsets
+     */
+    private final ByteBuffer offsets;
+
+    /**
+     * Number of records that have an offset and fit in the data file
+     */
+    private final int size;
+
+    private ArticleFile(ByteBuffer data, ByteBuffer offsets, int size) {
+        this.data = data;
+        this.offsets = offsets;
+        this.size = size;
+    }
+
+    /**
+     * Maps the given file. The articles appended to it afterwards are not part of the list.
+     *
+     * @throws java.io.FileNotFoundException if there is no such file
+     * @throws IOException                   if it is not an article file
+     */
+    public static ArticleFile open(File file) throws IOException {
+        RandomAccessFile dataFile = null;
+        RandomAccessFile indexFile = null;
+        try {
+            dataFile = new RandomAccessFile(file, "r");
+            ByteBuffer data = dataFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, dataFile.length());
+            if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                throw new IOException("Unknown article file format");
+            }
+            File index = indexOf(file);
+            ByteBuffer offsets = ByteBuffer.allocate(0);
+            if (index.exists()) {
+                indexFile = new RandomAccessFile(index, "r");
+                offsets = indexFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, indexFile.length() & ~3L);
+            }
+            // Records that were cut short are dropped along with their offsets
+            int count = offsets.limit() / 4;
+            while (count > 0 && !isComplete(data, offsets.getInt((count - 1) * 4))) {
+                count--;
+            }
+            return new ArticleFile(data, offsets, count);
+        } finally {
+            // The mappings stay valid once the files are closed
+            closeQuietly(indexFile);
+            closeQuietly(dataFile);
+        }
+    }
+
+    /**
+     * Appends the articles to the given file, starting a new one if there is none.
+     */
+    public static void append(File file, List<Article> articles) throws IOException {
+        boolean newFile = !file.exists() || file.length() < HEADER_SIZE;
+        long position = newFile ? HEADER_SIZE : dropIncompleteRecords(file);
+
+        ByteArrayOutputStream newOffsets = new ByteArrayOutputStream(articles.size() * 4);
+        DataOutputStream offsetsOut = new DataOutputStream(newOffsets);
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(record);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, !newFile)));
+            if (newFile) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            for (Article article : articles) {
+                record.reset();
+                encode(article, recordOut);
+                if (position + 4 + record.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Article file " + file + " is full");
+                }
+                out.writeInt(record.size());
+                record.writeTo(out);
+                offsetsOut.writeInt((int) position);
+                position += 4 + record.size();
+            }
+            out.close();
+            out = null;
+
+            // Only once the records are written
+            out = new DataOutputStream(new FileOutputStream(indexOf(file), !newFile));
+            newOffsets.writeTo(out);
+            out.close();
+            out = null;
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Writes the articles to the given file, replacing its previous content. A reader that
+     * opens the file while it is being replaced sees either the previous articles or none.
+     */
+    public static void write(File file, List<Article> articles) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        File tempIndex = indexOf(temp);
+        temp.delete();
+        tempIndex.delete();
+        try {
+            append(temp, articles);
+            // Without its offsets the previous data file is an empty list until the new one is in
+            File index = indexOf(file);
+            if (index.exists() && !index.delete()) {
+                throw new IOException("Could not delete " + index);
+            }
+            if (!temp.renameTo(file) || !tempIndex.renameTo(index)) {
+                throw new IOException("Could not rename " + temp + " to " + file);
+            }
+        } finally {
+            temp.delete();
+            tempIndex.delete();
+        }
+    }
+
+    /**
+     * Deletes the given file and its offsets.
+     */
+    public static void delete(File file) {
+        file.delete();
+        indexOf(file).delete();
+    }
+
+    /**
+     * Returns the number of articles in the file when it was opened.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the size of the data file in bytes, without the offsets.
+     */
+    public int byteSize() {
+        return data.limit();
+    }
+
+    /**
+     * Decodes the article at the given position. Every call decodes it again.
+     *
+     * @throws IllegalStateException if its record is damaged
+     */
+    @Override
+    public Article get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return read(index, true);
+    }
+
+    /**
+     * Walks every record without decoding its strings, so that a damaged file is found when it
+     * is opened rather than when one of its rows is bound.
+     *
+     * @throws IOException if a record is damaged
+     */
+    public void verify() throws IOException {
+        for (int i = 0; i < size; i++) {
+            try {
+                read(i, false);
+            } catch (IllegalStateException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Reads the record at the given position, and returns its article if asked to decode it.
+     *
+     * @throws IllegalStateException if the record is damaged
+     */
+    private Article read(int index, boolean decode) {
+        int offset = offsets.getInt(index * 4);
+        ByteBuffer record = data.duplicate();
+        try {
+            int length = record.getInt(offset);
+            record.limit(offset + 4 + length);
+            record.position(offset + 4);
+            String title = readString(record, decode);
+            int count = record.getInt();
+            // Every contributor takes at least the four bytes of its length
+            if (count < 0 || count > record.remaining() / 4) {
+                throw new IllegalStateException("Damaged record " + index);
+            }
+            String[] contributors = new String[count];
+            for (int i = 0; i < count; i++) {
+                contributors[i] = readString(record, decode);
+            }
+            long publishedMillis = record.getLong();
+            String section = readString(record, decode);
+            String url = readString(record, decode);
+            String thumbnailUrl = readString(record, decode);
+            if (title == null || section == null || url == null) {
+                throw new IllegalStateException("Damaged record " + index);
+            }
+            if (!decode) {
+                return null;
+            }
+            return new Article(title, Arrays.asList(contributors), publishedMillis, section, url,
+                    thumbnailUrl);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("Damaged record " + index, e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Damaged record " + index, e);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalStateException("Damaged record " + index, e);
+        }
+    }
+
+    /**
+     * Returns the file the offsets of the given data file are kept in.
+     */
+    static File indexOf(File file) {
+        return new File(file.getPath() + ".idx");
+    }
+
+    private static void encode(Article article, DataOutputStream out) throws IOException {
+        writeString(out, article.getTitle());
+        List<String> contributors = article.getContributors();
+        out.writeInt(contributors.size());
+        for (String contributor : contributors) {
+            writeString(out, contributor);
+        }
+        out.writeLong(article.getPublishedMillis());
+        writeString(out, article.getSection());
+        writeString(out, article.getUrl());
+        writeString(out, article.getThumbnailUrl());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}, or null for a missing one. Without decoding,
+     * its bytes are skipped and an empty string is returned for it.
+     */
+    private static String readString(ByteBuffer buffer, boolean decode) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (!decode) {
+            buffer.position(buffer.position() + length);
+            return "";
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Returns true if a whole record starts at the given offset.
+     */
+    private static boolean isComplete(ByteBuffer data, int offset) {
+        if (offset < HEADER_SIZE || offset > data.limit() - 4) {
+            return false;
+        }
+        int length = data.getInt(offset);
+        return length >= 0 && (long) offset + 4 + length <= data.limit();
+    }
+
+    /**
+     * Cuts the records and offsets an earlier append left incomplete, so that the next records
+     * follow the last complete one.
+     *
+     * @return the size of the data file, where the next record starts
+     */
+    private static long dropIncompleteRecords(File file) throws IOException {
+        ArticleFile existing = open(file);
+        long end = HEADER_SIZE;
+        if (existing.size > 0) {
+            int last = existing.offsets.getInt((existing.size - 1) * 4);
+            end = last + 4L + existing.data.getInt(last);
+        }
+        setLength(file, end);
+        setLength(indexOf(file), existing.size * 4L);
+        return end;
+    }
+
+    private static void setLength(File file, long length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            if (randomAccessFile.length() != length) {
+                randomAccessFile.setLength(length);
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
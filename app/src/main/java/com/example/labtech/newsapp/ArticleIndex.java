@@ -0,0 +1,598 @@
+package com.example.labtech.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Local full-text index of every article loaded from the Guardian API, used to answer searches
+ * without the network.
+ * <p>
+ * The title, section, contributor and publication date of the articles are split into lower
+ * case terms. Every term maps to a posting list of the articles containing it, each posting
+ * packing the article id with the fields the term occurs in, so new articles are merged in by
+ * appending to the lists of their terms. Searches match every query term, the last one as a
+ * prefix since the user may still be typing it, and rank the articles by the rarity of the
+ * matched terms weighted by the fields they occur in.
+ * <p>
+ * The articles are also appended to a log file, from which the index is rebuilt the first time
+ * it is used after the app starts.
+ * <p>
+ * The index keeps at most a given number of articles. Once it holds more, or once half of its
+ * ids belong to replaced articles, it is compacted: the oldest articles by publication date are
+ * dropped until it is back to three quarters of the limit, and the index and its log file are
+ * rebuilt from the rest. The index of the app keeps no more articles than fit a quarter of the
+ * budget of the {@link MemoryGovernor}, with which it registers. The governor may drop it from
+ * memory altogether, to be rebuilt from the log file when it is used again.
+ * <p>
+ * The governor calls in on the main thread, so it is answered without taking the lock the
+ * loaders hold while they read and write the log file: the size of the index is kept as an
+ * estimate, and a trim only marks the index to be dropped the next time a loader uses it.
+ */
+public class ArticleIndex implements MemoryGovernor.Consumer {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = ArticleIndex.class.getSimpleName();
+
+    /**
+     * Name of the log file in the app's files directory
+     */
+    private static final String FILE_NAME = "article_index";
+
+    /**
+     * Marks the start of the log file, followed by the format version
+     */
+    private static final int MAGIC = 0x4e414958;
+    private static final int VERSION = 4;
+
+    /**
+     * Most articles kept by the index of the app, a few months of browsing
+     */
+    static final int MAX_ARTICLES = 5000;
+
+    /**
+     * The index of the app takes at most this fraction of the budget of the memory governor
+     */
+    private static final int BUDGET_DIVISOR = 4;
+
+    /**
+     * Rough size of an indexed article: the article and its postings, about 16 terms
+     */
+    private static final int INDEXED_ARTICLE_BYTES = MemoryGovernor.ARTICLE_BYTES + 16 * 4;
+
+    /**
+     * Bits of the fields a term occurs in, stored in the low bits of a posting
+     */
+    private static final int FIELD_TITLE = 1;
+    private static final int FIELD_SECTION = 1 << 1;
+    private static final int FIELD_CONTRIBUTOR = 1 << 2;
+    private static final int FIELD_DATE = 1 << 3;
+    private static final int FIELD_BITS = 4;
+    private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+
+    /**
+     * Score of a term in each combination of fields, a match in the title counts most
+     */
+    private static final float[] FIELD_WEIGHTS = new float[1 << FIELD_BITS];
+
+    static {
+        for (int fields = 0; fields < FIELD_WEIGHTS.length; fields++) {
+            FIELD_WEIGHTS[fields] = ((fields & FIELD_TITLE) != 0 ? 4f : 0f)
+                    + ((fields & FIELD_SECTION) != 0 ? 2f : 0f)
+                    + ((fields & FIELD_CONTRIBUTOR) != 0 ? 2f : 0f)
+                    + ((fields & FIELD_DATE) != 0 ? 1f : 0f);
+        }
+    }
+
+    private static ArticleIndex instance;
+
+    /**
+     * Log file the articles are appended to, or null to keep the index in memory only
+     */
+    private final File file;
+
+    /**
+     * Most articles kept, the oldest are dropped by compaction beyond that
+     */
+    private final int maxArticles;
+
+    /**
+     * Indexed articles by id, null for the ones replaced by a newer version
+     */
+    private final List<Article> articles = new ArrayList<>();
+
+    /**
+     * Id of the current version of every article, by URL
+     */
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    /**
+     * Posting lists by term, sorted so that the terms starting with a prefix are found quickly
+     */
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+
+    /**
+     * Number of ids whose article has been replaced
+     */
+    private int replaced;
+
+    private boolean loaded;
+
+    /**
+     * About how many bytes the articles and posting lists take, read without the lock
+     */
+    private volatile long residentBytes;
+
+    /**
+     * Set by the memory governor when the index should be dropped from memory
+     */
+    private volatile boolean trimPending;
+
+    /**
+     * Constructs a new {@link ArticleIndex} that keeps at most {@link #MAX_ARTICLES} articles.
+     *
+     * @param file log file the articles are appended to, or null to keep the index in memory only
+     */
+    public ArticleIndex(File file) {
+        this(file, MAX_ARTICLES);
+    }
+
+    /**
+     * Constructs a new {@link ArticleIndex}.
+     *
+     * @param file        log file the articles are appended to, or null to keep the index in
+     *                    memory only
+     * @param maxArticles most articles kept, the oldest are dropped beyond that
+     */
+    public ArticleIndex(File file, int maxArticles) {
+        this.file = file;
+        this.maxArticles = maxArticles;
+        this.loaded = file == null;
+    }
+
+    /**
+     * Returns the index shared by every loader of the app.
+     */
+    public static synchronized ArticleIndex getInstance(Context context) {
+        if (instance == null) {
+            MemoryGovernor governor = MemoryGovernor.getInstance(context);
+            int maxArticles = (int) Math.min(MAX_ARTICLES,
+                    governor.getBudgetBytes() / BUDGET_DIVISOR / INDEXED_ARTICLE_BYTES);
+            instance = new ArticleIndex(new File(context.getApplicationContext().getFilesDir(), FILE_NAME),
+                    maxArticles);
+            governor.register(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * Adds the given articles to the index. Articles that are already indexed with the same
+     * fields are skipped, changed ones replace their previous version.
+     *
+     * @return the number of articles added or replaced
+     */
+    public synchronized int addAll(List<Article> newArticles) {
+        load();
+        List<Article> added = new ArrayList<>();
+        for (Article article : newArticles) {
+            if (index(article)) {
+                added.add(article);
+            }
+        }
+        if (!added.isEmpty()) {
+            append(added);
+        }
+        if (needsCompaction()) {
+            compact();
+        }
+        return added.size();
+    }
+
+    /**
+     * Returns one page of the indexed articles matching every term of the query, best matches
+     * first and the most recent first among equally good ones. An empty query matches every
+     * article.
+     *
+     * @param query  text typed by the user
+     * @param offset number of matching articles to skip
+     * @param limit  maximum number of articles to return
+     */
+    public synchronized List<Article> search(String query, int offset, int limit) {
+        load();
+        List<String> terms = tokenize(query);
+        final Map<Integer, Float> scores;
+        if (terms.isEmpty()) {
+            scores = new HashMap<>();
+            for (int id = 0; id < articles.size(); id++) {
+                if (articles.get(id) != null) {
+                    scores.put(id, 0f);
+                }
+            }
+        } else {
+            scores = score(terms);
+        }
+
+        List<Integer> matches = new ArrayList<>(scores.keySet());
+        Collections.sort(matches, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byScore = Float.compare(scores.get(b), scores.get(a));
+                if (byScore != 0) {
+                    return byScore;
+                }
+                long dateA = articles.get(a).getPublishedMillis();
+                long dateB = articles.get(b).getPublishedMillis();
+                if (dateA != dateB) {
+                    return dateA < dateB ? 1 : -1;
+                }
+                return b - a;
+            }
+        });
+
+        List<Article> page = new ArrayList<>();
+        for (int i = offset; i < matches.size() && page.size() < limit; i++) {
+            page.add(articles.get(matches.get(i)));
+        }
+        return page;
+    }
+
+    /**
+     * Returns the number of articles in the index.
+     */
+    public synchronized int size() {
+        load();
+        return articles.size() - replaced;
+    }
+
+    /**
+     * Returns about how many bytes the articles and posting lists take, nothing once the index
+     * is to be dropped. Doesn't wait for a load in progress.
+     */
+    @Override
+    public long residentBytes() {
+        return trimPending ? 0 : residentBytes;
+    }
+
+    /**
+     * Drops the index from memory once the caches have to go: the next load or search drops it
+     * and rebuilds it from the log file. An index without a log file has nothing to rebuild from
+     * and is kept.
+     */
+    @Override
+    public void trim(int stage) {
+        if (stage >= MemoryGovernor.STAGE_CACHES && file != null) {
+            trimPending = true;
+        }
+    }
+
+    /**
+     * Returns the number of distinct terms in the index.
+     */
+    synchronized int termCount() {
+        load();
+        return postings.size();
+    }
+
+    /**
+     * Returns the total number of postings over every term.
+     */
+    synchronized long postingCount() {
+        load();
+        long count = 0;
+        for (Postings list : postings.values()) {
+            count += list.size;
+        }
+        return count;
+    }
+
+    /**
+     * Splits text into lower case terms made of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String lowerCase = text.toLowerCase(Locale.US);
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            boolean partOfTerm = i < lowerCase.length() && Character.isLetterOrDigit(lowerCase.charAt(i));
+            if (partOfTerm && start < 0) {
+                start = i;
+            } else if (!partOfTerm && start >= 0) {
+                terms.add(lowerCase.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Returns the score of every article matching all the terms. Every matched term adds its
+     * inverse document frequency weighted by the fields it occurs in.
+     */
+    private Map<Integer, Float> score(List<String> terms) {
+        Map<Integer, Float> scores = null;
+        int documentCount = size();
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            // The last term may still be being typed, so it matches as a prefix too
+            SortedMap<String, Postings> matching = i == terms.size() - 1
+                    ? postings.subMap(term, term + Character.MAX_VALUE)
+                    : postings.subMap(term, term + '\0');
+            Map<Integer, Float> termScores = new HashMap<>();
+            for (Map.Entry<String, Postings> entry : matching.entrySet()) {
+                Postings list = entry.getValue();
+                float idf = (float) Math.log(1 + (double) documentCount / list.size);
+                // Completions of a prefix count less than the exact term
+                float weight = entry.getKey().equals(term) ? idf : idf / 2;
+                for (int p = 0; p < list.size; p++) {
+                    int id = list.values[p] >>> FIELD_BITS;
+                    if (articles.get(id) == null || (scores != null && !scores.containsKey(id))) {
+                        continue;
+                    }
+                    float score = weight * FIELD_WEIGHTS[list.values[p] & FIELD_MASK];
+                    Float best = termScores.get(id);
+                    if (best == null || score > best) {
+                        termScores.put(id, score);
+                    }
+                }
+            }
+            if (scores != null) {
+                for (Map.Entry<Integer, Float> entry : termScores.entrySet()) {
+                    entry.setValue(entry.getValue() + scores.get(entry.getKey()));
+                }
+            }
+            scores = termScores;
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Adds the article to the in-memory index.
+     *
+     * @return false if the same version of the article was already indexed
+     */
+    private boolean index(Article article) {
+        Integer previous = ids.get(article.getUrl());
+        if (previous != null) {
+            if (sameFields(articles.get(previous), article)) {
+                return false;
+            }
+            // Its postings stay behind and are skipped when searching
+            articles.set(previous, null);
+            replaced++;
+            residentBytes -= MemoryGovernor.ARTICLE_BYTES;
+        }
+        int id = articles.size();
+        articles.add(article);
+        ids.put(article.getUrl(), id);
+
+        Map<String, Integer> fields = new HashMap<>();
+        addTerms(fields, article.getTitle(), FIELD_TITLE);
+        addTerms(fields, article.getSection(), FIELD_SECTION);
+        for (String contributor : article.getContributors()) {
+            addTerms(fields, contributor, FIELD_CONTRIBUTOR);
+        }
+        addTerms(fields, article.getDatePublished(), FIELD_DATE);
+        for (Map.Entry<String, Integer> entry : fields.entrySet()) {
+            Postings list = postings.get(entry.getKey());
+            if (list == null) {
+                list = new Postings();
+                postings.put(entry.getKey(), list);
+            }
+            list.add(id << FIELD_BITS | entry.getValue());
+        }
+        residentBytes += MemoryGovernor.ARTICLE_BYTES + fields.size() * 4L;
+        return true;
+    }
+
+    private static void addTerms(Map<String, Integer> fields, String text, int field) {
+        for (String term : tokenize(text)) {
+            Integer existing = fields.get(term);
+            fields.put(term, existing == null ? field : existing | field);
+        }
+    }
+
+    private static boolean sameFields(Article a, Article b) {
+        return a.getTitle().equals(b.getTitle())
+                && a.getSection().equals(b.getSection())
+                && a.getContributors().equals(b.getContributors())
+                && a.getPublishedMillis() == b.getPublishedMillis();
+    }
+
+    /**
+     * Builds the index from the log file the first time it is used, and again once the memory
+     * governor had it dropped.
+     */
+    private void load() {
+        if (trimPending) {
+            // Dropped by the memory governor, rebuilt from the log file below
+            trimPending = false;
+            clear();
+            loaded = false;
+        }
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        DataInputStream in = null;
+        boolean complete = false;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown index format");
+            }
+            while (!atEnd(in)) {
+                index(Article.readFrom(in));
+            }
+            complete = true;
+        } catch (EOFException e) {
+            Log.e(LOG_TAG, "The last article of the index was cut short, dropping it", e);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the index, keeping the articles read so far", e);
+        } finally {
+            closeQuietly(in);
+        }
+        // Drop a damaged tail and replaced articles, as long as they don't add up to much
+        if (!complete || needsCompaction()) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns true if the index holds more articles than it may, or if replaced articles take
+     * more than half of its ids.
+     */
+    private boolean needsCompaction() {
+        return size() > maxArticles || replaced > articles.size() / 2;
+    }
+
+    /**
+     * Rebuilds the index and its log file with only the current version of every article,
+     * dropping the oldest ones if there are more than the index may keep.
+     */
+    private void compact() {
+        List<Article> current = new ArrayList<>();
+        for (Article article : articles) {
+            if (article != null) {
+                current.add(article);
+            }
+        }
+        if (current.size() > maxArticles) {
+            // Kept in the order they were indexed, so that ties in a search stay as they were
+            List<Article> byDate = new ArrayList<>(current);
+            Collections.sort(byDate, new Comparator<Article>() {
+                @Override
+                public int compare(Article a, Article b) {
+                    long dateA = a.getPublishedMillis();
+                    long dateB = b.getPublishedMillis();
+                    return dateA < dateB ? 1 : (dateA > dateB ? -1 : 0);
+                }
+            });
+            Map<Article, Boolean> kept = new IdentityHashMap<>();
+            for (Article article : byDate.subList(0, maxArticles - maxArticles / 4)) {
+                kept.put(article, true);
+            }
+            List<Article> newest = new ArrayList<>(kept.size());
+            for (Article article : current) {
+                if (kept.containsKey(article)) {
+                    newest.add(article);
+                }
+            }
+            Metrics.INDEX_EVICTED.add(current.size() - newest.size());
+            current = newest;
+        }
+        clear();
+        for (Article article : current) {
+            index(article);
+        }
+        if (file != null) {
+            file.delete();
+            append(current);
+        }
+    }
+
+    /**
+     * Empties the in-memory index.
+     */
+    private void clear() {
+        articles.clear();
+        ids.clear();
+        postings.clear();
+        replaced = 0;
+        residentBytes = 0;
+    }
+
+    /**
+     * Appends the articles to the log file, starting a new one if there is none.
+     */
+    private void append(List<Article> added) {
+        if (file == null) {
+            return;
+        }
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Could not create the index directory " + directory);
+            return;
+        }
+        DataOutputStream out = null;
+        try {
+            boolean newFile = !file.exists() || file.length() == 0;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            if (newFile) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            for (Article article : added) {
+                article.writeTo(out);
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the index", e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static boolean atEnd(DataInputStream in) throws IOException {
+        in.mark(1);
+        if (in.read() == -1) {
+            return true;
+        }
+        in.reset();
+        return false;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Growable list of postings, in the order the articles were indexed.
+     */
+    private static class Postings {
+        int[] values = new int[2];
+        int size;
+
+        void add(int posting) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = posting;
+        }
+    }
+}
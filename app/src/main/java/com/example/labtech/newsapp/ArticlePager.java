@@ -0,0 +1,398 @@
+package com.example.labtech.newsapp;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Holds the pages of a paged Guardian search and decides which pages to load and to drop.
+ * <p>
+ * The next page is requested as soon as the visible rows come within the prefetch distance of
+ * the end of the list, a page that is already being loaded is never requested twice, and pages
+ * far away from the visible rows are dropped to bound memory. Dropped pages keep their rows in
+ * the count and are loaded again when they scroll back into view. Under memory pressure only the
+ * pages next to the visible ones are kept, and in the end only the visible ones.
+ * <p>
+ * Pages are numbered from 1 like the "page" parameter of the Guardian API. A page that holds
+ * less than page size articles is taken to be the last one, unless its loader tells otherwise:
+ * the pages of the home feed are cut by publication time and hold any number of articles.
+ */
+public class ArticlePager implements MemoryGovernor.Consumer {
+
+    /**
+     * Number of articles per page
+     */
+    private final int pageSize;
+
+    /**
+     * How many rows before the end of the list the next page is requested
+     */
+    private final int prefetchDistance;
+
+    /**
+     * How many pages before and after the visible ones are kept in memory
+     */
+    private final int residentPageRadius;
+
+    private final PageRequestListener listener;
+
+    /**
+     * Pages currently in memory, by page number
+     */
+    private final Map<Integer, List<Article>> pages = new HashMap<>();
+
+    /**
+     * Pages that have been requested and not been delivered yet
+     */
+    private final Set<Integer> pagesInFlight = new HashSet<>();
+
+    /**
+     * Number of articles and publication time of the last one of every page up to the highest
+     * one loaded so far, by page number from 1. Kept when the page is dropped.
+     */
+    private final List<Integer> pageLengths = new ArrayList<>();
+    private final List<Long> pageEndMillis = new ArrayList<>();
+
+    /**
+     * Sum of the page lengths
+     */
+    private int count;
+
+    /**
+     * True once the last page has been loaded
+     */
+    private boolean endReached;
+
+    /**
+     * Rows last reported on screen, -1 before the first report
+     */
+    private int firstVisiblePosition = -1;
+    private int lastVisiblePosition = -1;
+
+    /**
+     * Constructs a new {@link ArticlePager}.
+     *
+     * @param pageSize           number of articles per page
+     * @param prefetchDistance   how many rows before the end of the list the next page is requested
+     * @param residentPageRadius how many pages around the visible ones are kept in memory
+     * @param listener           is asked to load the pages
+     */
+    public ArticlePager(int pageSize, int prefetchDistance, int residentPageRadius,
+                        PageRequestListener listener) {
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+        this.residentPageRadius = residentPageRadius;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the number of articles per page.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Returns the number of rows loaded so far, including the rows of dropped pages.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the article at the given position, or null if its page has been dropped,
+     * in which case the page is requested again.
+     */
+    public Article getItem(int position) {
+        int page = pageOf(position);
+        List<Article> articles = pages.get(page);
+        if (articles == null) {
+            requestPage(page);
+            return null;
+        }
+        int index = position - startOf(page);
+        return index < articles.size() ? articles.get(index) : null;
+    }
+
+    /**
+     * Returns true if the given page is already being loaded.
+     */
+    public boolean isInFlight(int page) {
+        return pagesInFlight.contains(page);
+    }
+
+    /**
+     * Returns true if the given page is held in memory.
+     */
+    public boolean isResident(int page) {
+        return pages.containsKey(page);
+    }
+
+    /**
+     * Returns the number of rows of the pages held in memory.
+     */
+    public int getResidentCount() {
+        int count = 0;
+        for (List<Article> articles : pages.values()) {
+            count += articles.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the publication time of the last article of the given page, which is remembered
+     * after the page is dropped, or 0 if the page has not been loaded or has no articles.
+     */
+    public long getEndMillis(int page) {
+        return page >= 1 && page <= pageLengths.size() ? pageEndMillis.get(page - 1) : 0;
+    }
+
+    /**
+     * Returns true once the last page of the search has been loaded.
+     */
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    /**
+     * Starts a new search by dropping every page and requesting the first one.
+     */
+    public void reset() {
+        clear();
+        requestPage(1);
+    }
+
+    /**
+     * Drops every page without requesting anything.
+     */
+    public void clear() {
+        pages.clear();
+        pagesInFlight.clear();
+        pageLengths.clear();
+        pageEndMillis.clear();
+        count = 0;
+        endReached = false;
+        firstVisiblePosition = -1;
+        lastVisiblePosition = -1;
+    }
+
+    /**
+     * Marks a page as being loaded without requesting it, for a loader that is still loading
+     * or holds the page already, for example after the activity has been recreated.
+     */
+    public void resumePage(int page) {
+        if (!pages.containsKey(page)) {
+            pagesInFlight.add(page);
+        }
+    }
+
+    /**
+     * Returns the rows loaded so far, with null for the rows of dropped pages. The list does not
+     * change with the pager, and it only looks a row up in its page when asked for it, so that
+     * pages which decode their articles lazily are only decoded as far as their rows are shown.
+     */
+    public List<Article> snapshot() {
+        List<List<Article>> rowsOfPages = new ArrayList<>(pageLengths.size());
+        int[] starts = new int[pageLengths.size()];
+        int start = 0;
+        for (int page = 1; page <= pageLengths.size(); page++) {
+            rowsOfPages.add(pages.get(page));
+            starts[page - 1] = start;
+            start += pageLengths.get(page - 1);
+        }
+        return new Rows(rowsOfPages, starts, count);
+    }
+
+    /**
+     * Tells the pager which rows are on screen, so that it can prefetch the next page and
+     * drop the pages far away from them.
+     *
+     * @return true if pages were dropped
+     */
+    public boolean onVisibleRangeChanged(int firstVisiblePosition, int lastVisiblePosition) {
+        if (pageLengths.isEmpty()) {
+            return false;
+        }
+        if (!endReached && lastVisiblePosition >= count - 1 - prefetchDistance) {
+            requestPage(pageLengths.size() + 1);
+        }
+
+        this.firstVisiblePosition = firstVisiblePosition;
+        this.lastVisiblePosition = lastVisiblePosition;
+        return dropPagesAround(residentPageRadius);
+    }
+
+    /**
+     * Drops the pages further than the given number of pages from the rows last reported on
+     * screen, to free memory under pressure. Before any rows were reported, the rows on screen
+     * are taken to be the first ones. The dropped pages are loaded again when their rows are
+     * asked for.
+     *
+     * @return true if pages were dropped
+     */
+    public boolean dropPagesAround(int radius) {
+        int firstPage = pageOf(Math.max(firstVisiblePosition, 0)) - radius;
+        int lastPage = pageOf(Math.max(lastVisiblePosition, 0)) + radius;
+        List<Integer> farPages = new ArrayList<>();
+        for (Integer page : pages.keySet()) {
+            if (page < firstPage || page > lastPage) {
+                farPages.add(page);
+            }
+        }
+        for (Integer page : farPages) {
+            pages.remove(page);
+        }
+        return !farPages.isEmpty();
+    }
+
+    @Override
+    public long residentBytes() {
+        return (long) getResidentCount() * MemoryGovernor.ARTICLE_BYTES;
+    }
+
+    /**
+     * Drops the pages further than one page from the visible ones, or every page but the visible
+     * ones at {@link MemoryGovernor#STAGE_VISIBLE_ONLY}.
+     */
+    @Override
+    public void trim(int stage) {
+        dropPagesAround(stage >= MemoryGovernor.STAGE_VISIBLE_ONLY ? 0 : Math.min(residentPageRadius, 1));
+    }
+
+    /**
+     * Stores a page delivered by the loader. A null list means the page failed to load,
+     * so it may be requested again later. A page with less than page size articles is the last
+     * one.
+     *
+     * @return true if the page changed the number of rows
+     */
+    public boolean onPageLoaded(int page, List<Article> articles) {
+        return onPageLoaded(page, articles, articles != null && articles.size() < pageSize);
+    }
+
+    /**
+     * Stores a page delivered by a loader that knows whether it is the last one, whatever its
+     * number of articles. A null list means the page failed to load, so it may be requested
+     * again later.
+     *
+     * @return true if the page changed the number of rows
+     */
+    public boolean onPageLoaded(int page, List<Article> articles, boolean last) {
+        pagesInFlight.remove(page);
+        if (articles == null) {
+            return false;
+        }
+        pages.put(page, articles);
+        int oldCount = count;
+        while (pageLengths.size() < page) {
+            // Pages before this one that are still loading are taken to be full until they come
+            pageLengths.add(pageSize);
+            pageEndMillis.add(0L);
+            count += pageSize;
+        }
+        count += articles.size() - pageLengths.get(page - 1);
+        pageLengths.set(page - 1, articles.size());
+        pageEndMillis.set(page - 1, articles.isEmpty() ? 0L
+                : articles.get(articles.size() - 1).getPublishedMillis());
+        if (page == pageLengths.size()) {
+            endReached = last;
+        }
+        return count != oldCount;
+    }
+
+    private void requestPage(int page) {
+        if (pages.containsKey(page) || pagesInFlight.contains(page)) {
+            return;
+        }
+        pagesInFlight.add(page);
+        listener.onPageRequested(page);
+    }
+
+    /**
+     * Returns the page that holds the given position, or the last page if none does.
+     */
+    private int pageOf(int position) {
+        int end = 0;
+        for (int page = 1; page <= pageLengths.size(); page++) {
+            end += pageLengths.get(page - 1);
+            if (position < end) {
+                return page;
+            }
+        }
+        return Math.max(pageLengths.size(), 1);
+    }
+
+    /**
+     * Returns the position of the first row of the given page.
+     */
+    private int startOf(int page) {
+        int start = 0;
+        for (int i = 0; i < page - 1 && i < pageLengths.size(); i++) {
+            start += pageLengths.get(i);
+        }
+        return start;
+    }
+
+    /**
+     * Loads the pages requested by an {@link ArticlePager}.
+     */
+    public interface PageRequestListener {
+
+        /**
+         * Starts loading the given page, which must then be handed to
+         * {@link ArticlePager#onPageLoaded(int, List)} or
+         * {@link ArticlePager#onPageLoaded(int, List, boolean)}.
+         */
+        void onPageRequested(int page);
+    }
+
+    /**
+     * Rows of the pages held by the pager at one point in time.
+     */
+    private static class Rows extends AbstractList<Article> implements RandomAccess {
+        private final List<List<Article>> pages;
+
+        /**
+         * Position of the first row of every page
+         */
+        private final int[] starts;
+        private final int count;
+
+        Rows(List<List<Article>> pages, int[] starts, int count) {
+            this.pages = pages;
+            this.starts = starts;
+            this.count = count;
+        }
+
+        @Override
+        public Article get(int position) {
+            if (position < 0 || position >= count) {
+                throw new IndexOutOfBoundsException("Position " + position + ", count " + count);
+            }
+            // The last page that starts at or before the position, past the empty pages
+            int low = 0;
+            int high = starts.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (starts[middle] <= position) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            List<Article> articles = pages.get(low);
+            int i = position - starts[low];
+            return articles != null && i < articles.size() ? articles.get(i) : null;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.labtech.newsapp;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads pages of articles for the loaders of the app, on its own bounded executor.
+ * <p>
+ * Articles cached for the URL by an earlier load are handed over first, or else the matching
+ * articles of the local {@link ArticleIndex}, then the URL is revalidated against the server and
+ * the fresh list follows. Every list loaded from the network goes into the cache and the index.
+ * <p>
+ * Loads of the same URL that overlap share a single network request. The request is only
+ * aborted once every load waiting for it has been canceled. A request that fails goes into the
+ * {@link OfflineQueue}, which makes it again once the network is back.
+ */
+public class ArticleRepository {
+
+    /**
+     * Number of loads that run at the same time, so that a slow request doesn't hold up
+     * the pages queued behind it
+     */
+    private static final int MAX_PARALLEL_LOADS = 4;
+
+    private static ArticleRepository instance;
+
+    private final Executor executor;
+    private final ArticleCache cache;
+    private final ArticleIndex index;
+    private final OfflineQueue queue;
+
+    /**
+     * Network requests in progress, by URL. Also guards the waiting loads of every request.
+     */
+    private final Map<String, Fetch> inFlight = new HashMap<>();
+
+    /**
+     * Constructs a new {@link ArticleRepository}.
+     *
+     * @param executor runs the loads, its number of threads bounds how many run at once
+     * @param cache    stores the loaded articles by URL
+     * @param index    is searched while offline and receives every loaded article
+     */
+    public ArticleRepository(Executor executor, ArticleCache cache, ArticleIndex index) {
+        this(executor, cache, index, null);
+    }
+
+    /**
+     * Constructs a new {@link ArticleRepository} that queues the failed requests.
+     *
+     * @param executor runs the loads, its number of threads bounds how many run at once
+     * @param cache    stores the loaded articles by URL
+     * @param index    is searched while offline and receives every loaded article
+     * @param queue    replays the failed requests once the network is back, or null
+     */
+    public ArticleRepository(Executor executor, ArticleCache cache, ArticleIndex index,
+                             OfflineQueue queue) {
+        this.executor = executor;
+        this.cache = cache;
+        this.index = index;
+        this.queue = queue;
+    }
+
+    /**
+     * Returns the repository shared by the whole app.
+     */
+    public static synchronized ArticleRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new ArticleRepository(Executors.newFixedThreadPool(MAX_PARALLEL_LOADS),
+                    ArticleCache.getInstance(context), ArticleIndex.getInstance(context),
+                    OfflineQueue.getInstance(context));
+        }
+        return instance;
+    }
+
+    /**
+     * Starts loading a page of articles. The listener is called on the executor's threads,
+     * at most once with the cached or local articles and then once with the final list, unless
+     * the load is canceled first.
+     *
+     * @param url          of the page, or null to only search the local index
+     * @param query        searched in the local index
+     * @param page         of the results, starting from 1
+     * @param pageSize     number of results per page
+     * @param cancellation stops the load, and its request if no other load waits for it
+     * @param listener     receives the articles
+     */
+    public void load(final String url, final String query, final int page, final int pageSize,
+                     final CancellationToken cancellation, final Listener listener) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (cancellation.isCanceled()) {
+                    return;
+                }
+                int offset = (page - 1) * pageSize;
+                if (url == null) {
+                    listener.onArticles(index.search(query, offset, pageSize), true);
+                    return;
+                }
+
+                // Show whatever is cached for this URL right away, or else whatever matches in
+                // the local index, while the network request is in flight
+                ArticleCache.Entry cached = cache.get(url);
+                List<Article> shown;
+                if (cached != null) {
+                    shown = cached.articles;
+                } else {
+                    List<Article> local = index.search(query, offset, pageSize);
+                    shown = local.isEmpty() ? null : local;
+                }
+                if (shown != null) {
+                    listener.onArticles(shown, false);
+                }
+
+                final List<Article> fallback = shown;
+                fetch(url, query, cached, cancellation, new Listener() {
+                    @Override
+                    public void onArticles(List<Article> articles, boolean complete) {
+                        if (!cancellation.isCanceled()) {
+                            // Keep showing the cached or local articles if the request failed.
+                            // On 304 Not Modified this is the list that was already handed over.
+                            listener.onArticles(articles != null ? articles : fallback, true);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Starts refreshing a first page of articles with only the articles published since the
+     * newest cached one, which are merged in front of the cached articles and cached with them.
+     * A page ordered by relevance is loaded again in full instead. The listener is called on the
+     * executor's threads, once with the final list, unless the refresh is canceled first.
+     *
+     * @param url          of the first page, or null to only search the local index
+     * @param query        searched in the local index
+     * @param pageSize     number of results per page, which the merged page holds at most
+     * @param cancellation stops the refresh
+     * @param listener     receives the articles
+     */
+    public void refresh(final String url, final String query, final int pageSize,
+                        final CancellationToken cancellation, final Listener listener) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (cancellation.isCanceled()) {
+                    return;
+                }
+                if (url == null) {
+                    listener.onArticles(index.search(query, 0, pageSize), true);
+                    return;
+                }
+                ArticleCache.Entry cached = cache.get(url);
+                ArticleCache.Entry entry = QueryUtils.fetchNewerArticlesEntry(url, cached, pageSize, cancellation);
+                if (entry != null && entry != cached) {
+                    cache.put(url, entry);
+                    index.addAll(entry.articles);
+                }
+                if (!cancellation.isCanceled()) {
+                    // Keep showing the cached articles if the request failed
+                    ArticleCache.Entry shown = entry != null ? entry : cached;
+                    listener.onArticles(shown != null ? shown.articles : null, true);
+                }
+            }
+        });
+    }
+
+    /**
+     * Fetches the URL on the calling thread, or waits for the request already in flight for it.
+     */
+    private void fetch(String url, String query, ArticleCache.Entry cached,
+                       CancellationToken cancellation, final Listener waiter) {
+        final Fetch fetch;
+        boolean started;
+        synchronized (inFlight) {
+            Fetch existing = inFlight.get(url);
+            started = existing == null;
+            fetch = started ? new Fetch(url, query) : existing;
+            if (started) {
+                inFlight.put(url, fetch);
+            }
+            fetch.waiters.add(waiter);
+        }
+        if (!started) {
+            Metrics.FETCH_COALESCED.increment();
+        }
+        cancellation.addOnCancelListener(new Runnable() {
+            @Override
+            public void run() {
+                fetch.leave(waiter);
+            }
+        });
+        if (started) {
+            fetch.run(cached);
+        }
+    }
+
+    /**
+     * A network request, shared by every load of its URL that overlaps with it.
+     */
+    private class Fetch {
+        private final String url;
+        private final String query;
+        private final CancellationToken cancellation = new CancellationToken();
+
+        /**
+         * Loads waiting for the result, guarded by {@link #inFlight}
+         */
+        private final List<Listener> waiters = new ArrayList<>();
+
+        Fetch(String url, String query) {
+            this.url = url;
+            this.query = query;
+        }
+
+        void run(ArticleCache.Entry cached) {
+            ArticleCache.Entry entry = QueryUtils.fetchArticlesEntry(url, cached, cancellation);
+            if (entry != null && entry != cached) {
+                cache.put(url, entry);
+                index.addAll(entry.articles);
+            } else if (entry == null && queue != null && !cancellation.isCanceled()) {
+                queue.enqueue(url, query);
+            }
+            List<Listener> done;
+            synchronized (inFlight) {
+                if (inFlight.get(url) == this) {
+                    inFlight.remove(url);
+                }
+                done = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            List<Article> articles = entry != null ? entry.articles : null;
+            for (Listener waiter : done) {
+                waiter.onArticles(articles, true);
+            }
+        }
+
+        /**
+         * Stops waiting for the request, and aborts it if no other load waits for it.
+         */
+        void leave(Listener waiter) {
+            boolean abandoned;
+            synchronized (inFlight) {
+                abandoned = waiters.remove(waiter) && waiters.isEmpty() && inFlight.get(url) == this;
+                if (abandoned) {
+                    // A later load of the URL starts a request of its own
+                    inFlight.remove(url);
+                }
+            }
+            if (abandoned) {
+                cancellation.cancel();
+            }
+        }
+    }
+
+    /**
+     * Receives the articles of a load.
+     */
+    public interface Listener {
+
+        /**
+         * Called with the articles loaded so far.
+         *
+         * @param articles the articles, or null if none could be loaded
+         * @param complete true for the final list of the load
+         */
+        void onArticles(List<Article> articles, boolean complete);
+    }
+}
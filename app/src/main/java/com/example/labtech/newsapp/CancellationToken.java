@@ -0,0 +1,64 @@
+package com.example.labtech.newsapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets one thread cancel a request that another thread is performing.
+ * <p>
+ * The threads performing the request register what to do on cancellation, for example closing
+ * the connection, so that a blocked read is aborted instead of running to completion. One token
+ * may be shared by several requests running at the same time, and every one of them is aborted.
+ */
+public class CancellationToken {
+
+    private boolean canceled;
+    private final List<Runnable> onCancel = new ArrayList<>();
+
+    /**
+     * Returns true once {@link #cancel()} has been called.
+     */
+    public synchronized boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Cancels the requests and runs the registered actions. Calling it again does nothing.
+     */
+    public void cancel() {
+        List<Runnable> actions;
+        synchronized (this) {
+            if (canceled) {
+                return;
+            }
+            canceled = true;
+            actions = new ArrayList<>(onCancel);
+            onCancel.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * Registers an action that aborts a request, next to the ones registered already.
+     * It runs right away if the token has already been canceled.
+     */
+    public void addOnCancelListener(Runnable action) {
+        synchronized (this) {
+            if (!canceled) {
+                onCancel.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Removes an action registered with {@link #addOnCancelListener(Runnable)}, once its
+     * request is over.
+     */
+    public synchronized void removeOnCancelListener(Runnable action) {
+        onCancel.remove(action);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.labtech.newsapp;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Follows whether the device is online through the connectivity broadcasts, so that the app
+ * knows the state of the network without asking the {@link ConnectivityManager} before every
+ * request, and hears when the network comes back.
+ * <p>
+ * The listeners are called on the main thread, only when the state actually changes.
+ */
+public class ConnectivityMonitor implements OfflineQueue.Connectivity {
+
+    private static ConnectivityMonitor instance;
+
+    private final ConnectivityManager connectivityManager;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean connected;
+
+    private ConnectivityMonitor(Context context) {
+        connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        connected = readConnected();
+        // Registered for the lifetime of the process, like the monitor itself
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                boolean now = readConnected();
+                if (now == connected) {
+                    return;
+                }
+                connected = now;
+                for (Listener listener : listeners) {
+                    listener.onConnectivityChanged(now);
+                }
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    /**
+     * Returns the monitor shared by the whole app.
+     */
+    public static synchronized ConnectivityMonitor getInstance(Context context) {
+        if (instance == null) {
+            instance = new ConnectivityMonitor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private boolean readConnected() {
+        // Details on the currently active default data network
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+}
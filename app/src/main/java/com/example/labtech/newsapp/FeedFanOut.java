@@ -0,0 +1,399 @@
+package com.example.labtech.newsapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads several sections or queries at once and merges their results into one timeline,
+ * newest first and without the articles that more than one of them returned.
+ * <p>
+ * Every URL is fetched on its own thread of a bounded executor, so the whole feed takes about
+ * as long as its slowest request. Results cached by an earlier load are merged right away, and
+ * the timeline is merged again and handed to the listener each time a request completes, so the
+ * feed can be shown before the slowest request is done.
+ * <p>
+ * The feeds can be of different formats, each {@link FeedSource} brings the parser of its own.
+ * When they come from different sites the same story is usually reported under different URLs,
+ * those are collapsed by the similarity of their titles, see {@link NearDuplicates}.
+ * <p>
+ * A request to the Guardian API that fails goes into the {@link OfflineQueue}, if there is one,
+ * which makes it again once the network is back and stores the result where the next load
+ * finds it.
+ * <p>
+ * A timeline that is paged, like the home feed, is paged by publication time rather than by page
+ * number, see {@link #loadPage}: pages of the URLs that are sorted on their own would not make
+ * a timeline that is newest first from one page to the next.
+ */
+public class FeedFanOut {
+
+    /**
+     * Orders articles newest first
+     */
+    private static final Comparator<Article> NEWEST_FIRST = new Comparator<Article>() {
+        @Override
+        public int compare(Article a, Article b) {
+            long first = a.getPublishedMillis();
+            long second = b.getPublishedMillis();
+            return first > second ? -1 : (first == second ? 0 : 1);
+        }
+    };
+
+    private final Executor executor;
+
+    /**
+     * Disk cache of previously loaded results, or null
+     */
+    private final ArticleCache cache;
+
+    /**
+     * Replays the failed requests to the Guardian API, or null
+     */
+    private final OfflineQueue queue;
+
+    /**
+     * Constructs a new {@link FeedFanOut}.
+     *
+     * @param executor runs the requests, its number of threads bounds how many run at once
+     * @param cache    stores the results by URL and provides them until they are revalidated,
+     *                 or null to always load from the network
+     */
+    public FeedFanOut(Executor executor, ArticleCache cache) {
+        this(executor, cache, null);
+    }
+
+    /**
+     * Constructs a new {@link FeedFanOut} that queues the failed requests to the Guardian API.
+     *
+     * @param executor runs the requests, its number of threads bounds how many run at once
+     * @param cache    stores the results by URL and provides them until they are revalidated,
+     *                 or null to always load from the network
+     * @param queue    replays the failed requests once the network is back, or null
+     */
+    public FeedFanOut(Executor executor, ArticleCache cache, OfflineQueue queue) {
+        this.executor = executor;
+        this.cache = cache;
+        this.queue = queue;
+    }
+
+    /**
+     * Starts loading the given URLs. The listener is called on the executor's threads.
+     *
+     * @param urls         to load, whose results are merged in this order before sorting
+     * @param cancellation aborts the requests that have not completed yet
+     * @param listener     receives the merged timeline as the requests complete
+     */
+    public void load(List<String> urls, CancellationToken cancellation, Listener listener) {
+        start(new Run(guardianSources(urls), 0, false, cancellation, listener));
+    }
+
+    /**
+     * Starts loading the given feeds, each parsed by its own parser, and collapses the articles
+     * about the same story into the first one of them. The listener is called on the executor's
+     * threads.
+     *
+     * @param sources      to load, whose results are merged in this order before sorting
+     * @param cancellation aborts the requests that have not completed yet
+     * @param listener     receives the merged timeline as the requests complete
+     */
+    public void loadSources(List<FeedSource> sources, CancellationToken cancellation, Listener listener) {
+        start(new Run(sources, 0, true, cancellation, listener));
+    }
+
+    /**
+     * Starts loading one page of a timeline paged by publication time, from URLs that each ask
+     * for the newest articles published at or before the end of the previous page, up to the
+     * given page size. The listener is called on the executor's threads.
+     * <p>
+     * The page ends at the oldest article of the URL whose articles end the soonest, among the
+     * URLs that returned a full page, because older articles of that URL have not been loaded
+     * yet. The articles after that are left for the next page, which asks for them again.
+     *
+     * @param urls         to load, whose results are merged in this order before sorting
+     * @param pageSize     number of articles each URL asks for
+     * @param beforeMillis end of the previous page, the articles published at or after it are
+     *                     left out, or 0 for the first page
+     * @param refresh      whether to only fetch the articles published since the newest cached
+     *                     one of each URL, see {@link QueryUtils#fetchNewerArticlesEntry}
+     * @param cancellation aborts the requests that have not completed yet
+     * @param listener     receives the page as the requests complete
+     */
+    public void loadPage(List<String> urls, int pageSize, long beforeMillis, boolean refresh,
+                         CancellationToken cancellation, PageListener listener) {
+        start(new PageRun(guardianSources(urls), pageSize, beforeMillis, refresh, cancellation, listener));
+    }
+
+    private static List<FeedSource> guardianSources(List<String> urls) {
+        List<FeedSource> sources = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            sources.add(FeedSource.guardian(url));
+        }
+        return sources;
+    }
+
+    private void start(final Run run) {
+        // The cache is read off the caller's thread too, then every URL gets its own thread
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                run.start();
+            }
+        });
+    }
+
+    /**
+     * Returns the articles of every list in one list, newest first. Of the articles with the
+     * same URL only the first one is kept.
+     */
+    static List<Article> merge(List<List<Article>> lists) {
+        return merge(lists, false);
+    }
+
+    /**
+     * Same as {@link #merge(List)}, and if asked to also without the articles whose title is a
+     * near-duplicate of the title of an article of an earlier list or earlier in the same list.
+     */
+    static List<Article> merge(List<List<Article>> lists, boolean collapseNearDuplicates) {
+        List<Article> timeline = new ArrayList<>();
+        Set<String> urls = new HashSet<>();
+        for (List<Article> articles : lists) {
+            if (articles == null) {
+                continue;
+            }
+            for (Article article : articles) {
+                if (urls.add(article.getUrl())) {
+                    timeline.add(article);
+                }
+            }
+        }
+        if (collapseNearDuplicates) {
+            timeline = NearDuplicates.collapse(timeline);
+        }
+        // The sort is stable, so articles published at the same time keep the order of the URLs
+        Collections.sort(timeline, NEWEST_FIRST);
+        return timeline;
+    }
+
+    /**
+     * Returns the publication time of the oldest of the given articles.
+     */
+    private static long oldestMillis(List<Article> articles) {
+        long oldest = Long.MAX_VALUE;
+        for (Article article : articles) {
+            oldest = Math.min(oldest, article.getPublishedMillis());
+        }
+        return oldest;
+    }
+
+    /**
+     * Returns the given articles without the ones published at or after the given time, if any.
+     */
+    private static List<Article> publishedBefore(List<Article> articles, long beforeMillis) {
+        if (beforeMillis <= 0) {
+            return articles;
+        }
+        List<Article> before = new ArrayList<>(articles.size());
+        for (Article article : articles) {
+            if (article.getPublishedMillis() < beforeMillis) {
+                before.add(article);
+            }
+        }
+        return before;
+    }
+
+    /**
+     * The requests of one call to {@link #load} or {@link #loadSources}.
+     */
+    private class Run {
+        final List<FeedSource> sources;
+        private final CancellationToken cancellation;
+        private final Listener listener;
+
+        /**
+         * Number of articles per URL when refreshing with only the newer articles, or 0 to
+         * revalidate every URL as a whole
+         */
+        private final int refreshPageSize;
+
+        /**
+         * Whether articles about the same story from different URLs are collapsed
+         */
+        private final boolean collapse;
+
+        /**
+         * Cached entry of every URL, or null
+         */
+        private final List<ArticleCache.Entry> cached = new ArrayList<>();
+
+        /**
+         * Results by URL, the cached ones until they are replaced by the network ones
+         */
+        final List<List<Article>> results = new ArrayList<>();
+
+        int completed;
+        boolean anyResults;
+
+        /**
+         * Number of requests that completed without results
+         */
+        int failed;
+
+        Run(List<FeedSource> sources, int refreshPageSize, boolean collapse,
+            CancellationToken cancellation, Listener listener) {
+            this.sources = sources;
+            this.refreshPageSize = refreshPageSize;
+            this.collapse = collapse;
+            this.cancellation = cancellation;
+            this.listener = listener;
+        }
+
+        void start() {
+            synchronized (this) {
+                for (FeedSource source : sources) {
+                    ArticleCache.Entry entry = cache != null ? cache.get(source.getUrl()) : null;
+                    cached.add(entry);
+                    results.add(entry != null ? entry.articles : null);
+                    anyResults |= entry != null;
+                }
+                // A refresh has shown the cached timeline already
+                if (anyResults && refreshPageSize == 0 && !cancellation.isCanceled()) {
+                    deliver();
+                }
+            }
+            for (int i = 0; i < sources.size(); i++) {
+                final int index = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        load(index);
+                    }
+                });
+            }
+        }
+
+        void load(int index) {
+            FeedSource source = sources.get(index);
+            String url = source.getUrl();
+            ArticleCache.Entry entry = null;
+            if (!cancellation.isCanceled()) {
+                // Only the Guardian API can be asked for the newer articles, refresh is Guardian only
+                entry = refreshPageSize > 0
+                        ? QueryUtils.fetchNewerArticlesEntry(url, cached.get(index), refreshPageSize, cancellation)
+                        : QueryUtils.fetchFeedEntry(url, source.getParser(), cached.get(index), cancellation);
+                if (entry != null && entry != cached.get(index) && cache != null) {
+                    cache.put(url, entry);
+                }
+            }
+            // Merged and handed over one at a time, so the listener never sees an older
+            // timeline after a newer one
+            synchronized (this) {
+                if (entry != null) {
+                    results.set(index, entry.articles);
+                    anyResults = true;
+                } else if (!cancellation.isCanceled()) {
+                    failed++;
+                    // The queue parses the Guardian API only. The sections are not searches,
+                    // their results are replayed without a query.
+                    if (queue != null && source.getParser() == QueryUtils.GUARDIAN_PARSER) {
+                        queue.enqueue(url, "");
+                    }
+                }
+                completed++;
+                if (!cancellation.isCanceled()) {
+                    deliver();
+                }
+            }
+        }
+
+        /**
+         * Hands the results so far to the listener. Called holding the lock of the run.
+         */
+        void deliver() {
+            listener.onTimeline(anyResults ? merge(results, collapse) : null, completed, sources.size());
+        }
+    }
+
+    /**
+     * The requests of one call to {@link #loadPage}.
+     */
+    private class PageRun extends Run {
+        private final int pageSize;
+        private final long beforeMillis;
+        private final PageListener pageListener;
+
+        PageRun(List<FeedSource> sources, int pageSize, long beforeMillis, boolean refresh,
+                CancellationToken cancellation, PageListener pageListener) {
+            super(sources, refresh ? pageSize : 0, false, cancellation, null);
+            this.pageSize = pageSize;
+            this.beforeMillis = beforeMillis;
+            this.pageListener = pageListener;
+        }
+
+        @Override
+        void deliver() {
+            // The last page once every URL has been loaded and none of them has more
+            boolean last = completed == sources.size() && failed == 0;
+            long end = Long.MIN_VALUE;
+            List<List<Article>> before = new ArrayList<>(results.size());
+            for (List<Article> articles : results) {
+                if (articles == null) {
+                    last = false;
+                } else {
+                    if (articles.size() >= pageSize) {
+                        last = false;
+                        end = Math.max(end, oldestMillis(articles));
+                    }
+                    before.add(publishedBefore(articles, beforeMillis));
+                }
+            }
+            List<Article> timeline = merge(before);
+            int size = timeline.size();
+            while (size > 0 && timeline.get(size - 1).getPublishedMillis() < end) {
+                size--;
+            }
+            timeline = new ArrayList<>(timeline.subList(0, size));
+            // Nothing of a page that isn't the last one means it failed
+            pageListener.onPage(timeline.isEmpty() && !last ? null : timeline, last, completed,
+                    sources.size());
+        }
+    }
+
+    /**
+     * Receives the timeline of a {@link FeedFanOut} as its requests complete.
+     */
+    public interface Listener {
+
+        /**
+         * Called with the merged timeline whenever a request has completed, and once before
+         * any request completed if some of the results were cached.
+         *
+         * @param timeline  merged articles so far, or null if none has been loaded yet
+         * @param completed number of requests that have completed, successfully or not
+         * @param total     number of requests
+         */
+        void onTimeline(List<Article> timeline, int completed, int total);
+    }
+
+    /**
+     * Receives a page of a {@link FeedFanOut#loadPage} as its requests complete.
+     */
+    public interface PageListener {
+
+        /**
+         * Called with the merged page whenever a request has completed, and once before any
+         * request completed if some of the results were cached.
+         *
+         * @param page      merged articles of the page so far, or null if none has been loaded
+         *                  yet
+         * @param last      true if no URL has articles older than the page, which is only known
+         *                  once every request has completed successfully
+         * @param completed number of requests that have completed, successfully or not
+         * @param total     number of requests
+         */
+        void onPage(List<Article> page, boolean last, int completed, int total);
+    }
+}
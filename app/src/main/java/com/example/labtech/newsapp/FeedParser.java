@@ -0,0 +1,20 @@
+package com.example.labtech.newsapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Turns the body of a feed response into {@link Article}s, while it is being read from the
+ * network. Every format of feed the app can aggregate has its own parser, see {@link FeedSource}.
+ */
+public interface FeedParser {
+
+    /**
+     * Returns the articles of the feed, skipping the items that lack a title or a link. Whatever
+     * was parsed before the body turned out to be malformed is returned too.
+     *
+     * @throws IOException if the body could not be read
+     */
+    List<Article> parse(InputStream body) throws IOException;
+}
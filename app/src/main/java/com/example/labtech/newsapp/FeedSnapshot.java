@@ -0,0 +1,139 @@
+package com.example.labtech.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The rows of the home feed and its scroll position as they were last shown, so that a cold
+ * start can draw the list in its first frame, before any loader has run.
+ * <p>
+ * The scroll position is kept in a small file, and the rows in an {@link ArticleFile} next to it
+ * that is mapped rather than read, so that only the rows bound in the first frame are decoded.
+ * Both are replaced atomically every time the snapshot is written.
+ */
+public class FeedSnapshot {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = FeedSnapshot.class.getSimpleName();
+
+    /**
+     * File in the app's files directory that holds the snapshot
+     */
+    private static final String FILE_NAME = "feed_snapshot";
+
+    /**
+     * Marks the start of the file, followed by the format version
+     */
+    private static final int MAGIC = 0x4e415353;
+    private static final int VERSION = 2;
+
+    /**
+     * Rows of the feed, in the order they were shown
+     */
+    public final List<Article> articles;
+
+    /**
+     * Position of the first visible row and the offset of its top from the top of the list
+     */
+    public final int firstVisiblePosition;
+    public final int firstVisibleOffset;
+
+    public FeedSnapshot(List<Article> articles, int firstVisiblePosition, int firstVisibleOffset) {
+        this.articles = articles;
+        this.firstVisiblePosition = firstVisiblePosition;
+        this.firstVisibleOffset = firstVisibleOffset;
+    }
+
+    /**
+     * Returns the file the snapshot of the app is kept in.
+     */
+    public static File fileOf(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Reads the snapshot from the given file, or returns null if there is none or it can't
+     * be read, deleting it if it is damaged. The rows of the snapshot are checked here, and
+     * decoded when they are asked for.
+     */
+    public static FeedSnapshot read(File file) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown snapshot format");
+            }
+            int firstVisiblePosition = in.readInt();
+            int firstVisibleOffset = in.readInt();
+            ArticleFile articles = ArticleFile.open(rowsOf(file));
+            // A damaged row would otherwise only show up when it is bound on the main thread
+            articles.verify();
+            return new FeedSnapshot(articles, firstVisiblePosition, firstVisibleOffset);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the snapshot " + file, e);
+            file.delete();
+            ArticleFile.delete(rowsOf(file));
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Writes the snapshot to the given file, replacing the previous one.
+     */
+    public void write(File file) {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            ArticleFile.write(rowsOf(file), articles);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(firstVisiblePosition);
+            out.writeInt(firstVisibleOffset);
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp + " to " + file);
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the snapshot " + file, e);
+            temp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Returns the file the rows of the snapshot kept in the given file are written to.
+     */
+    private static File rowsOf(File file) {
+        return new File(file.getPath() + ".rows");
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.labtech.newsapp;
+
+/**
+ * One feed the {@link FeedFanOut} aggregates: its URL and the parser of its format.
+ */
+public class FeedSource {
+
+    private final String url;
+    private final FeedParser parser;
+
+    /**
+     * Constructs a new {@link FeedSource}.
+     *
+     * @param url    of the feed
+     * @param parser of the format of the feed
+     */
+    public FeedSource(String url, FeedParser parser) {
+        this.url = url;
+        this.parser = parser;
+    }
+
+    /**
+     * Returns a source of a Guardian API search or section URL.
+     */
+    public static FeedSource guardian(String url) {
+        return new FeedSource(url, QueryUtils.GUARDIAN_PARSER);
+    }
+
+    /**
+     * Returns a source of an RSS 2.0 or Atom feed, whose articles are shown in the given section,
+     * usually the name of the site.
+     */
+    public static FeedSource xml(String url, String section) {
+        return new FeedSource(url, new XmlFeedParser(section));
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public FeedParser getParser() {
+        return parser;
+    }
+}
@@ -0,0 +1,434 @@
+package com.example.labtech.newsapp;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A search of the Guardian Content API, built from typed parameters into one canonical URL.
+ * <p>
+ * The disk cache, the deduplication of requests in flight and the loaders are all keyed by the
+ * URL, so the same search has to give the same URL however it was typed or built: the query
+ * text is trimmed, single spaced and lower case except for its AND, OR and NOT operators, the
+ * fields and tags to show are sorted and deduplicated, parameters with the API's default value
+ * are left out, and the parameters are sorted by name and percent-encoded as UTF-8. Characters
+ * like '&amp;' or '#' in the query text stay part of the query instead of ending it.
+ */
+public final class GuardianQuery {
+
+    /**
+     * Orders of the results, newest is the default without a query text and relevance with one
+     */
+    public static final String ORDER_NEWEST = "newest";
+    public static final String ORDER_OLDEST = "oldest";
+    public static final String ORDER_RELEVANCE = "relevance";
+
+    /**
+     * Search endpoint of the Content API
+     */
+    static final String SEARCH_URL = "https://content.guardianapis.com/search";
+    static final String API_KEY = "test";
+
+    /**
+     * Values the API uses when the parameter is left out, and the largest page it serves
+     */
+    private static final int DEFAULT_PAGE = 1;
+    private static final int DEFAULT_PAGE_SIZE = 10;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * Operators of the query syntax, which only work in upper case
+     */
+    private static final SortedSet<String> OPERATORS = new TreeSet<>(Arrays.asList("AND", "OR", "NOT"));
+
+    private static final String PARAM_API_KEY = "api-key";
+    private static final String PARAM_QUERY = "q";
+    private static final String PARAM_SECTION = "section";
+    private static final String PARAM_PAGE = "page";
+    private static final String PARAM_PAGE_SIZE = "page-size";
+    private static final String PARAM_FROM_DATE = "from-date";
+    private static final String PARAM_TO_DATE = "to-date";
+    private static final String PARAM_ORDER_BY = "order-by";
+    private static final String PARAM_SHOW_FIELDS = "show-fields";
+    private static final String PARAM_SHOW_TAGS = "show-tags";
+
+    private final String url;
+
+    private GuardianQuery(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Returns a search for the given text with the fields and tags the list of articles shows.
+     */
+    public static GuardianQuery search(String text) {
+        return new Builder().query(text).showFields("thumbnail").showTags("contributor").build();
+    }
+
+    /**
+     * Returns the latest articles of the given section id with the fields and tags the list of
+     * articles shows.
+     */
+    public static GuardianQuery section(String section) {
+        return new Builder().section(section).showFields("thumbnail").showTags("contributor").build();
+    }
+
+    /**
+     * Returns a builder with the parameters of the given URL, which can be a URL built by this
+     * class or any other URL of the search endpoint or a stand-in for it. Parameters this class
+     * doesn't know are kept as they are.
+     */
+    public static Builder fromUrl(String stringUrl) {
+        Builder builder = new Builder();
+        String url = stringUrl.trim();
+        int fragment = url.indexOf('#');
+        if (fragment >= 0) {
+            url = url.substring(0, fragment);
+        }
+        int queryStart = url.indexOf('?');
+        builder.baseUrl(queryStart >= 0 ? url.substring(0, queryStart) : url);
+        builder.apiKey = null;
+        if (queryStart < 0) {
+            return builder;
+        }
+        for (String parameter : url.substring(queryStart + 1).split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equals = parameter.indexOf('=');
+            String name = decode(equals >= 0 ? parameter.substring(0, equals) : parameter);
+            String value = equals >= 0 ? decode(parameter.substring(equals + 1)) : "";
+            builder.parameter(name, value);
+        }
+        return builder;
+    }
+
+    /**
+     * Returns a builder with the parameters of this search, to derive another search from it.
+     */
+    public Builder buildUpon() {
+        return fromUrl(url);
+    }
+
+    /**
+     * Returns true if the results come newest first: ordered by {@link #ORDER_NEWEST}, or without
+     * an order and without query text, which the API then orders by newest rather than by
+     * relevance.
+     */
+    public boolean isNewestFirst() {
+        Builder builder = buildUpon();
+        if (builder.orderBy != null) {
+            return ORDER_NEWEST.equals(builder.orderBy);
+        }
+        return builder.query == null || builder.query.isEmpty();
+    }
+
+    /**
+     * Returns the canonical URL of the search.
+     */
+    public String toUrl() {
+        return url;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof GuardianQuery && url.equals(((GuardianQuery) other).url);
+    }
+
+    @Override
+    public int hashCode() {
+        return url.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+
+    /**
+     * Returns the query text in its canonical form: trimmed, single spaced and lower case, the
+     * way the API matches it anyway, except for the operators AND, OR and NOT.
+     */
+    public static String normalizeQuery(String text) {
+        String[] words = text.trim().split("\\s+");
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (String word : words) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (normalized.length() > 0) {
+                normalized.append(' ');
+            }
+            normalized.append(OPERATORS.contains(word) ? word : word.toLowerCase(Locale.US));
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Returns the value percent-encoded as UTF-8 for a query string, with spaces as '+' and
+     * ',' and ':' as they are, since the lists of fields and the dates are full of them.
+     */
+    static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("%2C", ",").replace("%3A", ":");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        } catch (IllegalArgumentException e) {
+            // A stray '%', take the value literally
+            return value;
+        }
+    }
+
+    /**
+     * Builds a {@link GuardianQuery}. Every parameter is optional, the defaults are those of
+     * the API.
+     */
+    public static final class Builder {
+        private String baseUrl = SEARCH_URL;
+        private String apiKey = API_KEY;
+        private String query;
+        private String section;
+        private int page = DEFAULT_PAGE;
+        private int pageSize = DEFAULT_PAGE_SIZE;
+        private long fromMillis = -1;
+        private long toMillis = -1;
+        private String orderBy;
+        private final SortedSet<String> showFields = new TreeSet<>();
+        private final SortedSet<String> showTags = new TreeSet<>();
+
+        /**
+         * Parameters this class doesn't know, by name
+         */
+        private final SortedMap<String, String> others = new TreeMap<>();
+
+        /**
+         * Sets the address of the search endpoint, without a query string. The scheme and host
+         * are made lower case.
+         */
+        public Builder baseUrl(String baseUrl) {
+            int authorityEnd = baseUrl.indexOf('/', baseUrl.indexOf("://") + 3);
+            if (authorityEnd < 0) {
+                this.baseUrl = baseUrl.toLowerCase(Locale.US) + "/";
+            } else {
+                this.baseUrl = baseUrl.substring(0, authorityEnd).toLowerCase(Locale.US)
+                        + baseUrl.substring(authorityEnd);
+            }
+            return this;
+        }
+
+        public Builder apiKey(String apiKey) {
+            this.apiKey = apiKey;
+            return this;
+        }
+
+        /**
+         * Sets the text to search for, empty or null for all articles.
+         */
+        public Builder query(String text) {
+            query = text == null ? null : normalizeQuery(text);
+            return this;
+        }
+
+        /**
+         * Restricts the search to the section with the given id, for example "world".
+         */
+        public Builder section(String section) {
+            this.section = section == null ? null : section.trim().toLowerCase(Locale.US);
+            return this;
+        }
+
+        /**
+         * Sets the page of results, starting from 1.
+         */
+        public Builder page(int page) {
+            if (page < 1) {
+                throw new IllegalArgumentException("Page " + page + " is before the first page");
+            }
+            this.page = page;
+            return this;
+        }
+
+        /**
+         * Sets the number of results per page, at most 200.
+         */
+        public Builder pageSize(int pageSize) {
+            if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("Page size " + pageSize + " is not between 1 and "
+                        + MAX_PAGE_SIZE);
+            }
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Restricts the results to the articles published at or after the given time.
+         */
+        public Builder fromDate(long fromMillis) {
+            this.fromMillis = fromMillis;
+            return this;
+        }
+
+        /**
+         * Restricts the results to the articles published at or before the given time.
+         */
+        public Builder toDate(long toMillis) {
+            this.toMillis = toMillis;
+            return this;
+        }
+
+        /**
+         * Sets the order of the results, one of {@link #ORDER_NEWEST}, {@link #ORDER_OLDEST}
+         * and {@link #ORDER_RELEVANCE}.
+         */
+        public Builder orderBy(String orderBy) {
+            if (!ORDER_NEWEST.equals(orderBy) && !ORDER_OLDEST.equals(orderBy)
+                    && !ORDER_RELEVANCE.equals(orderBy)) {
+                throw new IllegalArgumentException("Unknown order " + orderBy);
+            }
+            this.orderBy = orderBy;
+            return this;
+        }
+
+        /**
+         * Adds fields of the articles to the results, for example "thumbnail".
+         */
+        public Builder showFields(String... fields) {
+            addAll(showFields, fields);
+            return this;
+        }
+
+        /**
+         * Adds types of tags of the articles to the results, for example "contributor".
+         */
+        public Builder showTags(String... tags) {
+            addAll(showTags, tags);
+            return this;
+        }
+
+        public GuardianQuery build() {
+            SortedMap<String, String> parameters = new TreeMap<>(others);
+            put(parameters, PARAM_API_KEY, apiKey);
+            put(parameters, PARAM_QUERY, query);
+            put(parameters, PARAM_SECTION, section);
+            if (page != DEFAULT_PAGE) {
+                parameters.put(PARAM_PAGE, String.valueOf(page));
+            }
+            if (pageSize != DEFAULT_PAGE_SIZE) {
+                parameters.put(PARAM_PAGE_SIZE, String.valueOf(pageSize));
+            }
+            if (fromMillis >= 0) {
+                parameters.put(PARAM_FROM_DATE, Article.formatDateTime(fromMillis));
+            }
+            if (toMillis >= 0) {
+                parameters.put(PARAM_TO_DATE, Article.formatDateTime(toMillis));
+            }
+            put(parameters, PARAM_ORDER_BY, orderBy);
+            put(parameters, PARAM_SHOW_FIELDS, join(showFields));
+            put(parameters, PARAM_SHOW_TAGS, join(showTags));
+
+            StringBuilder url = new StringBuilder(baseUrl);
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                url.append(url.length() == baseUrl.length() ? '?' : '&')
+                        .append(encode(parameter.getKey())).append('=')
+                        .append(encode(parameter.getValue()));
+            }
+            return new GuardianQuery(url.toString());
+        }
+
+        /**
+         * Sets the parameter with the given name as it came in a URL, the known ones through
+         * their typed setters.
+         */
+        void parameter(String name, String value) {
+            try {
+                switch (name) {
+                    case PARAM_API_KEY:
+                        apiKey(value);
+                        break;
+                    case PARAM_QUERY:
+                        query(value);
+                        break;
+                    case PARAM_SECTION:
+                        section(value);
+                        break;
+                    case PARAM_PAGE:
+                        page(Integer.parseInt(value.trim()));
+                        break;
+                    case PARAM_PAGE_SIZE:
+                        pageSize(Integer.parseInt(value.trim()));
+                        break;
+                    case PARAM_FROM_DATE:
+                        fromDate(parseDate(value));
+                        break;
+                    case PARAM_TO_DATE:
+                        toDate(parseDate(value));
+                        break;
+                    case PARAM_ORDER_BY:
+                        orderBy(value.trim().toLowerCase(Locale.US));
+                        break;
+                    case PARAM_SHOW_FIELDS:
+                        showFields(value.split(","));
+                        break;
+                    case PARAM_SHOW_TAGS:
+                        showTags(value.split(","));
+                        break;
+                    default:
+                        others.put(name, value);
+                }
+            } catch (IllegalArgumentException e) {
+                // Not a value the typed setter takes, let the server judge it as it is
+                others.put(name, value);
+            }
+        }
+
+        private static long parseDate(String value) {
+            long millis = Article.parseDate(value.trim());
+            if (millis == Article.UNKNOWN_DATE) {
+                throw new IllegalArgumentException("Not a date " + value);
+            }
+            return millis;
+        }
+
+        private static void put(Map<String, String> parameters, String name, String value) {
+            if (value != null && !value.isEmpty()) {
+                parameters.put(name, value);
+            }
+        }
+
+        private static void addAll(SortedSet<String> set, String... values) {
+            for (String value : values) {
+                String trimmed = value.trim().toLowerCase(Locale.US);
+                if (!trimmed.isEmpty()) {
+                    set.add(trimmed);
+                }
+            }
+        }
+
+        private static String join(SortedSet<String> values) {
+            StringBuilder joined = new StringBuilder();
+            for (String value : values) {
+                if (joined.length() > 0) {
+                    joined.append(',');
+                }
+                joined.append(value);
+            }
+            return joined.toString();
+        }
+    }
+}
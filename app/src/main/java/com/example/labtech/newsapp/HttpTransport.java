@@ -0,0 +1,133 @@
+package com.example.labtech.newsapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Performs the HTTP GET requests of {@link QueryUtils}.
+ */
+public interface HttpTransport {
+
+    /**
+     * Sends a GET request with the given extra headers and returns the response once its
+     * headers have arrived. The caller must close the response.
+     * <p>
+     * Canceling the token aborts the request, including a read of the body in progress,
+     * which then fails with an IOException.
+     * <p>
+     * Every time the request is sent, retries included, it first has to pass the gate, which is
+     * then told the status of the response.
+     *
+     * @throws NotSentException if the gate didn't let the request through
+     */
+    Response execute(URL url, Map<String, String> headers, CancellationToken cancellation, Gate gate)
+            throws IOException;
+
+    /**
+     * Decides when a request may be sent, such as the {@link RequestScheduler} of a rate limit.
+     */
+    interface Gate {
+
+        /**
+         * Lets every request through right away
+         */
+        Gate OPEN = new Gate() {
+            @Override
+            public boolean acquire(CancellationToken cancellation) {
+                return !cancellation.isCanceled();
+            }
+
+            @Override
+            public void onResponse(int code, String retryAfter) {
+            }
+        };
+
+        /**
+         * Waits until the request may be sent.
+         *
+         * @return false if it must not be sent at all
+         */
+        boolean acquire(CancellationToken cancellation) throws InterruptedIOException;
+
+        /**
+         * Is told the status and Retry-After header of every response.
+         */
+        void onResponse(int code, String retryAfter);
+    }
+
+    /**
+     * Thrown when a request is not sent because its {@link Gate} didn't let it through.
+     */
+    class NotSentException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public NotSentException(URL url) {
+            super("Not sent " + url);
+        }
+    }
+
+    /**
+     * Status, headers and body of a response, plus the timings of the request.
+     */
+    final class Response implements Closeable {
+
+        private final int code;
+        private final Map<String, String> headers;
+        private final InputStream body;
+        private final RequestTimings timings;
+
+        /**
+         * Constructs a new {@link Response}.
+         *
+         * @param code    HTTP status code
+         * @param headers response headers, with lower case names
+         * @param body    stream of the (already decompressed) body
+         * @param timings of the request, completed as the body is read
+         */
+        public Response(int code, Map<String, String> headers, InputStream body, RequestTimings timings) {
+            this.code = code;
+            this.headers = headers;
+            this.body = body;
+            this.timings = timings;
+        }
+
+        /**
+         * Returns the HTTP status code
+         */
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * Returns the value of the given header, or null if the response doesn't have it
+         */
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.US));
+        }
+
+        /**
+         * Returns the body of the response
+         */
+        public InputStream getBody() {
+            return body;
+        }
+
+        /**
+         * Returns the timings of the request
+         */
+        public RequestTimings getTimings() {
+            return timings;
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+}
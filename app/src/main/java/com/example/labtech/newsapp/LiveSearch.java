@@ -0,0 +1,214 @@
+package com.example.labtech.newsapp;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the text typed into the search field into searches.
+ * <p>
+ * Typed text is debounced, so a search only starts once the user stops typing for a moment,
+ * and a query that is already being shown is never searched again. The first page of results
+ * of recently searched queries is kept in a small LRU cache, so that going back to one of them,
+ * for example by deleting characters, renders right away without a network request. Under
+ * memory pressure the results are given up, going back to a query then searches it again.
+ */
+public class LiveSearch implements MemoryGovernor.Consumer {
+
+    /**
+     * How long the text must stay unchanged before it is searched
+     */
+    private final long debounceMillis;
+
+    private final Scheduler scheduler;
+    private final Listener listener;
+
+    /**
+     * First page of results of the most recently used queries, least recently used first
+     */
+    private final Map<String, List<Article>> recentResults;
+
+    /**
+     * Query whose results are shown or being loaded, null before the first search
+     */
+    private String currentQuery;
+
+    /**
+     * Debounced search waiting to run, null if there is none
+     */
+    private Runnable pendingSearch;
+
+    /**
+     * Constructs a new {@link LiveSearch}.
+     *
+     * @param debounceMillis how long the text must stay unchanged before it is searched
+     * @param maxRecent      number of queries whose results are kept in memory
+     * @param scheduler      runs the debounced searches
+     * @param listener       starts the searches and renders cached results
+     */
+    public LiveSearch(long debounceMillis, final int maxRecent, Scheduler scheduler, Listener listener) {
+        this.debounceMillis = debounceMillis;
+        this.scheduler = scheduler;
+        this.listener = listener;
+        this.recentResults = new LinkedHashMap<String, List<Article>>(maxRecent + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Article>> eldest) {
+                return size() > maxRecent;
+            }
+        };
+    }
+
+    /**
+     * Returns the query in the canonical form of {@link GuardianQuery#normalizeQuery}, so that
+     * queries showing the same results share their entry.
+     */
+    public static String normalize(String text) {
+        return GuardianQuery.normalizeQuery(text);
+    }
+
+    /**
+     * Called for every change of the search text. Cached results are rendered right away,
+     * anything else is searched once the text stops changing.
+     */
+    public void onQueryTextChange(String text) {
+        cancelPendingSearch();
+        final String query = normalize(text);
+        if (query.equals(currentQuery)) {
+            return;
+        }
+        if (recentResults.containsKey(query)) {
+            showRecent(query);
+            return;
+        }
+        pendingSearch = new Runnable() {
+            @Override
+            public void run() {
+                pendingSearch = null;
+                search(query);
+            }
+        };
+        scheduler.schedule(pendingSearch, debounceMillis);
+    }
+
+    /**
+     * Called when the user submits the search text, which is searched right away.
+     */
+    public void onQueryTextSubmit(String text) {
+        cancelPendingSearch();
+        String query = normalize(text);
+        if (query.equals(currentQuery)) {
+            return;
+        }
+        if (recentResults.containsKey(query)) {
+            showRecent(query);
+        } else {
+            search(query);
+        }
+    }
+
+    /**
+     * Remembers the first page of results of a query, so it can be shown again without
+     * a network request.
+     */
+    public void onResults(String query, List<Article> articles) {
+        if (articles != null && !articles.isEmpty()) {
+            recentResults.put(normalize(query), articles);
+        }
+    }
+
+    /**
+     * Forgets which query is shown, so that the next change of the text is searched
+     * even if it is the same query, for example after a failed search.
+     */
+    public void reset() {
+        cancelPendingSearch();
+        currentQuery = null;
+    }
+
+    /**
+     * Sets the query whose results are shown without searching it, for example when the
+     * activity has been recreated with its results still loaded.
+     */
+    public void restore(String query) {
+        cancelPendingSearch();
+        currentQuery = query;
+    }
+
+    /**
+     * Returns the query whose results are shown or being loaded.
+     */
+    public String getCurrentQuery() {
+        return currentQuery;
+    }
+
+    @Override
+    public long residentBytes() {
+        long articles = 0;
+        for (List<Article> results : recentResults.values()) {
+            articles += results.size();
+        }
+        return articles * MemoryGovernor.ARTICLE_BYTES;
+    }
+
+    /**
+     * Forgets the results of every query but the shown one when memory runs low, and those of
+     * the shown one too once the caches have to go.
+     */
+    @Override
+    public void trim(int stage) {
+        if (stage >= MemoryGovernor.STAGE_CACHES) {
+            recentResults.clear();
+            return;
+        }
+        Iterator<String> queries = recentResults.keySet().iterator();
+        while (queries.hasNext()) {
+            if (!queries.next().equals(currentQuery)) {
+                queries.remove();
+            }
+        }
+    }
+
+    private void showRecent(String query) {
+        currentQuery = query;
+        listener.onShowResults(query, recentResults.get(query));
+    }
+
+    private void search(String query) {
+        currentQuery = query;
+        listener.onSearch(query);
+    }
+
+    private void cancelPendingSearch() {
+        if (pendingSearch != null) {
+            scheduler.cancel(pendingSearch);
+            pendingSearch = null;
+        }
+    }
+
+    /**
+     * Runs tasks after a delay, on the thread the {@link LiveSearch} is used on.
+     */
+    public interface Scheduler {
+
+        void schedule(Runnable task, long delayMillis);
+
+        void cancel(Runnable task);
+    }
+
+    /**
+     * Is told what to show for the search text.
+     */
+    public interface Listener {
+
+        /**
+         * Starts a new search for the given query, superseding the previous one.
+         */
+        void onSearch(String query);
+
+        /**
+         * Shows the remembered first page of results of a recent query.
+         */
+        void onShowResults(String query, List<Article> articles);
+    }
+}
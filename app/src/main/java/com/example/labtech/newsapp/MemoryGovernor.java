@@ -0,0 +1,226 @@
+package com.example.labtech.newsapp;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps what the app holds in memory, the pages of articles, the decoded thumbnails and the
+ * other memory caches, within a budget derived from the memory class of the device.
+ * <p>
+ * Every holder registers as a {@link Consumer} that reports how many bytes it keeps and frees
+ * them in stages: first what is far from the screen, then the memory caches, then everything
+ * but the rows on screen. The stages are applied when the system reports memory pressure through
+ * {@link #onTrimMemory(int)}, and one after the other by {@link #enforceBudget()} until the
+ * holders fit the budget again. What was freed is read again from the disk caches when it is
+ * needed, so the app keeps working with less in memory instead of running out of it.
+ * <p>
+ * Consumers are held weakly, so that the holders of an activity go away with it without being
+ * unregistered. Trimming is only done on the main thread, but consumers may register from any
+ * thread.
+ */
+public class MemoryGovernor {
+
+    /**
+     * Nothing needs to be freed
+     */
+    public static final int STAGE_NONE = 0;
+
+    /**
+     * Free what is far from the screen and cheap to read again
+     */
+    public static final int STAGE_COLD = 1;
+
+    /**
+     * Also empty the memory caches
+     */
+    public static final int STAGE_CACHES = 2;
+
+    /**
+     * Keep nothing but what is on screen
+     */
+    public static final int STAGE_VISIBLE_ONLY = 3;
+
+    /**
+     * Rough size of one article in memory: the object, its strings and its list of contributors
+     */
+    public static final int ARTICLE_BYTES = 1024;
+
+    /**
+     * The budget is this fraction of the memory class, the rest is left to the views and the
+     * framework. Low-RAM devices get half of that.
+     */
+    private static final int BUDGET_DIVISOR = 4;
+    private static final int LOW_RAM_BUDGET_DIVISOR = 8;
+
+    private static MemoryGovernor instance;
+
+    private final long budgetBytes;
+    private final Set<Consumer> consumers =
+            Collections.newSetFromMap(new WeakHashMap<Consumer, Boolean>());
+
+    /**
+     * Constructs a new {@link MemoryGovernor}.
+     *
+     * @param budgetBytes how many bytes the consumers may keep together
+     */
+    public MemoryGovernor(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Returns the governor shared by the whole app, which is told about memory pressure by the
+     * system.
+     */
+    public static synchronized MemoryGovernor getInstance(Context context) {
+        if (instance == null) {
+            Context application = context.getApplicationContext();
+            ActivityManager activityManager =
+                    (ActivityManager) application.getSystemService(Context.ACTIVITY_SERVICE);
+            boolean lowRam = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                    && activityManager.isLowRamDevice();
+            long memoryClassBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+            final MemoryGovernor governor = new MemoryGovernor(
+                    memoryClassBytes / (lowRam ? LOW_RAM_BUDGET_DIVISOR : BUDGET_DIVISOR));
+            application.registerComponentCallbacks(new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    governor.onTrimMemory(level);
+                }
+
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                }
+
+                @Override
+                public void onLowMemory() {
+                    governor.trim(STAGE_VISIBLE_ONLY);
+                }
+            });
+            instance = governor;
+        }
+        return instance;
+    }
+
+    /**
+     * Returns how many bytes the consumers may keep together.
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * Starts accounting for the memory kept by the consumer. The consumer is only held weakly.
+     */
+    public synchronized void register(Consumer consumer) {
+        consumers.add(consumer);
+    }
+
+    public synchronized void unregister(Consumer consumer) {
+        consumers.remove(consumer);
+    }
+
+    /**
+     * Returns how many bytes the consumers keep together.
+     */
+    public long residentBytes() {
+        long bytes = 0;
+        for (Consumer consumer : snapshot()) {
+            bytes += consumer.residentBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Frees memory for the given level of {@link ComponentCallbacks2#onTrimMemory(int)}, then
+     * keeps freeing until the consumers fit the budget.
+     *
+     * @return the last stage that was applied
+     */
+    public int onTrimMemory(int level) {
+        int stage = stageOf(level);
+        if (stage != STAGE_NONE) {
+            trim(stage);
+        }
+        return Math.max(stage, enforceBudget());
+    }
+
+    /**
+     * Applies the stages one after the other until the consumers fit the budget, for example
+     * after a page of articles has been loaded.
+     *
+     * @return the last stage that was applied, {@link #STAGE_NONE} if they fit already
+     */
+    public int enforceBudget() {
+        int stage = STAGE_NONE;
+        while (stage < STAGE_VISIBLE_ONLY && residentBytes() > budgetBytes) {
+            stage++;
+            trim(stage);
+        }
+        return stage;
+    }
+
+    /**
+     * Has every consumer free its memory for the given stage.
+     */
+    public void trim(int stage) {
+        long before = residentBytes();
+        for (Consumer consumer : snapshot()) {
+            consumer.trim(stage);
+        }
+        Metrics.MEMORY_TRIMS.increment();
+        Metrics.MEMORY_TRIMMED_BYTES.add(Math.max(before - residentBytes(), 0));
+    }
+
+    /**
+     * Returns the stage of freeing memory for a level of
+     * {@link ComponentCallbacks2#onTrimMemory(int)}. While the app runs in the foreground the
+     * stage follows the pressure; once the list is hidden the caches are not drawn from anymore,
+     * and the closer the process gets to being killed the less it should keep.
+     */
+    static int stageOf(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            return STAGE_VISIBLE_ONLY;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return STAGE_CACHES;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return STAGE_VISIBLE_ONLY;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return STAGE_CACHES;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return STAGE_COLD;
+        }
+        return STAGE_NONE;
+    }
+
+    private synchronized List<Consumer> snapshot() {
+        // The weak set may lose entries while it is iterated, the consumers are called without
+        // the lock
+        return new ArrayList<>(consumers);
+    }
+
+    /**
+     * Something that keeps memory which can be freed and read again later.
+     */
+    public interface Consumer {
+
+        /**
+         * Returns about how many bytes are kept.
+         */
+        long residentBytes();
+
+        /**
+         * Frees the memory of the given stage and of the stages before it, one of
+         * {@link #STAGE_COLD}, {@link #STAGE_CACHES} and {@link #STAGE_VISIBLE_ONLY}.
+         */
+        void trim(int stage);
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.labtech.newsapp;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timers and counters of the hot paths of the app, from building the request URL to showing the
+ * rows, so that it can be seen where the time from a search to its first row goes.
+ * <p>
+ * Every metric is a static field created once, so recording an event is a bucket lookup and an
+ * atomic increment, without locks or allocation. Timings are aggregated into histograms with
+ * log-linear buckets (about 12% relative error) from which the percentiles are computed when
+ * the metrics are dumped.
+ */
+public final class Metrics {
+
+    private static final List<Metric> METRICS = new ArrayList<>();
+
+    /**
+     * Building the URL object of a request
+     */
+    public static final Histogram CREATE_URL = histogram("fetch.create_url", "us");
+
+    /**
+     * Whole HTTP request, from sending it until the response has been parsed
+     */
+    public static final Histogram HTTP_REQUEST = histogram("fetch.http_request", "us");
+
+    /**
+     * Phases of the HTTP request, as reported by the transport
+     */
+    public static final Histogram HTTP_CONNECT = histogram("fetch.connect", "us");
+    public static final Histogram HTTP_TIME_TO_FIRST_BYTE = histogram("fetch.ttfb", "us");
+    public static final Histogram HTTP_BODY = histogram("fetch.body", "us");
+    public static final Histogram HTTP_BODY_BYTES = histogram("fetch.body_bytes", "bytes");
+
+    /**
+     * Streaming parse of a response, including the read of its body
+     */
+    public static final Histogram PARSE_STREAM = histogram("parse.stream", "us");
+
+    /**
+     * Streaming parse of an RSS or Atom feed, including the read of its body
+     */
+    public static final Histogram PARSE_XML = histogram("parse.xml", "us");
+
+    /**
+     * Legacy parse path, reading the body into a String and parsing that
+     */
+    public static final Histogram READ_FROM_STREAM = histogram("parse.read_from_stream", "us");
+    public static final Histogram EXTRACT_FROM_JSON = histogram("parse.extract_from_json", "us");
+
+    /**
+     * One load of a NewsLoader, from starting it until its final list is delivered
+     */
+    public static final Histogram LOADER_LOAD = histogram("loader.load", "us");
+
+    /**
+     * Loads that joined a request already in flight for their URL instead of sending their own
+     */
+    public static final Counter FETCH_COALESCED = counter("fetch.coalesced");
+
+    /**
+     * Time requests waited for the rate limit of the API key, and the requests that were not
+     * sent because the server asked for a pause
+     */
+    public static final Histogram REQUEST_SCHEDULE_WAIT = histogram("fetch.schedule_wait", "us");
+    public static final Counter REQUEST_THROTTLED = counter("fetch.throttled");
+
+    /**
+     * Handling of delivered articles by NewsActivity.onLoadFinished
+     */
+    public static final Histogram ON_LOAD_FINISHED = histogram("ui.on_load_finished", "us");
+
+    /**
+     * From starting a search until its first rows are handed to the list
+     */
+    public static final Histogram SEARCH_TO_FIRST_ROW = histogram("ui.search_to_first_row", "us");
+
+    /**
+     * From creating NewsActivity on a cold start until the first frame that shows rows
+     */
+    public static final Histogram CREATE_TO_FIRST_ROW = histogram("ui.create_to_first_row", "us");
+
+    /**
+     * Binding one row of the list, and the title layouts it found prepared or had to build
+     * on the spot, and the time it took to prepare one in the background
+     */
+    public static final Histogram BIND_ROW = histogram("ui.bind_row", "us");
+    public static final Counter TITLE_LAYOUT_HIT = counter("ui.title_layout.hit");
+    public static final Counter TITLE_LAYOUT_MISS = counter("ui.title_layout.miss");
+    public static final Histogram TITLE_LAYOUT_PREPARE = histogram("ui.title_layout.prepare", "us");
+
+    /**
+     * Articles opened in the reader from a prefetched body and from the network, bytes
+     * downloaded by the prefetches of bodies and the part of them that was opened
+     */
+    public static final Counter READER_PREFETCH_HIT = counter("reader.prefetch.hit");
+    public static final Counter READER_PREFETCH_MISS = counter("reader.prefetch.miss");
+    public static final Counter READER_PREFETCH_BYTES = counter("reader.prefetch.bytes");
+    public static final Counter READER_PREFETCH_USED_BYTES = counter("reader.prefetch.used_bytes");
+
+    /**
+     * Lookups in the disk cache of articles and the memory cache of thumbnails
+     */
+    public static final Counter ARTICLE_CACHE_HIT = counter("cache.articles.hit");
+    public static final Counter ARTICLE_CACHE_MISS = counter("cache.articles.miss");
+    public static final Counter THUMBNAIL_CACHE_HIT = counter("cache.thumbnails.hit");
+    public static final Counter THUMBNAIL_CACHE_MISS = counter("cache.thumbnails.miss");
+
+    /**
+     * Articles dropped from the local search index because it held too many
+     */
+    public static final Counter INDEX_EVICTED = counter("index.evicted");
+
+    /**
+     * Requests answered from the cache of responses because they were still fresh and because
+     * the server answered 304 Not Modified, and the body bytes and microseconds of parsing
+     * that saved
+     */
+    public static final Counter HTTP_CACHE_FRESH = counter("cache.http.fresh");
+    public static final Counter HTTP_CACHE_NOT_MODIFIED = counter("cache.http.not_modified");
+    public static final Counter HTTP_CACHE_BYTES_SAVED = counter("cache.http.bytes_saved");
+    public static final Counter HTTP_CACHE_PARSE_SAVED = counter("cache.http.parse_us_saved");
+
+    /**
+     * Stages of freeing memory applied by the {@link MemoryGovernor} and the bytes they freed,
+     * and thumbnails that could not be decoded for lack of memory
+     */
+    public static final Counter MEMORY_TRIMS = counter("memory.trims");
+    public static final Counter MEMORY_TRIMMED_BYTES = counter("memory.trimmed_bytes");
+    public static final Counter MEMORY_THUMBNAIL_OOM = counter("memory.thumbnail_oom");
+
+    /**
+     * Requests queued while offline or after they failed, replayed once the network was back,
+     * and given up, and the batches they were replayed in
+     */
+    public static final Counter OFFLINE_QUEUED = counter("offline.queued");
+    public static final Counter OFFLINE_REPLAYED = counter("offline.replayed");
+    public static final Counter OFFLINE_DROPPED = counter("offline.dropped");
+    public static final Counter OFFLINE_BATCHES = counter("offline.batches");
+
+    /**
+     * Create a private constructor because no one should ever create a {@link Metrics} object.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Returns the current time for measuring a duration, in nanoseconds.
+     */
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    private static synchronized Histogram histogram(String name, String unit) {
+        Histogram histogram = new Histogram(name, unit);
+        METRICS.add(histogram);
+        return histogram;
+    }
+
+    private static synchronized Counter counter(String name) {
+        Counter counter = new Counter(name);
+        METRICS.add(counter);
+        return counter;
+    }
+
+    /**
+     * Writes one line per metric that has recorded anything: the count of a counter, the count,
+     * percentiles and maximum of a histogram.
+     */
+    public static void dump(Writer writer) throws IOException {
+        List<Metric> metrics;
+        synchronized (Metrics.class) {
+            metrics = new ArrayList<>(METRICS);
+        }
+        for (Metric metric : metrics) {
+            if (metric.count() > 0) {
+                writer.write(metric.toString());
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Clears every metric, for example to measure one scenario at a time.
+     */
+    public static void reset() {
+        List<Metric> metrics;
+        synchronized (Metrics.class) {
+            metrics = new ArrayList<>(METRICS);
+        }
+        for (Metric metric : metrics) {
+            metric.reset();
+        }
+    }
+
+    /**
+     * Returns every metric in the order they were created.
+     */
+    static synchronized List<Metric> all() {
+        return Collections.unmodifiableList(new ArrayList<>(METRICS));
+    }
+
+    /**
+     * A named metric.
+     */
+    public abstract static class Metric {
+        private final String name;
+
+        Metric(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the name of the metric
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the number of recorded events
+         */
+        public abstract long count();
+
+        abstract void reset();
+    }
+
+    /**
+     * Counts events, for example cache hits.
+     */
+    public static final class Counter extends Metric {
+        private final AtomicLong count = new AtomicLong();
+
+        Counter(String name) {
+            super(name);
+        }
+
+        /**
+         * Counts one event.
+         */
+        public void increment() {
+            count.incrementAndGet();
+        }
+
+        /**
+         * Counts the given number of events, for example bytes.
+         */
+        public void add(long events) {
+            count.addAndGet(events);
+        }
+
+        @Override
+        public long count() {
+            return count.get();
+        }
+
+        @Override
+        void reset() {
+            count.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return getName() + " count=" + count();
+        }
+    }
+
+    /**
+     * Distribution of values, durations in microseconds or sizes in bytes.
+     * <p>
+     * Values below 16 get a bucket each, above that every power of two is split into 8 buckets.
+     */
+    public static final class Histogram extends Metric {
+
+        /**
+         * Number of buckets per power of two is 2 to the power of this
+         */
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+        private static final int BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+        private final String unit;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram(String name, String unit) {
+            super(name);
+            this.unit = unit;
+        }
+
+        /**
+         * Records one value, negative values count as 0.
+         */
+        public void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            counts.incrementAndGet(bucketOf(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long currentMax = max.get();
+            while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+                currentMax = max.get();
+            }
+        }
+
+        /**
+         * Records the microseconds elapsed since the given {@link #now()}.
+         */
+        public void recordSince(long startNanos) {
+            record((System.nanoTime() - startNanos) / 1000);
+        }
+
+        @Override
+        public long count() {
+            return count.get();
+        }
+
+        /**
+         * Returns the largest recorded value
+         */
+        public long max() {
+            return max.get();
+        }
+
+        /**
+         * Returns the mean of the recorded values, or 0 if there are none
+         */
+        public long mean() {
+            long events = count.get();
+            return events == 0 ? 0 : sum.get() / events;
+        }
+
+        /**
+         * Returns the value below which the given fraction of the recorded values lies, as the
+         * upper bound of its bucket but never more than the largest recorded value.
+         *
+         * @param fraction between 0 and 1, for example 0.95 for the 95th percentile
+         */
+        public long percentile(double fraction) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += counts.get(bucket);
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(bucket), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        @Override
+        void reset() {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                counts.set(bucket, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+
+        static int bucketOf(long value) {
+            if (value < LINEAR_LIMIT) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long upperBoundOf(int bucket) {
+            if (bucket < LINEAR_LIMIT) {
+                return bucket;
+            }
+            int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+            long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+            long width = 1L << (exponent - SUB_BUCKET_BITS);
+            return (1L << exponent) + (subBucket + 1) * width - 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s count=%d mean=%d%s p50=%d%s p95=%d%s p99=%d%s max=%d%s",
+                    getName(), count(), mean(), unit, percentile(0.5), unit, percentile(0.95), unit,
+                    percentile(0.99), unit, max(), unit);
+        }
+    }
+}
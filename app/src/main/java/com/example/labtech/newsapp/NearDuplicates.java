@@ -0,0 +1,236 @@
+package com.example.labtech.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Recognizes the same story reported by several feeds from the similarity of the titles.
+ * <p>
+ * Every title gets a 64 bit SimHash of the character trigrams of its normalized text: titles
+ * that share most of their trigrams get hashes that differ in only a few bits, while unrelated
+ * titles differ in about half of them. Comparing two titles is then one XOR and a bit count.
+ * Short titles about similar topics can still come close by chance, so the few pairs whose
+ * hashes are close are confirmed by the share of trigrams their titles have in common, and by
+ * the numbers in them: "Article 1" and "Article 2" are different stories.
+ * The trigrams and hash of every title are computed once, so collapsing the few hundred items
+ * of a dozen feeds is mostly tens of thousands of XORs of two longs.
+ */
+final class NearDuplicates {
+
+    /**
+     * Titles whose hashes differ in at most this many bits may be the same story. Unrelated
+     * titles differ in 32 bits on average, with a standard deviation of 4.
+     */
+    static final int MAX_DISTANCE = 18;
+
+    /**
+     * Share of their distinct trigrams two titles have in common at least to be the same story
+     */
+    static final double MIN_SIMILARITY = 0.6;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private NearDuplicates() {
+    }
+
+    /**
+     * Returns the articles in the same order, without the ones whose title is a near-duplicate
+     * of the title of an article before them.
+     */
+    static List<Article> collapse(List<Article> articles) {
+        List<Article> kept = new ArrayList<>(articles.size());
+        List<Title> keptTitles = new ArrayList<>(articles.size());
+        for (Article article : articles) {
+            Title title = new Title(article.getTitle());
+            if (!isNearDuplicate(title, keptTitles)) {
+                keptTitles.add(title);
+                kept.add(article);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Returns true if the title is a near-duplicate of one of the given titles.
+     */
+    private static boolean isNearDuplicate(Title title, List<Title> titles) {
+        for (int i = 0; i < titles.size(); i++) {
+            Title other = titles.get(i);
+            if (distance(title.hash, other.hash) <= MAX_DISTANCE
+                    && similarity(title.trigrams, other.trigrams) >= MIN_SIMILARITY
+                    && title.numbers.equals(other.numbers)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of distinct trigrams the normalized titles have in common divided by
+     * the number of distinct trigrams of both, from 0 for nothing in common to 1 for the same
+     * trigrams.
+     */
+    static double similarity(String first, String second) {
+        return similarity(trigrams(normalize(first)), trigrams(normalize(second)));
+    }
+
+    private static double similarity(long[] a, long[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return a.length == b.length ? 1 : 0;
+        }
+        int common = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) common / (a.length + b.length - common);
+    }
+
+    /**
+     * Returns the number of bits in which the two hashes differ.
+     */
+    static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    /**
+     * Returns the SimHash of the title: case, punctuation and repeated spaces are ignored, and
+     * every character trigram of what is left votes on each of the 64 bits.
+     */
+    static long titleHash(String title) {
+        return simHash(trigrams(normalize(title)));
+    }
+
+    private static long simHash(long[] trigrams) {
+        // Counts the set bits, a bit of the hash is set if more than half the trigrams have it
+        int[] ones = new int[64];
+        for (long trigram : trigrams) {
+            for (int bit = 0; bit < 64; bit++) {
+                ones[bit] += (int) (trigram >>> bit) & 1;
+            }
+        }
+        long hash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (2 * ones[bit] > trigrams.length) {
+                hash |= 1L << bit;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the numbers in the title, sorted, since feeds put dates in different orders.
+     */
+    private static List<String> numbers(String title) {
+        List<String> numbers = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= title.length(); i++) {
+            boolean digit = i < title.length() && Character.isDigit(title.charAt(i));
+            if (digit && start < 0) {
+                start = i;
+            } else if (!digit && start >= 0) {
+                numbers.add(title.substring(start, i));
+                start = -1;
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    /**
+     * Returns the distinct hashes of the trigrams of the text, sorted.
+     */
+    private static long[] trigrams(char[] text) {
+        if (text.length < 3) {
+            return text.length == 0 ? new long[0] : new long[]{mix(fnv(text, 0, text.length))};
+        }
+        long[] trigrams = new long[text.length - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = mix(fnv(text, i, 3));
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    /**
+     * Returns the title in lower case with every run of characters other than letters and
+     * digits replaced by one space, and without leading or trailing spaces.
+     */
+    private static char[] normalize(String title) {
+        char[] text = new char[title.length()];
+        int length = 0;
+        boolean space = true;
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                text[length++] = Character.toLowerCase(c);
+                space = false;
+            } else if (!space) {
+                text[length++] = ' ';
+                space = true;
+            }
+        }
+        if (length > 0 && text[length - 1] == ' ') {
+            length--;
+        }
+        char[] normalized = new char[length];
+        System.arraycopy(text, 0, normalized, 0, length);
+        return normalized;
+    }
+
+    /**
+     * Spreads every bit of the hash over all 64 bits, the low bits of FNV-1a depend on few of
+     * the characters. The finalizer of MurmurHash3.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Returns the 64 bit FNV-1a hash of the characters.
+     */
+    private static long fnv(char[] text, int start, int length) {
+        long hash = FNV_OFFSET;
+        for (int i = start; i < start + length; i++) {
+            hash = (hash ^ text[i]) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * What the comparison of one title with the others needs.
+     */
+    private static class Title {
+        final long[] trigrams;
+        final long hash;
+        final List<String> numbers;
+
+        Title(String title) {
+            trigrams = trigrams(normalize(title));
+            hash = simHash(trigrams);
+            numbers = numbers(title);
+        }
+    }
+}
@@ -1,23 +1,29 @@
 package com.example.labtech.newsapp;
 
 import android.app.LoaderManager;
-import android.content.Context;
-import android.content.Intent;
 import android.content.Loader;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
-import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.view.ViewTreeObserver;
 import android.widget.ProgressBar;
 import android.widget.SearchView;
 import android.widget.TextView;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.List;
 
 import butterknife.BindView;
@@ -34,15 +40,32 @@ public class NewsActivity extends AppCompatActivity
         implements LoaderManager.LoaderCallbacks<List<Article>> {
 
     private static final String LOG_TAG = NewsActivity.class.getName();
-    /**
-     * URL for article data from the Guardian API
-     */
-    private static final String GUARDIAN_API_REQUEST_URL = "https://content.guardianapis.com/search?api-key=test&show-tags=contributor&q=";
     /**
      * Constant value for the book loader ID. We can choose any integer.
      * This really only comes into play if you're using multiple loaders.
+     * Every page of results gets its own loader, page N uses NEWS_LOADER_ID + N - 1.
      */
     private static final int NEWS_LOADER_ID = 1;
+    /**
+     * Key of the page number in the loader arguments
+     */
+    private static final String ARG_PAGE = "page";
+    /**
+     * Key of the end of the previous page in the loader arguments, which the home feed is
+     * paged by
+     */
+    private static final String ARG_BEFORE = "before";
+    /**
+     * Keys of the current search in the saved instance state
+     */
+    private static final String STATE_QUERY = "query";
+    private static final String STATE_URL = "url";
+    private static final String STATE_LIVE_QUERY = "live_query";
+    private static final String STATE_HIGHEST_PAGE = "highest_page";
+    /**
+     * File in the app's files directory the metrics are written to in debug builds
+     */
+    private static final String METRICS_FILE_NAME = "metrics.txt";
     @BindView(R.id.empty_view)
     TextView emptyView;
     @BindView(loading_indicator)
@@ -50,140 +73,674 @@ public class NewsActivity extends AppCompatActivity
     @BindView(R.id.search_view)
     SearchView searchView;
     @BindView(R.id.list)
-    ListView newsListView;
-    String builtURL = "";
+    RecyclerView newsRecyclerView;
+    @BindView(R.id.swipe_refresh)
+    SwipeRefreshLayout swipeRefreshLayout;
+    /**
+     * Search URL of the current search, without the page parameters,
+     * or null while offline to only search the local index
+     */
+    String builtURL = QueryUtils.buildSearchUrl("");
+    /**
+     * Query of the current search, also searched in the local index
+     */
+    private String searchQuery = "";
     /**
      * Adapter for the list of articles
      */
     private NewsAdapter adapter;
+    /**
+     * Pages of the current search
+     */
+    private ArticlePager pager;
+    /**
+     * Layout manager of the list, tells which rows are visible
+     */
+    private LinearLayoutManager layoutManager;
+    /**
+     * Turns the typed text into debounced searches
+     */
+    private LiveSearch liveSearch;
+    /**
+     * Counts the searches, so the background sync can fetch the most searched queries
+     */
+    private SearchHistory searchHistory;
+    /**
+     * Runs the debounced searches on the main thread
+     */
+    private final Handler handler = new Handler();
+    /**
+     * Highest page requested for the current search, so its loaders can be destroyed on a new one
+     */
+    private int highestRequestedPage;
+    /**
+     * When the current search started, or 0 once its first rows have been shown
+     */
+    private long searchStartNanos;
+    /**
+     * True while the list shows the snapshot of the home feed from the last run, which the
+     * loader of the first page replaces once the first frame has been drawn
+     */
+    private boolean showingSnapshot;
+    /**
+     * Keeps the pages, the caches and the thumbnails within the memory budget of the device
+     */
+    private MemoryGovernor memoryGovernor;
+    /**
+     * Tells whether the device is online, kept up to date by the connectivity broadcasts
+     */
+    private ConnectivityMonitor connectivity;
+    /**
+     * Searches made while offline or that failed, replayed once the network is back
+     */
+    private OfflineQueue offlineQueue;
+    /**
+     * Shows the replayed first page of the search on screen, if it is still on screen, or loads
+     * the home feed again once one of its sections has been replayed. The replayed pages of
+     * other searches are only stored, their loaders find them in the cache.
+     */
+    private final OfflineQueue.Listener replayListener = new OfflineQueue.Listener() {
+        @Override
+        public void onReplayed(final String url, final String query, final List<Article> articles) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (query.isEmpty() && searchQuery.isEmpty()) {
+                        if (SectionFeedLoader.firstPageUrls(NewsActivity.this).contains(url)) {
+                            reloadHomeFeed();
+                        }
+                    } else if (query.equals(searchQuery) && url.equals(firstPageUrl(query))) {
+                        liveSearch.restore(query);
+                        liveSearch.onResults(query, articles);
+                        showRecentResults(query, articles);
+                    }
+                }
+            });
+        }
+    };
+    /**
+     * Accounts for the pages of the current search in the memory budget and has the adapter let
+     * go of the pages the pager dropped. A field, because the governor only holds it weakly.
+     */
+    private final MemoryGovernor.Consumer pageMemory = new MemoryGovernor.Consumer() {
+        @Override
+        public long residentBytes() {
+            return pager.residentBytes();
+        }
+
+        @Override
+        public void trim(int stage) {
+            // The dropped pages are read again from the disk cache when they scroll back into view
+            int resident = pager.getResidentCount();
+            pager.trim(stage);
+            if (pager.getResidentCount() < resident) {
+                adapter.submitList(pager.snapshot());
+            }
+        }
+    };
 
     /**
      * TextView that is displayed when the list is empty
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        long createNanos = Metrics.now();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.news_activity);
         ButterKnife.bind(this);
-        // Find a reference to the {@link ListView} in the layout
-        newsListView.setEmptyView(emptyView);
-        // Create a new adapter that takes an empty list of articles as input
-        adapter = new NewsAdapter(this, new ArrayList<Article>());
-        // Set the adapter on the {@link ListView}
+        // Create the pager that loads the pages of the search, every page with its own loader
+        pager = new ArticlePager(getResources().getInteger(R.integer.page_size),
+                getResources().getInteger(R.integer.prefetch_distance),
+                getResources().getInteger(R.integer.resident_page_radius),
+                new ArticlePager.PageRequestListener() {
+                    @Override
+                    public void onPageRequested(int page) {
+                        Bundle args = new Bundle();
+                        args.putInt(ARG_PAGE, page);
+                        args.putLong(ARG_BEFORE, pager.getEndMillis(page - 1));
+                        highestRequestedPage = Math.max(highestRequestedPage, page);
+                        getLoaderManager().restartLoader(NEWS_LOADER_ID + page - 1, args, NewsActivity.this);
+                    }
+                });
+        // Create a new adapter that shows the pages of articles. Its item click listener
+        // opens the article in the reader, usually with its body prefetched already.
+        adapter = new NewsAdapter(this, pager, new NewsAdapter.OnArticleClickListener() {
+            @Override
+            public void onArticleClick(Article currentArticle) {
+                ReaderActivity.start(NewsActivity.this, currentArticle);
+            }
+        });
+        // Show the empty view whenever the list has no rows
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+        });
+        // Set the adapter on the {@link RecyclerView}
         // so the list can be populated in the user interface
-        newsListView.setAdapter(adapter);
+        layoutManager = new LinearLayoutManager(this);
+        newsRecyclerView.setLayoutManager(layoutManager);
+        DividerItemDecoration divider = new DividerItemDecoration(this, DividerItemDecoration.VERTICAL);
+        divider.setDrawable(ContextCompat.getDrawable(this, R.drawable.list_divider));
+        newsRecyclerView.addItemDecoration(divider);
+        newsRecyclerView.setAdapter(adapter);
+
+        // Prefetch the next page when the user scrolls near the end of the list
+        // and drop the pages that are far from the visible rows
+        newsRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int first = layoutManager.findFirstVisibleItemPosition();
+                int last = layoutManager.findLastVisibleItemPosition();
+                if (first != RecyclerView.NO_POSITION
+                        && pager.onVisibleRangeChanged(first, last)) {
+                    adapter.submitList(pager.snapshot());
+                }
+            }
+
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchVisibleBodies();
+                }
+            }
+        });
 
-        // Set an item click listener on the ListView, which sends an intent to a web browser
-        // to open a website with more information about the selected earthquake.
-        newsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Pulling the list down refreshes the first page with the articles published since
+        swipeRefreshLayout.setOnRefreshListener(new SwipeRefreshLayout.OnRefreshListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
-                // Find the current earthquake that was clicked on
-                Article currentArticle = adapter.getItem(position);
+            public void onRefresh() {
+                refreshFirstPage();
+            }
+        });
+
+        // Debounce the typed text into searches and keep the results of recent queries in memory
+        liveSearch = new LiveSearch(getResources().getInteger(R.integer.search_debounce_millis),
+                getResources().getInteger(R.integer.recent_queries),
+                new LiveSearch.Scheduler() {
+                    @Override
+                    public void schedule(Runnable task, long delayMillis) {
+                        handler.postDelayed(task, delayMillis);
+                    }
+
+                    @Override
+                    public void cancel(Runnable task) {
+                        handler.removeCallbacks(task);
+                    }
+                },
+                new LiveSearch.Listener() {
+                    @Override
+                    public void onSearch(String query) {
+                        startSearch(query);
+                    }
+
+                    @Override
+                    public void onShowResults(String query, List<Article> articles) {
+                        showRecentResults(query, articles);
+                    }
+                });
 
-                // Convert the String URL into a URI object (to pass into the Intent constructor)
-                Uri articleUri = Uri.parse(currentArticle.getUrl());
+        // Follow the network, and replay the searches made without it once it is back
+        connectivity = ConnectivityMonitor.getInstance(this);
+        offlineQueue = OfflineQueue.getInstance(this);
+        offlineQueue.setListener(replayListener);
 
-                // Create a new intent to view the earthquake URI
-                Intent websiteIntent = new Intent(Intent.ACTION_VIEW, articleUri);
+        // Free memory in stages when the system runs low, instead of running out of it
+        memoryGovernor = MemoryGovernor.getInstance(this);
+        memoryGovernor.register(pageMemory);
+        memoryGovernor.register(liveSearch);
 
-                // Send the intent to launch a new activity
-                startActivity(websiteIntent);
+        if (savedInstanceState != null) {
+            // Recreated, for example after a rotation: the page loaders kept their articles
+            restoreSearch(savedInstanceState);
+        } else {
+            recordFirstRow(createNanos);
+            // Draw the feed as it was last shown, the loaders start after the first frame
+            FeedSnapshot snapshot = FeedSnapshot.read(FeedSnapshot.fileOf(this));
+            if (snapshot != null && !snapshot.articles.isEmpty()) {
+                showSnapshot(snapshot);
+            } else {
+                //for the first load the loader fetches the most recent news
+                liveSearch.onQueryTextSubmit("");
+            }
+        }
+
+        // Everything else waits until the first frame is on screen
+        runAfterFirstFrame(new Runnable() {
+            @Override
+            public void run() {
+                if (showingSnapshot) {
+                    loadSnapshotFeed();
+                }
+                // Keep the default feed and the most searched queries fresh in the background
+                SyncService.schedule(NewsActivity.this);
             }
         });
 
+        //get the searchview
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                liveSearch.onQueryTextSubmit(query);
+                searchView.clearFocus();
+                return false;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                liveSearch.onQueryTextChange(newText);
+                return false;
+            }
+        });
+
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_QUERY, searchQuery);
+        outState.putString(STATE_URL, builtURL);
+        outState.putString(STATE_LIVE_QUERY, liveSearch.getCurrentQuery());
+        outState.putInt(STATE_HIGHEST_PAGE, highestRequestedPage);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        saveSnapshot();
+        if (BuildConfig.DEBUG) {
+            dumpMetrics();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        // Drop the debounced search and the deferred startup work that may still be waiting
+        liveSearch.reset();
+        handler.removeCallbacksAndMessages(null);
+        memoryGovernor.unregister(pageMemory);
+        memoryGovernor.unregister(liveSearch);
+        offlineQueue.removeListener(replayListener);
+        super.onDestroy();
+    }
+
+    /**
+     * Starts loading the first page of results for the given query, superseding the previous
+     * search and canceling its requests that are still in flight. While offline only the
+     * articles loaded earlier are searched, in the local index, and the search is queued to be
+     * made once the network is back.
+     */
+    private void startSearch(String query) {
+        searchStartNanos = Metrics.now();
+        showingSnapshot = false;
+        searchQuery = query;
+        searchHistory().record(query);
         //call helper method for network connectivity
         if (checkNetwork()) {
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
-            // Initialize the loader. Pass in the int ID constant defined above and pass in null for
-            // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-            // because this activity implements the LoaderCallbacks interface).
-            loaderManager.initLoader(NEWS_LOADER_ID, null, this);
+            loadingIndicator.setVisibility(View.VISIBLE);
+            builtURL = QueryUtils.buildSearchUrl(query);
+            Log.v(LOG_TAG, query);
         } else {
-            // Otherwise, display error
-            // First, hide loading indicator so error message will be visible
+            // Otherwise, search the articles loaded earlier, and display the error
+            // if none of them matches
             loadingIndicator.setVisibility(View.GONE);
             // Update empty state with no connection error message
+            emptyView.setText(R.string.search_queued);
+            builtURL = null;
+            // The first page comes in by itself once the network is back, for the home feed
+            // every one of its sections
+            if (query.isEmpty()) {
+                for (String url : SectionFeedLoader.firstPageUrls(this)) {
+                    offlineQueue.enqueue(url, query);
+                }
+            } else {
+                offlineQueue.enqueue(firstPageUrl(query), query);
+            }
+            // Search again when the text changes, even for the same query
+            liveSearch.reset();
+        }
+        //drop the pages of the previous search and load the first page of this one
+        destroyPageLoaders();
+        pager.reset();
+        adapter.submitList(pager.snapshot());
+        newsRecyclerView.scrollToPosition(0);
+    }
+
+    /**
+     * Reconnects to the page loaders of the search that was shown before the activity was
+     * recreated. They are retained with their articles, which are delivered again without a
+     * network request. If the first page has no loader, the search starts over.
+     */
+    private void restoreSearch(Bundle savedInstanceState) {
+        searchQuery = savedInstanceState.getString(STATE_QUERY, "");
+        builtURL = savedInstanceState.getString(STATE_URL);
+        liveSearch.restore(savedInstanceState.getString(STATE_LIVE_QUERY));
+        highestRequestedPage = savedInstanceState.getInt(STATE_HIGHEST_PAGE);
+        if (builtURL == null) {
+            loadingIndicator.setVisibility(View.GONE);
             emptyView.setText(R.string.no_internet_connection);
         }
+        pager.clear();
+        LoaderManager loaderManager = getLoaderManager();
+        for (int page = 1; page <= highestRequestedPage; page++) {
+            if (loaderManager.getLoader(NEWS_LOADER_ID + page - 1) != null) {
+                pager.resumePage(page);
+                loaderManager.initLoader(NEWS_LOADER_ID + page - 1, null, this);
+            }
+        }
+        if (!pager.isInFlight(1)) {
+            destroyPageLoaders();
+            pager.reset();
+        }
+        adapter.submitList(pager.snapshot());
+    }
 
-        //get the searchview
-        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+    /**
+     * Shows the snapshot of the home feed from the last run as its first page, scrolled to where
+     * it was left. Nothing is loaded until {@link #loadSnapshotFeed()}.
+     */
+    private void showSnapshot(FeedSnapshot snapshot) {
+        showingSnapshot = true;
+        loadingIndicator.setVisibility(View.GONE);
+        liveSearch.restore("");
+        pager.clear();
+        pager.onPageLoaded(1, snapshot.articles);
+        adapter.submitList(pager.snapshot());
+        if (snapshot.firstVisiblePosition < snapshot.articles.size()) {
+            layoutManager.scrollToPositionWithOffset(snapshot.firstVisiblePosition, snapshot.firstVisibleOffset);
+        }
+    }
+
+    /**
+     * Loads the first page of the home feed in place of the snapshot, which stays on screen
+     * until the fresh page replaces it. While offline the feed is searched in the local index
+     * as usual.
+     */
+    private void loadSnapshotFeed() {
+        showingSnapshot = false;
+        if (!checkNetwork()) {
+            liveSearch.reset();
+            liveSearch.onQueryTextSubmit("");
+            return;
+        }
+        searchStartNanos = Metrics.now();
+        Bundle args = new Bundle();
+        args.putInt(ARG_PAGE, 1);
+        highestRequestedPage = Math.max(highestRequestedPage, 1);
+        getLoaderManager().restartLoader(NEWS_LOADER_ID, args, this);
+    }
+
+    /**
+     * Writes the first page of the home feed and the scroll position in the background, for
+     * the next cold start. Nothing is written while a search is shown.
+     */
+    private void saveSnapshot() {
+        if (builtURL == null || !searchQuery.isEmpty() || !pager.isResident(1)) {
+            return;
+        }
+        List<Article> rows = pager.snapshot();
+        final List<Article> firstPage = rows.subList(0, Math.min(rows.size(), pager.getPageSize()));
+        if (firstPage.isEmpty()) {
+            return;
+        }
+        int position = layoutManager.findFirstVisibleItemPosition();
+        View first = layoutManager.findViewByPosition(position);
+        final FeedSnapshot snapshot = new FeedSnapshot(firstPage, Math.max(position, 0),
+                first != null ? first.getTop() - newsRecyclerView.getPaddingTop() : 0);
+        final File file = FeedSnapshot.fileOf(this);
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
             @Override
-            public boolean onQueryTextSubmit(String query) {
-                if (checkNetwork()) {
-                    loadingIndicator.setVisibility(View.VISIBLE);
-                    //get users search inmput
-                    String userQuery = searchView.getQuery().toString();
-                    //replace empty characters with + for multiple critiria in search query
-                    userQuery = userQuery.replace(" ", "+");
-                    //concatenate with basic guardian api query
-                    builtURL = GUARDIAN_API_REQUEST_URL + userQuery;
-                    //restart load manager
-                    Log.v(LOG_TAG, userQuery);
-                    getLoaderManager().restartLoader(NEWS_LOADER_ID, null, NewsActivity.this);
-                    searchView.clearFocus();
-                    //reset variable builturl to empty string in order to be ready for the next search
-                    builtURL = "";
-                } else {
-                    loadingIndicator.setVisibility(View.GONE);
-                    emptyView.setVisibility(View.VISIBLE);
-                    emptyView.setText(R.string.no_internet_connection);
-                    //clear the adapter or we won't be able to see the empty view!
-                    adapter.clear();
+            public void run() {
+                snapshot.write(file);
+            }
+        });
+    }
+
+    /**
+     * Runs the task on the main thread once the first frame has been drawn.
+     */
+    private void runAfterFirstFrame(final Runnable task) {
+        final View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Posted while the frame is being drawn, so it runs after it
+                handler.post(task);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Records the time from creating the activity until the first frame that shows rows.
+     */
+    private void recordFirstRow(final long createNanos) {
+        newsRecyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (newsRecyclerView.getChildCount() > 0) {
+                    Metrics.CREATE_TO_FIRST_ROW.recordSince(createNanos);
+                    newsRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
                 }
-                return false;
+                return true;
             }
+        });
+    }
 
+    /**
+     * Returns the search counts, read when the first search is counted rather than at startup.
+     */
+    private SearchHistory searchHistory() {
+        if (searchHistory == null) {
+            searchHistory = new SearchHistory(this);
+        }
+        return searchHistory;
+    }
+
+    /**
+     * Asks the loader of the first page for the articles published since it was loaded, which
+     * it delivers merged in front of the page. The later pages keep their rows until they are
+     * loaded again.
+     */
+    private void refreshFirstPage() {
+        Loader<List<Article>> loader = getLoaderManager().getLoader(NEWS_LOADER_ID);
+        if (builtURL == null || !(loader instanceof Refreshable)) {
+            // Offline, or the first page comes from the recent queries and has no loader
+            swipeRefreshLayout.setRefreshing(false);
+            return;
+        }
+        ((Refreshable) loader).refresh(new Runnable() {
             @Override
-            public boolean onQueryTextChange(String newText) {
-                return false;
+            public void run() {
+                swipeRefreshLayout.setRefreshing(false);
             }
         });
+    }
+
+    /**
+     * Loads the home feed again with a section that has been replayed from the offline queue:
+     * from the network if it was only searched in the local index, or else only its first page,
+     * whose loader merges the replayed section from the cache.
+     */
+    private void reloadHomeFeed() {
+        if (builtURL == null) {
+            liveSearch.restore("");
+            startSearch("");
+            return;
+        }
+        Loader<List<Article>> loader = getLoaderManager().getLoader(NEWS_LOADER_ID);
+        if (loader instanceof SectionFeedLoader) {
+            loader.onContentChanged();
+        }
+    }
 
+    /**
+     * Shows the remembered first page of results of a recent query without a network request.
+     * Further pages are loaded as usual when the user scrolls.
+     */
+    private void showRecentResults(String query, List<Article> articles) {
+        showingSnapshot = false;
+        loadingIndicator.setVisibility(View.GONE);
+        emptyView.setText(R.string.no_articles);
+        searchQuery = query;
+        builtURL = QueryUtils.buildSearchUrl(query);
+        destroyPageLoaders();
+        pager.clear();
+        pager.onPageLoaded(1, articles);
+        adapter.submitList(pager.snapshot());
+        newsRecyclerView.scrollToPosition(0);
     }
 
     @Override
     public Loader<List<Article>> onCreateLoader(int i, Bundle bundle) {
-
-        //for the first load the loader fetches the default 10(by default) most recent news
-        if (builtURL.equals("")) {
-            builtURL = GUARDIAN_API_REQUEST_URL;
+        int page = bundle != null ? bundle.getInt(ARG_PAGE, 1) : 1;
+        if (builtURL != null && searchQuery.isEmpty()) {
+            // The home feed merges the articles of every home section published before the end
+            // of the previous page, requested in parallel
+            List<String> sections = SectionFeedLoader.homeSections(this);
+            int sectionPageSize = SectionFeedLoader.sectionPageSize(pager.getPageSize(), sections.size());
+            long before = bundle != null ? bundle.getLong(ARG_BEFORE) : 0;
+            return new SectionFeedLoader(this, sections, before, sectionPageSize);
         }
-        // Create a new loader for the given URL
-        return new NewsLoader(this, builtURL);
+        // Create a new loader for the given page of the URL
+        return new NewsLoader(this, builtURL, searchQuery, page, pager.getPageSize());
     }
 
     @Override
     public void onLoadFinished(Loader<List<Article>> loader, List<Article> articles) {
+        long start = Metrics.now();
         // Hide loading indicator because the data has been loaded
         View loadingIndicator = findViewById(loading_indicator);
         loadingIndicator.setVisibility(View.GONE);
-        // Set empty state text to display "No articles found."
-        emptyView.setText(R.string.no_articles);
-        // Clear the adapter of previous articles data
-        adapter.clear();
-        // If there is a valid list of {@link Article}s, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (articles != null && !articles.isEmpty()) {
-            adapter.addAll(articles);
+        // Set empty state text to display "No articles found.", unless offline
+        if (builtURL != null) {
+            emptyView.setText(R.string.no_articles);
         }
+        // Append the page to the list, or replace it if it was loaded again or, in the
+        // home feed, once more of its sections are in.
+        // The adapter only rebinds the rows that were inserted or changed.
+        int page = loader.getId() - NEWS_LOADER_ID + 1;
+        boolean complete;
+        if (loader instanceof SectionFeedLoader) {
+            // Pages of the home feed hold any number of articles, the loader knows the last one
+            pager.onPageLoaded(page, articles, ((SectionFeedLoader) loader).isLastPage());
+            complete = ((SectionFeedLoader) loader).isComplete();
+        } else {
+            pager.onPageLoaded(page, articles);
+            complete = ((NewsLoader) loader).isComplete();
+        }
+        adapter.submitList(pager.snapshot());
+        if (page == 1 && builtURL != null && complete) {
+            // Remember the first page so that going back to this query renders instantly, but
+            // not the cached or indexed articles shown while the search is in progress
+            liveSearch.onResults(liveSearch.getCurrentQuery(), articles);
+        }
+        prefetchVisibleBodies();
+        // Make room for the new page if the app went over its memory budget
+        memoryGovernor.enforceBudget();
+        if (page == 1 && articles != null && !articles.isEmpty() && searchStartNanos != 0) {
+            Metrics.SEARCH_TO_FIRST_ROW.recordSince(searchStartNanos);
+            searchStartNanos = 0;
+        }
+        Metrics.ON_LOAD_FINISHED.recordSince(start);
     }
 
     @Override
     public void onLoaderReset(Loader<List<Article>> loader) {
-        // Loader reset, so we can clear out our existing data.
-        adapter.clear();
+        // Nothing to do, the pages of a previous search are dropped by the pager
+    }
+
+    /**
+     * Writes the metrics to a file in the background and logs them, so that they can be pulled
+     * from a device with "adb shell run-as com.example.labtech.newsapp cat files/metrics.txt".
+     */
+    private void dumpMetrics() {
+        final File file = new File(getFilesDir(), METRICS_FILE_NAME);
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                StringWriter metrics = new StringWriter();
+                Writer out = null;
+                try {
+                    Metrics.dump(metrics);
+                    metrics.write(ArticleBodies.prefetchReport() + "\n");
+                    out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+                    out.write(metrics.toString());
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem writing the metrics to " + file, e);
+                } finally {
+                    if (out != null) {
+                        try {
+                            out.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }
+                Log.i(LOG_TAG, "Metrics:\n" + metrics);
+            }
+        });
+    }
+
+    /**
+     * Prefetches the bodies of the rows on screen, so that they open in the reader without
+     * waiting for the network. Only while online, the prefetches would fail otherwise.
+     */
+    private void prefetchVisibleBodies() {
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (builtURL == null || first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        List<Article> rows = pager.snapshot();
+        if (first < rows.size()) {
+            ArticleBodies.getInstance(this).prefetch(rows.subList(first, Math.min(last + 1, rows.size())));
+        }
+    }
+
+    /**
+     * Shows the empty view when the list has no rows, hides it otherwise.
+     */
+    private void updateEmptyView() {
+        emptyView.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Destroys the loaders of every page of the current search, so that none of them
+     * delivers results into the next search.
+     */
+    private void destroyPageLoaders() {
+        // A refresh in progress is dropped along with its loader
+        swipeRefreshLayout.setRefreshing(false);
+        LoaderManager loaderManager = getLoaderManager();
+        for (int page = 1; page <= highestRequestedPage; page++) {
+            loaderManager.destroyLoader(NEWS_LOADER_ID + page - 1);
+        }
+        highestRequestedPage = 0;
     }
 
     //helper method to check network connectivity
     public boolean checkNetwork() {
-        // Get a reference to the ConnectivityManager to check state of network connectivity
-        ConnectivityManager connMgr = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-        // Get details on the currently active default data network
-        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
-        // If there is a network connection, fetch data
-        return (networkInfo != null && networkInfo.isConnected());
+        // The monitor follows the connectivity broadcasts, nothing is polled here
+        return connectivity.isConnected();
+    }
+
+    /**
+     * Returns the URL of the first page of the search for the query, the way the loaders
+     * request it.
+     */
+    private String firstPageUrl(String query) {
+        return QueryUtils.buildPageUrl(QueryUtils.buildSearchUrl(query), 1, pager.getPageSize());
     }
 }
\ No newline at end of file
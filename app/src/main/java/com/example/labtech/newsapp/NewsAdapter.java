@@ -1,74 +1,348 @@
 package com.example.labtech.newsapp;
 
 import android.content.Context;
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 
 /**
  * An {@link NewsAdapter} knows how to create a list item layout for each article
- * in the data source (a list of {@link Article} objects).
+ * in the data source (the rows of the pages of articles held by an {@link ArticlePager}).
  * <p>
- * These list item layouts will be provided to an adapter view like ListView
- * to be displayed to the user.
+ * These list item layouts will be provided to a RecyclerView to be displayed to the user.
+ * New rows are handed over with {@link #submitList(List)}, which diffs them against the current
+ * rows on a background thread, so that only inserted, removed, moved or changed rows are rebound.
+ * A row is only asked for when it is bound, so rows that are decoded lazily, like the ones of
+ * an {@link ArticleFile}, are decoded as they scroll into view.
+ * The thumbnails of the rows are loaded off the main thread by the {@link ThumbnailLoader}.
+ * <p>
+ * The titles are laid out ahead of time by {@link TitleLayouts}: the rows on screen while the
+ * diff of a new list is computed, and the rows below the last bound one as the list scrolls,
+ * so that binding a row does no text measurement.
  */
-public class NewsAdapter extends ArrayAdapter<Article> {
+public class NewsAdapter extends RecyclerView.Adapter<NewsAdapter.ViewHolder> {
+
+    /**
+     * Background thread the diffs are computed on
+     */
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Background thread the titles are laid out on while the list scrolls
+     */
+    private static final Executor LAYOUT_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Number of rows whose titles are laid out ahead of the rows on screen, and how close the
+     * bound rows get to the end of them before the next ones are laid out
+     */
+    private static final int PREPARE_AHEAD_ROWS = 20;
+    private static final int PREPARE_DISTANCE = 5;
+
+    /**
+     * Number of title layouts kept in memory
+     */
+    private static final int MAX_TITLE_LAYOUTS = 200;
+
     private final Context context;
+    private final ArticlePager pager;
+    private final OnArticleClickListener listener;
+    private final ThumbnailLoader thumbnails;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Rows currently shown, null for the rows of dropped pages
+     */
+    private List<Article> rows = Collections.emptyList();
+
+    /**
+     * Incremented on every submitted list, so that diffs of outdated lists are discarded
+     */
+    private int generation;
+
+    /**
+     * Layouts of the titles, created with the paint of the first row's title
+     */
+    private TitleLayouts titleLayouts;
+
+    /**
+     * List the adapter is attached to, null while detached
+     */
+    private RecyclerView recyclerView;
+
+    /**
+     * Width of a row taken by everything but the text of its title, and the further width
+     * taken by the thumbnail of rows that have one
+     */
+    private int titleChromeWidth;
+    private int thumbnailWidth;
+
+    /**
+     * Widths of the title text returned by {@link #titleWidths()}, for the list width they
+     * were computed for
+     */
+    private int[] titleWidths;
+    private int titleWidthsListWidth;
+
+    /**
+     * Positions of the rows whose titles have been handed to the background thread
+     */
+    private int preparedFrom;
+    private int preparedUntil;
+
+    /**
+     * False to lay every title out when its row is bound, which the benchmarks compare against
+     */
+    private boolean prepareTitles = true;
 
     /**
      * Constructs a new {@link NewsAdapter}.
      *
      * @param context  of the app
-     * @param articles is the list of articles, which is the data source of the adapter
+     * @param pager    holds the pages of articles, it is asked to load the rows of dropped pages
+     * @param listener is told when an article is clicked
      */
-    public NewsAdapter(Context context, List<Article> articles) {
-        super(context, 0, articles);
+    public NewsAdapter(Context context, ArticlePager pager, OnArticleClickListener listener) {
         this.context = context;
+        this.pager = pager;
+        this.listener = listener;
+        this.thumbnails = ThumbnailLoader.getInstance(context);
+    }
+
+    /**
+     * Replaces the rows shown by the adapter. The difference to the current rows is computed on
+     * a background thread and dispatched on the main thread, unless another list has been
+     * submitted in the meantime.
+     */
+    public void submitList(final List<Article> newRows) {
+        final int submitted = ++generation;
+        final List<Article> oldRows = rows;
+        if (oldRows.isEmpty() || newRows.isEmpty()) {
+            // Nothing to diff, every row is inserted or removed anyway
+            setRows(newRows, 0, 0);
+            notifyDataSetChanged();
+            return;
+        }
+        // The rows on screen once the list is dispatched are laid out along with the diff
+        final int from = firstVisiblePosition();
+        final int until = Math.min(from + PREPARE_AHEAD_ROWS, newRows.size());
+        final TitleLayouts layouts = titleLayouts;
+        final int[] widths = titleWidths();
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                prepareTitles(layouts, widths, newRows, from, until);
+                final DiffUtil.DiffResult diff =
+                        DiffUtil.calculateDiff(new ArticleDiffCallback(oldRows, newRows), false);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (submitted != generation) {
+                            return;
+                        }
+                        setRows(newRows, from, widths != null ? until : from);
+                        diff.dispatchUpdatesTo(NewsAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Turns laying out the titles ahead of time on or off.
+     */
+    void setPrepareTitles(boolean prepareTitles) {
+        this.prepareTitles = prepareTitles;
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows.size();
+    }
+
+    /**
+     * Returns the article at the given position, or null while its page is being loaded.
+     */
+    public Article getItem(int position) {
+        return rows.get(position);
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        //inflate new view with custom list_item layout
+        View view = LayoutInflater.from(context).inflate(R.layout.article_list_item, parent, false);
+        ViewHolder holder = new ViewHolder(view);
+        if (titleLayouts == null) {
+            // Every row has the same title style and the same margins around the title
+            titleLayouts = new TitleLayouts(holder.titleView.getPaint(), MAX_TITLE_LAYOUTS);
+            MemoryGovernor.getInstance(context).register(titleLayouts);
+            titleChromeWidth = view.getPaddingLeft() + view.getPaddingRight()
+                    + holder.titleView.getPaddingLeft() + holder.titleView.getPaddingRight();
+            ViewGroup.MarginLayoutParams thumbnail =
+                    (ViewGroup.MarginLayoutParams) holder.thumbnailImageView.getLayoutParams();
+            thumbnailWidth = thumbnail.width + thumbnail.leftMargin + thumbnail.rightMargin;
+        }
+        return holder;
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        this.recyclerView = null;
     }
 
     /**
-     * Returns a list item view that displays information about the article at the given position
-     * in the list of articles.
+     * Binds the views of the row to the article at the given position in the list of articles.
      */
-    @NonNull
     @Override
-    public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-        final ViewHolder holder;
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        long start = Metrics.now();
         // Find the article at the given position in the list of articles
         Article currentArticle = getItem(position);
+        int[] widths = titleWidths();
+        prepareTitlesAfter(position, widths);
 
-        // Check if an existing view is being reused, otherwise inflate the view
-        //reuse view if it already exists
-        if (convertView != null) {
-            holder = (ViewHolder) convertView.getTag();
-        } else {
-            //inflate new view with custom list_item layout
-            convertView = LayoutInflater.from(context).inflate(
-                    R.layout.article_list_item, parent, false);
-            holder = new ViewHolder(convertView);
-            convertView.setTag(holder);
+        if (currentArticle == null) {
+            // The page of this row has been dropped, ask the pager to load it again
+            pager.getItem(position);
+            holder.titleView.setTitle(titleLayouts, null, 0);
+            holder.sectionTextView.setText(null);
+            holder.dateTextView.setText(null);
+            holder.contributorTextView.setText(null);
+            thumbnails.load(null, holder.thumbnailImageView);
+            return;
         }
 
-        // set this text on the Title TextView
-        holder.titleTextView.setText(currentArticle.getTitle());
+        // show the title, laid out ahead of time unless the row came into view too fast
+        holder.titleView.setTitle(titleLayouts, currentArticle.getTitle(),
+                widths != null ? titleWidth(widths, currentArticle) : 0);
         // set this text on the section TextView
         holder.sectionTextView.setText(currentArticle.getSection());
         // set this text on the date TextView
         holder.dateTextView.setText(currentArticle.getDatePublished());
         // set this text on the Contributor TextView
         holder.contributorTextView.setText(currentArticle.getContributor());
+        // load the thumbnail into the ImageView, or hide it if the article has none
+        thumbnails.load(currentArticle.getThumbnailUrl(), holder.thumbnailImageView);
+        Metrics.BIND_ROW.recordSince(start);
+    }
 
-        // Return the list item view that is now showing the appropriate data
-        return convertView;
+    /**
+     * Cancels the pending thumbnail of a row that scrolled out of view.
+     */
+    @Override
+    public void onViewRecycled(ViewHolder holder) {
+        thumbnails.cancel(holder.thumbnailImageView);
+    }
+
+    private void setRows(List<Article> newRows, int from, int until) {
+        rows = newRows;
+        preparedFrom = from;
+        preparedUntil = until;
+    }
+
+    /**
+     * Hands the titles of the rows below the given one to the background thread, once the rows
+     * bound get close to the end of the ones laid out already. A jump to other rows starts over
+     * from there.
+     */
+    private void prepareTitlesAfter(int position, int[] widths) {
+        if (widths == null) {
+            return;
+        }
+        if (position < preparedFrom || position > preparedUntil) {
+            preparedFrom = position + 1;
+            preparedUntil = position + 1;
+        }
+        if (position + PREPARE_DISTANCE < preparedUntil || preparedUntil >= rows.size()) {
+            return;
+        }
+        final int from = preparedUntil;
+        final int until = Math.min(position + 1 + PREPARE_AHEAD_ROWS, rows.size());
+        preparedUntil = until;
+        final List<Article> target = rows;
+        final TitleLayouts layouts = titleLayouts;
+        final int[] targetWidths = widths;
+        LAYOUT_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                prepareTitles(layouts, targetWidths, target, from, until);
+            }
+        });
+    }
+
+    /**
+     * Lays out the titles of the given rows, skipping the rows of dropped pages. Nothing is laid
+     * out while the widths are not known.
+     */
+    private static void prepareTitles(TitleLayouts layouts, int[] widths, List<Article> rows, int from, int until) {
+        if (widths == null) {
+            return;
+        }
+        for (int i = from; i < until; i++) {
+            Article article = rows.get(i);
+            if (article != null) {
+                layouts.prepare(article.getTitle(), titleWidth(widths, article));
+            }
+        }
+    }
+
+    /**
+     * Returns the width of the title text of rows without and with a thumbnail, or null before
+     * the first row has been created and the list has been laid out.
+     */
+    private int[] titleWidths() {
+        if (!prepareTitles || titleLayouts == null || recyclerView == null || recyclerView.getWidth() == 0) {
+            return null;
+        }
+        if (titleWidths == null || titleWidthsListWidth != recyclerView.getWidth()) {
+            titleWidthsListWidth = recyclerView.getWidth();
+            int width = titleWidthsListWidth - recyclerView.getPaddingLeft() - recyclerView.getPaddingRight()
+                    - titleChromeWidth;
+            titleWidths = new int[]{width, width - thumbnailWidth};
+        }
+        return titleWidths;
+    }
+
+    private static int titleWidth(int[] widths, Article article) {
+        return widths[article.getThumbnailUrl() != null ? 1 : 0];
+    }
+
+    /**
+     * Returns the position of the first row on screen, or 0 if it is not known.
+     */
+    private int firstVisiblePosition() {
+        if (recyclerView == null || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return 0;
+        }
+        int first = ((LinearLayoutManager) recyclerView.getLayoutManager()).findFirstVisibleItemPosition();
+        return first != RecyclerView.NO_POSITION ? first : 0;
+    }
+
+    /**
+     * Is told when the user clicks on an article of the list.
+     */
+    public interface OnArticleClickListener {
+        void onArticleClick(Article article);
     }
 
     /**
@@ -76,10 +350,10 @@ public class NewsAdapter extends ArrayAdapter<Article> {
      * binds views and fields to a variable
      * no need to use findViewById anymore
      */
-    static class ViewHolder {
+    class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
         // Get the title  from the current article object and
         @BindView(R.id.title_text_view)
-        TextView titleTextView;
+        TitleView titleView;
         // Get the section  from the current article object and
         @BindView(R.id.section_text_view)
         TextView sectionTextView;
@@ -89,9 +363,27 @@ public class NewsAdapter extends ArrayAdapter<Article> {
         // Get the contributor  from the current article object and
         @BindView(R.id.contributor_text_view)
         TextView contributorTextView;
+        // Get the thumbnail  from the current article object and
+        @BindView(R.id.thumbnail_image_view)
+        ImageView thumbnailImageView;
 
         public ViewHolder(View view) {
+            super(view);
             ButterKnife.bind(this, view);
+            view.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View view) {
+            int position = getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            Article article = getItem(position);
+            // Rows that are still being loaded can't be opened
+            if (article != null) {
+                listener.onArticleClick(article);
+            }
         }
     }
 
@@ -1,54 +1,209 @@
 package com.example.labtech.newsapp;
 
 
-import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.content.Loader;
+import android.os.Handler;
+import android.os.Looper;
 
 import java.util.List;
 
 /**
- * Loads a list of articles by using an AsyncTask to perform the
- * network request to the given URL.
+ * Loads a page of articles through the {@link ArticleRepository}, off the main thread.
+ * <p>
+ * Articles cached for the URL by an earlier load are delivered first, then the fresh list once
+ * the repository has revalidated them against the server (or nothing new if the server answers
+ * 304 Not Modified). When nothing is cached, the matching articles of the local
+ * {@link ArticleIndex} are delivered while the request is in flight, and they are all that is
+ * loaded when there is no URL, for example while offline.
+ * <p>
+ * The loader keeps its articles across configuration changes and only loads again when it is
+ * started without any, so a rotation redelivers the articles instead of fetching them again.
+ * A {@link #refresh} only fetches the articles published since the newest one it has.
  */
-public class NewsLoader extends AsyncTaskLoader<List<Article>> {
+public class NewsLoader extends Loader<List<Article>> implements Refreshable {
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ArticleRepository repository;
 
     /**
-     * Tag for log messages
+     * Query URL
      */
-    private static final String LOG_TAG = NewsLoader.class.getName();
+    private final String url;
 
     /**
-     * Query URL
+     * Query searched in the local index
+     */
+    private final String query;
+
+    /**
+     * Page of the search results this loader loads, starting from 1
+     */
+    private final int page;
+
+    /**
+     * Number of results per page
+     */
+    private final int pageSize;
+
+    /**
+     * Articles delivered last, null before the first delivery
+     */
+    private List<Article> articles;
+
+    /**
+     * Whether the articles delivered last are the final result of the load, rather than the
+     * cached or indexed ones delivered while it is in progress
+     */
+    private boolean complete;
+
+    /**
+     * Lets a newer load or a reset abort the current one, null when no load is in progress
+     */
+    private CancellationToken cancellation;
+
+    /**
+     * True when the next load should only fetch the articles newer than the delivered ones
      */
-    private String url;
+    private boolean refreshPending;
+
+    /**
+     * Runs when the pending refresh is done, or null
+     */
+    private Runnable onRefreshed;
 
     /**
      * Constructs a new {@link NewsLoader}.
      *
-     * @param context of the activity
-     * @param url     to load data from
+     * @param context  of the activity
+     * @param url      to load data from, or null to only search the local index
+     * @param query    searched in the local index
+     * @param page     of the results to load, starting from 1
+     * @param pageSize number of results per page
      */
-    public NewsLoader(Context context, String url) {
+    public NewsLoader(Context context, String url, String query, int page, int pageSize) {
         super(context);
-        this.url = url;
+        this.url = url == null ? null : QueryUtils.buildPageUrl(url, page, pageSize);
+        this.query = query;
+        this.page = page;
+        this.pageSize = pageSize;
+        this.repository = ArticleRepository.getInstance(context);
+    }
+
+    /**
+     * Returns the page of the search results this loader loads.
+     */
+    public int getPage() {
+        return page;
+    }
+
+    /**
+     * Returns true if the articles delivered last are the final result of the load, rather than
+     * the cached or indexed ones shown while the network request is in progress.
+     */
+    public boolean isComplete() {
+        return complete;
     }
 
     @Override
     protected void onStartLoading() {
-        forceLoad();
+        if (articles != null) {
+            deliverResult(articles);
+        }
+        // Neither a load that is still in progress nor one that has completed is repeated
+        if (takeContentChanged() || (articles == null && cancellation == null)) {
+            forceLoad();
+        }
     }
 
     /**
-     * This is on a background thread.
+     * Refreshes the page with the articles published since the newest one delivered, or loads
+     * it as usual if nothing has been delivered yet. Runs right away if the loader is started,
+     * or else once it is.
      */
     @Override
-    public List<Article> loadInBackground() {
-        if (url == null) {
-            return null;
+    public void refresh(Runnable onRefreshed) {
+        this.onRefreshed = onRefreshed;
+        refreshPending = true;
+        onContentChanged();
+    }
+
+    @Override
+    protected void onForceLoad() {
+        cancelRequest();
+        CancellationToken request = new CancellationToken();
+        cancellation = request;
+        ArticleRepository.Listener listener = deliverTo(request, Metrics.now());
+        if (refreshPending && articles != null) {
+            repository.refresh(url, query, pageSize, request, listener);
+        } else {
+            repository.load(url, query, page, pageSize, request, listener);
         }
+        refreshPending = false;
+    }
+
+    /**
+     * Returns a listener that delivers the articles of the given load on the main thread,
+     * unless the load has been canceled by then.
+     */
+    private ArticleRepository.Listener deliverTo(final CancellationToken request, final long start) {
+        return new ArticleRepository.Listener() {
+            @Override
+            public void onArticles(final List<Article> loaded, final boolean complete) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (request.isCanceled()) {
+                            return;
+                        }
+                        articles = loaded;
+                        NewsLoader.this.complete = complete;
+                        deliverResult(loaded);
+                        if (complete) {
+                            cancellation = null;
+                            Metrics.LOADER_LOAD.recordSince(start);
+                            notifyRefreshed();
+                        }
+                    }
+                });
+            }
+        };
+    }
 
-        // Perform the network request, parse the response, and extract a list of articles.
-        List<Article> articles = QueryUtils.fetchArticlesData(url);
-        return articles;
+    /**
+     * Aborts the load when it is canceled, for example because a newer search restarted the
+     * loader. Called on the main thread, on API 16 and newer.
+     *
+     * @return false, as the load has been canceled by the time this returns
+     */
+    @Override
+    protected boolean onCancelLoad() {
+        cancelRequest();
+        return false;
+    }
+
+    @Override
+    protected void onReset() {
+        // The loader has been destroyed by a newer search or by finishing the activity
+        cancelRequest();
+        articles = null;
+        complete = false;
+        refreshPending = false;
+        onRefreshed = null;
+    }
+
+    private void notifyRefreshed() {
+        Runnable action = onRefreshed;
+        onRefreshed = null;
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    private void cancelRequest() {
+        if (cancellation != null) {
+            cancellation.cancel();
+            cancellation = null;
+        }
     }
 }
@@ -0,0 +1,455 @@
+package com.example.labtech.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Requests that could not be made because the device was offline or that failed, kept in a file
+ * and replayed once the network is back.
+ * <p>
+ * The queue listens to a {@link Connectivity} instead of checking the network before every
+ * request. When it reports the network as connected, the queued requests are fetched in batches
+ * on a single background thread: the requests of a batch back to back at background priority,
+ * so that they share one connection and go after the user's own requests, and the file is
+ * updated after every batch. The results go into the {@link ArticleCache} and the
+ * {@link ArticleIndex}, where the loaders find them, and to the {@link Listener} if one is still
+ * interested. A request for a URL that is already queued is not queued again.
+ * <p>
+ * A request that fails doesn't hold up the ones after it. One the server rejects with a client
+ * error is given up right away, and one that failed {@link #MAX_ATTEMPTS} times with the network
+ * up is given up too. Only the network going away again or the server asking to slow down stops
+ * the replay, until the network comes back the next time.
+ */
+public class OfflineQueue {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = OfflineQueue.class.getSimpleName();
+
+    /**
+     * File in the app's files directory that holds the queue
+     */
+    private static final String FILE_NAME = "offline_queue";
+
+    /**
+     * Marks the start of the file, followed by the format version
+     */
+    private static final int MAGIC = 0x4e414f51;
+    private static final int VERSION = 1;
+
+    /**
+     * Number of requests kept, the oldest ones are given up beyond that
+     */
+    static final int MAX_REQUESTS = 50;
+
+    /**
+     * Number of requests fetched back to back before the file is updated
+     */
+    static final int BATCH_SIZE = 5;
+
+    /**
+     * Number of failed replays with the network up after which a request is given up
+     */
+    static final int MAX_ATTEMPTS = 3;
+
+    private static OfflineQueue instance;
+
+    private final File file;
+    private final ArticleCache cache;
+    private final ArticleIndex index;
+    private final Connectivity connectivity;
+    private final Executor executor;
+
+    /**
+     * Queued requests by normalized URL, oldest first. Read from the file on first use.
+     */
+    private LinkedHashMap<String, Request> requests;
+
+    private volatile Listener listener;
+
+    private final Connectivity.Listener connectivityListener = new Connectivity.Listener() {
+        @Override
+        public void onConnectivityChanged(boolean connected) {
+            if (connected) {
+                replay();
+            }
+        }
+    };
+
+    /**
+     * Constructs a new {@link OfflineQueue}. Nothing is replayed until {@link #start()}.
+     *
+     * @param file         holds the queued requests between runs of the app
+     * @param cache        stores the results by URL
+     * @param index        has the articles of the results added to it
+     * @param connectivity tells when the network comes back
+     * @param executor     reads and writes the file and replays the requests, on a single thread
+     */
+    public OfflineQueue(File file, ArticleCache cache, ArticleIndex index, Connectivity connectivity,
+                        Executor executor) {
+        this.file = file;
+        this.cache = cache;
+        this.index = index;
+        this.connectivity = connectivity;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the queue shared by the whole app, already started.
+     */
+    public static synchronized OfflineQueue getInstance(Context context) {
+        if (instance == null) {
+            Context application = context.getApplicationContext();
+            instance = new OfflineQueue(new File(application.getFilesDir(), FILE_NAME),
+                    ArticleCache.getInstance(application), ArticleIndex.getInstance(application),
+                    ConnectivityMonitor.getInstance(application), Executors.newSingleThreadExecutor());
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts listening to the connectivity, and replays the requests left from the last run of
+     * the app if the network is connected.
+     */
+    public void start() {
+        connectivity.addListener(connectivityListener);
+        if (connectivity.isConnected()) {
+            replay();
+        }
+    }
+
+    /**
+     * Stops listening to the connectivity. Requests can still be queued.
+     */
+    public void stop() {
+        connectivity.removeListener(connectivityListener);
+    }
+
+    /**
+     * Sets the listener that receives the results of the replayed requests, replacing the
+     * previous one. Results nobody listens to are only stored.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Removes the given listener, unless another one has replaced it already.
+     */
+    public void removeListener(Listener listener) {
+        if (this.listener == listener) {
+            this.listener = null;
+        }
+    }
+
+    /**
+     * Queues a request for a page of articles, to be fetched once the network is back.
+     *
+     * @param url   of the page
+     * @param query the page was searched for, handed back with the result
+     */
+    public void enqueue(final String url, final String query) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (OfflineQueue.this) {
+                    String key = ArticleCache.normalizeUrl(url);
+                    LinkedHashMap<String, Request> requests = requests();
+                    if (requests.containsKey(key)) {
+                        return;
+                    }
+                    if (requests.size() >= MAX_REQUESTS) {
+                        Iterator<String> eldest = requests.keySet().iterator();
+                        eldest.next();
+                        eldest.remove();
+                        Metrics.OFFLINE_DROPPED.increment();
+                    }
+                    requests.put(key, new Request(url, query, 0));
+                    write();
+                }
+                Metrics.OFFLINE_QUEUED.increment();
+            }
+        });
+    }
+
+    /**
+     * Returns the number of queued requests. Reads the file if it hasn't been read yet.
+     */
+    public synchronized int size() {
+        return requests().size();
+    }
+
+    /**
+     * Replays the queued requests in the background, batch after batch until there are none left
+     * or the network goes away again.
+     */
+    public void replay() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+    }
+
+    private void drain() {
+        // Every request is tried once per replay, the ones that failed wait for the next replay
+        Set<String> tried = new HashSet<>();
+        while (true) {
+            List<Request> batch;
+            synchronized (this) {
+                if (!connectivity.isConnected()) {
+                    return;
+                }
+                batch = new ArrayList<>(BATCH_SIZE);
+                for (Map.Entry<String, Request> request : requests().entrySet()) {
+                    if (batch.size() == BATCH_SIZE) {
+                        break;
+                    }
+                    if (tried.add(request.getKey())) {
+                        batch.add(request.getValue());
+                    }
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+            }
+            boolean complete = replayBatch(batch);
+            Metrics.OFFLINE_BATCHES.increment();
+            if (!complete) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fetches the requests of a batch back to back and updates the file once. A request that
+     * failed doesn't stop the ones after it, see {@link #onFailure}.
+     *
+     * @return false if the replay should stop, in which case the rest of the batch stays queued
+     */
+    private boolean replayBatch(List<Request> batch) {
+        RequestTimings usage = new RequestTimings();
+        boolean complete = true;
+        for (Request request : batch) {
+            ArticleCache.Entry cached = cache.get(request.url);
+            RequestTimings timings = new RequestTimings();
+            ArticleCache.Entry entry = QueryUtils.fetchArticlesEntry(request.url, cached,
+                    new CancellationToken(), timings, RequestScheduler.PRIORITY_BACKGROUND);
+            usage.add(timings);
+            if (entry == null) {
+                if (!onFailure(request, timings.getResponseCode())) {
+                    complete = false;
+                    break;
+                }
+                continue;
+            }
+            synchronized (this) {
+                requests().remove(ArticleCache.normalizeUrl(request.url));
+            }
+            if (entry != cached) {
+                cache.put(request.url, entry);
+                index.addAll(entry.articles);
+            }
+            Metrics.OFFLINE_REPLAYED.increment();
+            Listener interested = listener;
+            if (interested != null) {
+                interested.onReplayed(request.url, request.query, entry.articles);
+            }
+        }
+        synchronized (this) {
+            write();
+        }
+        Log.v(LOG_TAG, "Replayed a batch of " + batch.size() + " requests, " + usage);
+        return complete;
+    }
+
+    /**
+     * Keeps, moves back or gives up a request that failed, by why it failed.
+     *
+     * @param code status code of the response, 0 if no response came back
+     * @return false if the replay should stop
+     */
+    private synchronized boolean onFailure(Request request, int code) {
+        if (!connectivity.isConnected()) {
+            // The network went away again, the request keeps its place
+            return false;
+        }
+        if (code == 429 || (code == 0 && QueryUtils.getScheduler().isPaused())) {
+            // The server asked to slow down, the request keeps its place and the ones after it
+            // would only be held back too
+            return false;
+        }
+        String key = ArticleCache.normalizeUrl(request.url);
+        requests().remove(key);
+        if (code >= 400 && code < 500 && code != HttpURLConnection.HTTP_CLIENT_TIMEOUT) {
+            // The server would answer the same again
+            Metrics.OFFLINE_DROPPED.increment();
+        } else if (request.attempts + 1 < MAX_ATTEMPTS) {
+            // A request the server failed goes to the back of the queue and is tried again on
+            // the next replay
+            requests().put(key, new Request(request.url, request.query, request.attempts + 1));
+        } else {
+            Metrics.OFFLINE_DROPPED.increment();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the queued requests, read from the file on first use.
+     */
+    private LinkedHashMap<String, Request> requests() {
+        if (requests == null) {
+            requests = read(file);
+        }
+        return requests;
+    }
+
+    /**
+     * Reads the queued requests from the given file, or returns an empty queue if there is none
+     * or it can't be read.
+     */
+    private static LinkedHashMap<String, Request> read(File file) {
+        LinkedHashMap<String, Request> requests = new LinkedHashMap<>();
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown queue format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Request request = new Request(in.readUTF(), in.readUTF(), in.readInt());
+                requests.put(ArticleCache.normalizeUrl(request.url), request);
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing queued
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the queue " + file, e);
+            requests.clear();
+            file.delete();
+        } finally {
+            closeQuietly(in);
+        }
+        return requests;
+    }
+
+    /**
+     * Writes the queued requests to the file, replacing it, or deletes it when nothing is queued.
+     */
+    private void write() {
+        if (requests.isEmpty()) {
+            file.delete();
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(requests.size());
+            for (Request request : requests.values()) {
+                out.writeUTF(request.url);
+                out.writeUTF(request.query);
+                out.writeInt(request.attempts);
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp + " to " + file);
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the queue " + file, e);
+            temp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * A queued request for a page of articles.
+     */
+    private static class Request {
+        final String url;
+        final String query;
+
+        /**
+         * Number of replays that failed with the network up
+         */
+        final int attempts;
+
+        Request(String url, String query, int attempts) {
+            this.url = url;
+            this.query = query;
+            this.attempts = attempts;
+        }
+    }
+
+    /**
+     * Tells whether the device is online, and when that changes.
+     */
+    public interface Connectivity {
+
+        boolean isConnected();
+
+        void addListener(Listener listener);
+
+        void removeListener(Listener listener);
+
+        /**
+         * Is told when the device goes online or offline.
+         */
+        interface Listener {
+
+            void onConnectivityChanged(boolean connected);
+        }
+    }
+
+    /**
+     * Receives the results of replayed requests, on the thread of the queue.
+     */
+    public interface Listener {
+
+        /**
+         * Called with the articles of a replayed request, which have been stored already.
+         *
+         * @param url      of the page
+         * @param query    the page was searched for
+         * @param articles of the page
+         */
+        void onReplayed(String url, String query, List<Article> articles);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.labtech.newsapp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.Headers;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+/**
+ * {@link HttpTransport} backed by a shared OkHttp client.
+ * <p>
+ * Connections are kept alive in a pool and reused across searches, HTTP/2 is negotiated with
+ * servers that support it, and gzip is requested and decompressed transparently.
+ */
+public class OkHttpTransport implements HttpTransport {
+
+    /**
+     * Number of idle connections kept in the pool and how long they stay there
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private final OkHttpClient client;
+
+    /**
+     * Constructs a new {@link OkHttpTransport} with its own connection pool.
+     */
+    public OkHttpTransport() {
+        client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .connectTimeout(15000, TimeUnit.MILLISECONDS)
+                .readTimeout(10000, TimeUnit.MILLISECONDS)
+                .eventListenerFactory(new EventListener.Factory() {
+                    @Override
+                    public EventListener create(Call call) {
+                        return new TimingListener((RequestTimings) call.request().tag());
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public Response execute(URL url, Map<String, String> headers, final CancellationToken cancellation,
+                            Gate gate) throws IOException {
+        if (!gate.acquire(cancellation)) {
+            throw new NotSentException(url);
+        }
+        RequestTimings timings = new RequestTimings();
+        // OkHttp adds "Accept-Encoding: gzip" itself and only then unzips the body for us,
+        // so that header must not be set here
+        Request.Builder request = new Request.Builder().url(url).tag(timings);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            request.header(header.getKey(), header.getValue());
+        }
+        final Call call = client.newCall(request.build());
+        final Runnable cancelCall = new Runnable() {
+            @Override
+            public void run() {
+                call.cancel();
+            }
+        };
+        cancellation.addOnCancelListener(cancelCall);
+        okhttp3.Response response;
+        try {
+            response = call.execute();
+        } catch (IOException e) {
+            cancellation.removeOnCancelListener(cancelCall);
+            throw e;
+        }
+        gate.onResponse(response.code(), response.header("Retry-After"));
+        // Cancellation aborts a read of the body until the body is closed
+        InputStream body = new FilterInputStream(response.body().byteStream()) {
+            @Override
+            public void close() throws IOException {
+                cancellation.removeOnCancelListener(cancelCall);
+                super.close();
+            }
+        };
+        return new Response(response.code(), toMap(response.headers()), body, timings);
+    }
+
+    private static Map<String, String> toMap(Headers headers) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < headers.size(); i++) {
+            map.put(headers.name(i).toLowerCase(Locale.US), headers.value(i));
+        }
+        return map;
+    }
+
+    /**
+     * Fills the {@link RequestTimings} of a call as its events happen.
+     */
+    private static class TimingListener extends EventListener {
+        private final RequestTimings timings;
+        private long dnsStart;
+        private long connectStart;
+        private long requestStart;
+        private long bodyStart;
+
+        TimingListener(RequestTimings timings) {
+            this.timings = timings;
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            timings.dnsMillis += elapsedMillis(dnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            timings.connectMillis += elapsedMillis(connectStart);
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, okhttp3.Response response) {
+            // Headers are read as soon as they arrive, so this is when the first byte came in
+            timings.timeToFirstByteMillis = elapsedMillis(requestStart);
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            bodyStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            timings.bodyMillis = elapsedMillis(bodyStart);
+            timings.bodyBytes = byteCount;
+        }
+
+        private static long elapsedMillis(long startNanos) {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+    }
+}
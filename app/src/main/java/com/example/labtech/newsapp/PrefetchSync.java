@@ -0,0 +1,196 @@
+package com.example.labtech.newsapp;
+
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * Fetches a batch of searches in the background and stores their results in the
+ * {@link ArticleCache} and the {@link ArticleIndex}, so that {@link NewsLoader} renders them
+ * from local data the next time the app is opened.
+ * <p>
+ * A sync only runs while the device is charging on an unmetered network, at most once per
+ * interval and within a daily budget of runs and downloaded bytes. The searches of a run are
+ * fetched back to back, so they share one connection while the radio is up, and cached results
+ * are revalidated with conditional requests. After a failed run the next attempt is delayed
+ * exponentially, up to a day.
+ */
+public class PrefetchSync {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = PrefetchSync.class.getSimpleName();
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * What a call to {@link #run} did.
+     */
+    public enum Result {
+        /**
+         * Not charging or not on an unmetered network
+         */
+        SKIPPED_CONDITIONS,
+        /**
+         * The interval since the last run, or the backoff after a failed one, has not passed
+         */
+        SKIPPED_TOO_SOON,
+        /**
+         * Today's runs or bytes have been used up
+         */
+        SKIPPED_BUDGET,
+        /**
+         * Every search was fetched
+         */
+        SUCCESS,
+        /**
+         * The byte budget ran out before every search was fetched
+         */
+        PARTIAL,
+        /**
+         * A request failed, the next attempt is backed off
+         */
+        FAILED
+    }
+
+    private final ArticleCache cache;
+    private final ArticleIndex index;
+    private final Clock clock;
+
+    /**
+     * Minimum time between two successful runs
+     */
+    private final long intervalMillis;
+
+    /**
+     * Delay before the attempt after a failed run, doubled after every further failure
+     */
+    private final long initialBackoffMillis;
+
+    /**
+     * Maximum number of runs and downloaded bytes per day
+     */
+    private final int maxRunsPerDay;
+    private final long maxBytesPerDay;
+
+    /**
+     * Constructs a new {@link PrefetchSync}.
+     *
+     * @param cache                stores the fetched results by URL
+     * @param index                has the fetched articles added to it
+     * @param clock                tells the current time
+     * @param intervalMillis       minimum time between two successful runs
+     * @param initialBackoffMillis delay after a failed run, doubled after every further failure
+     * @param maxRunsPerDay        maximum number of runs per day
+     * @param maxBytesPerDay       maximum number of bytes downloaded per day
+     */
+    public PrefetchSync(ArticleCache cache, ArticleIndex index, Clock clock, long intervalMillis,
+                        long initialBackoffMillis, int maxRunsPerDay, long maxBytesPerDay) {
+        this.cache = cache;
+        this.index = index;
+        this.clock = clock;
+        this.intervalMillis = intervalMillis;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxRunsPerDay = maxRunsPerDay;
+        this.maxBytesPerDay = maxBytesPerDay;
+    }
+
+    /**
+     * Fetches the given URLs if the conditions, interval, backoff and budget allow it,
+     * and updates the state accordingly.
+     *
+     * @param state     of the previous runs, updated in place
+     * @param urls      to fetch, most important first
+     * @param unmetered whether the active network is unmetered
+     * @param charging  whether the device is charging
+     */
+    public Result run(State state, List<String> urls, boolean unmetered, boolean charging) {
+        long now = clock.currentTimeMillis();
+        if (now - state.budgetWindowStartMillis >= DAY_MILLIS || now < state.budgetWindowStartMillis) {
+            state.budgetWindowStartMillis = now;
+            state.runsInWindow = 0;
+            state.bytesInWindow = 0;
+        }
+        if (!unmetered || !charging) {
+            return Result.SKIPPED_CONDITIONS;
+        }
+        if (now < state.nextRunMillis) {
+            return Result.SKIPPED_TOO_SOON;
+        }
+        if (state.runsInWindow >= maxRunsPerDay || state.bytesInWindow >= maxBytesPerDay) {
+            return Result.SKIPPED_BUDGET;
+        }
+        state.runsInWindow++;
+
+        RequestTimings usage = new RequestTimings();
+        Result result = Result.SUCCESS;
+        for (String url : urls) {
+            if (state.bytesInWindow + usage.getBodyBytes() >= maxBytesPerDay) {
+                result = Result.PARTIAL;
+                break;
+            }
+            ArticleCache.Entry cached = cache.get(url);
+            ArticleCache.Entry entry = QueryUtils.fetchArticlesEntry(url, cached,
+                    new CancellationToken(), usage, RequestScheduler.PRIORITY_BACKGROUND);
+            if (entry == null) {
+                // Most likely the network went away, leave the rest for the next attempt
+                result = Result.FAILED;
+                break;
+            }
+            if (entry != cached) {
+                cache.put(url, entry);
+                index.addAll(entry.articles);
+            }
+        }
+        state.bytesInWindow += usage.getBodyBytes();
+
+        if (result == Result.FAILED) {
+            state.failures++;
+            long backoffMillis = initialBackoffMillis << Math.min(state.failures - 1, 30);
+            state.nextRunMillis = now + Math.min(backoffMillis, DAY_MILLIS);
+        } else {
+            state.failures = 0;
+            state.lastSuccessMillis = now;
+            state.nextRunMillis = now + intervalMillis;
+        }
+        Log.v(LOG_TAG, result + " " + usage);
+        return result;
+    }
+
+    /**
+     * Tells the current time, in milliseconds since the epoch.
+     */
+    public interface Clock {
+
+        long currentTimeMillis();
+    }
+
+    /**
+     * What the previous runs did, kept between runs.
+     */
+    public static class State {
+
+        /**
+         * Time of the last successful run, 0 if there has been none
+         */
+        public long lastSuccessMillis;
+
+        /**
+         * Earliest time of the next run
+         */
+        public long nextRunMillis;
+
+        /**
+         * Number of failed runs in a row
+         */
+        public int failures;
+
+        /**
+         * Start of the current day of budget, and the runs and bytes used in it
+         */
+        public long budgetWindowStartMillis;
+        public int runsInWindow;
+        public long bytesInWindow;
+    }
+}
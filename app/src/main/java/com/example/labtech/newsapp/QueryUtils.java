@@ -3,6 +3,9 @@ package com.example.labtech.newsapp;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -16,7 +19,13 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Helper methods related to requesting and receiving article data from Guardian API.
@@ -27,13 +36,45 @@ public final class QueryUtils {
      * Tag for the log messages
      */
     private static final String LOG_TAG = QueryUtils.class.getSimpleName();
+    /**
+     * Content API address of single articles, the path of an article's web URL is its id there
+     */
+    static final String GUARDIAN_CONTENT_API_URL = "https://content.guardianapis.com";
+    private static final String BODY_QUERY = "?api-key=test&show-fields=body";
     private static final String KEY_RESPONSE = "response";
+    private static final String KEY_CONTENT = "content";
+    private static final String KEY_BODY = "body";
     private static final String KEY_RESULTS = "results";
     private static final String KEY_SECTION_NAME = "sectionName";
     private static final String KEY_WEB_TITLE = "webTitle"; //it is used both for the article and the contributor name
     private static final String KEY_PUBLICATION_DATE = "webPublicationDate";
     private static final String KEY_WEB_URL = "webUrl";
     private static final String KEY_TAGS = "tags";
+    private static final String KEY_FIELDS = "fields";
+    private static final String KEY_THUMBNAIL = "thumbnail";
+
+    /**
+     * Performs the HTTP requests. Pooled, gzip-enabled connections with up to 3 attempts.
+     */
+    private static HttpTransport transport = new RetryingTransport(new OkHttpTransport(), 3, 500);
+
+    /**
+     * Parses the JSON of the Guardian Content API search endpoint, for {@link FeedSource}s of
+     * Guardian URLs
+     */
+    static final FeedParser GUARDIAN_PARSER = new FeedParser() {
+        @Override
+        public List<Article> parse(InputStream body) throws IOException {
+            return extractArticlesFromStream(body);
+        }
+    };
+
+    /**
+     * Keeps the requests within the rate limit of the API key, 12 requests per second for a
+     * developer key such as "test". Searches wait up to 2 seconds for a pause asked for by the
+     * server, background requests don't wait for one at all.
+     */
+    private static RequestScheduler scheduler = new RequestScheduler(12, 12, 2000, 0);
 
 
     /**
@@ -44,91 +85,652 @@ public final class QueryUtils {
     private QueryUtils() {
     }
 
+    /**
+     * Returns the transport that performs the HTTP requests, so that other downloads of the app
+     * share its pooled connections.
+     */
+    static HttpTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Replaces the transport that performs the HTTP requests.
+     */
+    public static void setTransport(HttpTransport httpTransport) {
+        transport = httpTransport;
+    }
+
+    /**
+     * Replaces the scheduler that keeps the requests within the rate limit.
+     */
+    public static void setScheduler(RequestScheduler requestScheduler) {
+        scheduler = requestScheduler;
+    }
+
+    /**
+     * Returns the scheduler that keeps the requests within the rate limit.
+     */
+    static RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
     /**
      * Query the Guardian API dataset and return a list of {@link Article} objects.
      */
     public static List<Article> fetchArticlesData(String requestUrl) {
+        ArticleCache.Entry entry = fetchArticlesEntry(requestUrl, null);
+        return entry != null ? entry.articles : null;
+    }
+
+    /**
+     * Query the Guardian API dataset and return the parsed {@link Article}s together with the
+     * validators of the response.
+     * <p>
+     * If a cached entry is given, its ETag and Last-Modified validators are sent along and, when
+     * the server answers 304 Not Modified, that same entry is returned without parsing anything.
+     * Returns null if the request failed.
+     */
+    public static ArticleCache.Entry fetchArticlesEntry(String requestUrl, ArticleCache.Entry cached) {
+        return fetchArticlesEntry(requestUrl, cached, new CancellationToken());
+    }
+
+    /**
+     * Same as {@link #fetchArticlesEntry(String, ArticleCache.Entry)}, but the request can be
+     * aborted from another thread through the given token, in which case null is returned.
+     */
+    public static ArticleCache.Entry fetchArticlesEntry(String requestUrl, ArticleCache.Entry cached,
+                                                        CancellationToken cancellation) {
+        return fetchArticlesEntry(requestUrl, cached, cancellation, null);
+    }
+
+    /**
+     * Same as {@link #fetchArticlesEntry(String, ArticleCache.Entry, CancellationToken)}, and
+     * adds the time and bytes the request took to the given timings, if not null.
+     */
+    public static ArticleCache.Entry fetchArticlesEntry(String requestUrl, ArticleCache.Entry cached,
+                                                        CancellationToken cancellation,
+                                                        RequestTimings usage) {
+        return fetchArticlesEntry(requestUrl, cached, cancellation, usage, RequestScheduler.PRIORITY_USER);
+    }
+
+    /**
+     * Same as {@link #fetchArticlesEntry(String, ArticleCache.Entry, CancellationToken, RequestTimings)},
+     * with the priority of the request in the {@link RequestScheduler}. Returns null without
+     * sending the request while the server asks for a pause longer than the priority waits.
+     */
+    public static ArticleCache.Entry fetchArticlesEntry(String requestUrl, ArticleCache.Entry cached,
+                                                        CancellationToken cancellation,
+                                                        RequestTimings usage, int priority) {
+        return fetchFeedEntry(requestUrl, GUARDIAN_PARSER, cached, cancellation, usage, priority);
+    }
+
+    /**
+     * Same as {@link #fetchArticlesEntry(String, ArticleCache.Entry, CancellationToken)} for a
+     * feed of any format, whose response body is parsed by the given parser. Only the requests
+     * parsed by {@link #GUARDIAN_PARSER} go to the Guardian API and count against its rate limit,
+     * those of other sites are sent right away.
+     */
+    public static ArticleCache.Entry fetchFeedEntry(String requestUrl, FeedParser parser,
+                                                    ArticleCache.Entry cached,
+                                                    CancellationToken cancellation) {
+        return fetchFeedEntry(requestUrl, parser, cached, cancellation, null, RequestScheduler.PRIORITY_USER);
+    }
+
+    /**
+     * Same as {@link #fetchFeedEntry(String, FeedParser, ArticleCache.Entry, CancellationToken)},
+     * with the timings and priority of
+     * {@link #fetchArticlesEntry(String, ArticleCache.Entry, CancellationToken, RequestTimings, int)}.
+     */
+    public static ArticleCache.Entry fetchFeedEntry(String requestUrl, FeedParser parser,
+                                                    ArticleCache.Entry cached,
+                                                    CancellationToken cancellation,
+                                                    RequestTimings usage, int priority) {
 
         // Create URL object
         URL url = createUrl(requestUrl);
 
-        // Perform HTTP request to the URL and receive a JSON response back
-        String jsonResponse = null;
+        // Perform HTTP request to the URL and parse the response straight off the stream
+        ArticleCache.Entry entry = null;
         try {
-            jsonResponse = makeHttpRequest(url);
+            entry = makeHttpRequest(url, parser, cached, cancellation, usage, priority);
         } catch (IOException e) {
             Log.e(LOG_TAG, "Problem making the HTTP request.", e);
         }
 
-        // Extract relevant fields from the JSON response and create a list of {@link Article}s
-        List<Article> articles = extractFeatureFromJson(jsonResponse);
+        // Return the {@link Article}s and their validators
+        return entry;
+    }
 
-        // Return the list of {@link Article}s
-        return articles;
+    /**
+     * Fetch only the articles published since the newest article of the cached entry, and
+     * return the entry with the new ones in front of its articles, the cached entry itself if
+     * nothing new was published, or null if the request failed. The server only sends and the
+     * parser only reads the new articles.
+     * <p>
+     * Without cached articles, or for results that don't come newest first, this is a full
+     * conditional request, as
+     * {@link #fetchArticlesEntry(String, ArticleCache.Entry, CancellationToken)}, and a cached
+     * entry that is still fresh is returned without any request.
+     *
+     * @param requestUrl URL of the first page of the results
+     * @param cached     entry loaded earlier from the URL, or null
+     * @param limit      number of articles the merged entry holds at most
+     */
+    public static ArticleCache.Entry fetchNewerArticlesEntry(String requestUrl, ArticleCache.Entry cached,
+                                                             int limit, CancellationToken cancellation) {
+        // A fresh entry is returned as it is, without a request
+        if (cached == null || cached.articles.isEmpty() || cached.isFresh(System.currentTimeMillis())) {
+            return fetchArticlesEntry(requestUrl, cached, cancellation);
+        }
+        // The newer articles of a search ordered by relevance don't belong in front of the page,
+        // the server ranks the whole page again
+        if (!GuardianQuery.fromUrl(requestUrl).build().isNewestFirst()) {
+            return fetchArticlesEntry(requestUrl, cached, cancellation);
+        }
+        long newestMillis = 0;
+        for (Article article : cached.articles) {
+            newestMillis = Math.max(newestMillis, article.getPublishedMillis());
+        }
+        ArticleCache.Entry newer = fetchArticlesEntry(buildNewerUrl(requestUrl, newestMillis), null, cancellation);
+        if (newer == null) {
+            return null;
+        }
+        List<Article> merged = mergeNewer(cached.articles, newer.articles, limit);
+        if (merged == cached.articles) {
+            return cached;
+        }
+        // The validators were those of the old page, the server's page has changed since
+        return new ArticleCache.Entry(merged, null, null);
+    }
+
+    /**
+     * Returns the given newer articles that are not in the current list yet, followed by the
+     * current ones, cut to the given number of articles. Returns the current list itself if
+     * none of the newer articles is new.
+     */
+    static List<Article> mergeNewer(List<Article> current, List<Article> newer, int limit) {
+        Set<String> urls = new HashSet<>();
+        for (Article article : current) {
+            urls.add(article.getUrl());
+        }
+        List<Article> added = new ArrayList<>();
+        for (Article article : newer) {
+            if (urls.add(article.getUrl())) {
+                added.add(article);
+            }
+        }
+        if (added.isEmpty()) {
+            return current;
+        }
+        int size = Math.min(Math.max(limit, current.size()), added.size() + current.size());
+        List<Article> merged = new ArrayList<>(size);
+        merged.addAll(added.subList(0, Math.min(added.size(), size)));
+        for (int i = 0; merged.size() < size; i++) {
+            merged.add(current.get(i));
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the canonical Guardian API search URL for the given query, see {@link GuardianQuery}.
+     */
+    public static String buildSearchUrl(String query) {
+        return GuardianQuery.search(query).toUrl();
+    }
+
+    /**
+     * Returns the canonical Guardian API URL for the latest articles of the given section id.
+     */
+    public static String buildSectionUrl(String section) {
+        return GuardianQuery.section(section).toUrl();
+    }
+
+    /**
+     * Returns the given search URL restricted to one page of results, in canonical form.
+     *
+     * @param requestUrl search URL
+     * @param page       page number, starting from 1
+     * @param pageSize   number of results per page
+     */
+    public static String buildPageUrl(String requestUrl, int page, int pageSize) {
+        return GuardianQuery.fromUrl(requestUrl).page(page).pageSize(pageSize).build().toUrl();
+    }
+
+    /**
+     * Returns the given search URL restricted to the articles published at or after the given
+     * time, newest first, so that a refresh only downloads what is new.
+     *
+     * @param requestUrl search URL
+     * @param fromMillis publication time of the newest article seen so far
+     */
+    public static String buildNewerUrl(String requestUrl, long fromMillis) {
+        return GuardianQuery.fromUrl(requestUrl)
+                .orderBy(GuardianQuery.ORDER_NEWEST)
+                .fromDate(fromMillis)
+                .build().toUrl();
+    }
+
+    /**
+     * Returns the Content API URL of the body of the article with the given web URL, or null
+     * if the web URL has no path to take the article's id from.
+     *
+     * @param contentApiUrl address of the Content API, without a trailing slash
+     * @param articleUrl    web URL of the article, as in {@link Article#getUrl()}
+     */
+    public static String buildBodyUrl(String contentApiUrl, String articleUrl) {
+        String path;
+        try {
+            path = new URL(articleUrl).getPath();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+        if (path.length() <= 1) {
+            return null;
+        }
+        return contentApiUrl + path + BODY_QUERY;
+    }
+
+    /**
+     * Fetches the HTML body of one article from the Content API and returns it, or null if the
+     * request failed, was not sent because of the rate limit, or the article has no body.
+     *
+     * @param bodyUrl  URL built by {@link #buildBodyUrl}
+     * @param usage    receives the time and bytes the request took, or null
+     * @param priority of the request in the {@link RequestScheduler}
+     */
+    public static String fetchArticleBody(String bodyUrl, CancellationToken cancellation,
+                                          RequestTimings usage, int priority) {
+        URL url = createUrl(bodyUrl);
+        if (url == null || cancellation.isCanceled()) {
+            return null;
+        }
+        HttpTransport.Response response = null;
+        try {
+            response = transport.execute(url, new HashMap<String, String>(), cancellation,
+                    scheduler.gate(priority));
+            if (response.getCode() != HttpURLConnection.HTTP_OK) {
+                Log.e(LOG_TAG, "Error response code: " + response.getCode());
+                return null;
+            }
+            return extractBodyFromStream(response.getBody());
+        } catch (HttpTransport.NotSentException e) {
+            Log.v(LOG_TAG, "Not sent while rate limited or canceled " + url);
+            return null;
+        } catch (IOException e) {
+            if (!cancellation.isCanceled()) {
+                Log.e(LOG_TAG, "Problem retrieving the article body.", e);
+            }
+            return null;
+        } finally {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (IOException ignored) {
+                }
+                if (usage != null) {
+                    usage.add(response.getTimings());
+                    usage.responseCode = response.getCode();
+                }
+                recordTimings(response.getTimings());
+            }
+        }
+    }
+
+    /**
+     * Returns the "response.content.fields.body" string of a Content API response, or null if
+     * it has none. Everything else is skipped.
+     */
+    static String extractBodyFromStream(InputStream inputStream) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            return readPath(reader, KEY_RESPONSE, KEY_CONTENT, KEY_FIELDS, KEY_BODY);
+        } catch (IllegalStateException e) {
+            Log.e(LOG_TAG, "Problem parsing the article body", e);
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the object at the reader and returns the string found by following the given names
+     * into nested objects, or null if there is none.
+     */
+    private static String readPath(JsonReader reader, String... names) throws IOException {
+        String value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            boolean onPath = names[0].equals(reader.nextName());
+            if (onPath && names.length == 1 && reader.peek() == JsonToken.STRING) {
+                value = reader.nextString();
+            } else if (onPath && names.length > 1 && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                value = readPath(reader, Arrays.copyOfRange(names, 1, names.length));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return value;
     }
 
     /**
      * Returns new URL object from the given string URL.
      */
     private static URL createUrl(String stringUrl) {
+        long start = Metrics.now();
         URL url = null;
         try {
             url = new URL(stringUrl);
         } catch (MalformedURLException e) {
             Log.e(LOG_TAG, "Problem building the URL ", e);
         }
+        Metrics.CREATE_URL.recordSince(start);
         return url;
     }
 
     /**
-     * Make an HTTP request to the given URL and return a String as the response.
+     * Make an HTTP request to the given URL, conditional on the validators of the cached entry
+     * if there is one, and return the {@link Article}s parsed from the response body, the cached
+     * entry if it is still valid, or null if the request failed.
+     * <p>
+     * A cached entry that is still fresh according to the Cache-Control header of its response
+     * is returned without sending any request.
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
+    private static ArticleCache.Entry makeHttpRequest(URL url, FeedParser parser, ArticleCache.Entry cached,
+                                                      CancellationToken cancellation,
+                                                      RequestTimings usage, int priority) throws IOException {
+        ArticleCache.Entry entry = null;
+
+        // If the URL is null or the request has been canceled, then return early.
+        if (url == null || cancellation.isCanceled()) {
+            return entry;
+        }
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            Metrics.HTTP_CACHE_FRESH.increment();
+            recordSaved(cached, cached.bodyBytes);
+            return cached;
+        }
+        long start = Metrics.now();
 
-        // If the URL is null, then return early.
-        if (url == null) {
-            return jsonResponse;
+        // Send the validators of the cached entry along, so the server can answer 304
+        Map<String, String> headers = new HashMap<>();
+        if (cached != null && cached.etag != null) {
+            headers.put("If-None-Match", cached.etag);
+        }
+        if (cached != null && cached.lastModified != null) {
+            headers.put("If-Modified-Since", cached.lastModified);
         }
 
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
+        HttpTransport.Response response = null;
+        List<Article> articles = null;
+        long parseMicros = 0;
         try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(10000 /* milliseconds */);
-            urlConnection.setConnectTimeout(15000 /* milliseconds */);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
+            // Every attempt at the Guardian API waits for the rate limit of the key, or gives up
+            // and lets the caller fall back to what it has. Other sites have limits of their own,
+            // which must neither take the key's tokens nor pause the searches.
+            HttpTransport.Gate gate = parser == GUARDIAN_PARSER
+                    ? scheduler.gate(priority) : HttpTransport.Gate.OPEN;
+            response = transport.execute(url, headers, cancellation, gate);
 
             // If the request was successful (response code 200),
-            // then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
+            // then parse the response while it is being read from the input stream.
+            if (response.getCode() == HttpURLConnection.HTTP_OK) {
+                long parseStart = Metrics.now();
+                articles = parser.parse(response.getBody());
+                parseMicros = (Metrics.now() - parseStart) / 1000;
+            } else if (cached != null && response.getCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                // The cached articles are still up to date, and nothing needs to be parsed
+                entry = cached.revalidated(freshUntilMillis(response, System.currentTimeMillis()));
+                Metrics.HTTP_CACHE_NOT_MODIFIED.increment();
+                recordSaved(cached, cached.bodyBytes - response.getTimings().getBodyBytes());
             } else {
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
+                Log.e(LOG_TAG, "Error response code: " + response.getCode());
             }
+        } catch (HttpTransport.NotSentException e) {
+            Log.v(LOG_TAG, "Not sent while rate limited or canceled " + url);
         } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the article JSON results.", e);
+            if (cancellation.isCanceled()) {
+                // A newer request superseded this one, the partial result is not needed
+                Log.v(LOG_TAG, "Canceled " + url);
+            } else {
+                Log.e(LOG_TAG, "Problem retrieving the article JSON results.", e);
+            }
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
+            if (response != null) {
+                // Closing the response could throw an IOException, which is why
+                // the makeHttpRequest(URL url, ...) method signature
+                // specifies than an IOException could be thrown.
+                response.close();
+                Log.v(LOG_TAG, url + " " + response.getTimings());
+                if (usage != null) {
+                    usage.add(response.getTimings());
+                    usage.responseCode = response.getCode();
+                }
+                recordTimings(response.getTimings());
             }
-            if (inputStream != null) {
-                // Closing the input stream could throw an IOException, which is why
-                // the makeHttpRequest(URL url) method signature specifies than an IOException
-                // could be thrown.
-                inputStream.close();
+            Metrics.HTTP_REQUEST.recordSince(start);
+        }
+        if (articles != null) {
+            // The size of the body is only known once it has been read to the end and closed
+            entry = new ArticleCache.Entry(articles,
+                    response.getHeader("ETag"),
+                    response.getHeader("Last-Modified"),
+                    freshUntilMillis(response, System.currentTimeMillis()),
+                    response.getTimings().getBodyBytes(), parseMicros);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns until when the response may be used without revalidating it, from the max-age of
+     * its Cache-Control header less its Age, 0 if it must be revalidated every time, or
+     * {@link ArticleCache.Entry#NOT_STORABLE} if it must not be stored at all.
+     */
+    static long freshUntilMillis(HttpTransport.Response response, long nowMillis) {
+        String cacheControl = response.getHeader("Cache-Control");
+        if (cacheControl == null) {
+            return 0;
+        }
+        long maxAgeSeconds = -1;
+        for (String directive : cacheControl.toLowerCase(Locale.US).split(",")) {
+            directive = directive.trim();
+            if (directive.equals("no-store")) {
+                return ArticleCache.Entry.NOT_STORABLE;
+            } else if (directive.equals("no-cache")) {
+                return 0;
+            } else if (directive.startsWith("max-age=")) {
+                maxAgeSeconds = parseSeconds(directive.substring("max-age=".length()));
             }
         }
-        return jsonResponse;
+        if (maxAgeSeconds <= 0) {
+            return 0;
+        }
+        // Time the response already spent in caches on the way
+        long ageSeconds = Math.max(0, parseSeconds(response.getHeader("Age")));
+        return maxAgeSeconds > ageSeconds ? nowMillis + (maxAgeSeconds - ageSeconds) * 1000 : 0;
+    }
+
+    /**
+     * Returns the number of seconds of a header value, or -1 if it isn't one.
+     */
+    private static long parseSeconds(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim().replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Adds what using the cached entry instead of downloading and parsing its response again
+     * saved to the metrics.
+     */
+    private static void recordSaved(ArticleCache.Entry cached, long bytesSaved) {
+        Metrics.HTTP_CACHE_BYTES_SAVED.add(Math.max(0, bytesSaved));
+        Metrics.HTTP_CACHE_PARSE_SAVED.add(cached.parseMicros);
+    }
+
+    /**
+     * Adds the phases of a request to the metrics.
+     */
+    private static void recordTimings(RequestTimings timings) {
+        // Connect only happens on new connections, don't count the reused ones as 0
+        if (timings.getConnectMillis() > 0) {
+            Metrics.HTTP_CONNECT.record(timings.getConnectMillis() * 1000);
+        }
+        Metrics.HTTP_TIME_TO_FIRST_BYTE.record(timings.getTimeToFirstByteMillis() * 1000);
+        Metrics.HTTP_BODY.record(timings.getBodyMillis() * 1000);
+        Metrics.HTTP_BODY_BYTES.record(timings.getBodyBytes());
+    }
+
+    /**
+     * Return a list of {@link Article} objects parsed token by token from the given JSON stream.
+     * Only the "response.results" array is materialized, everything else is skipped, so the
+     * whole body never has to be held in memory as a String or a JSONObject tree.
+     */
+    static List<Article> extractArticlesFromStream(InputStream inputStream) throws IOException {
+        long start = Metrics.now();
+        List<Article> articles = new ArrayList<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (KEY_RESPONSE.equals(reader.nextName())) {
+                    readResponse(reader, articles);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            // The body is not shaped like a Guardian response; keep whatever was parsed so far
+            Log.e(LOG_TAG, "Problem parsing the article JSON results", e);
+        } finally {
+            reader.close();
+        }
+        Metrics.PARSE_STREAM.recordSince(start);
+        return articles;
+    }
+
+    /**
+     * Read the "response" object and add every entry of its "results" array to the list.
+     */
+    private static void readResponse(JsonReader reader, List<Article> articles) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (KEY_RESULTS.equals(reader.nextName())) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Article article = readArticle(reader);
+                    if (article != null) {
+                        articles.add(article);
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read a single result object into an {@link Article}, or return null if one of the
+     * fields the list needs is missing.
+     */
+    private static Article readArticle(JsonReader reader) throws IOException {
+        String title = null;
+        String section = null;
+        String url = null;
+        String date = null;
+        String thumbnailUrl = null;
+        List<String> contributors = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if (KEY_WEB_TITLE.equals(name)) {
+                title = reader.nextString();
+            } else if (KEY_SECTION_NAME.equals(name)) {
+                section = reader.nextString();
+            } else if (KEY_WEB_URL.equals(name)) {
+                url = reader.nextString();
+            } else if (KEY_PUBLICATION_DATE.equals(name)) {
+                date = reader.nextString();
+            } else if (KEY_TAGS.equals(name)) {
+                readContributors(reader, contributors);
+            } else if (KEY_FIELDS.equals(name)) {
+                thumbnailUrl = readThumbnail(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (title == null || section == null || url == null || date == null) {
+            Log.e(LOG_TAG, "Skipping article with missing fields: " + url);
+            return null;
+        }
+        return new Article(title, contributors, Article.parseDate(date), section, url, thumbnailUrl);
+    }
+
+    /**
+     * Read the "fields" object and return its thumbnail URL, or null if it has none.
+     */
+    private static String readThumbnail(JsonReader reader) throws IOException {
+        String thumbnailUrl = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (KEY_THUMBNAIL.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                thumbnailUrl = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return thumbnailUrl;
+    }
+
+    /**
+     * Add the name of every contributor tag to the list.
+     */
+    private static void readContributors(JsonReader reader, List<String> contributors)
+            throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (KEY_WEB_TITLE.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                    contributors.add(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Delete the time information of a webPublicationDate and leave only the date.
+     */
+    static String trimPublicationDate(String date) {
+        return date.substring(0, date.length() - 10);
     }
 
     /**
      * Convert the {@link InputStream} into a String which contains the
      * whole JSON response from the server.
+     * <p>
+     * Superseded by {@link #extractArticlesFromStream(InputStream)}, kept for comparison.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
+    static String readFromStream(InputStream inputStream) throws IOException {
+        long start = Metrics.now();
         StringBuilder output = new StringBuilder();
         if (inputStream != null) {
             InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
@@ -139,20 +741,24 @@ public final class QueryUtils {
                 line = reader.readLine();
             }
         }
+        Metrics.READ_FROM_STREAM.recordSince(start);
         return output.toString();
     }
 
     /**
      * Return a list of {@link Article} objects that has been built up from
      * parsing the given JSON response.
+     * <p>
+     * Superseded by {@link #extractArticlesFromStream(InputStream)}, kept for comparison.
      */
-    private static List<Article> extractFeatureFromJson(String articlesJSON) {
+    static List<Article> extractFeatureFromJson(String articlesJSON) {
 
 
         // If the JSON string is empty or null, then return early.
         if (TextUtils.isEmpty(articlesJSON)) {
             return null;
         }
+        long start = Metrics.now();
 
         // Create an empty ArrayList that we can start adding articles to
         List<Article> articles = new ArrayList<>();
@@ -185,7 +791,7 @@ public final class QueryUtils {
                 // Extract the value for the key called KEY_WEB_URL
                 String date = results.getString(KEY_PUBLICATION_DATE);
                 //delete the time information and leave only the date
-                date = date.substring(0, date.length() - 10);
+                date = trimPublicationDate(date);
                 String allContributors = "";
 
                 JSONArray tagsArray = results.getJSONArray(KEY_TAGS);
@@ -220,6 +826,7 @@ public final class QueryUtils {
             Log.e("QueryUtils", "Problem parsing the article JSON results", e);
 
         }
+        Metrics.EXTRACT_FROM_JSON.recordSince(start);
 
 
         // Return the list of articles
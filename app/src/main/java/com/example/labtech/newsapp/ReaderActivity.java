@@ -0,0 +1,139 @@
+package com.example.labtech.newsapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.support.v7.app.AppCompatActivity;
+import android.text.Html;
+import android.text.Spanned;
+import android.text.method.LinkMovementMethod;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.Button;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+
+/**
+ * Shows the body of one article inside the app. Bodies of rows that were on screen are usually
+ * prefetched by {@link ArticleBodies} and show without a network request, the others are fetched
+ * while the title and byline are already shown.
+ */
+public class ReaderActivity extends AppCompatActivity {
+
+    /**
+     * Key of the article in the intent extras
+     */
+    private static final String EXTRA_ARTICLE = "article";
+
+    @BindView(R.id.reader_title)
+    TextView titleView;
+    @BindView(R.id.reader_byline)
+    TextView bylineView;
+    @BindView(R.id.reader_loading_indicator)
+    ProgressBar loadingIndicator;
+    @BindView(R.id.reader_body)
+    TextView bodyView;
+    @BindView(R.id.reader_open_in_browser)
+    Button openInBrowserButton;
+
+    /**
+     * Delivers the body on the main thread
+     */
+    private final Handler handler = new Handler();
+    /**
+     * Cancels the load of the body when the reader is closed first
+     */
+    private final CancellationToken cancellation = new CancellationToken();
+    private Article article;
+
+    /**
+     * Opens the reader on the given article.
+     */
+    public static void start(Context context, Article article) {
+        Intent intent = new Intent(context, ReaderActivity.class);
+        intent.putExtra(EXTRA_ARTICLE, article);
+        context.startActivity(intent);
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.reader_activity);
+        ButterKnife.bind(this);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+        article = getIntent().getParcelableExtra(EXTRA_ARTICLE);
+        setTitle(article.getSection());
+        titleView.setText(article.getTitle());
+        String date = article.getDatePublished();
+        bylineView.setText(date.isEmpty() ? article.getContributor()
+                : getString(R.string.reader_byline, article.getContributor(), date));
+        bodyView.setMovementMethod(LinkMovementMethod.getInstance());
+        openInBrowserButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(article.getUrl())));
+            }
+        });
+
+        // Only show the spinner if the body does not come from the cache in a moment
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                loadingIndicator.setVisibility(View.VISIBLE);
+            }
+        }, getResources().getInteger(R.integer.reader_spinner_delay_millis));
+        ArticleBodies.getInstance(this).load(article, cancellation, new ArticleBodies.Listener() {
+            @Override
+            public void onBody(final String body) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        showBody(body);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    protected void onDestroy() {
+        cancellation.cancel();
+        handler.removeCallbacksAndMessages(null);
+        super.onDestroy();
+    }
+
+    private void showBody(String body) {
+        handler.removeCallbacksAndMessages(null);
+        loadingIndicator.setVisibility(View.GONE);
+        if (body == null) {
+            bodyView.setText(R.string.body_not_available);
+            return;
+        }
+        bodyView.setText(fromHtml(body));
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Spanned fromHtml(String html) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return Html.fromHtml(html, Html.FROM_HTML_MODE_LEGACY);
+        }
+        return Html.fromHtml(html);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.labtech.newsapp;
+
+/**
+ * A loader of a first page of articles that can be refreshed with only the articles published
+ * since the page was loaded, for pull-to-refresh.
+ */
+public interface Refreshable {
+
+    /**
+     * Loads the articles published since the newest one loaded and delivers them merged in
+     * front of the page. Called on the main thread.
+     *
+     * @param onRefreshed runs on the main thread once the refresh is done, also when nothing
+     *                    new was published or the request failed
+     */
+    void refresh(Runnable onRefreshed);
+}
@@ -0,0 +1,316 @@
+package com.example.labtech.newsapp;
+
+import android.util.Log;
+
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the requests to the Guardian API may be sent, so that the app stays within the
+ * rate limit of its API key.
+ * <p>
+ * Requests take a token from a bucket that holds as many tokens as the key may send in a burst
+ * and refills at the rate of the key. Requests waiting for a token are let through by priority,
+ * searches of the user ahead of prefetches and syncs, and in the order they came within the same
+ * priority.
+ * <p>
+ * When the server answers 429 Too Many Requests, no request is sent until the time given by its
+ * Retry-After header. Requests that would have to wait longer than their priority allows for
+ * that are not sent at all, so that the caller shows its cached articles right away instead of
+ * a spinner or an empty list.
+ */
+public class RequestScheduler {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = RequestScheduler.class.getSimpleName();
+
+    /**
+     * Priority of the requests the user waits for
+     */
+    public static final int PRIORITY_USER = 0;
+
+    /**
+     * Priority of the requests made ahead of time, like prefetches and syncs
+     */
+    public static final int PRIORITY_BACKGROUND = 1;
+
+    /**
+     * Pause after a 429 response without a usable Retry-After header, and the longest pause
+     * a Retry-After header can ask for
+     */
+    private static final long DEFAULT_PAUSE_MILLIS = 30000;
+    private static final long MAX_PAUSE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * The time of the JVM, which only goes forward
+     */
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    private final Clock clock;
+
+    /**
+     * Number of tokens the bucket holds at most
+     */
+    private final int capacity;
+
+    /**
+     * Time it takes to add one token to the bucket
+     */
+    private final long refillNanos;
+
+    /**
+     * Longest a request of each priority waits for a pause requested by the server to end
+     */
+    private final long[] maxPauseWaitNanos;
+
+    /**
+     * Requests waiting for a token, the one at the head goes next
+     */
+    private final PriorityQueue<Waiter> waiting = new PriorityQueue<>();
+
+    /**
+     * Tokens in the bucket as of {@link #refilledAtNanos}, fractions of a token included
+     */
+    private double tokens;
+    private long refilledAtNanos;
+
+    /**
+     * No request is sent before this time, given by the last 429 response
+     */
+    private long pausedUntilNanos;
+
+    /**
+     * Number of requests that asked for a token so far, orders requests of the same priority
+     */
+    private long sequence;
+
+    /**
+     * Constructs a new {@link RequestScheduler} with a full bucket.
+     *
+     * @param capacity                 number of requests that may be sent in a burst
+     * @param requestsPerSecond        number of requests that may be sent per second in the long run
+     * @param userMaxPauseMillis       longest a search of the user waits for a pause to end
+     * @param backgroundMaxPauseMillis longest a background request waits for a pause to end
+     */
+    public RequestScheduler(int capacity, double requestsPerSecond, long userMaxPauseMillis,
+                            long backgroundMaxPauseMillis) {
+        this(capacity, requestsPerSecond, userMaxPauseMillis, backgroundMaxPauseMillis, SYSTEM_CLOCK);
+    }
+
+    /**
+     * Constructs a new {@link RequestScheduler} with a full bucket, that refills and ends its
+     * pauses by the given clock.
+     *
+     * @param capacity                 number of requests that may be sent in a burst
+     * @param requestsPerSecond        number of requests that may be sent per second in the long run
+     * @param userMaxPauseMillis       longest a search of the user waits for a pause to end
+     * @param backgroundMaxPauseMillis longest a background request waits for a pause to end
+     * @param clock                    tells the current time
+     */
+    public RequestScheduler(int capacity, double requestsPerSecond, long userMaxPauseMillis,
+                            long backgroundMaxPauseMillis, Clock clock) {
+        this.capacity = capacity;
+        this.refillNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        this.maxPauseWaitNanos = new long[]{
+                TimeUnit.MILLISECONDS.toNanos(userMaxPauseMillis),
+                TimeUnit.MILLISECONDS.toNanos(backgroundMaxPauseMillis)};
+        this.clock = clock;
+        this.tokens = capacity;
+        this.refilledAtNanos = clock.nanoTime();
+        this.pausedUntilNanos = refilledAtNanos;
+    }
+
+    /**
+     * Waits until a request of the given priority may be sent and takes a token for it.
+     *
+     * @param priority     {@link #PRIORITY_USER} or {@link #PRIORITY_BACKGROUND}
+     * @param cancellation aborts the wait, the token becomes the caller's once this returns
+     * @return false if the request should not be sent, because it has been canceled or because
+     * the server asked for a pause longer than the priority allows to wait
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public boolean acquire(int priority, CancellationToken cancellation) throws InterruptedIOException {
+        long start = Metrics.now();
+        Waiter waiter;
+        synchronized (this) {
+            waiter = new Waiter(priority, sequence++);
+            waiting.add(waiter);
+        }
+        // Wakes the waiting thread up
+        Runnable wakeUp = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (RequestScheduler.this) {
+                    RequestScheduler.this.notifyAll();
+                }
+            }
+        };
+        cancellation.addOnCancelListener(wakeUp);
+        try {
+            synchronized (this) {
+                while (true) {
+                    if (cancellation.isCanceled()) {
+                        return false;
+                    }
+                    long now = clock.nanoTime();
+                    long pauseNanos = pausedUntilNanos - now;
+                    if (pauseNanos > maxPauseWaitNanos[priority]) {
+                        Metrics.REQUEST_THROTTLED.increment();
+                        return false;
+                    }
+                    refill(now);
+                    long waitNanos = Math.max(pauseNanos, tokens >= 1 ? 0 : (long) ((1 - tokens) * refillNanos));
+                    if (waitNanos <= 0 && waiting.peek() == waiter) {
+                        tokens--;
+                        Metrics.REQUEST_SCHEDULE_WAIT.recordSince(start);
+                        return true;
+                    }
+                    // The head of the queue is woken up when its wait is over, the others when
+                    // the head is gone
+                    if (waiting.peek() == waiter) {
+                        TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitNanos, 1));
+                    } else {
+                        wait();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to send the request");
+        } finally {
+            cancellation.removeOnCancelListener(wakeUp);
+            synchronized (this) {
+                waiting.remove(waiter);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the gate through which every attempt of a request of the given priority takes a
+     * token, retries included, and which tells the scheduler the status of its responses.
+     *
+     * @param priority {@link #PRIORITY_USER} or {@link #PRIORITY_BACKGROUND}
+     */
+    public HttpTransport.Gate gate(final int priority) {
+        return new HttpTransport.Gate() {
+            @Override
+            public boolean acquire(CancellationToken cancellation) throws InterruptedIOException {
+                return RequestScheduler.this.acquire(priority, cancellation);
+            }
+
+            @Override
+            public void onResponse(int code, String retryAfter) {
+                RequestScheduler.this.onResponse(code, retryAfter);
+            }
+        };
+    }
+
+    /**
+     * Tells the scheduler the status of a response, so that it pauses when the server asks for
+     * it with 429 Too Many Requests.
+     *
+     * @param code       HTTP status code of the response
+     * @param retryAfter Retry-After header of the response, in seconds or as an HTTP date,
+     *                   or null
+     */
+    public void onResponse(int code, String retryAfter) {
+        boolean tooManyRequests = code == 429;
+        if (!tooManyRequests && !(code == HttpURLConnection.HTTP_UNAVAILABLE && retryAfter != null)) {
+            return;
+        }
+        long pauseMillis = parseRetryAfter(retryAfter, System.currentTimeMillis());
+        if (pauseMillis < 0) {
+            pauseMillis = tooManyRequests ? DEFAULT_PAUSE_MILLIS : 0;
+        }
+        pauseMillis = Math.min(pauseMillis, MAX_PAUSE_MILLIS);
+        Log.w(LOG_TAG, "Rate limited with " + code + ", pausing requests for " + pauseMillis + " ms");
+        synchronized (this) {
+            long now = clock.nanoTime();
+            pausedUntilNanos = Math.max(pausedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(pauseMillis));
+            // The server counted more requests than the bucket did, start again from empty
+            tokens = 0;
+            refilledAtNanos = now;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns true while requests are paused at the request of the server.
+     */
+    public synchronized boolean isPaused() {
+        return pausedUntilNanos - clock.nanoTime() > 0;
+    }
+
+    /**
+     * Returns how many milliseconds after the given time the Retry-After header asks to wait,
+     * or -1 if it can't be parsed.
+     */
+    static long parseRetryAfter(String retryAfter, long nowMillis) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        String value = retryAfter.trim();
+        try {
+            long seconds = Long.parseLong(value);
+            return seconds < 0 ? -1 : TimeUnit.SECONDS.toMillis(seconds);
+        } catch (NumberFormatException e) {
+            // Not delay seconds, an HTTP date then
+        }
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(format.parse(value).getTime() - nowMillis, 0);
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (double) (now - refilledAtNanos) / refillNanos);
+        refilledAtNanos = now;
+    }
+
+    /**
+     * Tells the current time in nanoseconds, from an arbitrary origin like
+     * {@link System#nanoTime()}.
+     */
+    public interface Clock {
+
+        long nanoTime();
+    }
+
+    /**
+     * A request waiting for a token.
+     */
+    private static class Waiter implements Comparable<Waiter> {
+        final int priority;
+        final long sequence;
+
+        Waiter(int priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
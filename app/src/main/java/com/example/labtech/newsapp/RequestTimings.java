@@ -0,0 +1,88 @@
+package com.example.labtech.newsapp;
+
+/**
+ * Where the time of a single HTTP request went. Every phase is in milliseconds and is 0 when it
+ * did not happen, for example DNS and connect when a pooled connection was reused.
+ */
+public class RequestTimings {
+
+    /**
+     * Time spent resolving the host name
+     */
+    long dnsMillis;
+
+    /**
+     * Time spent opening the connection, including the TLS handshake
+     */
+    long connectMillis;
+
+    /**
+     * Time from sending the request until the first byte of the response arrived
+     */
+    long timeToFirstByteMillis;
+
+    /**
+     * Time spent reading the body
+     */
+    long bodyMillis;
+
+    /**
+     * Number of body bytes read off the network, before decompression
+     */
+    long bodyBytes;
+
+    /**
+     * Number of attempts it took, more than 1 if the request was retried
+     */
+    int attempts = 1;
+
+    /**
+     * Status code of the response, 0 if no response came back
+     */
+    int responseCode;
+
+    public long getDnsMillis() {
+        return dnsMillis;
+    }
+
+    public long getConnectMillis() {
+        return connectMillis;
+    }
+
+    public long getTimeToFirstByteMillis() {
+        return timeToFirstByteMillis;
+    }
+
+    public long getBodyMillis() {
+        return bodyMillis;
+    }
+
+    public long getBodyBytes() {
+        return bodyBytes;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    /**
+     * Adds the time and bytes of another request to these, to total up several requests.
+     */
+    void add(RequestTimings other) {
+        dnsMillis += other.dnsMillis;
+        connectMillis += other.connectMillis;
+        timeToFirstByteMillis += other.timeToFirstByteMillis;
+        bodyMillis += other.bodyMillis;
+        bodyBytes += other.bodyBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "dns=" + dnsMillis + "ms connect=" + connectMillis + "ms ttfb=" + timeToFirstByteMillis
+                + "ms body=" + bodyMillis + "ms bytes=" + bodyBytes + " attempts=" + attempts;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.labtech.newsapp;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HttpTransport} that retries the requests of another transport with exponential
+ * backoff when they fail with an I/O error or a 5xx server error.
+ * <p>
+ * Every retry passes the gate of the request again, and canceling the request ends the backoff.
+ */
+public class RetryingTransport implements HttpTransport {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = RetryingTransport.class.getSimpleName();
+
+    private final HttpTransport delegate;
+
+    /**
+     * Total number of attempts per request, including the first one
+     */
+    private final int maxAttempts;
+
+    /**
+     * Delay before the first retry, doubled before every further retry
+     */
+    private final long initialBackoffMillis;
+
+    /**
+     * Constructs a new {@link RetryingTransport}.
+     *
+     * @param delegate             transport that performs the requests
+     * @param maxAttempts          total number of attempts per request, including the first one
+     * @param initialBackoffMillis delay before the first retry, doubled before every further retry
+     */
+    public RetryingTransport(HttpTransport delegate, int maxAttempts, long initialBackoffMillis) {
+        this.delegate = delegate;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    @Override
+    public Response execute(URL url, Map<String, String> headers, CancellationToken cancellation, Gate gate)
+            throws IOException {
+        long backoffMillis = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // Every attempt passes the gate, so that retries count against the rate limit too
+                Response response = delegate.execute(url, headers, cancellation, gate);
+                if (response.getCode() < 500 || attempt == maxAttempts || cancellation.isCanceled()) {
+                    response.getTimings().attempts = attempt;
+                    return response;
+                }
+                Log.e(LOG_TAG, "Error response code " + response.getCode() + ", attempt " + attempt);
+                response.close();
+            } catch (NotSentException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt == maxAttempts || cancellation.isCanceled()) {
+                    throw e;
+                }
+                Log.e(LOG_TAG, "Problem making the HTTP request, attempt " + attempt, e);
+            }
+            sleep(backoffMillis, cancellation);
+            backoffMillis *= 2;
+        }
+    }
+
+    /**
+     * Waits for the given time, or until the request is canceled.
+     *
+     * @throws InterruptedIOException if the request has been canceled or the thread interrupted
+     */
+    private static void sleep(long millis, CancellationToken cancellation) throws IOException {
+        final Object lock = new Object();
+        Runnable wakeUp = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    lock.notifyAll();
+                }
+            }
+        };
+        cancellation.addOnCancelListener(wakeUp);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            synchronized (lock) {
+                long remaining = deadline - System.nanoTime();
+                while (remaining > 0 && !cancellation.isCanceled()) {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    remaining = deadline - System.nanoTime();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        } finally {
+            cancellation.removeOnCancelListener(wakeUp);
+        }
+        if (cancellation.isCanceled()) {
+            throw new InterruptedIOException("Canceled while waiting to retry");
+        }
+    }
+}
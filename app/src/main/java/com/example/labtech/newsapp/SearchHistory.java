@@ -0,0 +1,75 @@
+package com.example.labtech.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts how often every query has been searched, so that the most searched ones can be
+ * fetched ahead of time by {@link SyncService}.
+ */
+public class SearchHistory {
+
+    /**
+     * Name of the preferences file holding the count of every query
+     */
+    private static final String PREFERENCES_NAME = "search_history";
+
+    /**
+     * Number of queries remembered, the least searched ones are forgotten first
+     */
+    private static final int MAX_QUERIES = 50;
+
+    private final SharedPreferences preferences;
+
+    /**
+     * Constructs a new {@link SearchHistory}.
+     */
+    public SearchHistory(Context context) {
+        preferences = context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Counts one more search of the query. The default feed, the empty query, is not counted.
+     */
+    public void record(String query) {
+        if (query.isEmpty()) {
+            return;
+        }
+        SharedPreferences.Editor editor = preferences.edit();
+        editor.putInt(query, preferences.getInt(query, 0) + 1);
+        List<String> queries = sortedQueries();
+        for (int i = MAX_QUERIES; i < queries.size(); i++) {
+            if (!queries.get(i).equals(query)) {
+                editor.remove(queries.get(i));
+            }
+        }
+        editor.apply();
+    }
+
+    /**
+     * Returns up to the given number of queries, most searched first.
+     */
+    public List<String> getTopQueries(int count) {
+        List<String> queries = sortedQueries();
+        return queries.subList(0, Math.min(count, queries.size()));
+    }
+
+    private List<String> sortedQueries() {
+        final Map<String, ?> counts = preferences.getAll();
+        List<String> queries = new ArrayList<>(counts.keySet());
+        Collections.sort(queries, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return ((Integer) counts.get(b)).compareTo((Integer) counts.get(a));
+            }
+        });
+        return queries;
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.labtech.newsapp;
+
+import android.content.Context;
+import android.content.Loader;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads one page of the home feed: the newest articles of several sections published before the
+ * end of the previous page, requested at once and merged into one timeline by
+ * {@link FeedFanOut#loadPage}. Pages hold any number of articles, and the loader tells whether a
+ * page is the last one, see {@link #isLastPage()}.
+ * <p>
+ * Unlike {@link NewsLoader}, which delivers the cached page and then the fresh one, this delivers
+ * the timeline every time one of the sections completes, so the feed shows up as soon as the
+ * fastest section is in rather than when the slowest one is. A {@link #refresh} only fetches the
+ * articles of every section published since the newest one it has.
+ */
+public class SectionFeedLoader extends Loader<List<Article>> implements Refreshable {
+
+    /**
+     * Number of sections requested at the same time, by every loader of the app together
+     */
+    private static final int MAX_PARALLEL_REQUESTS = 4;
+
+    private static final Executor EXECUTOR = Executors.newFixedThreadPool(MAX_PARALLEL_REQUESTS);
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final FeedFanOut fanOut;
+
+    /**
+     * Page URLs of the sections
+     */
+    private final List<String> urls;
+
+    /**
+     * Number of results per page of each section
+     */
+    private final int sectionPageSize;
+
+    /**
+     * End of the previous page, or 0 for the first page
+     */
+    private final long beforeMillis;
+
+    /**
+     * Timeline delivered last, null before the first delivery
+     */
+    private List<Article> timeline;
+
+    /**
+     * Whether the timeline delivered last is the last page of the feed
+     */
+    private boolean lastPage;
+
+    /**
+     * Whether the timeline delivered last holds every section
+     */
+    private boolean complete;
+
+    /**
+     * Lets a newer load or a reset abort the requests of the current one
+     */
+    private CancellationToken cancellation;
+
+    /**
+     * True when the next load should only fetch the articles newer than the delivered ones
+     */
+    private boolean refreshPending;
+
+    /**
+     * Runs when the pending refresh is done, or null
+     */
+    private Runnable onRefreshed;
+
+    /**
+     * Constructs a new {@link SectionFeedLoader}.
+     *
+     * @param context         of the activity
+     * @param sections        Guardian section ids, such as "world"
+     * @param beforeMillis    publication time of the last article of the previous page, or 0
+     *                        for the first page
+     * @param sectionPageSize number of results per page of each section
+     */
+    public SectionFeedLoader(Context context, List<String> sections, long beforeMillis, int sectionPageSize) {
+        super(context);
+        this.fanOut = new FeedFanOut(EXECUTOR, ArticleCache.getInstance(context),
+                OfflineQueue.getInstance(context));
+        this.sectionPageSize = sectionPageSize;
+        this.beforeMillis = beforeMillis;
+        this.urls = pageUrls(sections, beforeMillis, sectionPageSize);
+    }
+
+    /**
+     * Returns the Guardian section ids of the home feed.
+     */
+    public static List<String> homeSections(Context context) {
+        return Arrays.asList(context.getResources().getStringArray(R.array.home_sections));
+    }
+
+    /**
+     * Returns the number of results per page of each section, so that the sections together
+     * ask for about as many articles as a page of a search.
+     *
+     * @param pageSize     number of articles per page of a search
+     * @param sectionCount number of sections of the feed
+     */
+    public static int sectionPageSize(int pageSize, int sectionCount) {
+        return Math.max(pageSize / sectionCount, 1);
+    }
+
+    /**
+     * Returns the URLs the first page of the home feed is loaded from, with the sections and the
+     * page size of the app.
+     */
+    public static List<String> firstPageUrls(Context context) {
+        List<String> sections = homeSections(context);
+        int pageSize = context.getResources().getInteger(R.integer.page_size);
+        return pageUrls(sections, 0, sectionPageSize(pageSize, sections.size()));
+    }
+
+    /**
+     * Returns the URLs a page of the home feed is loaded from: the newest articles of every
+     * section published at or before the given time.
+     *
+     * @param sections        Guardian section ids, such as "world"
+     * @param beforeMillis    end of the previous page, or 0 for the first page
+     * @param sectionPageSize number of results per page of each section
+     */
+    public static List<String> pageUrls(List<String> sections, long beforeMillis, int sectionPageSize) {
+        List<String> urls = new ArrayList<>(sections.size());
+        for (String section : sections) {
+            GuardianQuery.Builder query = GuardianQuery.section(section).buildUpon()
+                    .orderBy(GuardianQuery.ORDER_NEWEST)
+                    .pageSize(sectionPageSize);
+            if (beforeMillis > 0) {
+                query.toDate(beforeMillis);
+            }
+            urls.add(query.build().toUrl());
+        }
+        return urls;
+    }
+
+    /**
+     * Returns true if the timeline delivered last is the last page of the feed, which is only
+     * known once every section has been loaded and none of them has older articles.
+     */
+    public boolean isLastPage() {
+        return lastPage;
+    }
+
+    /**
+     * Returns true if the timeline delivered last holds every section, rather than only the
+     * ones that were in at the time.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (timeline != null) {
+            deliverResult(timeline);
+        }
+        if (takeContentChanged() || timeline == null) {
+            forceLoad();
+        }
+    }
+
+    /**
+     * Refreshes the timeline with the articles published since the newest one of each section,
+     * or loads it as usual if nothing has been delivered yet. Runs right away if the loader is
+     * started, or else once it is.
+     */
+    @Override
+    public void refresh(Runnable onRefreshed) {
+        this.onRefreshed = onRefreshed;
+        refreshPending = true;
+        onContentChanged();
+    }
+
+    @Override
+    protected void onForceLoad() {
+        cancelRequests();
+        final CancellationToken request = new CancellationToken();
+        cancellation = request;
+        FeedFanOut.PageListener listener = new FeedFanOut.PageListener() {
+            @Override
+            public void onPage(final List<Article> articles, final boolean last, final int completed,
+                               final int total) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (request.isCanceled()) {
+                            return;
+                        }
+                        // Before the last section, nothing loaded yet is not a failure
+                        if (articles != null || completed == total) {
+                            timeline = articles;
+                            lastPage = last;
+                            complete = completed == total;
+                            deliverResult(articles);
+                        }
+                        if (completed == total) {
+                            notifyRefreshed();
+                        }
+                    }
+                });
+            }
+        };
+        fanOut.loadPage(urls, sectionPageSize, beforeMillis, refreshPending && timeline != null,
+                request, listener);
+        refreshPending = false;
+    }
+
+    @Override
+    protected void onReset() {
+        cancelRequests();
+        timeline = null;
+        lastPage = false;
+        complete = false;
+        refreshPending = false;
+        onRefreshed = null;
+    }
+
+    private void notifyRefreshed() {
+        Runnable action = onRefreshed;
+        onRefreshed = null;
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    private void cancelRequests() {
+        if (cancellation != null) {
+            cancellation.cancel();
+            cancellation = null;
+        }
+    }
+}
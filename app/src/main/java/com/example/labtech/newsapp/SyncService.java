@@ -0,0 +1,136 @@
+package com.example.labtech.newsapp;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Periodically fetches the default feed and the most searched queries in the background
+ * through {@link PrefetchSync}, so that the app opens on fresh local data.
+ * <p>
+ * The service is started by an inexact, non-waking alarm, which the system batches with the
+ * alarms of other apps while the device is awake. Whether a sync actually runs is up to
+ * {@link PrefetchSync}, depending on the charging and network state and the daily budget.
+ */
+public class SyncService extends IntentService {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = SyncService.class.getSimpleName();
+
+    /**
+     * Name of the preferences file holding the {@link PrefetchSync.State}
+     */
+    private static final String PREFERENCES_NAME = "sync";
+    private static final String KEY_LAST_SUCCESS = "last_success";
+    private static final String KEY_NEXT_RUN = "next_run";
+    private static final String KEY_FAILURES = "failures";
+    private static final String KEY_BUDGET_WINDOW_START = "budget_window_start";
+    private static final String KEY_RUNS_IN_WINDOW = "runs_in_window";
+    private static final String KEY_BYTES_IN_WINDOW = "bytes_in_window";
+
+    public SyncService() {
+        super(LOG_TAG);
+    }
+
+    /**
+     * Sets the alarm that starts the service every hour, unless it is already set.
+     */
+    public static void schedule(Context context) {
+        Intent intent = new Intent(context, SyncService.class);
+        if (PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_NO_CREATE) != null) {
+            return;
+        }
+        PendingIntent operation = PendingIntent.getService(context, 0, intent, 0);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + AlarmManager.INTERVAL_HOUR,
+                AlarmManager.INTERVAL_HOUR, operation);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        Resources resources = getResources();
+        PrefetchSync sync = new PrefetchSync(ArticleCache.getInstance(this), ArticleIndex.getInstance(this),
+                new PrefetchSync.Clock() {
+                    @Override
+                    public long currentTimeMillis() {
+                        return System.currentTimeMillis();
+                    }
+                },
+                resources.getInteger(R.integer.sync_interval_minutes) * 60 * 1000L,
+                resources.getInteger(R.integer.sync_initial_backoff_minutes) * 60 * 1000L,
+                resources.getInteger(R.integer.sync_max_runs_per_day),
+                resources.getInteger(R.integer.sync_max_kilobytes_per_day) * 1024L);
+
+        // The first page of the home feed and page 1 of the most searched queries, with the same
+        // URLs SectionFeedLoader and NewsLoader request, so that they find them in the cache
+        int pageSize = resources.getInteger(R.integer.page_size);
+        List<String> urls = new ArrayList<>(SectionFeedLoader.firstPageUrls(this));
+        for (String query : new SearchHistory(this).getTopQueries(resources.getInteger(R.integer.sync_top_queries))) {
+            urls.add(QueryUtils.buildPageUrl(QueryUtils.buildSearchUrl(query), 1, pageSize));
+        }
+
+        SharedPreferences preferences = getSharedPreferences(PREFERENCES_NAME, MODE_PRIVATE);
+        PrefetchSync.State state = readState(preferences);
+        PrefetchSync.Result result = sync.run(state, urls, isUnmetered(), isCharging());
+        writeState(preferences, state);
+        Log.v(LOG_TAG, "Sync of " + urls.size() + " pages: " + result);
+    }
+
+    /**
+     * Returns true if the device is connected to a network that is not metered, such as Wi-Fi.
+     */
+    private boolean isUnmetered() {
+        ConnectivityManager connMgr = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected()
+                && !ConnectivityManagerCompat.isActiveNetworkMetered(connMgr);
+    }
+
+    /**
+     * Returns true if the device is plugged in to a charger.
+     */
+    private boolean isCharging() {
+        // The battery status is a sticky broadcast, so no receiver is needed to read it
+        Intent battery = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
+    private static PrefetchSync.State readState(SharedPreferences preferences) {
+        PrefetchSync.State state = new PrefetchSync.State();
+        state.lastSuccessMillis = preferences.getLong(KEY_LAST_SUCCESS, 0);
+        state.nextRunMillis = preferences.getLong(KEY_NEXT_RUN, 0);
+        state.failures = preferences.getInt(KEY_FAILURES, 0);
+        state.budgetWindowStartMillis = preferences.getLong(KEY_BUDGET_WINDOW_START, 0);
+        state.runsInWindow = preferences.getInt(KEY_RUNS_IN_WINDOW, 0);
+        state.bytesInWindow = preferences.getLong(KEY_BYTES_IN_WINDOW, 0);
+        return state;
+    }
+
+    private static void writeState(SharedPreferences preferences, PrefetchSync.State state) {
+        preferences.edit()
+                .putLong(KEY_LAST_SUCCESS, state.lastSuccessMillis)
+                .putLong(KEY_NEXT_RUN, state.nextRunMillis)
+                .putInt(KEY_FAILURES, state.failures)
+                .putLong(KEY_BUDGET_WINDOW_START, state.budgetWindowStartMillis)
+                .putInt(KEY_RUNS_IN_WINDOW, state.runsInWindow)
+                .putLong(KEY_BYTES_IN_WINDOW, state.bytesInWindow)
+                .apply();
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.labtech.newsapp;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded disk cache of downloaded thumbnail images, keyed by their URL.
+ * <p>
+ * The encoded bytes are stored as they came from the server, so one file serves every size the
+ * image is decoded at. When the cache grows past its maximum size the least recently used
+ * files are deleted.
+ */
+public class ThumbnailCache {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = ThumbnailCache.class.getSimpleName();
+
+    private final File directory;
+    private final long maxSizeBytes;
+
+    /**
+     * Sizes of the image files in access order, least recently used first.
+     * Loaded from the file modification times on first use.
+     */
+    private LinkedHashMap<String, Long> lruIndex;
+    private long size;
+
+    /**
+     * Constructs a new {@link ThumbnailCache}.
+     *
+     * @param directory    where the images are stored
+     * @param maxSizeBytes the size above which least recently used images are evicted
+     */
+    public ThumbnailCache(File directory, long maxSizeBytes) {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Returns the cached image for the given URL, or null if there is none.
+     */
+    public synchronized byte[] get(String url) {
+        File file = fileFor(url);
+        if (!file.exists()) {
+            return null;
+        }
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            byte[] bytes = readFully(in, (int) file.length());
+            // Mark the image as recently used, also across restarts of the app
+            index().get(file.getName());
+            file.setLastModified(System.currentTimeMillis());
+            return bytes;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the cached image of " + url, e);
+            remove(file);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores the image of the given URL and evicts least recently used images if the cache has
+     * grown past its maximum size.
+     */
+    public synchronized void put(String url, byte[] bytes) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Could not create the cache directory " + directory);
+            return;
+        }
+        File file = fileFor(url);
+        // Write to a temporary file first so a crash never leaves a truncated image behind
+        File temp = new File(directory, file.getName() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            out.write(bytes);
+            out.close();
+            out = null;
+            remove(file);
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp + " to " + file);
+            }
+            index().put(file.getName(), file.length());
+            size += file.length();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the cached image of " + url, e);
+            temp.delete();
+            return;
+        } finally {
+            closeQuietly(out);
+        }
+        trimToSize(maxSizeBytes);
+    }
+
+    /**
+     * Deletes least recently used images until the cache is not bigger than the given size.
+     */
+    public synchronized void trimToSize(long sizeBytes) {
+        Iterator<Map.Entry<String, Long>> eldest = index().entrySet().iterator();
+        while (size > sizeBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            new File(directory, entry.getKey()).delete();
+            size -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Returns the total size of the images on disk.
+     */
+    public synchronized long size() {
+        index();
+        return size;
+    }
+
+    private void remove(File file) {
+        Long length = index().remove(file.getName());
+        if (length != null) {
+            size -= length;
+        }
+        file.delete();
+    }
+
+    /**
+     * Returns the LRU index, building it from the images on disk the first time.
+     */
+    private LinkedHashMap<String, Long> index() {
+        if (lruIndex == null) {
+            lruIndex = new LinkedHashMap<>(16, 0.75f, true);
+            size = 0;
+            File[] files = directory.listFiles();
+            if (files != null) {
+                Arrays.sort(files, new Comparator<File>() {
+                    @Override
+                    public int compare(File a, File b) {
+                        long first = a.lastModified();
+                        long second = b.lastModified();
+                        return first < second ? -1 : (first == second ? 0 : 1);
+                    }
+                });
+                for (File file : files) {
+                    lruIndex.put(file.getName(), file.length());
+                    size += file.length();
+                }
+            }
+        }
+        return lruIndex;
+    }
+
+    private File fileFor(String url) {
+        return new File(directory, ArticleCache.hash(url));
+    }
+
+    /**
+     * Reads the whole stream, expecting about the given number of bytes.
+     */
+    static byte[] readFully(InputStream in, int expectedLength) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(expectedLength, 1024));
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.labtech.newsapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Shows the thumbnails of the articles in the list.
+ * <p>
+ * Images are downloaded and decoded on background threads, downsampled to the size of the view
+ * they are shown in. Decoded bitmaps are kept in a memory LRU cache sized to a fraction of the
+ * heap, and the downloaded images in a {@link ThumbnailCache} on disk. When a row is recycled
+ * before its thumbnail arrived, the pending download or decode is canceled.
+ * <p>
+ * The memory cache is emptied under memory pressure, the thumbnails are then decoded again from
+ * the disk cache. A thumbnail that can't be decoded for lack of memory is left out of its row.
+ */
+public class ThumbnailLoader implements MemoryGovernor.Consumer {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = ThumbnailLoader.class.getSimpleName();
+
+    /**
+     * Sub directory of the app's cache directory that holds the images
+     */
+    private static final String DIRECTORY_NAME = "thumbnails";
+
+    /**
+     * Maximum size of the images on disk
+     */
+    private static final long DISK_CACHE_SIZE_BYTES = 10 * 1024 * 1024;
+
+    /**
+     * The decoded bitmaps take at most this fraction of the app's maximum heap
+     */
+    private static final int MEMORY_CACHE_DIVISOR = 8;
+
+    /**
+     * Number of images downloaded and decoded at the same time
+     */
+    private static final int DECODE_THREADS = 2;
+
+    private static ThumbnailLoader instance;
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ThumbnailCache diskCache;
+    private final HttpTransport transport;
+    private final Executor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Pending request of every view that waits for its thumbnail, only used on the main thread
+     */
+    private final Map<ImageView, Request> requests = new WeakHashMap<>();
+
+    /**
+     * Constructs a new {@link ThumbnailLoader}.
+     *
+     * @param memoryCacheBytes maximum size of the decoded bitmaps kept in memory
+     * @param diskCache        stores the downloaded images
+     * @param transport        performs the downloads
+     * @param executor         downloads and decodes the images, its number of threads bounds
+     *                         how many run at once
+     */
+    public ThumbnailLoader(int memoryCacheBytes, ThumbnailCache diskCache, HttpTransport transport,
+                           Executor executor) {
+        this.memoryCache = new LruCache<String, Bitmap>(memoryCacheBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getRowBytes() * bitmap.getHeight();
+            }
+        };
+        this.diskCache = diskCache;
+        this.transport = transport;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the loader shared by every list of the app.
+     */
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME);
+            int memoryCacheBytes = (int) (Runtime.getRuntime().maxMemory() / MEMORY_CACHE_DIVISOR);
+            instance = new ThumbnailLoader(memoryCacheBytes,
+                    new ThumbnailCache(directory, DISK_CACHE_SIZE_BYTES),
+                    QueryUtils.getTransport(), Executors.newFixedThreadPool(DECODE_THREADS));
+            MemoryGovernor.getInstance(context).register(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * Shows the thumbnail at the given URL in the view, right away if it is in memory, or once it
+     * has been loaded. A null URL hides the view. Must be called on the main thread.
+     */
+    public void load(String url, ImageView view) {
+        cancel(view);
+        if (url == null) {
+            view.setImageDrawable(null);
+            view.setVisibility(View.GONE);
+            return;
+        }
+        view.setVisibility(View.VISIBLE);
+
+        int width = targetSize(view.getLayoutParams() != null ? view.getLayoutParams().width : 0, view.getWidth());
+        int height = targetSize(view.getLayoutParams() != null ? view.getLayoutParams().height : 0, view.getHeight());
+        String key = url + '@' + width + 'x' + height;
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null) {
+            Metrics.THUMBNAIL_CACHE_HIT.increment();
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        Metrics.THUMBNAIL_CACHE_MISS.increment();
+
+        view.setImageDrawable(null);
+        Request request = new Request(url, key, width, height, view);
+        requests.put(view, request);
+        executor.execute(request);
+    }
+
+    /**
+     * Cancels the pending request of the view, if any, so that a recycled row is not handed the
+     * thumbnail of the article it showed before. Must be called on the main thread.
+     */
+    public void cancel(ImageView view) {
+        Request request = requests.remove(view);
+        if (request != null) {
+            request.cancellation.cancel();
+        }
+    }
+
+    @Override
+    public long residentBytes() {
+        return memoryCache.size();
+    }
+
+    /**
+     * Keeps half of the decoded bitmaps, the most recently used ones, when memory runs low, and
+     * none once the caches have to go. Called on the main thread, the cache is thread safe.
+     */
+    @Override
+    public void trim(int stage) {
+        if (stage >= MemoryGovernor.STAGE_CACHES) {
+            memoryCache.evictAll();
+        } else {
+            memoryCache.trimToSize(memoryCache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * Returns the size in pixels the image is decoded at: the fixed size of the view if it has
+     * one, otherwise its laid out size, or 0 if that is not known yet.
+     */
+    private static int targetSize(int layoutSize, int measuredSize) {
+        if (layoutSize > 0) {
+            return layoutSize;
+        }
+        return measuredSize > 0 && layoutSize != ViewGroup.LayoutParams.WRAP_CONTENT ? measuredSize : 0;
+    }
+
+    /**
+     * Returns the largest power of two the image can be subsampled by while both of its sides stay
+     * at least as big as requested. A requested size of 0 or less keeps the full size.
+     */
+    static int calculateInSampleSize(int width, int height, int requestedWidth, int requestedHeight) {
+        int sampleSize = 1;
+        if (requestedWidth <= 0 || requestedHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= requestedWidth && height / (sampleSize * 2) >= requestedHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Decodes the image subsampled to about the requested size, or returns null if it can't be
+     * decoded.
+     */
+    static Bitmap decode(byte[] bytes, int requestedWidth, int requestedHeight) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                requestedWidth, requestedHeight);
+        options.inJustDecodeBounds = false;
+        // Thumbnails are opaque photos, this takes half the memory of ARGB_8888
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    }
+
+    private byte[] download(String url, CancellationToken cancellation) throws IOException {
+        HttpTransport.Response response = transport.execute(new URL(url),
+                Collections.<String, String>emptyMap(), cancellation, HttpTransport.Gate.OPEN);
+        try {
+            if (response.getCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Error response code: " + response.getCode());
+            }
+            return ThumbnailCache.readFully(response.getBody(), 0);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Loads the thumbnail of one view off the main thread.
+     */
+    private class Request implements Runnable {
+        final CancellationToken cancellation = new CancellationToken();
+        private final String url;
+        private final String key;
+        private final int width;
+        private final int height;
+        private final WeakReference<ImageView> viewReference;
+
+        Request(String url, String key, int width, int height, ImageView view) {
+            this.url = url;
+            this.key = key;
+            this.width = width;
+            this.height = height;
+            this.viewReference = new WeakReference<>(view);
+        }
+
+        @Override
+        public void run() {
+            // The row may have been recycled while the request was queued
+            if (cancellation.isCanceled()) {
+                return;
+            }
+            Bitmap bitmap = null;
+            try {
+                byte[] bytes = diskCache.get(url);
+                if (bytes == null) {
+                    bytes = download(url, cancellation);
+                    diskCache.put(url, bytes);
+                }
+                if (!cancellation.isCanceled()) {
+                    bitmap = decode(bytes, width, height);
+                }
+            } catch (IOException e) {
+                if (!cancellation.isCanceled()) {
+                    Log.e(LOG_TAG, "Problem loading the thumbnail " + url, e);
+                }
+            } catch (OutOfMemoryError e) {
+                // Give up the decoded bitmaps rather than the app, the row goes without
+                memoryCache.evictAll();
+                Metrics.MEMORY_THUMBNAIL_OOM.increment();
+                Log.w(LOG_TAG, "Out of memory decoding the thumbnail " + url);
+            }
+            if (bitmap == null) {
+                return;
+            }
+            memoryCache.put(key, bitmap);
+
+            final Bitmap loaded = bitmap;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    ImageView view = viewReference.get();
+                    if (view == null || requests.get(view) != Request.this) {
+                        return;
+                    }
+                    requests.remove(view);
+                    view.setImageBitmap(loaded);
+                }
+            });
+        }
+    }
+}
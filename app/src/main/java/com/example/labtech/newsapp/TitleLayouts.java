@@ -0,0 +1,107 @@
+package com.example.labtech.newsapp;
+
+import android.support.v4.util.LruCache;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+/**
+ * Lays out the titles of the rows of the list ahead of time, so that binding a row only hands
+ * a finished {@link Layout} to its {@link TitleView} instead of measuring and line-breaking the
+ * headline on the main thread while the list scrolls.
+ * <p>
+ * Layouts are built on a background thread with {@link #prepare(String, int)} and kept in a
+ * memory LRU cache by title and width. A row bound before its title was prepared gets its layout
+ * built on the spot by {@link #obtain(String, int)}, which counts as a miss in the
+ * {@link Metrics}. Under memory pressure the cache is given up, the rows are then laid out again
+ * as they are bound.
+ */
+public class TitleLayouts implements MemoryGovernor.Consumer {
+
+    /**
+     * Rough size of one layout in memory, its line starts, tops and directions, the title text
+     * itself being shared with the article
+     */
+    private static final int LAYOUT_BYTES = 512;
+
+    private final TextPaint paint;
+    private final LruCache<String, Layout> layouts;
+
+    /**
+     * Constructs a new {@link TitleLayouts}.
+     *
+     * @param paint      the paint of the title text, copied so that later changes to the paint
+     *                   it came from don't affect the layouts
+     * @param maxLayouts number of layouts kept in memory
+     */
+    public TitleLayouts(TextPaint paint, int maxLayouts) {
+        this.paint = new TextPaint(paint);
+        this.layouts = new LruCache<>(maxLayouts);
+    }
+
+    /**
+     * Returns the layout of the title at the given width, from the cache or else built right
+     * away. Called on the main thread when a row is bound or measured.
+     */
+    public Layout obtain(String title, int width) {
+        String key = key(title, width);
+        Layout layout = layouts.get(key);
+        if (layout != null) {
+            Metrics.TITLE_LAYOUT_HIT.increment();
+            return layout;
+        }
+        Metrics.TITLE_LAYOUT_MISS.increment();
+        layout = build(title, width);
+        layouts.put(key, layout);
+        return layout;
+    }
+
+    /**
+     * Builds the layout of the title at the given width and caches it, unless it is cached
+     * already. Called on a background thread before the row is bound.
+     */
+    public void prepare(String title, int width) {
+        String key = key(title, width);
+        if (layouts.get(key) == null) {
+            long start = Metrics.now();
+            layouts.put(key, build(title, width));
+            Metrics.TITLE_LAYOUT_PREPARE.recordSince(start);
+        }
+    }
+
+    /**
+     * Returns true if the layout of the title at the given width is cached.
+     */
+    public boolean isPrepared(String title, int width) {
+        return layouts.get(key(title, width)) != null;
+    }
+
+    @Override
+    public long residentBytes() {
+        return (long) layouts.size() * LAYOUT_BYTES;
+    }
+
+    /**
+     * Keeps half of the layouts, the most recently used ones, when memory runs low, and none
+     * once the caches have to go.
+     */
+    @Override
+    public void trim(int stage) {
+        if (stage >= MemoryGovernor.STAGE_CACHES) {
+            layouts.evictAll();
+        } else {
+            layouts.trimToSize(layouts.maxSize() / 2);
+        }
+    }
+
+    private Layout build(String title, int width) {
+        // Building a layout only reads the paint, so the threads can share it.
+        // Same line spacing and font padding as a TextView.
+        return new StaticLayout(title, paint, Math.max(width, 0), Layout.Alignment.ALIGN_NORMAL,
+                1f, 0f, true);
+    }
+
+    private static String key(String title, int width) {
+        return title + '@' + width;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.labtech.newsapp;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Draws the title of a row from a {@link Layout} prepared by {@link TitleLayouts}, so that
+ * binding the row does no text measurement. Takes the text size, style and color of its style
+ * like a TextView would.
+ * <p>
+ * If the view turns out narrower or wider than the layout it was given, the layout for its
+ * actual width is obtained when it is measured.
+ */
+public class TitleView extends View {
+
+    /**
+     * Text attributes read from the style, sorted by id as obtainStyledAttributes requires
+     */
+    private static final int[] TEXT_ATTRS = {
+            android.R.attr.textSize, android.R.attr.textStyle, android.R.attr.textColor};
+
+    private final TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private TitleLayouts layouts;
+    private String title;
+    private Layout layout;
+
+    public TitleView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        TypedArray a = context.obtainStyledAttributes(attrs, TEXT_ATTRS);
+        paint.setTextSize(a.getDimension(0, 15 * getResources().getDisplayMetrics().scaledDensity));
+        int style = a.getInt(1, Typeface.NORMAL);
+        Typeface typeface = Typeface.defaultFromStyle(style);
+        paint.setTypeface(typeface);
+        // Fake the bold the font doesn't have, like a TextView does
+        paint.setFakeBoldText((style & ~typeface.getStyle() & Typeface.BOLD) != 0);
+        paint.setColor(a.getColor(2, Color.BLACK));
+        a.recycle();
+        paint.density = getResources().getDisplayMetrics().density;
+    }
+
+    /**
+     * Returns the paint the title is drawn with, to prepare layouts with.
+     */
+    public TextPaint getPaint() {
+        return paint;
+    }
+
+    /**
+     * Shows the title laid out at the given width of text, or nothing for a null title.
+     * Pass 0 if the width is not known yet, the title is then laid out when it is measured.
+     */
+    public void setTitle(TitleLayouts layouts, String title, int textWidth) {
+        this.layouts = layouts;
+        this.title = title;
+        layout = title != null && textWidth > 0 ? layouts.obtain(title, textWidth) : null;
+        setContentDescription(title);
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int textWidth = width - getPaddingLeft() - getPaddingRight();
+        if (title != null && (layout == null || layout.getWidth() != textWidth)) {
+            layout = layouts.obtain(title, textWidth);
+        }
+        int height = getPaddingTop() + getPaddingBottom() + (layout != null ? layout.getHeight() : 0);
+        setMeasuredDimension(width, resolveSize(Math.max(height, getSuggestedMinimumHeight()), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (layout == null) {
+            return;
+        }
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        layout.draw(canvas);
+        canvas.restore();
+    }
+}
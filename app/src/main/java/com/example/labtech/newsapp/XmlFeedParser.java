@@ -0,0 +1,294 @@
+package com.example.labtech.newsapp;
+
+import android.util.Log;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Parses RSS 2.0, RSS 1.0 and Atom feeds into {@link Article}s with a streaming pull parser,
+ * so only one item at a time is held in memory besides the articles.
+ * <p>
+ * Every item or entry becomes an article with its title, link, publication date, authors and,
+ * if it has one, the image of its Media RSS thumbnail or image enclosure. Everything else is
+ * skipped. Feeds have no sections, so all their articles get the section the parser was made
+ * with, usually the name of the site.
+ */
+public class XmlFeedParser implements FeedParser {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = XmlFeedParser.class.getSimpleName();
+
+    /**
+     * Namespace of the Media RSS elements that carry thumbnails
+     */
+    private static final String MEDIA_NAMESPACE = "http://search.yahoo.com/mrss/";
+
+    /**
+     * Forms of the RFC 822 dates of RSS, with a numeric or a named time zone and with or
+     * without the day of the week
+     */
+    private static final String[] RFC_822_PATTERNS = {
+            "EEE, d MMM yyyy HH:mm:ss Z", "EEE, d MMM yyyy HH:mm:ss zzz",
+            "d MMM yyyy HH:mm:ss Z", "d MMM yyyy HH:mm:ss zzz", "EEE, d MMM yyyy HH:mm Z"};
+
+    private final String section;
+
+    /**
+     * Constructs a new {@link XmlFeedParser}.
+     *
+     * @param section shown as the section of every article of the feed
+     */
+    public XmlFeedParser(String section) {
+        this.section = section;
+    }
+
+    @Override
+    public List<Article> parse(InputStream body) throws IOException {
+        long start = Metrics.now();
+        List<Article> articles = new ArrayList<>();
+        // Date formats aren't thread-safe, every parse gets its own
+        SimpleDateFormat[] dateFormats = null;
+        try {
+            XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+            // The encoding comes from the XML declaration, UTF-8 without one
+            parser.setInput(body, null);
+            int event;
+            while ((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (event != XmlPullParser.START_TAG
+                        || !("item".equals(parser.getName()) || "entry".equals(parser.getName()))) {
+                    continue;
+                }
+                Item item = readItem(parser);
+                if (item.title == null || item.url == null) {
+                    Log.e(LOG_TAG, "Skipping item with missing fields: " + item.url);
+                    continue;
+                }
+                long publishedMillis = Article.UNKNOWN_DATE;
+                if (item.date != null) {
+                    if (dateFormats == null) {
+                        dateFormats = rfc822Formats();
+                    }
+                    publishedMillis = parseDate(item.date, dateFormats);
+                }
+                articles.add(new Article(item.title, item.contributors, publishedMillis, section,
+                        item.url, item.thumbnailUrl));
+            }
+        } catch (XmlPullParserException e) {
+            // Not a well-formed feed; keep whatever was parsed so far
+            Log.e(LOG_TAG, "Problem parsing the feed", e);
+        }
+        Metrics.PARSE_XML.recordSince(start);
+        return articles;
+    }
+
+    /**
+     * Reads the item or entry the parser is at, up to and including its end tag.
+     */
+    private static Item readItem(XmlPullParser parser) throws XmlPullParserException, IOException {
+        Item item = new Item();
+        String guid = null;
+        String updated = null;
+        int depth = parser.getDepth();
+        while (parser.next() != XmlPullParser.END_TAG || parser.getDepth() > depth) {
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+            String name = parser.getName();
+            boolean media = MEDIA_NAMESPACE.equals(parser.getNamespace());
+            if (media && "thumbnail".equals(name)) {
+                item.thumbnailUrl = parser.getAttributeValue(null, "url");
+                skip(parser);
+            } else if ((media && "content".equals(name)) || "enclosure".equals(name)) {
+                if (item.thumbnailUrl == null && isImage(parser)) {
+                    item.thumbnailUrl = parser.getAttributeValue(null, "url");
+                }
+                skip(parser);
+            } else if ("title".equals(name) && !media) {
+                item.title = readText(parser);
+            } else if ("link".equals(name)) {
+                String href = parser.getAttributeValue(null, "href");
+                String rel = parser.getAttributeValue(null, "rel");
+                if (href == null) {
+                    // RSS, the link is the text of the element
+                    item.url = readText(parser);
+                } else {
+                    // Atom, only the alternate link is the article itself
+                    if (rel == null || "alternate".equals(rel)) {
+                        item.url = href;
+                    }
+                    skip(parser);
+                }
+            } else if ("guid".equals(name)) {
+                boolean permaLink = !"false".equals(parser.getAttributeValue(null, "isPermaLink"));
+                String text = readText(parser);
+                guid = permaLink ? text : null;
+            } else if ("pubDate".equals(name) || "published".equals(name) || "date".equals(name)) {
+                item.date = readText(parser);
+            } else if ("updated".equals(name)) {
+                updated = readText(parser);
+            } else if ("author".equals(name) || "creator".equals(name)) {
+                String author = readAuthor(parser);
+                if (author != null && !item.contributors.contains(author)) {
+                    item.contributors.add(author);
+                }
+            } else {
+                skip(parser);
+            }
+        }
+        if (item.url == null && guid != null && guid.startsWith("http")) {
+            item.url = guid;
+        }
+        if (item.date == null) {
+            item.date = updated;
+        }
+        return item;
+    }
+
+    /**
+     * Returns the name of an RSS author, which is often an email address followed by the name in
+     * parentheses, or of an Atom author, which is the text of its name element. Returns null if
+     * there is none.
+     */
+    private static String readAuthor(XmlPullParser parser) throws XmlPullParserException, IOException {
+        String text = null;
+        StringBuilder direct = new StringBuilder();
+        int depth = parser.getDepth();
+        while (parser.next() != XmlPullParser.END_TAG || parser.getDepth() > depth) {
+            if (parser.getEventType() == XmlPullParser.START_TAG) {
+                if ("name".equals(parser.getName())) {
+                    text = readText(parser);
+                } else {
+                    skip(parser);
+                }
+            } else if (parser.getEventType() == XmlPullParser.TEXT) {
+                direct.append(parser.getText());
+            }
+        }
+        if (text == null) {
+            text = direct.toString().trim();
+            int open = text.indexOf('(');
+            int close = text.lastIndexOf(')');
+            if (open >= 0 && close > open) {
+                text = text.substring(open + 1, close).trim();
+            }
+        }
+        return text.isEmpty() ? null : text;
+    }
+
+    /**
+     * Returns the trimmed text of the element the parser is at, including the text of nested
+     * elements, and moves to its end tag.
+     */
+    private static String readText(XmlPullParser parser) throws XmlPullParserException, IOException {
+        StringBuilder text = new StringBuilder();
+        int depth = parser.getDepth();
+        while (parser.next() != XmlPullParser.END_TAG || parser.getDepth() > depth) {
+            if (parser.getEventType() == XmlPullParser.TEXT) {
+                text.append(parser.getText());
+            }
+        }
+        String trimmed = text.toString().trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * Skips the element the parser is at, with everything in it.
+     */
+    private static void skip(XmlPullParser parser) throws XmlPullParserException, IOException {
+        int depth = parser.getDepth();
+        while (parser.next() != XmlPullParser.END_TAG || parser.getDepth() > depth) {
+            // Nested elements are skipped along
+        }
+    }
+
+    private static boolean isImage(XmlPullParser parser) {
+        String type = parser.getAttributeValue(null, "type");
+        String medium = parser.getAttributeValue(null, "medium");
+        return "image".equals(medium) || (type != null && type.startsWith("image/"));
+    }
+
+    /**
+     * Returns the date in milliseconds since the epoch, from the ISO 8601 dates of Atom and
+     * Dublin Core or the RFC 822 dates of RSS, or {@link Article#UNKNOWN_DATE} if it can't be
+     * parsed.
+     */
+    static long parseDate(String date, SimpleDateFormat[] rfc822Formats) {
+        if (date.length() >= 10 && date.charAt(4) == '-') {
+            return parseIsoDate(date);
+        }
+        for (SimpleDateFormat format : rfc822Formats) {
+            try {
+                return format.parse(date).getTime();
+            } catch (ParseException e) {
+                // Try the next form
+            }
+        }
+        return Article.UNKNOWN_DATE;
+    }
+
+    /**
+     * Returns an ISO 8601 date in milliseconds since the epoch, taking its time zone offset
+     * into account.
+     */
+    static long parseIsoDate(String date) {
+        long millis = Article.parseDate(date);
+        if (millis == Article.UNKNOWN_DATE || date.length() < 19) {
+            return millis;
+        }
+        // Skip the fraction of a second, the offset follows
+        int zone = 19;
+        while (zone < date.length() && (date.charAt(zone) == '.' || Character.isDigit(date.charAt(zone)))) {
+            zone++;
+        }
+        if (zone + 3 > date.length() || (date.charAt(zone) != '+' && date.charAt(zone) != '-')) {
+            return millis;
+        }
+        try {
+            int hours = Integer.parseInt(date.substring(zone + 1, zone + 3));
+            int minutes = 0;
+            int minutesAt = date.indexOf(':', zone) > 0 ? zone + 4 : zone + 3;
+            if (minutesAt + 2 <= date.length()) {
+                minutes = Integer.parseInt(date.substring(minutesAt, minutesAt + 2));
+            }
+            long offsetMillis = (hours * 60L + minutes) * 60000L;
+            // Local time ahead of UTC by the offset
+            return date.charAt(zone) == '+' ? millis - offsetMillis : millis + offsetMillis;
+        } catch (NumberFormatException e) {
+            return millis;
+        }
+    }
+
+    static SimpleDateFormat[] rfc822Formats() {
+        SimpleDateFormat[] formats = new SimpleDateFormat[RFC_822_PATTERNS.length];
+        for (int i = 0; i < formats.length; i++) {
+            formats[i] = new SimpleDateFormat(RFC_822_PATTERNS[i], Locale.US);
+            formats[i].setTimeZone(TimeZone.getTimeZone("GMT"));
+        }
+        return formats;
+    }
+
+    /**
+     * The fields of one item or entry, as they are read.
+     */
+    private static class Item {
+        String title;
+        String url;
+        String date;
+        String thumbnailUrl;
+        final List<String> contributors = new ArrayList<>();
+    }
+}
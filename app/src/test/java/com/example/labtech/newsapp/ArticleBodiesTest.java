@@ -0,0 +1,174 @@
+package com.example.labtech.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link ArticleBodies} prefetches the bodies of the rows on screen within its byte
+ * budget, and that opening a prefetched article needs no request, against a local
+ * {@link MockWebServer} that serves the Content API.
+ */
+public class ArticleBodiesTest {
+
+    /**
+     * Runs every task right away on the calling thread
+     */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private ArticleBodyCache cache;
+    private final List<String> requestedPaths = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath().substring(0, request.getPath().indexOf('?'));
+                requestedPaths.add(path);
+                return new MockResponse().setBody(bodyJson("<p>Body of " + path + "</p>"));
+            }
+        });
+        server.start();
+        QueryUtils.setTransport(new OkHttpTransport());
+        cache = new ArticleBodyCache(folder.newFolder("bodies"), 1024 * 1024);
+        Metrics.reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void prefetchedArticle_opensWithoutRequest() {
+        ArticleBodies bodies = bodies(1024 * 1024);
+        bodies.prefetch(TestArticles.list("world", 0, 3));
+        assertEquals(3, requestedPaths.size());
+
+        String body = load(bodies, TestArticles.list("world", 1, 1).get(0));
+
+        assertEquals("<p>Body of /world/1</p>", body);
+        assertEquals(3, requestedPaths.size());
+        assertEquals(1, Metrics.READER_PREFETCH_HIT.count());
+        assertEquals(0, Metrics.READER_PREFETCH_MISS.count());
+    }
+
+    @Test
+    public void articleNotPrefetched_isFetchedAndCached() {
+        ArticleBodies bodies = bodies(1024 * 1024);
+
+        String body = load(bodies, TestArticles.list("world", 7, 1).get(0));
+
+        assertEquals("<p>Body of /world/7</p>", body);
+        assertEquals(1, requestedPaths.size());
+        assertEquals(1, Metrics.READER_PREFETCH_MISS.count());
+        assertTrue(cache.contains("https://www.theguardian.com/world/7"));
+    }
+
+    @Test
+    public void prefetch_stopsAtTheByteBudget() {
+        // Every body is well over 10 bytes, so the first one spends the whole budget
+        ArticleBodies bodies = bodies(10);
+
+        bodies.prefetch(TestArticles.list("world", 0, 5));
+        bodies.prefetch(TestArticles.list("world", 5, 5));
+
+        assertEquals(1, requestedPaths.size());
+    }
+
+    @Test
+    public void cachedBodies_areNotPrefetchedAgain() {
+        cache.put("https://www.theguardian.com/world/0", "<p>Cached</p>");
+        ArticleBodies bodies = bodies(1024 * 1024);
+
+        bodies.prefetch(TestArticles.list("world", 0, 2));
+        bodies.prefetch(TestArticles.list("world", 0, 2));
+
+        assertEquals(Collections.singletonList("/world/1"), requestedPaths);
+    }
+
+    @Test
+    public void report_countsHitRateAndWastedBytes() {
+        ArticleBodies bodies = bodies(1024 * 1024);
+        bodies.prefetch(TestArticles.list("world", 0, 2));
+        long prefetched = Metrics.READER_PREFETCH_BYTES.count();
+
+        load(bodies, TestArticles.list("world", 0, 1).get(0));
+        load(bodies, TestArticles.list("world", 9, 1).get(0));
+
+        assertTrue(prefetched > 0);
+        long wasted = prefetched - Metrics.READER_PREFETCH_USED_BYTES.count();
+        assertEquals(prefetched / 2, wasted);
+        assertEquals("reader.prefetch hit_rate=0.50 opened=2 wasted_bytes=" + wasted,
+                ArticleBodies.prefetchReport());
+    }
+
+    @Test
+    public void bodyUrl_takesTheIdFromTheWebUrl() {
+        assertEquals("https://content.guardianapis.com/world/2017/jun/24/story?api-key=test&show-fields=body",
+                QueryUtils.buildBodyUrl("https://content.guardianapis.com",
+                        "https://www.theguardian.com/world/2017/jun/24/story"));
+        assertNull(QueryUtils.buildBodyUrl("https://content.guardianapis.com", "https://www.theguardian.com/"));
+        assertNull(QueryUtils.buildBodyUrl("https://content.guardianapis.com", "not a url"));
+    }
+
+    @Test
+    public void body_isExtractedFromTheContentResponse() throws Exception {
+        String json = "{\"response\":{\"status\":\"ok\",\"content\":{\"id\":\"world/1\","
+                + "\"fields\":{\"headline\":\"Headline\",\"body\":\"<p>Text</p>\"},\"tags\":[]}}}";
+
+        assertEquals("<p>Text</p>", QueryUtils.extractBodyFromStream(
+                new ByteArrayInputStream(json.getBytes("UTF-8"))));
+        assertNull(QueryUtils.extractBodyFromStream(
+                new ByteArrayInputStream("{\"response\":{\"status\":\"error\"}}".getBytes("UTF-8"))));
+    }
+
+    private ArticleBodies bodies(long maxPrefetchBytes) {
+        return new ArticleBodies(DIRECT, DIRECT, cache, server.url("").toString().replaceAll("/$", ""),
+                maxPrefetchBytes);
+    }
+
+    private static String load(ArticleBodies bodies, Article article) {
+        final String[] delivered = new String[1];
+        bodies.load(article, new CancellationToken(), new ArticleBodies.Listener() {
+            @Override
+            public void onBody(String body) {
+                delivered[0] = body;
+            }
+        });
+        return delivered[0];
+    }
+
+    private static String bodyJson(String body) {
+        return "{\"response\":{\"status\":\"ok\",\"content\":{\"id\":\"x\",\"fields\":{\"body\":\""
+                + body + "\"}}}}";
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.labtech.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the disk cache of {@link ArticleCache} and the conditional requests that revalidate it,
+ * against a local {@link MockWebServer} serving recorded Guardian responses, and that the
+ * Cache-Control header of the responses is honored.
+ */
+public class ArticleCacheTest {
+
+    private static final String ETAG = "\"d41d8cd98f00\"";
+    private static final String LAST_MODIFIED = "Sat, 24 Jun 2017 13:04:13 GMT";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private ArticleCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        // Without retries, so that failed requests fail right away
+        QueryUtils.setTransport(new OkHttpTransport());
+        cache = new ArticleCache(folder.newFolder("articles"), 64 * 1024);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void entry_survivesRoundTrip() {
+        List<Article> articles = TestArticles.list("a", 0, 3);
+        cache.put("https://example.com/search?q=a", new ArticleCache.Entry(articles, ETAG, null));
+
+        ArticleCache.Entry entry = cache.get("https://example.com/search?q=a");
+        assertNotNull(entry);
+        assertEquals(ETAG, entry.etag);
+        assertNull(entry.lastModified);
+        assertEquals(3, entry.articles.size());
+        assertEquals("a 2", entry.articles.get(2).getTitle());
+        assertEquals("https://www.theguardian.com/a/2", entry.articles.get(2).getUrl());
+    }
+
+    @Test
+    public void normalizedUrls_shareEntry() {
+        cache.put("HTTPS://Example.com/search?q=a&page=2#top",
+                new ArticleCache.Entry(TestArticles.list("a", 0, 1), null, null));
+
+        assertNotNull(cache.get("https://example.com/search?page=2&q=a"));
+        assertNull(cache.get("https://example.com/search?page=3&q=a"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntries_areEvicted() throws Exception {
+        ArticleCache small = new ArticleCache(folder.newFolder("small"), 4 * 1024);
+        for (int i = 0; i < 10; i++) {
+            small.put("https://example.com/search?q=" + i,
+                    new ArticleCache.Entry(TestArticles.list("q" + i, 0, 10), null, null));
+            // Keep the first entry hot
+            assertNotNull(small.get("https://example.com/search?q=0"));
+        }
+
+        assertTrue("cache size " + small.size(), small.size() <= 4 * 1024);
+        assertNotNull(small.get("https://example.com/search?q=0"));
+        assertNotNull(small.get("https://example.com/search?q=9"));
+        assertNull(small.get("https://example.com/search?q=1"));
+    }
+
+    @Test
+    public void revalidation_reusesEntryOnNotModified() throws Exception {
+        byte[] body = QueryUtilsTest.readFixture("search_10.json");
+        server.enqueue(new MockResponse()
+                .setBody(new Buffer().write(body))
+                .setHeader("ETag", ETAG)
+                .setHeader("Last-Modified", LAST_MODIFIED));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        String url = server.url("/search?q=brexit").toString();
+        ArticleCache.Entry first = QueryUtils.fetchArticlesEntry(url, null);
+        assertNotNull(first);
+        assertEquals(10, first.articles.size());
+        assertEquals(ETAG, first.etag);
+        cache.put(url, first);
+
+        ArticleCache.Entry cached = cache.get(url);
+        ArticleCache.Entry second = QueryUtils.fetchArticlesEntry(url, cached);
+        assertSame(cached, second);
+
+        server.takeRequest();
+        RecordedRequest conditional = server.takeRequest();
+        assertEquals(ETAG, conditional.getHeader("If-None-Match"));
+        assertEquals(LAST_MODIFIED, conditional.getHeader("If-Modified-Since"));
+    }
+
+    @Test
+    public void revalidation_replacesEntryOnNewBody() throws Exception {
+        server.enqueue(new MockResponse()
+                .setBody(new Buffer().write(QueryUtilsTest.readFixture("search_50.json")))
+                .setHeader("ETag", "\"new\""));
+
+        String url = server.url("/search?q=brexit").toString();
+        List<Article> old = TestArticles.list("old", 0, 2);
+        ArticleCache.Entry stale = new ArticleCache.Entry(old, ETAG, null);
+        ArticleCache.Entry fresh = QueryUtils.fetchArticlesEntry(url, stale);
+
+        assertNotNull(fresh);
+        assertEquals(50, fresh.articles.size());
+        assertEquals("\"new\"", fresh.etag);
+    }
+
+    @Test
+    public void freshEntry_isServedWithoutRequest() throws Exception {
+        byte[] body = QueryUtilsTest.readFixture("search_10.json");
+        server.enqueue(new MockResponse()
+                .setBody(new Buffer().write(body))
+                .setHeader("Cache-Control", "public, max-age=60"));
+        String url = server.url("/search?q=brexit").toString();
+        cache.put(url, QueryUtils.fetchArticlesEntry(url, null));
+        Metrics.reset();
+
+        ArticleCache.Entry cached = cache.get(url);
+        assertTrue(cached.isFresh(System.currentTimeMillis()));
+        assertSame(cached, QueryUtils.fetchArticlesEntry(url, cached));
+        assertSame(cached, QueryUtils.fetchNewerArticlesEntry(url, cached, 10, new CancellationToken()));
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(2, Metrics.HTTP_CACHE_FRESH.count());
+        assertEquals(2 * body.length, Metrics.HTTP_CACHE_BYTES_SAVED.count());
+    }
+
+    @Test
+    public void notModified_renewsFreshnessWithoutParsing() throws Exception {
+        server.enqueue(new MockResponse()
+                .setBody(new Buffer().write(QueryUtilsTest.readFixture("search_10.json")))
+                .setHeader("ETag", ETAG)
+                .setHeader("Cache-Control", "no-cache"));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("Cache-Control", "max-age=60"));
+        String url = server.url("/search?q=brexit").toString();
+        ArticleCache.Entry first = QueryUtils.fetchArticlesEntry(url, null);
+        assertEquals(0, first.freshUntilMillis);
+        assertTrue(first.parseMicros > 0);
+        Metrics.reset();
+
+        ArticleCache.Entry second = QueryUtils.fetchArticlesEntry(url, first);
+        assertSame(first.articles, second.articles);
+        assertTrue(second.isFresh(System.currentTimeMillis()));
+        assertEquals(0, Metrics.PARSE_STREAM.count());
+        assertEquals(1, Metrics.HTTP_CACHE_NOT_MODIFIED.count());
+        assertEquals(first.parseMicros, Metrics.HTTP_CACHE_PARSE_SAVED.count());
+
+        // The renewed freshness is stored with the entry
+        cache.put(url, second);
+        assertEquals(10, cache.get(url).articles.size());
+        assertEquals(second.freshUntilMillis, cache.get(url).freshUntilMillis);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void noStoreResponse_isNotCached() throws Exception {
+        server.enqueue(new MockResponse()
+                .setBody(new Buffer().write(QueryUtilsTest.readFixture("search_10.json")))
+                .setHeader("Cache-Control", "private, no-store"));
+        String url = server.url("/search?q=brexit").toString();
+        cache.put(url, new ArticleCache.Entry(TestArticles.list("old", 0, 2), ETAG, null));
+
+        ArticleCache.Entry entry = QueryUtils.fetchArticlesEntry(url, cache.get(url));
+        assertEquals(10, entry.articles.size());
+        cache.put(url, entry);
+
+        assertNull(cache.get(url));
+    }
+
+    @Test
+    public void freshness_isMaxAgeLessAge() {
+        long now = 1498309453000L;
+        assertEquals(now + 10000, freshUntil(now, "max-age=60", "50"));
+        assertEquals(now + 60000, freshUntil(now, "Max-Age=\"60\", must-revalidate", null));
+        assertEquals(0, freshUntil(now, "max-age=60", "60"));
+        assertEquals(0, freshUntil(now, "max-age=60, no-cache", null));
+        assertEquals(0, freshUntil(now, "public", null));
+        assertEquals(0, freshUntil(now, null, null));
+        assertEquals(ArticleCache.Entry.NOT_STORABLE, freshUntil(now, "no-store, max-age=60", null));
+    }
+
+    @Test
+    public void repeatedQueries_saveBytesAndParsing() throws Exception {
+        byte[] body = QueryUtilsTest.readFixture("search_200.json");
+        int repeats = 10;
+        // Every response has to be revalidated, the way the API answers searches
+        server.enqueue(new MockResponse()
+                .setBody(new Buffer().write(body))
+                .setHeader("ETag", ETAG)
+                .setHeader("Cache-Control", "max-age=0"));
+        for (int i = 0; i < repeats; i++) {
+            server.enqueue(new MockResponse().setResponseCode(304));
+        }
+        String url = server.url("/search?q=brexit").toString();
+        Metrics.reset();
+
+        RequestTimings usage = new RequestTimings();
+        ArticleCache.Entry entry = QueryUtils.fetchArticlesEntry(url, null, new CancellationToken(), usage);
+        for (int i = 0; i < repeats; i++) {
+            entry = QueryUtils.fetchArticlesEntry(url, entry, new CancellationToken(), usage);
+        }
+
+        assertEquals(body.length, usage.getBodyBytes());
+        assertEquals(repeats * body.length, Metrics.HTTP_CACHE_BYTES_SAVED.count());
+        assertEquals(1, Metrics.PARSE_STREAM.count());
+        assertEquals(repeats + 1, server.getRequestCount());
+    }
+
+    @Test
+    public void failedRequest_returnsNull() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        assertNull(QueryUtils.fetchArticlesEntry(server.url("/search").toString(), null));
+    }
+
+    private static long freshUntil(long now, String cacheControl, String age) {
+        Map<String, String> headers = new HashMap<>();
+        if (cacheControl != null) {
+            headers.put("cache-control", cacheControl);
+        }
+        if (age != null) {
+            headers.put("age", age);
+        }
+        HttpTransport.Response response = new HttpTransport.Response(200, headers,
+                new ByteArrayInputStream(new byte[0]), new RequestTimings());
+        return QueryUtils.freshUntilMillis(response, now);
+    }
+}
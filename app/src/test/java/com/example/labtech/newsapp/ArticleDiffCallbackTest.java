@@ -0,0 +1,100 @@
+package com.example.labtech.newsapp;
+
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Counts the row updates {@link ArticleDiffCallback} dispatches for typical refreshes.
+ */
+public class ArticleDiffCallbackTest {
+
+    private static final int ROWS = 100;
+
+    @Test
+    public void refreshWithNinetyPercentUnchanged_rebindsTenPercent() {
+        List<Article> oldRows = TestArticles.list("Article", 0, ROWS);
+        // 5 new articles on top, the 5 oldest fall off the end and 5 titles were edited
+        List<Article> newRows = TestArticles.list("Article", ROWS, 5);
+        newRows.addAll(oldRows.subList(0, ROWS - 5));
+        for (int i = 20; i < 25; i++) {
+            Article edited = newRows.get(i);
+            newRows.set(i, new Article(edited.getTitle() + " (updated)", edited.getContributor(),
+                    edited.getDatePublished(), edited.getSection(), edited.getUrl()));
+        }
+
+        CountingCallback updates = diff(oldRows, newRows);
+
+        assertEquals(5, updates.inserted);
+        assertEquals(5, updates.removed);
+        assertEquals(5, updates.changed);
+        assertEquals(0, updates.moved);
+        // Only inserted and changed rows get bound, instead of every row after clear() + addAll()
+        assertEquals(10, updates.inserted + updates.changed);
+    }
+
+    @Test
+    public void appendedPage_isOnlyInserted() {
+        List<Article> oldRows = TestArticles.list("Article", 0, 40);
+        List<Article> newRows = TestArticles.list("Article", 0, 60);
+
+        CountingCallback updates = diff(oldRows, newRows);
+
+        assertEquals(20, updates.inserted);
+        assertEquals(0, updates.removed + updates.changed + updates.moved);
+    }
+
+    @Test
+    public void droppedPage_isChangedInPlace() {
+        List<Article> oldRows = TestArticles.list("Article", 0, 40);
+        List<Article> newRows = new ArrayList<>(oldRows);
+        for (int i = 0; i < 20; i++) {
+            newRows.set(i, null);
+        }
+
+        CountingCallback updates = diff(oldRows, newRows);
+
+        assertEquals(20, updates.changed);
+        assertEquals(0, updates.inserted + updates.removed + updates.moved);
+    }
+
+    private static CountingCallback diff(List<Article> oldRows, List<Article> newRows) {
+        CountingCallback updates = new CountingCallback();
+        DiffUtil.calculateDiff(new ArticleDiffCallback(oldRows, newRows), false)
+                .dispatchUpdatesTo(updates);
+        return updates;
+    }
+
+    private static class CountingCallback implements ListUpdateCallback {
+        int inserted;
+        int removed;
+        int moved;
+        int changed;
+
+        @Override
+        public void onInserted(int position, int count) {
+            inserted += count;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            removed += count;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            moved++;
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            changed += count;
+        }
+    }
+}
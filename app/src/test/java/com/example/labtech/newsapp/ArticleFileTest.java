@@ -0,0 +1,192 @@
+package com.example.labtech.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that an {@link ArticleFile} reads back what was written and appended, and that records
+ * cut short by an interrupted write are left out.
+ */
+public class ArticleFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void articles_areReadBackAsWritten() throws Exception {
+        File file = new File(folder.getRoot(), "articles");
+        List<Article> articles = TestArticles.list("Article", 0, 50);
+        ArticleFile.write(file, articles);
+
+        ArticleFile read = ArticleFile.open(file);
+
+        assertEquals(articles.size(), read.size());
+        for (int i = 0; i < articles.size(); i++) {
+            assertSameFields(articles.get(i), read.get(i));
+        }
+    }
+
+    @Test
+    public void randomRow_isDecodedWithoutTheOthers() throws Exception {
+        File file = new File(folder.getRoot(), "articles");
+        ArticleFile.write(file, TestArticles.list("Article", 0, 1000));
+
+        ArticleFile read = ArticleFile.open(file);
+
+        assertEquals("Article 737", read.get(737).getTitle());
+        assertEquals("Article 3", read.get(3).getTitle());
+    }
+
+    @Test
+    public void appendedArticles_followTheOthers() throws Exception {
+        File file = new File(folder.getRoot(), "articles");
+        ArticleFile.append(file, TestArticles.list("Article", 0, 3));
+        ArticleFile.append(file, TestArticles.list("Article", 3, 2));
+
+        ArticleFile read = ArticleFile.open(file);
+
+        assertEquals(5, read.size());
+        assertEquals("Article 4", read.get(4).getTitle());
+    }
+
+    @Test
+    public void write_replacesThePreviousArticles() throws Exception {
+        File file = new File(folder.getRoot(), "articles");
+        ArticleFile.write(file, TestArticles.list("Article", 0, 10));
+        ArticleFile before = ArticleFile.open(file);
+
+        ArticleFile.write(file, TestArticles.list("Article", 100, 2));
+
+        assertEquals(2, ArticleFile.open(file).size());
+        assertEquals("Article 101", ArticleFile.open(file).get(1).getTitle());
+        // A list opened before keeps the articles it was opened with
+        assertEquals("Article 9", before.get(9).getTitle());
+    }
+
+    @Test
+    public void unicodeAndMissingFields_roundTrip() throws Exception {
+        File file = new File(folder.getRoot(), "articles");
+        Article article = new Article("Çà et là — 東京 📰", Arrays.asList("Zoë", "Ærøskøbing"),
+                1498309453000L, "Monde", "https://example.com/é", null);
+        ArticleFile.write(file, Collections.singletonList(article));
+
+        Article read = ArticleFile.open(file).get(0);
+
+        assertSameFields(article, read);
+        assertNull(read.getThumbnailUrl());
+    }
+
+    @Test
+    public void manyContributors_roundTrip() throws Exception {
+        File file = new File(folder.getRoot(), "articles");
+        List<String> contributors = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            contributors.add("Contributor " + i);
+        }
+        Article article = new Article("Liveblog", contributors, 1498309453000L, "Politics",
+                "https://example.com/liveblog", null);
+        ArticleFile.write(file, Collections.singletonList(article));
+
+        assertSameFields(article, ArticleFile.open(file).get(0));
+    }
+
+    @Test
+    public void damagedRecord_failsVerification() throws Exception {
+        File file = new File(folder.getRoot(), "articles");
+        ArticleFile.write(file, TestArticles.list("Article", 0, 5));
+        ArticleFile.open(file).verify();
+        // The length of the title of the first record, past the header and the record length
+        RandomAccessFile data = new RandomAccessFile(file, "rw");
+        data.seek(12);
+        data.writeInt(Integer.MAX_VALUE);
+        data.close();
+
+        try {
+            ArticleFile.open(file).verify();
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void recordCutShort_isLeftOut() throws Exception {
+        File file = new File(folder.getRoot(), "articles");
+        ArticleFile.write(file, TestArticles.list("Article", 0, 5));
+        RandomAccessFile data = new RandomAccessFile(file, "rw");
+        data.setLength(data.length() - 3);
+        data.close();
+
+        ArticleFile read = ArticleFile.open(file);
+
+        assertEquals(4, read.size());
+        assertEquals("Article 3", read.get(3).getTitle());
+    }
+
+    @Test
+    public void appendAfterRecordCutShort_replacesIt() throws Exception {
+        File file = new File(folder.getRoot(), "articles");
+        ArticleFile.write(file, TestArticles.list("Article", 0, 5));
+        RandomAccessFile data = new RandomAccessFile(file, "rw");
+        data.setLength(data.length() - 3);
+        data.close();
+
+        ArticleFile.append(file, TestArticles.list("Article", 10, 2));
+
+        ArticleFile read = ArticleFile.open(file);
+        assertEquals(6, read.size());
+        assertEquals("Article 3", read.get(3).getTitle());
+        assertSameFields(TestArticles.list("Article", 10, 1).get(0), read.get(4));
+    }
+
+    @Test
+    public void appendAfterPartialOffset_staysAligned() throws Exception {
+        File file = new File(folder.getRoot(), "articles");
+        ArticleFile.write(file, TestArticles.list("Article", 0, 2));
+        FileOutputStream index = new FileOutputStream(ArticleFile.indexOf(file), true);
+        index.write(new byte[]{0, 0});
+        index.close();
+
+        ArticleFile.append(file, TestArticles.list("Article", 2, 1));
+
+        ArticleFile read = ArticleFile.open(file);
+        assertEquals(3, read.size());
+        assertEquals("Article 2", read.get(2).getTitle());
+    }
+
+    @Test
+    public void otherFile_isRejected() throws Exception {
+        File file = folder.newFile("articles");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        out.close();
+
+        try {
+            ArticleFile.open(file);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static void assertSameFields(Article expected, Article actual) {
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getContributors(), actual.getContributors());
+        assertEquals(expected.getPublishedMillis(), actual.getPublishedMillis());
+        assertEquals(expected.getSection(), actual.getSection());
+        assertEquals(expected.getUrl(), actual.getUrl());
+        assertEquals(expected.getThumbnailUrl(), actual.getThumbnailUrl());
+    }
+}
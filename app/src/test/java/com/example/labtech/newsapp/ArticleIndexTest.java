@@ -0,0 +1,192 @@
+package com.example.labtech.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the ranking, incremental updates and log file of {@link ArticleIndex}.
+ */
+public class ArticleIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void search_ranksTitleMatchesFirst() {
+        ArticleIndex index = new ArticleIndex(null);
+        index.addAll(Arrays.asList(
+                article("Markets fall", "Brexit", "Jane Doe", "2017-06-24", "a"),
+                article("Brexit talks begin", "Politics", "Jane Doe", "2017-06-20", "b"),
+                article("Football results", "Sport", "John Smith", "2017-06-24", "c")));
+
+        assertEquals(urls("b", "a"), urls(index.search("brexit", 0, 10)));
+        assertEquals(urls("c"), urls(index.search("smith", 0, 10)));
+    }
+
+    @Test
+    public void search_matchesEveryTermAndLastTermAsPrefix() {
+        ArticleIndex index = new ArticleIndex(null);
+        index.addAll(Arrays.asList(
+                article("Brexit talks begin", "Politics", "Jane Doe", "2017-06-20", "a"),
+                article("Brexit vote", "Politics", "Jane Doe", "2017-06-21", "b"),
+                article("Trade talks", "Business", "Jane Doe", "2017-06-22", "c")));
+
+        assertEquals(urls("a"), urls(index.search("Brexit TALKS", 0, 10)));
+        assertEquals(urls("a"), urls(index.search("brexit ta", 0, 10)));
+        assertEquals(urls("b", "a"), urls(index.search("brex", 0, 10)));
+        // Only the last term is matched as a prefix
+        assertTrue(index.search("brex talks", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void emptyQuery_returnsMostRecentFirstInPages() {
+        ArticleIndex index = new ArticleIndex(null);
+        index.addAll(Arrays.asList(
+                article("One", "News", "Jane Doe", "2017-06-20", "a"),
+                article("Two", "News", "Jane Doe", "2017-06-22", "b"),
+                article("Three", "News", "Jane Doe", "2017-06-21", "c")));
+
+        assertEquals(urls("b", "c"), urls(index.search("", 0, 2)));
+        assertEquals(urls("a"), urls(index.search("  ", 2, 2)));
+    }
+
+    @Test
+    public void missingContributors_areNotIndexed() {
+        ArticleIndex index = new ArticleIndex(null);
+        index.addAll(Collections.singletonList(
+                article("Markets fall", "Business", Article.NO_CONTRIBUTORS, "2017-06-24", "a")));
+
+        assertTrue(index.search("contributors", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void changedArticles_replaceTheirPreviousVersion() {
+        ArticleIndex index = new ArticleIndex(null);
+        index.addAll(Collections.singletonList(article("Brexit talks", "Politics", "Jane Doe", "2017-06-20", "a")));
+
+        assertEquals(0, index.addAll(Collections.singletonList(
+                article("Brexit talks", "Politics", "Jane Doe", "2017-06-20", "a"))));
+        assertEquals(1, index.addAll(Collections.singletonList(
+                article("Brexit talks collapse", "Politics", "Jane Doe", "2017-06-20", "a"))));
+
+        assertEquals(1, index.size());
+        assertEquals(1, index.search("brexit", 0, 10).size());
+        assertEquals(1, index.search("collapse", 0, 10).size());
+    }
+
+    @Test
+    public void index_isRebuiltFromLogFile() throws Exception {
+        File file = new File(folder.getRoot(), "index");
+        ArticleIndex index = new ArticleIndex(file);
+        index.addAll(Arrays.asList(
+                article("Brexit talks", "Politics", "Jane Doe", "2017-06-20", "a"),
+                article("Trade deal", "Business", "Jane Doe", "2017-06-21", "b")));
+        index.addAll(Collections.singletonList(article("Brexit vote", "Politics", "Jane Doe", "2017-06-22", "c")));
+
+        ArticleIndex reopened = new ArticleIndex(file);
+
+        assertEquals(3, reopened.size());
+        assertEquals(urls("c", "a"), urls(reopened.search("brexit", 0, 10)));
+    }
+
+    @Test
+    public void truncatedLogFile_keepsCompleteArticles() throws Exception {
+        File file = new File(folder.getRoot(), "index");
+        new ArticleIndex(file).addAll(Arrays.asList(
+                article("Brexit talks", "Politics", "Jane Doe", "2017-06-20", "a"),
+                article("Trade deal", "Business", "Jane Doe", "2017-06-21", "b")));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(file.length() - 3);
+        raf.close();
+
+        ArticleIndex reopened = new ArticleIndex(file);
+        assertEquals(1, reopened.size());
+        reopened.addAll(Collections.singletonList(article("Brexit vote", "Politics", "Jane Doe", "2017-06-22", "c")));
+
+        assertEquals(2, new ArticleIndex(file).size());
+    }
+
+    @Test
+    public void fullIndex_dropsTheOldestArticles() throws Exception {
+        File file = new File(folder.getRoot(), "index");
+        ArticleIndex index = new ArticleIndex(file, 8);
+        for (int day = 1; day <= 8; day++) {
+            index.addAll(Collections.singletonList(
+                    article("Brexit day " + day, "Politics", "Jane Doe", "2017-06-0" + day, "d" + day)));
+        }
+        assertEquals(8, index.size());
+
+        index.addAll(Collections.singletonList(article("Brexit late", "Politics", "Jane Doe", "2017-05-01", "late")));
+
+        // Back to three quarters of the limit, keeping the most recently published
+        assertEquals(6, index.size());
+        assertEquals(urls("d8", "d7", "d6", "d5", "d4", "d3"), urls(index.search("", 0, 10)));
+        assertEquals(6, index.search("brexit", 0, 10).size());
+        assertEquals(6, new ArticleIndex(file, 8).size());
+    }
+
+    @Test
+    public void terms_haveOnePostingPerArticle() {
+        ArticleIndex index = new ArticleIndex(null);
+        index.addAll(Arrays.asList(
+                article("Brexit talks", "Politics", "Jane Doe", "2017-06-20", "a"),
+                article("Trade deal", "Business", "Jane Doe", "2017-06-21", "b")));
+
+        // brexit talks politics trade deal business jane doe 2017 06 20 21
+        assertEquals(12, index.termCount());
+        // Eight terms in each of the two articles
+        assertEquals(16, index.postingCount());
+    }
+
+    @Test
+    public void trimmedIndex_isRebuiltFromLogFile() throws Exception {
+        File file = new File(folder.getRoot(), "index");
+        ArticleIndex index = new ArticleIndex(file);
+        index.addAll(Arrays.asList(
+                article("Brexit talks", "Politics", "Jane Doe", "2017-06-20", "a"),
+                article("Trade deal", "Business", "Jane Doe", "2017-06-21", "b")));
+        assertTrue(index.residentBytes() > 0);
+
+        index.trim(MemoryGovernor.STAGE_COLD);
+        assertTrue(index.residentBytes() > 0);
+        long resident = index.residentBytes();
+        index.trim(MemoryGovernor.STAGE_CACHES);
+        assertEquals(0, index.residentBytes());
+
+        // Dropped by the next search, which rebuilds it from the log file
+        assertEquals(urls("a"), urls(index.search("brexit", 0, 10)));
+        assertEquals(2, index.size());
+        assertEquals(resident, index.residentBytes());
+    }
+
+    private static Article article(String title, String section, String contributor, String date, String id) {
+        return new Article(title, contributor, date, section, "https://www.theguardian.com/" + id);
+    }
+
+    private static List<String> urls(String... ids) {
+        List<String> urls = new ArrayList<>();
+        for (String id : ids) {
+            urls.add("https://www.theguardian.com/" + id);
+        }
+        return urls;
+    }
+
+    private static List<String> urls(List<Article> articles) {
+        List<String> urls = new ArrayList<>();
+        for (Article article : articles) {
+            urls.add(article.getUrl());
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.labtech.newsapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the prefetching, de-duplication and eviction of {@link ArticlePager}.
+ */
+public class ArticlePagerTest {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int PREFETCH_DISTANCE = 3;
+    private static final int RESIDENT_PAGE_RADIUS = 1;
+
+    private final List<Integer> requestedPages = new ArrayList<>();
+    private ArticlePager pager;
+
+    @Before
+    public void setUp() {
+        pager = new ArticlePager(PAGE_SIZE, PREFETCH_DISTANCE, RESIDENT_PAGE_RADIUS,
+                new ArticlePager.PageRequestListener() {
+                    @Override
+                    public void onPageRequested(int page) {
+                        requestedPages.add(page);
+                    }
+                });
+        pager.reset();
+        pager.onPageLoaded(1, page(1, PAGE_SIZE));
+    }
+
+    @Test
+    public void nextPage_isPrefetchedNearTheEnd() {
+        pager.onVisibleRangeChanged(0, 5);
+        assertEquals(1, requestedPages.size());
+
+        pager.onVisibleRangeChanged(1, 6);
+        assertEquals(2, requestedPages.size());
+        assertEquals(2, (int) requestedPages.get(1));
+        assertTrue(pager.isInFlight(2));
+    }
+
+    @Test
+    public void pageInFlight_isRequestedOnce() {
+        pager.onVisibleRangeChanged(2, 7);
+        pager.onVisibleRangeChanged(3, 8);
+        pager.onVisibleRangeChanged(4, 9);
+
+        assertEquals(2, requestedPages.size());
+    }
+
+    @Test
+    public void loadedPage_isAppended() {
+        pager.onVisibleRangeChanged(2, 7);
+        assertTrue(pager.onPageLoaded(2, page(2, PAGE_SIZE)));
+
+        assertEquals(20, pager.getCount());
+        assertEquals("page 2 article 4", pager.getItem(14).getTitle());
+        assertFalse(pager.isInFlight(2));
+    }
+
+    @Test
+    public void shortPage_endsTheSearch() {
+        pager.onVisibleRangeChanged(2, 7);
+        pager.onPageLoaded(2, page(2, 4));
+        pager.onVisibleRangeChanged(6, 13);
+
+        assertTrue(pager.isEndReached());
+        assertEquals(14, pager.getCount());
+        assertEquals(2, requestedPages.size());
+    }
+
+    @Test
+    public void shortPageThatIsNotTheLast_keepsLoading() {
+        pager.onVisibleRangeChanged(2, 7);
+        pager.onPageLoaded(2, page(2, 4), false);
+        pager.onVisibleRangeChanged(6, 13);
+
+        assertFalse(pager.isEndReached());
+        assertEquals(3, (int) requestedPages.get(requestedPages.size() - 1));
+
+        pager.onPageLoaded(3, page(3, 7), false);
+        assertEquals(21, pager.getCount());
+        assertEquals("page 2 article 3", pager.getItem(13).getTitle());
+        assertEquals("page 3 article 0", pager.getItem(14).getTitle());
+        assertEquals("page 3 article 6", pager.snapshot().get(20).getTitle());
+        assertEquals(pager.getItem(13).getPublishedMillis(), pager.getEndMillis(2));
+    }
+
+    @Test
+    public void lastPage_endsTheFeedWhateverItsSize() {
+        pager.onVisibleRangeChanged(2, 7);
+        pager.onPageLoaded(2, page(2, PAGE_SIZE), true);
+        pager.onVisibleRangeChanged(12, 19);
+
+        assertTrue(pager.isEndReached());
+        assertEquals(2, requestedPages.size());
+    }
+
+    @Test
+    public void farPages_areDroppedAndLoadedAgain() {
+        for (int page = 2; page <= 5; page++) {
+            pager.onVisibleRangeChanged((page - 1) * PAGE_SIZE - 5, (page - 1) * PAGE_SIZE - 1);
+            pager.onPageLoaded(page, page(page, PAGE_SIZE));
+        }
+        pager.onVisibleRangeChanged(40, 45);
+
+        assertFalse(pager.isResident(1));
+        assertFalse(pager.isResident(2));
+        assertTrue(pager.isResident(4));
+        assertTrue(pager.isResident(5));
+        assertEquals(50, pager.getCount());
+
+        int requestsBefore = requestedPages.size();
+        assertNull(pager.getItem(3));
+        assertNull(pager.getItem(4));
+        assertEquals(requestsBefore + 1, requestedPages.size());
+        assertEquals(1, (int) requestedPages.get(requestsBefore));
+
+        pager.onPageLoaded(1, page(1, PAGE_SIZE));
+        assertNotNull(pager.getItem(3));
+        assertEquals(50, pager.getCount());
+    }
+
+    @Test
+    public void failedPage_canBeRequestedAgain() {
+        pager.onVisibleRangeChanged(2, 7);
+        pager.onPageLoaded(2, null);
+        pager.onVisibleRangeChanged(2, 7);
+
+        assertEquals(3, requestedPages.size());
+        assertEquals(2, (int) requestedPages.get(2));
+    }
+
+    @Test
+    public void snapshot_doesNotChangeWithThePager() {
+        List<Article> rows = pager.snapshot();
+        pager.onVisibleRangeChanged(2, 7);
+        pager.onPageLoaded(2, page(2, 4));
+
+        assertEquals(10, rows.size());
+        assertEquals("page 1 article 9", rows.get(9).getTitle());
+        List<Article> newRows = pager.snapshot();
+        assertEquals(14, newRows.size());
+        assertEquals("page 2 article 3", newRows.get(13).getTitle());
+    }
+
+    private static List<Article> page(int page, int size) {
+        return TestArticles.list("page " + page + " article", 0, size);
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.labtech.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the stale-while-revalidate loads of {@link ArticleRepository} and the sharing of
+ * overlapping requests for the same URL, against a slow local {@link MockWebServer}.
+ */
+public class ArticleRepositoryTest {
+
+    private static final long LATENCY_MILLIS = 300;
+    private static final int ARTICLES = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private ExecutorService executor;
+    private ArticleCache cache;
+    private ArticleIndex index;
+    private ArticleRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setBody(searchJson())
+                        .setBodyDelay(LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+        QueryUtils.setTransport(new OkHttpTransport());
+        executor = Executors.newFixedThreadPool(4);
+        cache = new ArticleCache(folder.newFolder("articles"), 1024 * 1024);
+        index = new ArticleIndex(null);
+        repository = new ArticleRepository(executor, cache, index);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void overlappingLoadsOfSameUrl_shareOneRequest() throws Exception {
+        List<RecordingListener> listeners = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            RecordingListener listener = new RecordingListener();
+            repository.load(url(), "", 1, ARTICLES, new CancellationToken(), listener);
+            listeners.add(listener);
+        }
+
+        for (RecordingListener listener : listeners) {
+            assertTrue(listener.complete.await(5, TimeUnit.SECONDS));
+            assertEquals(ARTICLES, listener.last().size());
+        }
+        assertEquals(1, server.getRequestCount());
+        assertSame(listeners.get(0).last(), listeners.get(2).last());
+    }
+
+    @Test
+    public void cancelingOneLoad_keepsRequestForTheOthers() throws Exception {
+        CancellationToken first = new CancellationToken();
+        RecordingListener canceled = new RecordingListener();
+        RecordingListener kept = new RecordingListener();
+        repository.load(url(), "", 1, ARTICLES, first, canceled);
+        repository.load(url(), "", 1, ARTICLES, new CancellationToken(), kept);
+        Thread.sleep(LATENCY_MILLIS / 3);
+
+        first.cancel();
+
+        assertTrue(kept.complete.await(5, TimeUnit.SECONDS));
+        assertEquals(ARTICLES, kept.last().size());
+        assertFalse(canceled.complete.await(LATENCY_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void cancelingEveryLoad_abortsRequest() throws Exception {
+        CancellationToken cancellation = new CancellationToken();
+        RecordingListener canceled = new RecordingListener();
+        repository.load(url(), "", 1, ARTICLES, cancellation, canceled);
+        Thread.sleep(LATENCY_MILLIS / 3);
+
+        cancellation.cancel();
+        RecordingListener later = new RecordingListener();
+        repository.load(url(), "", 1, ARTICLES, new CancellationToken(), later);
+
+        // The later load doesn't wait for the aborted request but sends its own
+        assertTrue(later.complete.await(5, TimeUnit.SECONDS));
+        assertEquals(ARTICLES, later.last().size());
+        assertFalse(canceled.complete.await(0, TimeUnit.MILLISECONDS));
+        assertEquals(2, server.getRequestCount());
+        // Nothing from the aborted request was cached over the later one
+        assertNotNull(cache.get(url()));
+    }
+
+    @Test
+    public void cachedArticles_areDeliveredBeforeFreshOnes() throws Exception {
+        List<Article> stale = Collections.singletonList(
+                new Article("Cached", "Jane Doe", "2017-06-01", "World news", "https://example.com/cached"));
+        cache.put(url(), new ArticleCache.Entry(stale, null, null));
+        RecordingListener listener = new RecordingListener();
+
+        repository.load(url(), "", 1, ARTICLES, new CancellationToken(), listener);
+        assertTrue(listener.complete.await(5, TimeUnit.SECONDS));
+
+        assertEquals(2, listener.deliveries.size());
+        // Read back from disk, so equal to what was cached but not the same list
+        assertEquals(1, listener.deliveries.get(0).size());
+        assertEquals("Cached", listener.deliveries.get(0).get(0).getTitle());
+        assertEquals(ARTICLES, listener.last().size());
+        assertEquals(ARTICLES, cache.get(url()).articles.size());
+        assertEquals(ARTICLES, index.size());
+    }
+
+    @Test
+    public void withoutUrl_onlySearchesIndex() throws Exception {
+        index.addAll(Collections.singletonList(
+                new Article("Brexit talks", "Jane Doe", "2017-06-20", "Politics", "https://example.com/a")));
+        RecordingListener listener = new RecordingListener();
+
+        repository.load(null, "brexit", 1, ARTICLES, new CancellationToken(), listener);
+        assertTrue(listener.complete.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, listener.deliveries.size());
+        assertEquals(1, listener.last().size());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private String url() {
+        return QueryUtils.buildPageUrl(server.url("/search").toString() + "?q=brexit", 1, ARTICLES);
+    }
+
+    private static String searchJson() {
+        StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[");
+        for (int i = 0; i < ARTICLES; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"webTitle\":\"Brexit ").append(i)
+                    .append("\",\"sectionName\":\"Politics\",\"webUrl\":\"https://www.theguardian.com/politics/")
+                    .append(i).append("\",\"webPublicationDate\":\"2017-06-24T1").append(i)
+                    .append(":00:00Z\",\"tags\":[]}");
+        }
+        return json.append("]}}").toString();
+    }
+
+    /**
+     * Records the lists handed over by a load.
+     */
+    private static class RecordingListener implements ArticleRepository.Listener {
+        final List<List<Article>> deliveries = Collections.synchronizedList(new ArrayList<List<Article>>());
+        final CountDownLatch complete = new CountDownLatch(1);
+
+        @Override
+        public void onArticles(List<Article> articles, boolean isComplete) {
+            deliveries.add(articles);
+            if (isComplete) {
+                complete.countDown();
+            }
+        }
+
+        List<Article> last() {
+            return deliveries.get(deliveries.size() - 1);
+        }
+    }
+}
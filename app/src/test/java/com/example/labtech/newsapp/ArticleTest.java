@@ -0,0 +1,97 @@
+package com.example.labtech.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the compact representation of {@link Article}.
+ */
+public class ArticleTest {
+
+    @Test
+    public void dates_areParsedAndFormattedInUtc() {
+        assertEquals(1498309453000L, Article.parseDate("2017-06-24T13:04:13Z"));
+        assertEquals(1498262400000L, Article.parseDate("2017-06-24"));
+        assertEquals("2017-06-24", Article.formatDate(1498309453000L));
+        assertEquals("1970-01-01", Article.formatDate(0));
+        assertEquals("2000-02-29", Article.formatDate(Article.parseDate("2000-02-29T23:59:59Z")));
+        assertEquals("1969-12-31", Article.formatDate(-1));
+        assertEquals(Article.UNKNOWN_DATE, Article.parseDate("yesterday"));
+        assertEquals(Article.UNKNOWN_DATE, Article.parseDate("2017-13-01"));
+        assertEquals("2017-06-24T13:04:13Z", Article.formatDateTime(1498309453000L));
+        assertEquals("1969-12-31T23:59:59Z", Article.formatDateTime(-1000));
+    }
+
+    @Test
+    public void unknownDate_isShownAsNoDate() {
+        Article article = new Article("Title", "Jane Doe", "yesterday", "Politics", "u");
+        assertEquals(Article.UNKNOWN_DATE, article.getPublishedMillis());
+        assertEquals("", article.getDatePublished());
+    }
+
+    @Test
+    public void contributors_areKeptAsListAndJoinedForDisplay() {
+        Article article = new Article("Title", "Jane Doe, John Smith", "2017-06-24", "Politics", "u");
+        assertEquals(Arrays.asList("Jane Doe", "John Smith"), article.getContributors());
+        assertEquals("Jane Doe, John Smith", article.getContributor());
+
+        Article none = new Article("Title", Collections.<String>emptyList(), 0, "Politics", "v");
+        assertTrue(none.getContributors().isEmpty());
+        assertEquals(Article.NO_CONTRIBUTORS, none.getContributor());
+    }
+
+    @Test
+    public void sectionsAndContributors_areShared() {
+        Article first = new Article("A", Collections.singletonList(new String("Jane Doe")), 0,
+                new String("Politics"), "a");
+        Article second = new Article("B", Collections.singletonList(new String("Jane Doe")), 0,
+                new String("Politics"), "b");
+
+        assertSame(first.getSection(), second.getSection());
+        assertSame(first.getContributors().get(0), second.getContributors().get(0));
+    }
+
+    @Test
+    public void binaryForm_survivesRoundTrip() throws Exception {
+        Article article = new Article("Brexit talks", Arrays.asList("Jane Doe", "John Smith"),
+                1498309453000L, "Politics", "https://www.theguardian.com/a");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        article.writeTo(new DataOutputStream(bytes));
+
+        Article read = Article.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(article.getTitle(), read.getTitle());
+        assertEquals(article.getContributors(), read.getContributors());
+        assertEquals(article.getPublishedMillis(), read.getPublishedMillis());
+        assertEquals(article.getSection(), read.getSection());
+        assertEquals(article.getUrl(), read.getUrl());
+    }
+
+    @Test
+    public void binaryForm_keepsEveryContributor() throws Exception {
+        List<String> contributors = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            contributors.add("Contributor " + i);
+        }
+        Article article = new Article("Liveblog", contributors, 1498309453000L, "Politics",
+                "https://www.theguardian.com/b");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        article.writeTo(new DataOutputStream(bytes));
+
+        Article read = Article.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(contributors, read.getContributors());
+    }
+}
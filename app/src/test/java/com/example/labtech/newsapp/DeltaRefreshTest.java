@@ -0,0 +1,203 @@
+package com.example.labtech.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the refresh with only the newer articles against a local {@link MockWebServer} standing
+ * in for the Guardian API, which only answers delta requests that carry the from-date and
+ * order-by parameters.
+ */
+public class DeltaRefreshTest {
+
+    private static final int PAGE_SIZE = 5;
+
+    /**
+     * 2017-06-24T10:00:00Z, newest article of the page loaded first
+     */
+    private static final long NEWEST_MILLIS = 1498298400000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private final List<RecordedRequest> deltaRequests = Collections.synchronizedList(new ArrayList<RecordedRequest>());
+
+    /**
+     * Hours after NEWEST_MILLIS of the articles the server has published since, newest first
+     */
+    private volatile int[] newerHours = {2, 1, 0};
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String fromDate = request.getRequestUrl().queryParameter("from-date");
+                if (fromDate == null) {
+                    return new MockResponse().setBody(searchJson(0, -1, -2, -3, -4));
+                }
+                deltaRequests.add(request);
+                if (!"newest".equals(request.getRequestUrl().queryParameter("order-by"))
+                        || Article.parseDate(fromDate) != NEWEST_MILLIS) {
+                    return new MockResponse().setResponseCode(400);
+                }
+                return new MockResponse().setBody(searchJson(newerHours));
+            }
+        });
+        server.start();
+        QueryUtils.setTransport(new OkHttpTransport());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void refresh_sendsFromDateAndMergesOnlyNewArticles() {
+        ArticleCache.Entry first = QueryUtils.fetchArticlesEntry(url(), null);
+
+        ArticleCache.Entry refreshed = QueryUtils.fetchNewerArticlesEntry(url(), first, PAGE_SIZE,
+                new CancellationToken());
+
+        assertEquals(1, deltaRequests.size());
+        assertEquals("2017-06-24T10:00:00Z", deltaRequests.get(0).getRequestUrl().queryParameter("from-date"));
+        // The article at the from-date itself is returned again but kept once
+        assertEquals(Arrays.asList("h2", "h1", "h0", "h-1", "h-2"), titles(refreshed.articles));
+        assertNull(refreshed.etag);
+    }
+
+    @Test
+    public void refresh_withNothingNew_keepsEntry() {
+        newerHours = new int[]{0};
+        ArticleCache.Entry first = QueryUtils.fetchArticlesEntry(url(), null);
+
+        ArticleCache.Entry refreshed = QueryUtils.fetchNewerArticlesEntry(url(), first, PAGE_SIZE,
+                new CancellationToken());
+
+        assertSame(first, refreshed);
+    }
+
+    @Test
+    public void refresh_ofRelevanceSearch_loadsWholePageAgain() {
+        ArticleCache.Entry first = QueryUtils.fetchArticlesEntry(relevanceUrl(), null);
+
+        ArticleCache.Entry refreshed = QueryUtils.fetchNewerArticlesEntry(relevanceUrl(), first, PAGE_SIZE,
+                new CancellationToken());
+
+        // The newer articles are not merged in front of a page ranked by relevance
+        assertTrue(deltaRequests.isEmpty());
+        assertEquals(2, server.getRequestCount());
+        assertEquals(titles(first.articles), titles(refreshed.articles));
+    }
+
+    @Test
+    public void refresh_withoutCachedArticles_loadsWholePage() {
+        ArticleCache.Entry refreshed = QueryUtils.fetchNewerArticlesEntry(url(), null, PAGE_SIZE,
+                new CancellationToken());
+
+        assertEquals(PAGE_SIZE, refreshed.articles.size());
+        assertTrue(deltaRequests.isEmpty());
+    }
+
+    @Test
+    public void repositoryRefresh_updatesCacheAndIndex() throws Exception {
+        ArticleCache cache = new ArticleCache(folder.newFolder("articles"), 1024 * 1024);
+        ArticleIndex index = new ArticleIndex(null);
+        cache.put(url(), QueryUtils.fetchArticlesEntry(url(), null));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicReference<List<Article>> delivered = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        new ArticleRepository(executor, cache, index).refresh(url(), "", PAGE_SIZE, new CancellationToken(),
+                new ArticleRepository.Listener() {
+                    @Override
+                    public void onArticles(List<Article> articles, boolean complete) {
+                        delivered.set(articles);
+                        done.countDown();
+                    }
+                });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(Arrays.asList("h2", "h1", "h0", "h-1", "h-2"), titles(delivered.get()));
+        assertEquals(titles(delivered.get()), titles(cache.get(url()).articles));
+        assertEquals(PAGE_SIZE, index.size());
+    }
+
+    @Test
+    public void mergeNewer_fillsShortPageUpToLimit() {
+        List<Article> current = Collections.singletonList(article(0));
+        List<Article> newer = Arrays.asList(article(2), article(1), article(0));
+
+        assertEquals(Arrays.asList("h2", "h1", "h0"), titles(QueryUtils.mergeNewer(current, newer, PAGE_SIZE)));
+        assertEquals(Arrays.asList("h2", "h1"), titles(QueryUtils.mergeNewer(current, newer, 2)));
+    }
+
+    private String url() {
+        return GuardianQuery.fromUrl(relevanceUrl()).orderBy(GuardianQuery.ORDER_NEWEST).build().toUrl();
+    }
+
+    /**
+     * First page of a text search in the API's default order, by relevance
+     */
+    private String relevanceUrl() {
+        return QueryUtils.buildPageUrl(server.url("/search").toString() + "?q=brexit", 1, PAGE_SIZE);
+    }
+
+    private static Article article(int hours) {
+        return new Article("h" + hours, Collections.<String>emptyList(), NEWEST_MILLIS + hours * 3600000L,
+                "Politics", "https://www.theguardian.com/politics/" + hours);
+    }
+
+    private static List<String> titles(List<Article> articles) {
+        List<String> titles = new ArrayList<>();
+        for (Article article : articles) {
+            titles.add(article.getTitle());
+        }
+        return titles;
+    }
+
+    /**
+     * Guardian response with one article per given number of hours after NEWEST_MILLIS.
+     */
+    private static String searchJson(int... hours) {
+        StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[");
+        for (int i = 0; i < hours.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            Article article = article(hours[i]);
+            json.append("{\"webTitle\":\"").append(article.getTitle())
+                    .append("\",\"sectionName\":\"Politics\",\"webUrl\":\"").append(article.getUrl())
+                    .append("\",\"webPublicationDate\":\"").append(Article.formatDateTime(article.getPublishedMillis()))
+                    .append("\",\"tags\":[]}");
+        }
+        return json.append("]}}").toString();
+    }
+}
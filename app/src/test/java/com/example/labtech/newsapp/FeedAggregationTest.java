@@ -0,0 +1,328 @@
+package com.example.labtech.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link FeedFanOut#loadSources} on a dozen feeds of the Guardian API, RSS and Atom
+ * formats served by a local {@link MockWebServer}, every one after its own latency, which all
+ * report one story of the day under their own URL and title. How long the feeds take to load
+ * is measured by FeedAggregationBenchmark.
+ */
+public class FeedAggregationTest {
+
+    private static final String[] FORMATS = {"guardian", "rss", "atom"};
+    private static final int SOURCES = 12;
+    private static final int ARTICLES_PER_SOURCE = 5;
+    private static final long LATENCY_STEP_MILLIS = 50;
+
+    /**
+     * The story of the day as the sources title it
+     */
+    private static final String[] SHARED_STORY = {
+            "Theresa May calls snap general election for 8 June",
+            "Theresa May calls snap election for June 8",
+            "UK PM Theresa May calls for snap general election on 8 June",
+            "Theresa May calls snap general election for 8 June",
+    };
+
+    private MockWebServer server;
+    private ExecutorService executor;
+    private RequestScheduler previousScheduler;
+
+    /**
+     * When set, counts down for every feed request, and holds the responses until all of them
+     * have been asked for
+     */
+    private volatile CountDownLatch allRequested;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                String[] path = request.getRequestUrl().encodedPath().split("/");
+                if (path.length == 3 && path[1].equals("limited")) {
+                    // A site that rate limits the app on its own
+                    return new MockResponse().setResponseCode(429).setHeader("Retry-After", "3600");
+                }
+                if (path.length != 3 || !Arrays.asList(FORMATS).contains(path[1])) {
+                    return new MockResponse().setResponseCode(503);
+                }
+                CountDownLatch requested = allRequested;
+                if (requested != null) {
+                    requested.countDown();
+                    if (!requested.await(5, TimeUnit.SECONDS)) {
+                        return new MockResponse().setResponseCode(503);
+                    }
+                }
+                int source = Integer.parseInt(path[2]);
+                return new MockResponse()
+                        .setBody(feed(path[1], source))
+                        .setBodyDelay(latencyMillis(source), TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+        // Without retries, so that failed requests fail right away
+        QueryUtils.setTransport(new OkHttpTransport());
+        executor = Executors.newFixedThreadPool(SOURCES);
+        previousScheduler = QueryUtils.getScheduler();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        QueryUtils.setScheduler(previousScheduler);
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void dozenSources_loadConcurrentlyIntoOneTimeline() throws Exception {
+        // Loaded one after the other, the first source would never be answered
+        allRequested = new CountDownLatch(SOURCES);
+        RecordingListener listener = new RecordingListener(SOURCES);
+
+        new FeedFanOut(executor, null).loadSources(sources(SOURCES), new CancellationToken(), listener);
+        assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+
+        // Every source's own articles, and the story of the day once
+        List<Article> timeline = listener.last();
+        assertEquals(SOURCES * ARTICLES_PER_SOURCE + 1, timeline.size());
+        Set<String> sections = new HashSet<>();
+        int sharedStories = 0;
+        for (Article article : timeline) {
+            sections.add(article.getSection());
+            if (article.getTitle().contains("Theresa May")) {
+                sharedStories++;
+            }
+        }
+        assertEquals(SOURCES, sections.size());
+        assertEquals(1, sharedStories);
+        for (int i = 1; i < timeline.size(); i++) {
+            assertTrue(timeline.get(i - 1).getPublishedMillis() >= timeline.get(i).getPublishedMillis());
+        }
+    }
+
+    @Test
+    public void otherSites_leaveTheApiRateLimitAlone() throws Exception {
+        // One request of the key left, and no more for a long time
+        RequestScheduler scheduler = new RequestScheduler(1, 0.001, 0, 0);
+        QueryUtils.setScheduler(scheduler);
+        // Requests left waiting for the key are given up after a while
+        final CancellationToken cancellation = new CancellationToken();
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                cancellation.cancel();
+            }
+        }, 5, TimeUnit.SECONDS);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertNotNull(QueryUtils.fetchFeedEntry(url("rss", i), new XmlFeedParser("Site " + i),
+                        null, cancellation));
+            }
+            assertNull(QueryUtils.fetchFeedEntry(url("limited", 0), new XmlFeedParser("Limited"),
+                    null, cancellation));
+            assertFalse(scheduler.isPaused());
+
+            // The Guardian request still gets the key's token
+            assertNotNull(QueryUtils.fetchArticlesEntry(url("guardian", 0), null, cancellation));
+        } finally {
+            timer.shutdownNow();
+        }
+        assertEquals(5, server.getRequestCount());
+    }
+
+    @Test
+    public void sameStory_keepsTheVersionOfTheFirstSource() throws Exception {
+        RecordingListener listener = new RecordingListener(SOURCES);
+
+        new FeedFanOut(executor, null).loadSources(sources(SOURCES), new CancellationToken(), listener);
+        assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+
+        for (Article article : listener.last()) {
+            if (article.getTitle().contains("Theresa May")) {
+                assertEquals(sharedStoryUrl(0), article.getUrl());
+            }
+        }
+    }
+
+    @Test
+    public void guardianUrls_areNotCollapsed() throws Exception {
+        List<String> urls = Arrays.asList(url("guardian", 0), url("guardian", 3));
+        RecordingListener listener = new RecordingListener(urls.size());
+
+        new FeedFanOut(executor, null).load(urls, new CancellationToken(), listener);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+
+        // The same story under two URLs stays twice, as before there were other sources
+        assertEquals(2 * ARTICLES_PER_SOURCE + 2, listener.last().size());
+    }
+
+    @Test
+    public void failedAndMalformedSources_leaveOthersInTimeline() throws Exception {
+        List<FeedSource> sources = sources(2);
+        sources.add(FeedSource.xml(server.url("/missing").toString(), "Missing"));
+        // A Guardian feed parsed as XML is not a feed at all
+        sources.add(FeedSource.xml(url("guardian", 0), "Not XML"));
+        RecordingListener listener = new RecordingListener(sources.size());
+
+        new FeedFanOut(executor, null).loadSources(sources, new CancellationToken(), listener);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(2 * ARTICLES_PER_SOURCE + 1, listener.last().size());
+    }
+
+    @Test
+    public void merge_collapsesNearDuplicatesAcrossLists() {
+        Article first = new Article(SHARED_STORY[0], "Jane Doe", "2017-04-18", "World", "https://a.example.com/may");
+        Article second = new Article(SHARED_STORY[2], "John Roe", "2017-04-19", "Politics", "https://b.example.com/may");
+        Article other = new Article("Article 2", "John Roe", "2017-04-17", "Politics", "https://b.example.com/2");
+        Article numbered = new Article("Article 1", "John Roe", "2017-04-16", "Politics", "https://b.example.com/1");
+
+        List<List<Article>> lists = Arrays.asList(Arrays.asList(first, numbered), Arrays.asList(second, other));
+
+        assertEquals(4, FeedFanOut.merge(lists).size());
+        List<Article> collapsed = FeedFanOut.merge(lists, true);
+        assertEquals(3, collapsed.size());
+        assertEquals(first, collapsed.get(0));
+    }
+
+    /**
+     * Returns the given number of sources, taking turns in the formats.
+     */
+    private List<FeedSource> sources(int count) {
+        List<FeedSource> sources = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String format = FORMATS[i % FORMATS.length];
+            String url = url(format, i);
+            sources.add("guardian".equals(format) ? FeedSource.guardian(url) : FeedSource.xml(url, site(i)));
+        }
+        return sources;
+    }
+
+    private String url(String format, int source) {
+        return server.url("/" + format + "/" + source).toString();
+    }
+
+    private static long latencyMillis(int source) {
+        return (source + 1) * LATENCY_STEP_MILLIS;
+    }
+
+    private static String site(int source) {
+        return "Site " + source;
+    }
+
+    private static String sharedStoryUrl(int source) {
+        return "https://site" + source + ".example.com/election";
+    }
+
+    /**
+     * Returns the feed of the source in the given format: its own articles, whose titles only
+     * differ in their numbers, and the story of the day.
+     */
+    private static String feed(String format, int source) {
+        List<String> titles = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        List<String> dates = new ArrayList<>();
+        for (int i = 0; i < ARTICLES_PER_SOURCE; i++) {
+            titles.add("Report " + (source * ARTICLES_PER_SOURCE + i) + " from the news desk");
+            urls.add("https://site" + source + ".example.com/report/" + i);
+            dates.add(String.format("2017-04-%02dT%02d:00:00Z", 17 - i, source));
+        }
+        titles.add(SHARED_STORY[source % SHARED_STORY.length]);
+        urls.add(sharedStoryUrl(source));
+        dates.add(String.format("2017-04-18T11:%02d:00Z", source));
+
+        StringBuilder feed = new StringBuilder();
+        if ("guardian".equals(format)) {
+            feed.append("{\"response\":{\"status\":\"ok\",\"results\":[");
+            for (int i = 0; i < titles.size(); i++) {
+                feed.append(i > 0 ? "," : "")
+                        .append("{\"webTitle\":\"").append(titles.get(i))
+                        .append("\",\"sectionName\":\"").append(site(source))
+                        .append("\",\"webUrl\":\"").append(urls.get(i))
+                        .append("\",\"webPublicationDate\":\"").append(dates.get(i))
+                        .append("\",\"tags\":[]}");
+            }
+            return feed.append("]}}").toString();
+        } else if ("rss".equals(format)) {
+            feed.append("<?xml version=\"1.0\"?><rss version=\"2.0\"><channel><title>")
+                    .append(site(source)).append("</title>");
+            for (int i = 0; i < titles.size(); i++) {
+                // RSS dates are RFC 822, the same instant as the ISO one
+                feed.append("<item><title>").append(titles.get(i)).append("</title><link>")
+                        .append(urls.get(i)).append("</link><pubDate>")
+                        .append(rfc822(dates.get(i))).append("</pubDate></item>");
+            }
+            return feed.append("</channel></rss>").toString();
+        } else {
+            feed.append("<?xml version=\"1.0\"?><feed xmlns=\"http://www.w3.org/2005/Atom\"><title>")
+                    .append(site(source)).append("</title>");
+            for (int i = 0; i < titles.size(); i++) {
+                feed.append("<entry><title>").append(titles.get(i)).append("</title><link href=\"")
+                        .append(urls.get(i)).append("\"/><updated>")
+                        .append(dates.get(i)).append("</updated></entry>");
+            }
+            return feed.append("</feed>").toString();
+        }
+    }
+
+    private static String rfc822(String isoDate) {
+        SimpleDateFormat format = XmlFeedParser.rfc822Formats()[0];
+        return format.format(new Date(Article.parseDate(isoDate)));
+    }
+
+    /**
+     * Records the timelines as they arrive.
+     */
+    private static class RecordingListener implements FeedFanOut.Listener {
+        final List<List<Article>> timelines = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        private final int total;
+
+        RecordingListener(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public synchronized void onTimeline(List<Article> timeline, int completed, int totalCount) {
+            assertEquals(total, totalCount);
+            timelines.add(timeline);
+            if (completed == totalCount) {
+                done.countDown();
+            }
+        }
+
+        synchronized List<Article> last() {
+            return timelines.get(timelines.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.labtech.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the merging and streaming of {@link FeedFanOut} against a local {@link MockWebServer}
+ * that answers every section after its own artificial latency. How much sooner the feed loads
+ * than one section after the other is measured by FeedFanOutBenchmark.
+ */
+public class FeedFanOutTest {
+
+    private static final String[] SECTIONS = {"world", "politics", "business", "sport"};
+    private static final long[] LATENCY_MILLIS = {100, 200, 300, 400};
+    private static final int ARTICLES_PER_SECTION = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private ExecutorService executor;
+
+    /**
+     * Counts down for every request of a stalled section, which is never answered
+     */
+    private final CountDownLatch stalledRequests = new CountDownLatch(SECTIONS.length);
+
+    /**
+     * When set, counts down for every section request, and holds the responses until all of
+     * them have been asked for
+     */
+    private volatile CountDownLatch allRequested;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                String section = request.getRequestUrl().queryParameter("section");
+                int index = Arrays.asList(SECTIONS).indexOf(section);
+                if (index < 0) {
+                    return new MockResponse().setResponseCode(503);
+                }
+                if (request.getRequestUrl().queryParameter("stall") != null) {
+                    stalledRequests.countDown();
+                    return new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE);
+                }
+                CountDownLatch requested = allRequested;
+                if (requested != null) {
+                    requested.countDown();
+                    if (!requested.await(5, TimeUnit.SECONDS)) {
+                        return new MockResponse().setResponseCode(503);
+                    }
+                }
+                // Paged like the Guardian API: the newest articles up to the page size, published
+                // at or before the to-date
+                String pageSize = request.getRequestUrl().queryParameter("page-size");
+                String toDate = request.getRequestUrl().queryParameter("to-date");
+                return new MockResponse()
+                        .setBody(sectionJson(section, index,
+                                pageSize != null ? Integer.parseInt(pageSize) : ARTICLES_PER_SECTION,
+                                toDate != null ? Article.parseDate(toDate) : Long.MAX_VALUE))
+                        .setBodyDelay(LATENCY_MILLIS[index], TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+        // Without retries, so that failed requests fail right away
+        QueryUtils.setTransport(new OkHttpTransport());
+        executor = Executors.newFixedThreadPool(SECTIONS.length);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void sections_loadInParallelAndStreamPartialTimelines() throws Exception {
+        // Loaded one after the other, the first section would never be answered
+        allRequested = new CountDownLatch(SECTIONS.length);
+        RecordingListener listener = new RecordingListener(SECTIONS.length);
+
+        new FeedFanOut(executor, null).load(urls(SECTIONS), new CancellationToken(), listener);
+        assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+
+        // One growing timeline per completed section
+        assertEquals(SECTIONS.length, server.getRequestCount());
+        assertEquals(SECTIONS.length, listener.timelines.size());
+        for (int i = 0; i < SECTIONS.length; i++) {
+            assertEquals(i + 1, listener.completed.get(i).intValue());
+            assertEquals((i + 1) * ARTICLES_PER_SECTION, listener.timelines.get(i).size());
+        }
+        assertNewestFirst(listener.timelines.get(SECTIONS.length - 1));
+    }
+
+    @Test
+    public void failedSection_leavesOthersInTimeline() throws Exception {
+        RecordingListener listener = new RecordingListener(2);
+
+        new FeedFanOut(executor, null).load(urls("world", "missing"), new CancellationToken(), listener);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+
+        List<Article> last = listener.timelines.get(listener.timelines.size() - 1);
+        assertEquals(ARTICLES_PER_SECTION, last.size());
+    }
+
+    @Test
+    public void failedSection_isQueuedForReplay() throws Exception {
+        OfflineQueue queue = new OfflineQueue(new File(folder.getRoot(), "offline_queue"),
+                new ArticleCache(folder.newFolder("articles"), 1024 * 1024), new ArticleIndex(null),
+                new Offline(), new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                });
+        RecordingListener listener = new RecordingListener(2);
+
+        new FeedFanOut(executor, null, queue).load(urls("world", "missing"), new CancellationToken(), listener);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void everySectionFailing_givesNull() throws Exception {
+        RecordingListener listener = new RecordingListener(1);
+
+        new FeedFanOut(executor, null).load(urls("missing"), new CancellationToken(), listener);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+
+        assertNull(listener.timelines.get(0));
+    }
+
+    @Test
+    public void cachedSections_areShownBeforeAnyRequestCompletes() throws Exception {
+        ArticleCache cache = new ArticleCache(folder.newFolder("articles"), 1024 * 1024);
+        List<String> urls = urls("world", "sport");
+        cache.put(urls.get(1), new ArticleCache.Entry(Collections.singletonList(
+                new Article("Cached", "Jane Doe", "2017-06-01", "Sport", "https://example.com/cached")),
+                null, null));
+        RecordingListener listener = new RecordingListener(2);
+
+        new FeedFanOut(executor, cache).load(urls, new CancellationToken(), listener);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(0, listener.completed.get(0).intValue());
+        assertEquals(1, listener.timelines.get(0).size());
+        assertNotNull(cache.get(urls.get(0)));
+    }
+
+    @Test
+    public void cancel_stopsDelivery() throws Exception {
+        RecordingListener listener = new RecordingListener(SECTIONS.length);
+        CancellationToken cancellation = new CancellationToken();
+
+        new FeedFanOut(executor, null).load(urls(SECTIONS), cancellation, listener);
+        cancellation.cancel();
+
+        assertTrue(!listener.done.await(LATENCY_MILLIS[LATENCY_MILLIS.length - 1] * 3, TimeUnit.MILLISECONDS));
+        assertTrue(listener.timelines.isEmpty());
+    }
+
+    @Test
+    public void cancel_abortsEverySectionRequestInFlight() throws Exception {
+        List<String> urls = new ArrayList<>();
+        for (String url : urls(SECTIONS)) {
+            urls.add(url + "&stall=1");
+        }
+        CancellationToken cancellation = new CancellationToken();
+        new FeedFanOut(executor, null).load(urls, cancellation, new RecordingListener(SECTIONS.length));
+        // Every section is waiting for its response
+        assertTrue(stalledRequests.await(5, TimeUnit.SECONDS));
+
+        cancellation.cancel();
+
+        // All of them are aborted, none reads on until its timeout
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void pages_followOnNewestFirstUntilEverySectionIsExhausted() throws Exception {
+        List<Article> feed = new ArrayList<>();
+        long before = 0;
+        int pages = 0;
+        boolean last = false;
+        while (!last) {
+            RecordingPageListener listener = new RecordingPageListener();
+            new FeedFanOut(executor, null).loadPage(pageUrls(2, before, SECTIONS), 2, before, false,
+                    new CancellationToken(), listener);
+            assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+            List<Article> page = listener.pages.get(listener.pages.size() - 1);
+            last = listener.last;
+            feed.addAll(page);
+            before = page.get(page.size() - 1).getPublishedMillis();
+            pages++;
+        }
+
+        // Every article of every section once, in order across the pages
+        assertEquals(SECTIONS.length * ARTICLES_PER_SECTION, feed.size());
+        assertNewestFirst(feed);
+        Set<String> urls = new HashSet<>();
+        for (Article article : feed) {
+            assertTrue(urls.add(article.getUrl()));
+        }
+        assertTrue(pages > 1);
+    }
+
+    @Test
+    public void exhaustedSections_endTheFeed() throws Exception {
+        RecordingPageListener listener = new RecordingPageListener();
+
+        new FeedFanOut(executor, null).loadPage(pageUrls(10, 0, "world", "sport"), 10, 0, false,
+                new CancellationToken(), listener);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+
+        assertTrue(listener.last);
+        assertEquals(2 * ARTICLES_PER_SECTION, listener.pages.get(listener.pages.size() - 1).size());
+    }
+
+    @Test
+    public void failedSection_doesNotEndTheFeed() throws Exception {
+        RecordingPageListener listener = new RecordingPageListener();
+
+        new FeedFanOut(executor, null).loadPage(pageUrls(10, 0, "world", "missing"), 10, 0, false,
+                new CancellationToken(), listener);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+
+        // The page is shorter than a section page, but the failed section may have more
+        assertFalse(listener.last);
+        assertEquals(ARTICLES_PER_SECTION, listener.pages.get(listener.pages.size() - 1).size());
+    }
+
+    @Test
+    public void merge_dropsDuplicateUrlsAndSortsNewestFirst() {
+        Article older = new Article("Older", "Jane Doe", "2017-06-20", "World news", "https://example.com/a");
+        Article newer = new Article("Newer", "Jane Doe", "2017-06-22", "Politics", "https://example.com/b");
+        Article duplicate = new Article("Newer again", "Jane Doe", "2017-06-22", "UK news", "https://example.com/b");
+
+        List<Article> timeline = FeedFanOut.merge(Arrays.asList(
+                Arrays.asList(older, newer), null, Collections.singletonList(duplicate)));
+
+        assertEquals(2, timeline.size());
+        assertEquals("Newer", timeline.get(0).getTitle());
+        assertEquals("Older", timeline.get(1).getTitle());
+    }
+
+    private List<String> urls(String... sections) {
+        List<String> urls = new ArrayList<>();
+        for (String section : sections) {
+            urls.add(server.url("/search").toString() + "?section=" + section);
+        }
+        return urls;
+    }
+
+    private List<String> pageUrls(int pageSize, long beforeMillis, String... sections) {
+        List<String> urls = new ArrayList<>();
+        for (String section : sections) {
+            GuardianQuery.Builder query = GuardianQuery.fromUrl(server.url("/search").toString())
+                    .section(section).pageSize(pageSize);
+            if (beforeMillis > 0) {
+                query.toDate(beforeMillis);
+            }
+            urls.add(query.build().toUrl());
+        }
+        return urls;
+    }
+
+    private static void assertNewestFirst(List<Article> timeline) {
+        for (int i = 1; i < timeline.size(); i++) {
+            assertTrue(timeline.get(i - 1).getPublishedMillis() >= timeline.get(i).getPublishedMillis());
+        }
+    }
+
+    /**
+     * Guardian response with articles of the section, interleaved in time with the other sections:
+     * the newest ones published at or before the given time, up to the given number.
+     */
+    private static String sectionJson(String section, int index, int pageSize, long toMillis) {
+        StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[");
+        int count = 0;
+        for (int i = 0; i < ARTICLES_PER_SECTION && count < pageSize; i++) {
+            int hour = 23 - i * SECTIONS.length - index;
+            if (Article.parseDate("2017-06-24T" + (hour < 10 ? "0" : "") + hour + ":00:00Z") > toMillis) {
+                continue;
+            }
+            if (count++ > 0) {
+                json.append(',');
+            }
+            json.append("{\"webTitle\":\"").append(section).append(' ').append(i)
+                    .append("\",\"sectionName\":\"").append(section)
+                    .append("\",\"webUrl\":\"https://www.theguardian.com/").append(section).append('/').append(i)
+                    .append("\",\"webPublicationDate\":\"2017-06-24T").append(hour < 10 ? "0" : "").append(hour)
+                    .append(":00:00Z\",\"tags\":[]}");
+        }
+        return json.append("]}}").toString();
+    }
+
+    /**
+     * Connectivity that stays offline, so that nothing queued is replayed.
+     */
+    private static class Offline implements OfflineQueue.Connectivity {
+        @Override
+        public boolean isConnected() {
+            return false;
+        }
+
+        @Override
+        public void addListener(Listener listener) {
+        }
+
+        @Override
+        public void removeListener(Listener listener) {
+        }
+    }
+
+    /**
+     * Records the pages and whether the last one ended the feed.
+     */
+    private static class RecordingPageListener implements FeedFanOut.PageListener {
+        final List<List<Article>> pages = Collections.synchronizedList(new ArrayList<List<Article>>());
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile boolean last;
+
+        @Override
+        public void onPage(List<Article> page, boolean last, int completed, int total) {
+            pages.add(page);
+            this.last = last;
+            if (completed == total) {
+                done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Records the timelines and the number of sections completed with each of them.
+     */
+    private static class RecordingListener implements FeedFanOut.Listener {
+        final List<List<Article>> timelines = Collections.synchronizedList(new ArrayList<List<Article>>());
+        final List<Integer> completed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(1);
+        private final int total;
+
+        RecordingListener(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public void onTimeline(List<Article> timeline, int completedCount, int totalCount) {
+            assertEquals(total, totalCount);
+            timelines.add(timeline);
+            completed.add(completedCount);
+            if (completedCount == totalCount) {
+                done.countDown();
+            }
+        }
+    }
+}
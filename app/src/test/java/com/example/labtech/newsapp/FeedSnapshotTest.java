@@ -0,0 +1,80 @@
+package com.example.labtech.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that a {@link FeedSnapshot} is read back as written and that a missing or damaged
+ * snapshot is ignored.
+ */
+public class FeedSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void snapshot_isReadBackAsWritten() throws Exception {
+        File file = new File(folder.getRoot(), "feed_snapshot");
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            articles.add(new Article("Article " + i, Collections.singletonList("Jane Doe"),
+                    1498309453000L - i * 60000L, "World news", "https://example.com/" + i,
+                    i % 2 == 0 ? "https://media.guim.co.uk/" + i + ".jpg" : null));
+        }
+
+        new FeedSnapshot(articles, 7, -42).write(file);
+        FeedSnapshot read = FeedSnapshot.read(file);
+
+        assertEquals(7, read.firstVisiblePosition);
+        assertEquals(-42, read.firstVisibleOffset);
+        assertEquals(articles.size(), read.articles.size());
+        for (int i = 0; i < articles.size(); i++) {
+            assertEquals(articles.get(i).getUrl(), read.articles.get(i).getUrl());
+            assertEquals(articles.get(i).getPublishedMillis(), read.articles.get(i).getPublishedMillis());
+            assertEquals(articles.get(i).getThumbnailUrl(), read.articles.get(i).getThumbnailUrl());
+        }
+    }
+
+    @Test
+    public void missingSnapshot_isNull() {
+        assertNull(FeedSnapshot.read(new File(folder.getRoot(), "feed_snapshot")));
+    }
+
+    @Test
+    public void damagedSnapshot_isNullAndDeleted() throws Exception {
+        File file = new File(folder.getRoot(), "feed_snapshot");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+
+        assertNull(FeedSnapshot.read(file));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void damagedRow_isNullAndDeleted() throws Exception {
+        File file = new File(folder.getRoot(), "feed_snapshot");
+        new FeedSnapshot(Collections.singletonList(new Article("Article", Collections.<String>emptyList(),
+                1498309453000L, "World news", "https://example.com/", null)), 0, 0).write(file);
+        // The contributor count of the only row, past the header, the record length and the title
+        RandomAccessFile rows = new RandomAccessFile(new File(file.getPath() + ".rows"), "rw");
+        rows.seek(8 + 4 + 4 + "Article".length());
+        rows.writeInt(-7);
+        rows.close();
+
+        assertNull(FeedSnapshot.read(file));
+        assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.labtech.newsapp;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.HttpUrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link GuardianQuery} gives the same search the same URL however it was typed or
+ * built, and different searches different URLs, and what that does to the hit rate of caches
+ * keyed by URL over a log of queries as users typed them.
+ */
+public class GuardianQueryTest {
+
+    /**
+     * How search URLs were built before, by appending the query text with '+' for spaces
+     */
+    private static final String LEGACY_SEARCH_URL =
+            "https://content.guardianapis.com/search?api-key=test&show-tags=contributor&show-fields=thumbnail&q=";
+
+    @Test
+    public void sameSearch_givesSameUrl() {
+        String url = QueryUtils.buildSearchUrl("trump");
+
+        assertEquals(url, QueryUtils.buildSearchUrl("Trump"));
+        assertEquals(url, QueryUtils.buildSearchUrl("trump "));
+        assertEquals(url, QueryUtils.buildSearchUrl("\tTRUMP\n"));
+        assertEquals(QueryUtils.buildSearchUrl("brexit deal"), QueryUtils.buildSearchUrl(" Brexit   Deal"));
+    }
+
+    @Test
+    public void parameterOrderAndDefaults_dontMatter() {
+        GuardianQuery built = new GuardianQuery.Builder()
+                .section("World").query("Brexit").pageSize(20).page(2)
+                .showTags("contributor").showFields("thumbnail", "trailText", "thumbnail")
+                .build();
+        GuardianQuery reordered = new GuardianQuery.Builder()
+                .showFields("trailtext").showFields("Thumbnail")
+                .page(2).pageSize(20).query("brexit").showTags("contributor").section("world")
+                .build();
+
+        assertEquals(built, reordered);
+        assertEquals(built.toUrl(), reordered.toUrl());
+        // The first page and the default page size are the same search as no page at all
+        assertEquals(QueryUtils.buildSearchUrl("brexit"),
+                new GuardianQuery.Builder().query("brexit").page(1).pageSize(10)
+                        .showFields("thumbnail").showTags("contributor").build().toUrl());
+    }
+
+    @Test
+    public void url_isSortedAndEncoded() {
+        String url = new GuardianQuery.Builder().query("brexit deal").section("politics")
+                .fromDate(Article.parseDate("2017-06-24T10:00:00Z"))
+                .orderBy(GuardianQuery.ORDER_NEWEST).showFields("thumbnail", "trailText").build().toUrl();
+
+        assertEquals("https://content.guardianapis.com/search?api-key=test&from-date=2017-06-24T10:00:00Z"
+                + "&order-by=newest&q=brexit+deal&section=politics&show-fields=thumbnail,trailtext", url);
+    }
+
+    @Test
+    public void differentSearches_neverShareUrl() {
+        String[] queries = {"at&t", "at", "c++", "c", "c#", "q&a", "q", "a=b", "100%", "brexit",
+                "brexit AND ireland", "brexit and ireland", "brexit OR ireland", "brexit ireland",
+                "caf\u00e9", "cafe", "\"theresa may\"", "theresa may"};
+        Set<String> urls = new HashSet<>();
+        for (String query : queries) {
+            String url = QueryUtils.buildSearchUrl(query);
+            assertTrue(query + " shares its URL", urls.add(url));
+            // The server reads back exactly the canonical query, without extra parameters
+            HttpUrl parsed = HttpUrl.parse(url);
+            assertEquals(query, parsed.queryParameter("q"));
+            assertNull(parsed.queryParameter("t"));
+        }
+    }
+
+    @Test
+    public void legacyUrls_collideAndSplit() {
+        // The '&' ended the query, so "at&t" was a search for "at"
+        assertEquals("at", HttpUrl.parse(LEGACY_SEARCH_URL + "at&t").queryParameter("q"));
+        // And '+' was decoded as a space, so "c++" was a search for "c"
+        assertEquals("c  ", HttpUrl.parse(LEGACY_SEARCH_URL + "c++").queryParameter("q"));
+        // While the same search got different URLs
+        assertNotEquals(LEGACY_SEARCH_URL + "Trump", LEGACY_SEARCH_URL + "trump+");
+    }
+
+    @Test
+    public void operators_stayUpperCase() {
+        assertEquals("brexit AND ireland", GuardianQuery.normalizeQuery("Brexit  AND Ireland "));
+        assertEquals("labour OR tories NOT corbyn", GuardianQuery.normalizeQuery("Labour OR Tories NOT Corbyn"));
+        // Only the upper case words are operators
+        assertEquals("brexit and ireland", GuardianQuery.normalizeQuery("Brexit and Ireland"));
+        assertEquals("", GuardianQuery.normalizeQuery("   "));
+    }
+
+    @Test
+    public void fromUrl_roundTripsAndKeepsUnknownParameters() {
+        GuardianQuery query = new GuardianQuery.Builder().query("brexit").section("politics").page(3)
+                .pageSize(50).fromDate(Article.parseDate("2017-06-24T10:00:00Z"))
+                .orderBy(GuardianQuery.ORDER_OLDEST).showTags("contributor").build();
+        assertEquals(query, GuardianQuery.fromUrl(query.toUrl()).build());
+
+        String url = QueryUtils.buildPageUrl("http://LOCALHOST:8080/search?show-blocks=body&q=Brexit", 2, 20);
+        assertEquals("http://localhost:8080/search?page=2&page-size=20&q=brexit&show-blocks=body", url);
+        // Not replaced twice over when the page changes
+        assertEquals(QueryUtils.buildPageUrl(url, 3, 20),
+                QueryUtils.buildPageUrl(QueryUtils.buildPageUrl(url, 5, 50), 3, 20));
+    }
+
+    @Test
+    public void newerUrl_ordersNewestFromDate() {
+        String url = QueryUtils.buildNewerUrl(QueryUtils.buildSearchUrl("brexit"),
+                Article.parseDate("2017-06-24T10:00:00Z"));
+        HttpUrl parsed = HttpUrl.parse(url);
+
+        assertEquals("newest", parsed.queryParameter("order-by"));
+        assertEquals("2017-06-24T10:00:00Z", parsed.queryParameter("from-date"));
+        assertEquals("brexit", parsed.queryParameter("q"));
+    }
+
+    @Test
+    public void newestFirst_dependsOnOrderAndQueryText() {
+        assertTrue(GuardianQuery.section("world").isNewestFirst());
+        assertFalse(GuardianQuery.search("brexit").isNewestFirst());
+        assertTrue(GuardianQuery.search("brexit").buildUpon().orderBy(GuardianQuery.ORDER_NEWEST)
+                .build().isNewestFirst());
+        assertFalse(GuardianQuery.section("world").buildUpon().orderBy(GuardianQuery.ORDER_RELEVANCE)
+                .build().isNewestFirst());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPageSize_isRejected() {
+        new GuardianQuery.Builder().pageSize(500);
+    }
+
+    @Test
+    public void queryLog_hitRateImproves() throws Exception {
+        List<String> log = readQueryLog();
+        Set<String> legacyKeys = new HashSet<>();
+        Set<String> canonicalKeys = new HashSet<>();
+        int legacyHits = 0;
+        int canonicalHits = 0;
+        for (String query : log) {
+            // The disk cache already sorted the parameters of the legacy URLs
+            if (!legacyKeys.add(ArticleCache.normalizeUrl(LEGACY_SEARCH_URL + query.replace(" ", "+")))) {
+                legacyHits++;
+            }
+            if (!canonicalKeys.add(QueryUtils.buildSearchUrl(query))) {
+                canonicalHits++;
+            }
+        }
+
+        double legacyRate = (double) legacyHits / log.size();
+        double canonicalRate = (double) canonicalHits / log.size();
+        // The log holds 22 distinct searches, which the legacy keys spread over 57 entries
+        assertEquals(61, log.size());
+        assertEquals(57, legacyKeys.size());
+        assertEquals(22, canonicalKeys.size());
+        assertTrue(canonicalRate > legacyRate + 0.3);
+        assertFalse(canonicalKeys.contains(QueryUtils.buildSearchUrl("at")));
+    }
+
+    private static List<String> readQueryLog() throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                GuardianQueryTest.class.getClassLoader().getResourceAsStream("query_log.txt"),
+                Charset.forName("UTF-8")));
+        List<String> log = new ArrayList<>();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                log.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return log;
+    }
+}
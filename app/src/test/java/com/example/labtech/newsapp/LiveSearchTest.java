@@ -0,0 +1,219 @@
+package com.example.labtech.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the network searches and checks the keystroke-to-render latency of {@link LiveSearch}
+ * on a simulated clock, with and without debouncing.
+ */
+public class LiveSearchTest {
+
+    private static final long DEBOUNCE_MILLIS = 300;
+    private static final long KEYSTROKE_MILLIS = 120;
+    private static final long NETWORK_MILLIS = 400;
+
+    @Test
+    public void typing_searchesOnceAfterTheLastKeystroke() {
+        Simulation debounced = new Simulation(DEBOUNCE_MILLIS);
+        Simulation undebounced = new Simulation(0);
+
+        debounced.type("brexit");
+        undebounced.type("brexit");
+
+        assertEquals(Collections.singletonList("brexit"), debounced.searches);
+        assertEquals(6, undebounced.searches.size());
+        // The debounce delays the render of the last keystroke by its own length, no more
+        assertEquals("brexit", debounced.lastRendered);
+        assertEquals(DEBOUNCE_MILLIS + NETWORK_MILLIS, debounced.lastRenderLatency);
+        assertEquals("brexit", undebounced.lastRendered);
+        assertEquals(NETWORK_MILLIS, undebounced.lastRenderLatency);
+    }
+
+    @Test
+    public void backspacingToRecentQuery_rendersWithoutSearch() {
+        Simulation simulation = new Simulation(DEBOUNCE_MILLIS);
+        simulation.type("brexit");
+        simulation.type(" vote");
+        int searches = simulation.searches.size();
+
+        simulation.backspace(" vote".length());
+
+        assertEquals(searches, simulation.searches.size());
+        assertEquals("brexit", simulation.lastRendered);
+        assertEquals(0, simulation.lastRenderLatency);
+    }
+
+    @Test
+    public void sameQuery_isNotSearchedAgain() {
+        Simulation simulation = new Simulation(DEBOUNCE_MILLIS);
+        simulation.type("brexit");
+
+        simulation.liveSearch.onQueryTextChange("  Brexit ");
+        simulation.liveSearch.onQueryTextSubmit("brexit");
+        simulation.scheduler.advance(DEBOUNCE_MILLIS + NETWORK_MILLIS);
+
+        assertEquals(1, simulation.searches.size());
+    }
+
+    @Test
+    public void reset_allowsSameQueryAgain() {
+        Simulation simulation = new Simulation(DEBOUNCE_MILLIS);
+        simulation.liveSearch.onQueryTextSubmit("brexit");
+        simulation.liveSearch.reset();
+
+        simulation.liveSearch.onQueryTextSubmit("brexit");
+
+        assertEquals(2, simulation.searches.size());
+    }
+
+    @Test
+    public void recentQueries_areEvictedLeastRecentlyUsedFirst() {
+        Simulation simulation = new Simulation(DEBOUNCE_MILLIS, 2);
+        simulation.liveSearch.onQueryTextSubmit("a");
+        simulation.scheduler.advance(NETWORK_MILLIS);
+        simulation.liveSearch.onQueryTextSubmit("b");
+        simulation.scheduler.advance(NETWORK_MILLIS);
+        simulation.liveSearch.onQueryTextSubmit("a");
+        simulation.liveSearch.onQueryTextSubmit("c");
+        simulation.scheduler.advance(NETWORK_MILLIS);
+
+        simulation.liveSearch.onQueryTextSubmit("a");
+        simulation.liveSearch.onQueryTextSubmit("b");
+
+        assertEquals(4, simulation.searches.size());
+        assertEquals("b", simulation.searches.get(3));
+    }
+
+    /**
+     * User typing into a {@link LiveSearch} whose searches take {@link #NETWORK_MILLIS}.
+     */
+    private static class Simulation implements LiveSearch.Listener {
+        final FakeScheduler scheduler = new FakeScheduler();
+        final LiveSearch liveSearch;
+        final List<String> searches = new ArrayList<>();
+        String text = "";
+        long lastKeystroke;
+        String lastRendered;
+        long lastRenderLatency;
+
+        Simulation(long debounceMillis) {
+            this(debounceMillis, 10);
+        }
+
+        Simulation(long debounceMillis, int maxRecent) {
+            liveSearch = new LiveSearch(debounceMillis, maxRecent, scheduler, this);
+        }
+
+        void type(String characters) {
+            for (int i = 0; i < characters.length(); i++) {
+                if (i > 0) {
+                    scheduler.advance(KEYSTROKE_MILLIS);
+                }
+                keystroke(text + characters.charAt(i));
+            }
+            scheduler.advance(DEBOUNCE_MILLIS + NETWORK_MILLIS);
+        }
+
+        void backspace(int count) {
+            for (int i = 0; i < count; i++) {
+                keystroke(text.substring(0, text.length() - 1));
+                scheduler.advance(KEYSTROKE_MILLIS);
+            }
+        }
+
+        private void keystroke(String newText) {
+            text = newText;
+            lastKeystroke = scheduler.now;
+            liveSearch.onQueryTextChange(text);
+        }
+
+        @Override
+        public void onSearch(final String query) {
+            searches.add(query);
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // Responses to superseded searches are dropped, like a canceled loader
+                    if (query.equals(liveSearch.getCurrentQuery())) {
+                        List<Article> articles = Collections.singletonList(new Article(query,
+                                "Jane Doe", "2017-06-24", "World news", "https://example.com/" + query));
+                        liveSearch.onResults(query, articles);
+                        render(query);
+                    }
+                }
+            }, NETWORK_MILLIS);
+        }
+
+        @Override
+        public void onShowResults(String query, List<Article> articles) {
+            render(query);
+        }
+
+        private void render(String query) {
+            lastRendered = query;
+            lastRenderLatency = scheduler.now - lastKeystroke;
+        }
+    }
+
+    /**
+     * {@link LiveSearch.Scheduler} on a clock that only moves when told to.
+     */
+    private static class FakeScheduler implements LiveSearch.Scheduler {
+        long now;
+        private final List<Task> tasks = new ArrayList<>();
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            tasks.add(new Task(task, now + delayMillis));
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            for (Iterator<Task> it = tasks.iterator(); it.hasNext(); ) {
+                if (it.next().runnable == task) {
+                    it.remove();
+                }
+            }
+        }
+
+        void advance(long millis) {
+            long end = now + millis;
+            Task next;
+            while ((next = nextDue(end)) != null) {
+                tasks.remove(next);
+                assertTrue(next.time >= now);
+                now = next.time;
+                next.runnable.run();
+            }
+            now = end;
+        }
+
+        private Task nextDue(long end) {
+            Task next = null;
+            for (Task task : tasks) {
+                if (task.time <= end && (next == null || task.time < next.time)) {
+                    next = task;
+                }
+            }
+            return next;
+        }
+
+        private static class Task {
+            final Runnable runnable;
+            final long time;
+
+            Task(Runnable runnable, long time) {
+                this.runnable = runnable;
+                this.time = time;
+            }
+        }
+    }
+}
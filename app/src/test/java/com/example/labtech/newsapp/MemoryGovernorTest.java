@@ -0,0 +1,284 @@
+package com.example.labtech.newsapp;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link MemoryGovernor} keeps the pages of an {@link ArticlePager}, the recent
+ * results of a {@link LiveSearch} and a cache of images within the budget through the levels of
+ * memory pressure the system reports, while the rows on screen stay available and dropped pages
+ * are loaded again on demand.
+ */
+public class MemoryGovernorTest {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int PAGE_BYTES = PAGE_SIZE * MemoryGovernor.ARTICLE_BYTES;
+    private static final int RESIDENT_PAGE_RADIUS = 2;
+    private static final int RECENT_QUERIES = 10;
+    private static final int IMAGE_BYTES = PAGE_BYTES / 2;
+    private static final long BUDGET_BYTES = 8 * PAGE_BYTES;
+
+    private final List<Integer> requestedPages = new ArrayList<>();
+    private ArticlePager pager;
+    private LiveSearch liveSearch;
+    private ImageCache images;
+    private MemoryGovernor governor;
+
+    @Before
+    public void setUp() {
+        pager = new ArticlePager(PAGE_SIZE, 5, RESIDENT_PAGE_RADIUS,
+                new ArticlePager.PageRequestListener() {
+                    @Override
+                    public void onPageRequested(int page) {
+                        requestedPages.add(page);
+                    }
+                });
+        liveSearch = new LiveSearch(0, RECENT_QUERIES, new LiveSearch.Scheduler() {
+            @Override
+            public void schedule(Runnable task, long delayMillis) {
+                task.run();
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+            }
+        }, new LiveSearch.Listener() {
+            @Override
+            public void onSearch(String query) {
+            }
+
+            @Override
+            public void onShowResults(String query, List<Article> articles) {
+            }
+        });
+        // The thumbnails may take as much as the pages, like in the app
+        images = new ImageCache(4 * PAGE_BYTES);
+
+        governor = new MemoryGovernor(BUDGET_BYTES);
+        governor.register(pager);
+        governor.register(liveSearch);
+        governor.register(images);
+    }
+
+    @Test
+    public void trimLevels_mapToStages() {
+        assertEquals(MemoryGovernor.STAGE_NONE, MemoryGovernor.stageOf(0));
+        assertEquals(MemoryGovernor.STAGE_COLD,
+                MemoryGovernor.stageOf(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE));
+        assertEquals(MemoryGovernor.STAGE_CACHES,
+                MemoryGovernor.stageOf(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(MemoryGovernor.STAGE_VISIBLE_ONLY,
+                MemoryGovernor.stageOf(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL));
+        assertEquals(MemoryGovernor.STAGE_CACHES,
+                MemoryGovernor.stageOf(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN));
+        assertEquals(MemoryGovernor.STAGE_CACHES,
+                MemoryGovernor.stageOf(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND));
+        assertEquals(MemoryGovernor.STAGE_VISIBLE_ONLY,
+                MemoryGovernor.stageOf(ComponentCallbacks2.TRIM_MEMORY_MODERATE));
+        assertEquals(MemoryGovernor.STAGE_VISIBLE_ONLY,
+                MemoryGovernor.stageOf(ComponentCallbacks2.TRIM_MEMORY_COMPLETE));
+    }
+
+    @Test
+    public void stages_freeColdPagesThenCachesThenAllButVisible() {
+        // Ten pages in, looking at the eighth
+        for (int page = 1; page <= 10; page++) {
+            pager.onPageLoaded(page, page(page));
+        }
+        pager.onVisibleRangeChanged(rowOf(8), rowOf(8) + PAGE_SIZE / 2);
+        fillCaches();
+        assertEquals(5 * PAGE_BYTES, pager.residentBytes());
+
+        governor.trim(MemoryGovernor.STAGE_COLD);
+        assertEquals(3 * PAGE_BYTES, pager.residentBytes());
+        // Only the results of the shown query and the most recent images are left
+        assertEquals(PAGE_BYTES, liveSearch.residentBytes());
+        assertEquals(2 * PAGE_BYTES, images.residentBytes());
+
+        governor.trim(MemoryGovernor.STAGE_CACHES);
+        assertEquals(3 * PAGE_BYTES, pager.residentBytes());
+        assertEquals(0, liveSearch.residentBytes());
+        assertEquals(0, images.residentBytes());
+
+        governor.trim(MemoryGovernor.STAGE_VISIBLE_ONLY);
+        assertEquals(PAGE_BYTES, pager.residentBytes());
+        assertTrue(pager.isResident(8));
+    }
+
+    @Test
+    public void enforceBudget_escalatesOnlyAsFarAsNeeded() {
+        scrollTo(3);
+        assertEquals(MemoryGovernor.STAGE_NONE, governor.enforceBudget());
+
+        fillCaches();
+        assertTrue(governor.residentBytes() > BUDGET_BYTES);
+        int stage = governor.enforceBudget();
+
+        assertTrue(governor.residentBytes() <= BUDGET_BYTES);
+        assertTrue("stage " + stage, stage < MemoryGovernor.STAGE_VISIBLE_ONLY);
+    }
+
+    @Test
+    public void simulatedTrimLevels_keepResidentSizeUnderBudget() {
+        int[] levels = {
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE,
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW,
+                ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN,
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL,
+                ComponentCallbacks2.TRIM_MEMORY_BACKGROUND,
+                ComponentCallbacks2.TRIM_MEMORY_MODERATE,
+                ComponentCallbacks2.TRIM_MEMORY_COMPLETE,
+        };
+        Metrics.reset();
+        long peak = 0;
+        int page = 1;
+        for (int round = 0; round < 5; round++) {
+            for (int level : levels) {
+                // The user keeps scrolling and searching between the trims
+                page++;
+                scrollTo(page);
+                fillCaches();
+                peak = Math.max(peak, governor.residentBytes());
+                governor.enforceBudget();
+                assertTrue(governor.residentBytes() + " bytes after a page", governor.residentBytes() <= BUDGET_BYTES);
+
+                governor.onTrimMemory(level);
+                long resident = governor.residentBytes();
+                assertTrue(resident + " bytes after level " + level, resident <= BUDGET_BYTES);
+                // The rows on screen are never given up
+                assertNotNull(pager.getItem(rowOf(page)));
+            }
+        }
+
+        // Without the governor the caches would have gone over the budget
+        assertTrue(peak > BUDGET_BYTES);
+        assertTrue(Metrics.MEMORY_TRIMMED_BYTES.count() > 0);
+    }
+
+    @Test
+    public void registering_whileTrimming_isSafe() throws Exception {
+        final List<ImageCache> registered = new ArrayList<>();
+        // Registers from a worker thread, like the index the sync service opens
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10000; i++) {
+                    ImageCache cache = new ImageCache(IMAGE_BYTES);
+                    registered.add(cache);
+                    governor.register(cache);
+                }
+            }
+        });
+        worker.start();
+        while (worker.isAlive()) {
+            governor.trim(MemoryGovernor.STAGE_COLD);
+        }
+        worker.join();
+
+        // Every consumer made it into the governor
+        long before = governor.residentBytes();
+        for (ImageCache cache : registered) {
+            cache.put("https://img.example.com/0.jpg", 1);
+        }
+        assertEquals(before + registered.size(), governor.residentBytes());
+    }
+
+    @Test
+    public void droppedPages_areLoadedAgainOnDemand() {
+        scrollTo(6);
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertFalse(pager.isResident(5));
+        requestedPages.clear();
+
+        // Scrolling back asks for the page again, which the loader reads from the disk cache
+        assertNull(pager.getItem(rowOf(5)));
+        assertEquals(5, (int) requestedPages.get(0));
+        pager.onPageLoaded(5, page(5));
+        assertEquals("page 5 " + (PAGE_SIZE - 1), pager.getItem(rowOf(5) + PAGE_SIZE - 1).getTitle());
+    }
+
+    /**
+     * Loads the pages up to the given one as the list scrolls down to it.
+     */
+    private void scrollTo(int lastPage) {
+        for (int page = 1; page <= lastPage; page++) {
+            if (!pager.isResident(page)) {
+                pager.onPageLoaded(page, page(page));
+            }
+            pager.onVisibleRangeChanged(rowOf(page), rowOf(page) + PAGE_SIZE / 2);
+        }
+    }
+
+    /**
+     * Searches as many queries as are remembered and shows as many images as fit the cache.
+     */
+    private void fillCaches() {
+        for (int i = 0; i < RECENT_QUERIES; i++) {
+            liveSearch.onQueryTextSubmit("query " + i);
+            liveSearch.onResults("query " + i, page(i + 1));
+        }
+        for (int i = 0; i < 2 * images.maxBytes / IMAGE_BYTES; i++) {
+            images.put("https://img.example.com/" + i + ".jpg", IMAGE_BYTES);
+        }
+    }
+
+    private static int rowOf(int page) {
+        return (page - 1) * PAGE_SIZE;
+    }
+
+    private static List<Article> page(int page) {
+        return TestArticles.list("page " + page, 0, PAGE_SIZE);
+    }
+
+    /**
+     * Stands in for the memory cache of {@link ThumbnailLoader}, which needs decoded bitmaps: an
+     * LRU cache of image sizes that trims itself the same way.
+     */
+    private static class ImageCache implements MemoryGovernor.Consumer {
+        final long maxBytes;
+        private final Map<String, Integer> sizes = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        ImageCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        void put(String url, int size) {
+            Integer old = sizes.put(url, size);
+            bytes += size - (old != null ? old : 0);
+            trimToSize(maxBytes);
+        }
+
+        @Override
+        public long residentBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void trim(int stage) {
+            trimToSize(stage >= MemoryGovernor.STAGE_CACHES ? 0 : maxBytes / 2);
+        }
+
+        private void trimToSize(long size) {
+            Iterator<Integer> eldest = sizes.values().iterator();
+            while (bytes > size && eldest.hasNext()) {
+                bytes -= eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.labtech.newsapp;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the histograms and counters of {@link Metrics}.
+ */
+public class MetricsTest {
+
+    @Test
+    public void buckets_coverEveryValueWithBoundedError() {
+        long[] values = {0, 1, 15, 16, 17, 100, 1000, 123456, 1L << 40, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = Metrics.Histogram.bucketOf(value);
+            long upperBound = Metrics.Histogram.upperBoundOf(bucket);
+            assertTrue(value + " above its bucket", value <= upperBound);
+            if (bucket > 0) {
+                assertTrue(value + " in a later bucket",
+                        value > Metrics.Histogram.upperBoundOf(bucket - 1));
+            }
+            // Log-linear buckets of 8 per power of two are at most 12.5% wide
+            assertTrue(value + " bucket too wide", upperBound - value <= value / 8);
+        }
+    }
+
+    @Test
+    public void percentiles_areComputedFromTheRecordedValues() {
+        Metrics.Histogram histogram = new Metrics.Histogram("test", "us");
+        for (int value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(1000, histogram.max());
+        assertEquals(500, histogram.mean());
+        assertWithin(500, histogram.percentile(0.5));
+        assertWithin(950, histogram.percentile(0.95));
+        assertWithin(990, histogram.percentile(0.99));
+        assertEquals(1000, histogram.percentile(1));
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        Metrics.Histogram histogram = new Metrics.Histogram("test", "us");
+        histogram.record(42);
+        histogram.record(-5);
+        Metrics.Counter counter = new Metrics.Counter("test");
+        counter.increment();
+
+        histogram.reset();
+        counter.reset();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.percentile(0.5));
+        assertEquals(0, counter.count());
+    }
+
+    @Test
+    public void dump_writesOnlyMetricsWithEvents() throws Exception {
+        Metrics.reset();
+        Metrics.ARTICLE_CACHE_HIT.increment();
+        Metrics.CREATE_URL.record(120);
+
+        StringWriter out = new StringWriter();
+        Metrics.dump(out);
+
+        String dump = out.toString();
+        assertTrue(dump, dump.contains("cache.articles.hit count=1\n"));
+        assertTrue(dump, dump.contains("fetch.create_url count=1 mean=120us"));
+        assertFalse(dump, dump.contains("cache.articles.miss"));
+        Metrics.reset();
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 8);
+    }
+}
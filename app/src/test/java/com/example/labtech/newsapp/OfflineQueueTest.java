@@ -0,0 +1,367 @@
+package com.example.labtech.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link OfflineQueue} keeps the requests made without a network across restarts and
+ * replays them in batches once a fake {@link OfflineQueue.Connectivity} reports the network back,
+ * against a local {@link MockWebServer}.
+ */
+public class OfflineQueueTest {
+
+    private static final int ARTICLES = 5;
+    private static final long LATENCY_MILLIS = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private ExecutorService executor;
+    private File file;
+    private ArticleCache cache;
+    private ArticleIndex index;
+    private FakeConnectivity connectivity;
+    private OfflineQueue queue;
+
+    /**
+     * Requests the server is answering at the moment, and the most it answered at once
+     */
+    private final AtomicInteger concurrentRequests = new AtomicInteger();
+    private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                int concurrent = concurrentRequests.incrementAndGet();
+                try {
+                    maxConcurrentRequests.set(Math.max(maxConcurrentRequests.get(), concurrent));
+                    if (request.getPath().startsWith("/broken")) {
+                        return new MockResponse().setResponseCode(500);
+                    }
+                    if (request.getPath().startsWith("/gone")) {
+                        return new MockResponse().setResponseCode(404);
+                    }
+                    if (request.getPath().startsWith("/busy")) {
+                        return new MockResponse().setResponseCode(429).setHeader("Retry-After", "60");
+                    }
+                    Thread.sleep(LATENCY_MILLIS);
+                    return new MockResponse().setBody(searchJson(request.getRequestUrl().queryParameter("q")));
+                } finally {
+                    concurrentRequests.decrementAndGet();
+                }
+            }
+        });
+        server.start();
+        // Without retries, so that failed requests fail right away
+        QueryUtils.setTransport(new OkHttpTransport());
+        executor = Executors.newSingleThreadExecutor();
+        file = new File(folder.getRoot(), "offline_queue");
+        cache = new ArticleCache(folder.newFolder("articles"), 1024 * 1024);
+        index = new ArticleIndex(null);
+        connectivity = new FakeConnectivity();
+        queue = newQueue();
+        queue.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void offlineRequests_areReplayedWhenNetworkReturns() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue(url("query" + i), "query" + i);
+        }
+        awaitIdle();
+        assertEquals(3, queue.size());
+        assertEquals(0, server.getRequestCount());
+
+        connectivity.setConnected(true);
+        awaitIdle();
+
+        assertEquals(0, queue.size());
+        assertEquals(3, server.getRequestCount());
+        for (int i = 0; i < 3; i++) {
+            ArticleCache.Entry entry = cache.get(url("query" + i));
+            assertNotNull(entry);
+            assertEquals(ARTICLES, entry.articles.size());
+        }
+        // Searchable offline from now on
+        assertEquals(ARTICLES, index.search("query1", 0, ARTICLES).size());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void queue_survivesRestart() throws Exception {
+        queue.enqueue(url("brexit"), "brexit");
+        queue.enqueue(url("election"), "election");
+        awaitIdle();
+        queue.stop();
+
+        // The app comes back with the network up
+        connectivity.setConnected(true);
+        OfflineQueue restarted = newQueue();
+        assertEquals(2, restarted.size());
+        restarted.start();
+        awaitIdle();
+
+        assertEquals(0, restarted.size());
+        assertEquals(2, server.getRequestCount());
+        assertNotNull(cache.get(url("election")));
+    }
+
+    @Test
+    public void results_goToInterestedListenerAndAreStoredOtherwise() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        queue.setListener(listener);
+        queue.enqueue(url("brexit"), "brexit");
+        connectivity.setConnected(true);
+        awaitIdle();
+
+        assertEquals(1, listener.urls.size());
+        assertEquals(url("brexit"), listener.urls.get(0));
+        assertEquals("brexit", listener.queries.get(0));
+
+        // The UI went away, the next result is only stored
+        queue.removeListener(listener);
+        connectivity.setConnected(false);
+        queue.enqueue(url("election"), "election");
+        connectivity.setConnected(true);
+        awaitIdle();
+
+        assertEquals(1, listener.urls.size());
+        assertNotNull(cache.get(url("election")));
+    }
+
+    @Test
+    public void reconnecting_replaysInBatchesWithoutBurst() throws Exception {
+        Metrics.reset();
+        int distinct = 2 * OfflineQueue.BATCH_SIZE + 2;
+        for (int i = 0; i < distinct; i++) {
+            queue.enqueue(url("query" + i), "query" + i);
+            // Searched again while still offline, with the text typed differently
+            queue.enqueue(url("QUERY" + i + " "), "query" + i);
+        }
+        awaitIdle();
+        assertEquals(distinct, queue.size());
+
+        // The network flaps as it comes back
+        connectivity.setConnected(true);
+        connectivity.setConnected(false);
+        connectivity.setConnected(true);
+        connectivity.setConnected(true);
+        awaitIdle();
+
+        assertEquals(distinct, server.getRequestCount());
+        assertEquals(1, maxConcurrentRequests.get());
+        assertEquals(3, Metrics.OFFLINE_BATCHES.count());
+        assertEquals(distinct, Metrics.OFFLINE_REPLAYED.count());
+        assertEquals(distinct, Metrics.OFFLINE_QUEUED.count());
+    }
+
+    @Test
+    public void networkLostDuringReplay_keepsTheRest() throws Exception {
+        for (int i = 0; i < 2 * OfflineQueue.BATCH_SIZE; i++) {
+            queue.enqueue(url("query" + i), "query" + i);
+        }
+        final CountDownLatch firstReplayed = new CountDownLatch(1);
+        queue.setListener(new OfflineQueue.Listener() {
+            @Override
+            public void onReplayed(String url, String query, List<Article> articles) {
+                firstReplayed.countDown();
+                // Gone again while the first batch is fetched
+                connectivity.connected = false;
+            }
+        });
+        connectivity.setConnected(true);
+        assertTrue(firstReplayed.await(5, TimeUnit.SECONDS));
+        awaitIdle();
+
+        int replayed = server.getRequestCount();
+        assertTrue(replayed <= OfflineQueue.BATCH_SIZE);
+        assertEquals(2 * OfflineQueue.BATCH_SIZE - replayed, queue.size());
+        // The rest of the queue was written to the file
+        assertEquals(queue.size(), newQueue().size());
+    }
+
+    @Test
+    public void brokenRequest_movesBackAndIsGivenUp() throws Exception {
+        String broken = server.url("/broken/search?q=x").toString();
+        queue.enqueue(broken, "x");
+        queue.enqueue(url("brexit"), "brexit");
+        connectivity.setConnected(true);
+        awaitIdle();
+
+        // The broken request went to the back, the replay went on with the next one
+        assertEquals(1, queue.size());
+        assertNotNull(cache.get(url("brexit")));
+
+        for (int attempt = 2; attempt <= OfflineQueue.MAX_ATTEMPTS; attempt++) {
+            connectivity.setConnected(false);
+            connectivity.setConnected(true);
+            awaitIdle();
+        }
+
+        assertEquals(0, queue.size());
+        assertEquals(OfflineQueue.MAX_ATTEMPTS + 1, server.getRequestCount());
+    }
+
+    @Test
+    public void rejectedRequest_isGivenUpRightAway() throws Exception {
+        queue.enqueue(server.url("/gone/search?q=x").toString(), "x");
+        queue.enqueue(url("brexit"), "brexit");
+        connectivity.setConnected(true);
+        awaitIdle();
+
+        assertEquals(0, queue.size());
+        assertNotNull(cache.get(url("brexit")));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void throttledRequest_keepsTheQueueForLater() throws Exception {
+        RequestScheduler previousScheduler = QueryUtils.getScheduler();
+        QueryUtils.setScheduler(new RequestScheduler(12, 12, 2000, 0));
+        try {
+            queue.enqueue(server.url("/busy/search?q=x").toString(), "x");
+            queue.enqueue(url("brexit"), "brexit");
+            connectivity.setConnected(true);
+            awaitIdle();
+
+            // Neither is given up, and nothing more is sent while the server wants a pause
+            assertEquals(2, queue.size());
+            assertEquals(1, server.getRequestCount());
+        } finally {
+            QueryUtils.setScheduler(previousScheduler);
+        }
+    }
+
+    @Test
+    public void failedLoad_isQueuedByRepository() throws Exception {
+        ExecutorService loads = Executors.newSingleThreadExecutor();
+        try {
+            ArticleRepository repository = new ArticleRepository(loads, cache, index, queue);
+            final CountDownLatch done = new CountDownLatch(1);
+            repository.load(server.url("/broken/search?q=x").toString(), "x", 1, ARTICLES,
+                    new CancellationToken(), new ArticleRepository.Listener() {
+                        @Override
+                        public void onArticles(List<Article> articles, boolean complete) {
+                            if (complete) {
+                                done.countDown();
+                            }
+                        }
+                    });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            loads.shutdown();
+        }
+        awaitIdle();
+
+        assertEquals(1, queue.size());
+    }
+
+    private OfflineQueue newQueue() {
+        return new OfflineQueue(file, cache, index, connectivity, executor);
+    }
+
+    /**
+     * Waits until the queue has done everything it was asked to do so far.
+     */
+    private void awaitIdle() throws Exception {
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get(10, TimeUnit.SECONDS);
+    }
+
+    private String url(String query) {
+        return QueryUtils.buildPageUrl(GuardianQuery.fromUrl(server.url("/search").toString())
+                .query(query).build().toUrl(), 1, ARTICLES);
+    }
+
+    private static String searchJson(String query) {
+        StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[");
+        for (int i = 0; i < ARTICLES; i++) {
+            json.append(i > 0 ? "," : "")
+                    .append("{\"webTitle\":\"").append(query).append(" article ").append(i)
+                    .append("\",\"sectionName\":\"World news\",\"webUrl\":\"https://example.com/")
+                    .append(query).append('/').append(i)
+                    .append("\",\"webPublicationDate\":\"2017-06-24T10:00:00Z\",\"tags\":[]}");
+        }
+        return json.append("]}}").toString();
+    }
+
+    /**
+     * Connectivity that is switched by the test, and calls its listeners on the calling thread
+     * like the broadcasts do on the main thread.
+     */
+    private static class FakeConnectivity implements OfflineQueue.Connectivity {
+        final List<Listener> listeners = new ArrayList<>();
+        volatile boolean connected;
+
+        void setConnected(boolean connected) {
+            boolean changed = this.connected != connected;
+            this.connected = connected;
+            if (changed) {
+                for (Listener listener : listeners) {
+                    listener.onConnectivityChanged(connected);
+                }
+            }
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void addListener(Listener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void removeListener(Listener listener) {
+            listeners.remove(listener);
+        }
+    }
+
+    private static class RecordingListener implements OfflineQueue.Listener {
+        final List<String> urls = new ArrayList<>();
+        final List<String> queries = new ArrayList<>();
+
+        @Override
+        public synchronized void onReplayed(String url, String query, List<Article> articles) {
+            urls.add(url);
+            queries.add(query);
+        }
+    }
+}
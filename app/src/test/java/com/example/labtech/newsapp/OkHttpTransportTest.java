@@ -0,0 +1,300 @@
+package com.example.labtech.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link OkHttpTransport} and {@link RetryingTransport} against a local
+ * {@link MockWebServer} serving gzip-compressed Guardian responses. How long a fetch takes with
+ * and without compression is measured by TransportBenchmark.
+ */
+public class OkHttpTransportTest {
+
+    private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void gzipResponse_isRequestedAndDecompressed() throws Exception {
+        byte[] body = QueryUtilsTest.readFixture("search_200.json");
+        server.enqueue(gzipResponse(body));
+        QueryUtils.setTransport(new OkHttpTransport());
+
+        ArticleCache.Entry entry = QueryUtils.fetchArticlesEntry(server.url("/search").toString(), null);
+
+        assertNotNull(entry);
+        assertEquals(200, entry.articles.size());
+        assertEquals("gzip", server.takeRequest().getHeader("Accept-Encoding"));
+    }
+
+    @Test
+    public void timings_countCompressedBytes() throws Exception {
+        byte[] body = QueryUtilsTest.readFixture("search_200.json");
+        server.enqueue(gzipResponse(body));
+
+        RequestTimings timings = readFully(new OkHttpTransport(), "/search");
+
+        // About 20 KB compressed
+        assertTrue(timings.getBodyBytes() > 0);
+        assertTrue(timings.getBodyBytes() < body.length / 3);
+        assertEquals(1, timings.getAttempts());
+    }
+
+    @Test
+    public void connections_areKeptAlive() throws Exception {
+        byte[] body = QueryUtilsTest.readFixture("search_10.json");
+        server.enqueue(gzipResponse(body));
+        server.enqueue(gzipResponse(body));
+        OkHttpTransport transport = new OkHttpTransport();
+
+        readFully(transport, "/search?page=1");
+        RequestTimings second = readFully(transport, "/search?page=2");
+
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+        assertEquals(0, second.getConnectMillis());
+    }
+
+    @Test
+    public void serverErrors_areRetriedWithBackoff() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(502));
+        server.enqueue(gzipResponse(QueryUtilsTest.readFixture("search_10.json")));
+        QueryUtils.setTransport(new RetryingTransport(new OkHttpTransport(), 3, 10));
+
+        ArticleCache.Entry entry = QueryUtils.fetchArticlesEntry(server.url("/search").toString(), null);
+
+        assertNotNull(entry);
+        assertEquals(10, entry.articles.size());
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void retries_giveUpAfterMaxAttempts() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+        }
+        RetryingTransport transport = new RetryingTransport(new OkHttpTransport(), 3, 10);
+
+        HttpTransport.Response response = transport.execute(server.url("/search").url(), NO_HEADERS,
+                new CancellationToken(), HttpTransport.Gate.OPEN);
+        response.close();
+
+        assertEquals(500, response.getCode());
+        assertEquals(3, response.getTimings().getAttempts());
+    }
+
+    @Test
+    public void clientErrors_areNotRetried() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        RetryingTransport transport = new RetryingTransport(new OkHttpTransport(), 3, 10);
+
+        HttpTransport.Response response = transport.execute(server.url("/search").url(), NO_HEADERS,
+                new CancellationToken(), HttpTransport.Gate.OPEN);
+        response.close();
+
+        assertEquals(404, response.getCode());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void retries_passTheGateEveryTime() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(502));
+        server.enqueue(gzipResponse(QueryUtilsTest.readFixture("search_10.json")));
+        RetryingTransport transport = new RetryingTransport(new OkHttpTransport(), 3, 10);
+        CountingGate gate = new CountingGate(3);
+
+        HttpTransport.Response response = transport.execute(server.url("/search").url(), NO_HEADERS,
+                new CancellationToken(), gate);
+        response.close();
+
+        assertEquals(200, response.getCode());
+        assertEquals(3, gate.acquired);
+        assertEquals(Arrays.asList(503, 502, 200), gate.codes);
+    }
+
+    @Test(expected = HttpTransport.NotSentException.class)
+    public void retries_stopWhenTheGateRefuses() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        RetryingTransport transport = new RetryingTransport(new OkHttpTransport(), 3, 10);
+
+        try {
+            transport.execute(server.url("/search").url(), NO_HEADERS, new CancellationToken(),
+                    new CountingGate(1));
+        } finally {
+            // The retry was not sent
+            assertEquals(1, server.getRequestCount());
+        }
+    }
+
+    @Test
+    public void cancel_endsBackoff() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        // A backoff far longer than the test may take
+        final RetryingTransport transport = new RetryingTransport(new OkHttpTransport(), 3,
+                TimeUnit.MINUTES.toMillis(10));
+        final CancellationToken cancellation = new CancellationToken();
+        final CountingGate gate = new CountingGate(3);
+        final AtomicReference<Thread> worker = new AtomicReference<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<HttpTransport.Response> response = executor.submit(new Callable<HttpTransport.Response>() {
+                @Override
+                public HttpTransport.Response call() throws Exception {
+                    worker.set(Thread.currentThread());
+                    return transport.execute(server.url("/search").url(), NO_HEADERS, cancellation, gate);
+                }
+            });
+            // Canceled once the 503 is in and the transport waits to retry, a request canceled
+            // before that gets its 503 back
+            assertTrue(gate.responded.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 5000 && worker.get().getState() != Thread.State.TIMED_WAITING; i++) {
+                Thread.sleep(1);
+            }
+            cancellation.cancel();
+
+            try {
+                response.get(5, TimeUnit.SECONDS);
+                fail("A canceled request must not return a response");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof InterruptedIOException);
+            }
+            assertEquals(1, server.getRequestCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancel_abortsBodyRead() throws Exception {
+        // About 240 KB sent in 4 KB chunks every second, so a full read would take a minute
+        server.enqueue(new MockResponse()
+                .setBody(new Buffer().write(QueryUtilsTest.readFixture("search_200.json")))
+                .throttleBody(4096, 1, TimeUnit.SECONDS));
+        RetryingTransport transport = new RetryingTransport(new OkHttpTransport(), 3, 10);
+        CancellationToken cancellation = new CancellationToken();
+        final HttpTransport.Response response = transport.execute(server.url("/search").url(),
+                NO_HEADERS, cancellation, HttpTransport.Gate.OPEN);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Article>> articles = executor.submit(new Callable<List<Article>>() {
+                @Override
+                public List<Article> call() throws Exception {
+                    return QueryUtils.extractArticlesFromStream(response.getBody());
+                }
+            });
+
+            cancellation.cancel();
+
+            // The read ends instead of waiting for the rest of the body
+            try {
+                articles.get(5, TimeUnit.SECONDS);
+                fail("A canceled read must not return articles");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        } finally {
+            response.close();
+            executor.shutdownNow();
+        }
+        // Canceled requests are not retried
+        assertEquals(1, server.getRequestCount());
+    }
+
+    private RequestTimings readFully(HttpTransport transport, String path) throws IOException {
+        URL url = server.url(path).url();
+        HttpTransport.Response response = transport.execute(url, NO_HEADERS, new CancellationToken(),
+                HttpTransport.Gate.OPEN);
+        try {
+            List<Article> articles = QueryUtils.extractArticlesFromStream(response.getBody());
+            assertTrue(articles.size() > 0);
+        } finally {
+            response.close();
+        }
+        return response.getTimings();
+    }
+
+    /**
+     * Lets a number of requests through and records the status of their responses.
+     */
+    private static class CountingGate implements HttpTransport.Gate {
+        final List<Integer> codes = new ArrayList<>();
+        final CountDownLatch responded = new CountDownLatch(1);
+        private final int permits;
+        int acquired;
+
+        CountingGate(int permits) {
+            this.permits = permits;
+        }
+
+        @Override
+        public boolean acquire(CancellationToken cancellation) {
+            if (acquired == permits) {
+                return false;
+            }
+            acquired++;
+            return true;
+        }
+
+        @Override
+        public void onResponse(int code, String retryAfter) {
+            codes.add(code);
+            responded.countDown();
+        }
+    }
+
+    private static MockResponse gzipResponse(byte[] body) throws IOException {
+        Buffer compressed = new Buffer();
+        BufferedSink gzip = Okio.buffer(new GzipSink(compressed));
+        gzip.write(body);
+        gzip.close();
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setHeader("Content-Encoding", "gzip")
+                .setBody(compressed);
+    }
+}
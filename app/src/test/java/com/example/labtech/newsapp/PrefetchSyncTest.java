@@ -0,0 +1,176 @@
+package com.example.labtech.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the conditions, backoff and budget of {@link PrefetchSync} on a fake clock, against a
+ * local {@link MockWebServer} serving recorded Guardian responses.
+ */
+public class PrefetchSyncTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long INTERVAL = 240 * MINUTE;
+    private static final long BACKOFF = 15 * MINUTE;
+    private static final String ETAG = "\"d41d8cd98f00\"";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private ArticleCache cache;
+    private ArticleIndex index;
+    private long now = 1498300000000L;
+    private final PrefetchSync.Clock clock = new PrefetchSync.Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    };
+    private final PrefetchSync.State state = new PrefetchSync.State();
+    private List<String> urls;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        // Without retries, so that failed requests fail right away
+        QueryUtils.setTransport(new OkHttpTransport());
+        cache = new ArticleCache(folder.newFolder("articles"), 1024 * 1024);
+        index = new ArticleIndex(null);
+        urls = Arrays.asList(server.url("/search?q=").toString(),
+                server.url("/search?q=brexit").toString(),
+                server.url("/search?q=election").toString());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void badConditions_skipWithoutRequests() {
+        PrefetchSync sync = newSync(6, 1024 * 1024);
+
+        assertEquals(PrefetchSync.Result.SKIPPED_CONDITIONS, sync.run(state, urls, false, true));
+        assertEquals(PrefetchSync.Result.SKIPPED_CONDITIONS, sync.run(state, urls, true, false));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void run_storesEverySearchOverOneConnection() throws Exception {
+        enqueueResults(3);
+        PrefetchSync sync = newSync(6, 1024 * 1024);
+
+        assertEquals(PrefetchSync.Result.SUCCESS, sync.run(state, urls, true, true));
+
+        for (int i = 0; i < urls.size(); i++) {
+            assertEquals(i, server.takeRequest().getSequenceNumber());
+            assertNotNull(cache.get(urls.get(i)));
+        }
+        assertEquals(10, index.size());
+        assertTrue(state.bytesInWindow > 0);
+        assertEquals(now + INTERVAL, state.nextRunMillis);
+    }
+
+    @Test
+    public void nextRun_waitsForIntervalAndRevalidates() throws Exception {
+        enqueueResults(3);
+        PrefetchSync sync = newSync(6, 1024 * 1024);
+        sync.run(state, urls, true, true);
+        long bytes = state.bytesInWindow;
+
+        now += INTERVAL - 1;
+        assertEquals(PrefetchSync.Result.SKIPPED_TOO_SOON, sync.run(state, urls, true, true));
+
+        now += 1;
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(304));
+        }
+        assertEquals(PrefetchSync.Result.SUCCESS, sync.run(state, urls, true, true));
+        for (int i = 0; i < 3; i++) {
+            server.takeRequest();
+        }
+        assertEquals(ETAG, server.takeRequest().getHeader("If-None-Match"));
+        // Nothing but headers came back
+        assertEquals(bytes, state.bytesInWindow);
+    }
+
+    @Test
+    public void failures_backOffExponentially() throws Exception {
+        PrefetchSync sync = newSync(24, 1024 * 1024);
+
+        server.enqueue(new MockResponse().setResponseCode(503));
+        assertEquals(PrefetchSync.Result.FAILED, sync.run(state, urls, true, true));
+        assertEquals(now + BACKOFF, state.nextRunMillis);
+        // The rest of the batch is left for the next attempt
+        assertEquals(1, server.getRequestCount());
+
+        now = state.nextRunMillis;
+        server.enqueue(new MockResponse().setResponseCode(503));
+        assertEquals(PrefetchSync.Result.FAILED, sync.run(state, urls, true, true));
+        assertEquals(now + 2 * BACKOFF, state.nextRunMillis);
+
+        now = state.nextRunMillis;
+        enqueueResults(3);
+        assertEquals(PrefetchSync.Result.SUCCESS, sync.run(state, urls, true, true));
+        assertEquals(0, state.failures);
+        assertEquals(now + INTERVAL, state.nextRunMillis);
+    }
+
+    @Test
+    public void runBudget_isResetAfterADay() throws Exception {
+        PrefetchSync sync = newSync(1, 1024 * 1024);
+        enqueueResults(3);
+        long start = now;
+        assertEquals(PrefetchSync.Result.SUCCESS, sync.run(state, urls, true, true));
+
+        now = start + INTERVAL;
+        assertEquals(PrefetchSync.Result.SKIPPED_BUDGET, sync.run(state, urls, true, true));
+
+        now = start + 24 * 60 * MINUTE;
+        enqueueResults(3);
+        assertEquals(PrefetchSync.Result.SUCCESS, sync.run(state, urls, true, true));
+    }
+
+    @Test
+    public void byteBudget_stopsBatchEarly() throws Exception {
+        byte[] body = QueryUtilsTest.readFixture("search_10.json");
+        // Room for a single response
+        PrefetchSync sync = newSync(6, body.length / 2);
+        enqueueResults(1);
+
+        assertEquals(PrefetchSync.Result.PARTIAL, sync.run(state, urls, true, true));
+        assertEquals(1, server.getRequestCount());
+
+        now += INTERVAL;
+        assertEquals(PrefetchSync.Result.SKIPPED_BUDGET, sync.run(state, urls, true, true));
+    }
+
+    private PrefetchSync newSync(int maxRunsPerDay, long maxBytesPerDay) {
+        return new PrefetchSync(cache, index, clock, INTERVAL, BACKOFF, maxRunsPerDay, maxBytesPerDay);
+    }
+
+    private void enqueueResults(int count) throws Exception {
+        byte[] body = QueryUtilsTest.readFixture("search_10.json");
+        for (int i = 0; i < count; i++) {
+            server.enqueue(new MockResponse()
+                    .setHeader("ETag", ETAG)
+                    .setBody(new Buffer().write(body)));
+        }
+    }
+}
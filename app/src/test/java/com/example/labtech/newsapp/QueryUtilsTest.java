@@ -0,0 +1,98 @@
+package com.example.labtech.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the streaming parser of {@link QueryUtils} with the legacy String + JSONObject path
+ * on recorded Guardian search responses. Their speed and allocations are measured by
+ * ParseBenchmark.
+ */
+public class QueryUtilsTest {
+
+    private static final String[] FIXTURES = {"search_10.json", "search_50.json", "search_200.json"};
+
+    @Test
+    public void streamingParser_matchesLegacyParser() throws Exception {
+        for (String fixture : FIXTURES) {
+            byte[] body = readFixture(fixture);
+            List<Article> legacy = parseLegacy(body);
+            List<Article> streamed = parseStreaming(body);
+
+            assertEquals(fixture, legacy.size(), streamed.size());
+            for (int i = 0; i < legacy.size(); i++) {
+                assertSameArticle(legacy.get(i), streamed.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void streamingParser_skipsUnknownFieldsAndNulls() throws Exception {
+        String json = "{\"response\":{\"status\":\"ok\",\"results\":["
+                + "{\"webTitle\":\"A\",\"sectionName\":\"S\",\"webUrl\":\"u\","
+                + "\"webPublicationDate\":\"2017-06-24T10:00:00Z\",\"fields\":{\"x\":[1,2]},\"tags\":[]},"
+                + "{\"webTitle\":null,\"sectionName\":\"S\",\"webUrl\":\"v\","
+                + "\"webPublicationDate\":\"2017-06-24T10:00:00Z\"}]}}";
+        List<Article> articles = parseStreaming(json.getBytes("UTF-8"));
+
+        assertEquals(1, articles.size());
+        assertEquals("2017-06-24", articles.get(0).getDatePublished());
+        assertEquals("Contributors N/A", articles.get(0).getContributor());
+    }
+
+    @Test
+    public void streamingParser_readsThumbnail() throws Exception {
+        String json = "{\"response\":{\"status\":\"ok\",\"results\":["
+                + "{\"webTitle\":\"A\",\"sectionName\":\"S\",\"webUrl\":\"u\","
+                + "\"webPublicationDate\":\"2017-06-24T10:00:00Z\","
+                + "\"fields\":{\"thumbnail\":\"https://media.guim.co.uk/a/500.jpg\"}},"
+                + "{\"webTitle\":\"B\",\"sectionName\":\"S\",\"webUrl\":\"v\","
+                + "\"webPublicationDate\":\"2017-06-24T10:00:00Z\",\"fields\":{\"thumbnail\":null}}]}}";
+        List<Article> articles = parseStreaming(json.getBytes("UTF-8"));
+
+        assertEquals(2, articles.size());
+        assertEquals("https://media.guim.co.uk/a/500.jpg", articles.get(0).getThumbnailUrl());
+        assertNull(articles.get(1).getThumbnailUrl());
+    }
+
+    private static List<Article> parseLegacy(byte[] body) throws IOException {
+        return QueryUtils.extractFeatureFromJson(
+                QueryUtils.readFromStream(new ByteArrayInputStream(body)));
+    }
+
+    private static List<Article> parseStreaming(byte[] body) throws IOException {
+        return QueryUtils.extractArticlesFromStream(new ByteArrayInputStream(body));
+    }
+
+    private static void assertSameArticle(Article expected, Article actual) {
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getContributor(), actual.getContributor());
+        assertEquals(expected.getDatePublished(), actual.getDatePublished());
+        assertEquals(expected.getSection(), actual.getSection());
+        assertEquals(expected.getUrl(), actual.getUrl());
+    }
+
+    static byte[] readFixture(String name) throws IOException {
+        InputStream in = QueryUtilsTest.class.getClassLoader().getResourceAsStream(name);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.labtech.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the rate limiting of {@link RequestScheduler}, on its own and through
+ * {@link QueryUtils} against a local {@link MockWebServer} that answers 429 Too Many Requests
+ * while it is told to.
+ */
+public class RequestSchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private RequestScheduler previousScheduler;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * Retry-After of the 429 answered to the next request, or null to answer normally
+     */
+    private volatile String tooManyRequestsRetryAfter;
+
+    private final FakeClock clock = new FakeClock();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                requests.incrementAndGet();
+                String retryAfter = tooManyRequestsRetryAfter;
+                if (retryAfter != null) {
+                    tooManyRequestsRetryAfter = null;
+                    return new MockResponse().setResponseCode(429).setHeader("Retry-After", retryAfter);
+                }
+                return new MockResponse().setBody(searchJson());
+            }
+        });
+        server.start();
+        QueryUtils.setTransport(new OkHttpTransport());
+        previousScheduler = QueryUtils.getScheduler();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        QueryUtils.setScheduler(previousScheduler);
+        server.shutdown();
+    }
+
+    @Test
+    public void burst_isSpreadAtTheRefillRate() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(2, 10, 0, 0, clock);
+        // Two requests from the full bucket
+        assertTrue(scheduler.acquire(RequestScheduler.PRIORITY_USER, new CancellationToken()));
+        assertTrue(scheduler.acquire(RequestScheduler.PRIORITY_USER, new CancellationToken()));
+
+        // Then one every 100 ms
+        Acquirer third = new Acquirer(scheduler);
+        third.start();
+        awaitWaiting(third);
+        Acquirer fourth = new Acquirer(scheduler);
+        fourth.start();
+        awaitWaiting(fourth);
+
+        clock.advance(100);
+        third.join(5000);
+        assertEquals(Boolean.TRUE, third.acquired);
+        assertTrue(fourth.isAlive());
+
+        clock.advance(100);
+        fourth.join(5000);
+        assertEquals(Boolean.TRUE, fourth.acquired);
+    }
+
+    @Test
+    public void userRequests_goAheadOfBackgroundRequests() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, 5, 0, 0, clock);
+        assertTrue(scheduler.acquire(RequestScheduler.PRIORITY_USER, new CancellationToken()));
+
+        // The background request is queued first, the user request still gets the next token
+        Acquirer background = new Acquirer(scheduler, RequestScheduler.PRIORITY_BACKGROUND);
+        background.start();
+        awaitWaiting(background);
+        Acquirer user = new Acquirer(scheduler, RequestScheduler.PRIORITY_USER);
+        user.start();
+        awaitWaiting(user);
+
+        clock.advance(200);
+        user.join(5000);
+        assertEquals(Boolean.TRUE, user.acquired);
+        assertTrue(background.isAlive());
+
+        clock.advance(200);
+        background.join(5000);
+        assertEquals(Boolean.TRUE, background.acquired);
+    }
+
+    @Test
+    public void canceledWait_returnsFalse() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, 0.1, 0, 0);
+        assertTrue(scheduler.acquire(RequestScheduler.PRIORITY_USER, new CancellationToken()));
+        final CancellationToken cancellation = new CancellationToken();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                cancellation.cancel();
+            }
+        }).start();
+
+        assertFalse(scheduler.acquire(RequestScheduler.PRIORITY_USER, cancellation));
+    }
+
+    @Test
+    public void tooManyRequests_pausesForRetryAfter() throws Exception {
+        QueryUtils.setScheduler(new RequestScheduler(12, 12, 2000, 0, clock));
+        tooManyRequestsRetryAfter = "1";
+        assertNull(QueryUtils.fetchArticlesEntry(url(), null));
+
+        final AtomicReference<ArticleCache.Entry> entry = new AtomicReference<>();
+        Thread fetch = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                entry.set(QueryUtils.fetchArticlesEntry(url(), null));
+            }
+        });
+        fetch.start();
+        awaitWaiting(fetch);
+        // Nothing is sent until the second of the Retry-After is over
+        assertEquals(1, requests.get());
+
+        clock.advance(1000);
+        fetch.join(5000);
+        assertNotNull(entry.get());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void longPause_isNotWaitedFor() {
+        QueryUtils.setScheduler(new RequestScheduler(12, 12, 2000, 0));
+        tooManyRequestsRetryAfter = "60";
+        assertNull(QueryUtils.fetchArticlesEntry(url(), null));
+
+        // Given up right away, a request that waited would be sent once the pause is over
+        assertNull(QueryUtils.fetchArticlesEntry(url(), null));
+        assertNull(QueryUtils.fetchArticlesEntry(url(), null, new CancellationToken(), null,
+                RequestScheduler.PRIORITY_BACKGROUND));
+
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void throttledLoad_fallsBackToCachedArticles() throws Exception {
+        QueryUtils.setScheduler(new RequestScheduler(12, 12, 2000, 0));
+        ArticleCache cache = new ArticleCache(folder.newFolder("articles"), 1024 * 1024);
+        cache.put(url(), QueryUtils.fetchArticlesEntry(url(), null));
+        tooManyRequestsRetryAfter = "60";
+        assertNull(QueryUtils.fetchArticlesEntry(url(), null));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final List<List<Article>> delivered = Collections.synchronizedList(new ArrayList<List<Article>>());
+        final CountDownLatch done = new CountDownLatch(1);
+
+        new ArticleRepository(executor, cache, new ArticleIndex(null)).load(url(), "", 1, 20,
+                new CancellationToken(), new ArticleRepository.Listener() {
+                    @Override
+                    public void onArticles(List<Article> articles, boolean complete) {
+                        delivered.add(articles);
+                        if (complete) {
+                            done.countDown();
+                        }
+                    }
+                });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        List<Article> last = delivered.get(delivered.size() - 1);
+        assertEquals(1, last.size());
+        assertEquals("Cached", last.get(0).getTitle());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void retryAfter_isParsedAsSecondsOrDate() {
+        long now = 1498309453000L;
+
+        assertEquals(120000, RequestScheduler.parseRetryAfter("120", now));
+        assertEquals(30000, RequestScheduler.parseRetryAfter("Sat, 24 Jun 2017 13:04:43 GMT", now));
+        assertEquals(0, RequestScheduler.parseRetryAfter("Sat, 24 Jun 2017 12:00:00 GMT", now));
+        assertEquals(-1, RequestScheduler.parseRetryAfter("soon", now));
+        assertEquals(-1, RequestScheduler.parseRetryAfter(null, now));
+    }
+
+    /**
+     * Waits until the thread waits for a token, which it can only get once the clock has moved on.
+     */
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        for (int i = 0; i < 5000 && !isWaiting(thread); i++) {
+            Thread.sleep(1);
+        }
+        assertTrue(thread.getState().toString(), isWaiting(thread));
+    }
+
+    private static boolean isWaiting(Thread thread) {
+        Thread.State state = thread.getState();
+        return state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING;
+    }
+
+    private String url() {
+        return QueryUtils.buildPageUrl(server.url("/search").toString() + "?q=brexit", 1, 20);
+    }
+
+    private static String searchJson() {
+        return "{\"response\":{\"status\":\"ok\",\"results\":[{\"webTitle\":\"Cached\","
+                + "\"sectionName\":\"Politics\",\"webUrl\":\"https://www.theguardian.com/politics/1\","
+                + "\"webPublicationDate\":\"2017-06-24T10:00:00Z\",\"tags\":[]}]}}";
+    }
+
+    /**
+     * Clock that only moves when the test advances it.
+     */
+    private static class FakeClock implements RequestScheduler.Clock {
+        private volatile long nanos;
+
+        void advance(long millis) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+    }
+
+    /**
+     * Asks the scheduler for a token on its own thread, of the user unless told otherwise.
+     */
+    private static class Acquirer extends Thread {
+        private final RequestScheduler scheduler;
+        private final int priority;
+        volatile Boolean acquired;
+
+        Acquirer(RequestScheduler scheduler) {
+            this(scheduler, RequestScheduler.PRIORITY_USER);
+        }
+
+        Acquirer(RequestScheduler scheduler, int priority) {
+            this.scheduler = scheduler;
+            this.priority = priority;
+        }
+
+        @Override
+        public void run() {
+            try {
+                acquired = scheduler.acquire(priority, new CancellationToken());
+            } catch (Exception e) {
+                acquired = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.labtech.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Made-up articles for the tests.
+ */
+final class TestArticles {
+
+    /**
+     * 2017-06-24T13:04:13Z, publication time of the article numbered 0
+     */
+    static final long FIRST_MILLIS = 1498309453000L;
+
+    private TestArticles() {
+    }
+
+    /**
+     * Returns a list of numbered articles: each is titled with the prefix and its number, has a
+     * URL of its own under the prefix, with dashes for its spaces, and was published a minute
+     * before the article numbered one less. Even numbers have a thumbnail.
+     *
+     * @param prefix of the titles and of the paths of the URLs, such as "world"
+     * @param first  number of the first article
+     * @param count  number of articles
+     */
+    static List<Article> list(String prefix, int first, int count) {
+        String path = "https://www.theguardian.com/" + prefix.replace(' ', '-') + "/";
+        List<Article> articles = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++) {
+            articles.add(new Article(prefix + " " + i, Arrays.asList("Jane Doe", "John Smith"),
+                    FIRST_MILLIS - i * 60000L, "World news", path + i,
+                    i % 2 == 0 ? "https://media.guim.co.uk/" + i + ".jpg" : null));
+        }
+        return articles;
+    }
+}
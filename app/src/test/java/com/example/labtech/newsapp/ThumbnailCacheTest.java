@@ -0,0 +1,69 @@
+package com.example.labtech.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the disk tier of the thumbnails, {@link ThumbnailCache}, and the downsampling of
+ * {@link ThumbnailLoader}.
+ */
+public class ThumbnailCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void images_surviveReopening() throws Exception {
+        File directory = folder.newFolder("thumbnails");
+        byte[] image = bytes(1000, 7);
+        new ThumbnailCache(directory, 10000).put("https://media.guim.co.uk/a.jpg", image);
+
+        ThumbnailCache reopened = new ThumbnailCache(directory, 10000);
+
+        assertArrayEquals(image, reopened.get("https://media.guim.co.uk/a.jpg"));
+        assertNull(reopened.get("https://media.guim.co.uk/b.jpg"));
+        assertEquals(1000, reopened.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedImages_areEvicted() throws Exception {
+        ThumbnailCache cache = new ThumbnailCache(folder.newFolder("thumbnails"), 2500);
+        cache.put("a", bytes(1000, 1));
+        cache.put("b", bytes(1000, 2));
+        // Reading a makes b the least recently used image
+        assertNotNull(cache.get("a"));
+
+        cache.put("c", bytes(1000, 3));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(2000, cache.size());
+    }
+
+    @Test
+    public void sampleSize_keepsBothSidesAtLeastAsBigAsTheView() {
+        // A 500x300 Guardian thumbnail in a 100x60 dp view
+        assertEquals(2, ThumbnailLoader.calculateInSampleSize(500, 300, 200, 120));
+        assertEquals(4, ThumbnailLoader.calculateInSampleSize(500, 300, 100, 60));
+        assertEquals(1, ThumbnailLoader.calculateInSampleSize(500, 300, 300, 180));
+        // The shorter side decides
+        assertEquals(2, ThumbnailLoader.calculateInSampleSize(2000, 300, 100, 120));
+        assertEquals(1, ThumbnailLoader.calculateInSampleSize(500, 300, 0, 0));
+    }
+
+    private static byte[] bytes(int length, int value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.labtech.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link XmlFeedParser} reads the fields of RSS and Atom feeds into the same
+ * {@link Article}s as the Guardian API, and copes with the ways feeds differ and break.
+ */
+public class XmlFeedParserTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void rss_readsItems() throws Exception {
+        List<Article> articles = parse("World", QueryUtilsTest.readFixture("rss_world.xml"));
+
+        // The item without a title is skipped
+        assertEquals(3, articles.size());
+        Article may = articles.get(0);
+        assertEquals("Theresa May calls snap election for June 8", may.getTitle());
+        assertEquals("https://news.example.com/world/2017/apr/18/may-snap-election", may.getUrl());
+        assertEquals(Article.parseDate("2017-04-18T10:20:00Z"), may.getPublishedMillis());
+        assertEquals(Arrays.asList("Anna Smith"), may.getContributors());
+        assertEquals("World", may.getSection());
+        // Not the media:title of the thumbnail
+        assertEquals("https://img.example.com/may.jpg", may.getThumbnailUrl());
+
+        Article grenfell = articles.get(1);
+        assertEquals("Grenfell Tower fire: death toll rises to 79, police say", grenfell.getTitle());
+        assertEquals(Article.parseDate("2017-06-19T14:05:00Z"), grenfell.getPublishedMillis());
+        assertEquals(Arrays.asList("Ben Jones"), grenfell.getContributors());
+        assertEquals("https://img.example.com/grenfell.jpg", grenfell.getThumbnailUrl());
+
+        Article permalink = articles.get(2);
+        assertEquals("https://news.example.com/world/2017/jun/20/permalink", permalink.getUrl());
+        assertEquals(Article.parseDate("2017-06-20T13:00:00Z"), permalink.getPublishedMillis());
+        assertNull(permalink.getThumbnailUrl());
+    }
+
+    @Test
+    public void atom_readsEntries() throws Exception {
+        List<Article> articles = parse("Tech", QueryUtilsTest.readFixture("atom_tech.xml"));
+
+        assertEquals(2, articles.size());
+        Article iphone = articles.get(0);
+        assertEquals("Apple unveils iPhone X with facial recognition", iphone.getTitle());
+        // The alternate link, not the enclosure
+        assertEquals("https://tech.example.org/2017/09/12/iphone-x", iphone.getUrl());
+        // Published rather than updated, in UTC
+        assertEquals(Article.parseDate("2017-09-12T17:30:00Z"), iphone.getPublishedMillis());
+        assertEquals(Arrays.asList("Carla Diaz", "Dev Patel"), iphone.getContributors());
+        assertEquals("https://img.example.org/iphone-x.png", iphone.getThumbnailUrl());
+
+        Article updated = articles.get(1);
+        assertEquals("https://tech.example.org/2017/09/13/updated", updated.getUrl());
+        assertEquals(Article.parseDate("2017-09-13T06:15:30Z"), updated.getPublishedMillis());
+    }
+
+    @Test
+    public void malformedFeed_keepsItemsBeforeTheError() throws Exception {
+        String rss = "<rss><channel>"
+                + "<item><title>First</title><link>https://example.com/1</link></item>"
+                + "<item><title>Second</title><link>https://example.com/2</link>"
+                + "<description>Cut off <b>here</description>";
+
+        List<Article> articles = parse("World", rss.getBytes(UTF_8));
+
+        assertEquals(1, articles.size());
+        assertEquals("First", articles.get(0).getTitle());
+    }
+
+    @Test
+    public void notAFeed_givesNoArticles() throws Exception {
+        assertTrue(parse("World", "{\"response\":{}}".getBytes(UTF_8)).isEmpty());
+        assertTrue(parse("World", new byte[0]).isEmpty());
+    }
+
+    @Test
+    public void parseDate_handlesRfc822AndIsoForms() {
+        long expected = Article.parseDate("2017-06-24T12:30:00Z");
+        String[] dates = {
+                "Sat, 24 Jun 2017 12:30:00 GMT",
+                "Sat, 24 Jun 2017 13:30:00 +0100",
+                "24 Jun 2017 08:30:00 -0400",
+                "Sat, 24 Jun 2017 07:30:00 EST",
+                "2017-06-24T12:30:00Z",
+                "2017-06-24T14:30:00+02:00",
+                "2017-06-24T07:00:00.250-05:30",
+        };
+        for (String date : dates) {
+            assertEquals(date, expected, XmlFeedParser.parseDate(date, XmlFeedParser.rfc822Formats()));
+        }
+        assertEquals(Article.UNKNOWN_DATE, XmlFeedParser.parseDate("yesterday", XmlFeedParser.rfc822Formats()));
+    }
+
+    private static List<Article> parse(String section, byte[] body) throws IOException {
+        return new XmlFeedParser(section).parse(new ByteArrayInputStream(body));
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.labtech.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to open a stored list of articles and to get one row out of it, for an
+ * {@link ArticleFile}, for a Guardian JSON response that has to be parsed whole, and for the
+ * stream of {@link Article#writeTo} records the snapshot used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArticleFileBenchmark {
+
+    @Param({"1000", "20000"})
+    public int count;
+
+    private File directory;
+    private File mappedFile;
+    private File jsonFile;
+    private File streamFile;
+    private ArticleFile opened;
+    private final Random random = new Random(42);
+
+    @Setup
+    public void writeFiles() throws IOException {
+        directory = File.createTempFile("articles", "");
+        directory.delete();
+        directory.mkdirs();
+        List<Article> articles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            articles.add(new Article("Brexit talks resume as deadline for article " + i + " approaches",
+                    Arrays.asList("Jane Doe", "Jon Henley"), 1498309453000L - i * 60000L, "Politics",
+                    "https://www.theguardian.com/politics/2017/jun/24/article-" + i,
+                    "https://media.guim.co.uk/" + i + "/500.jpg"));
+        }
+
+        mappedFile = new File(directory, "articles");
+        ArticleFile.write(mappedFile, articles);
+        jsonFile = new File(directory, "articles.json");
+        writeJson(jsonFile, articles);
+        streamFile = new File(directory, "articles.bin");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(streamFile)));
+        try {
+            for (Article article : articles) {
+                article.writeTo(out);
+            }
+        } finally {
+            out.close();
+        }
+        opened = ArticleFile.open(mappedFile);
+    }
+
+    @TearDown
+    public void deleteFiles() {
+        ArticleFile.delete(mappedFile);
+        jsonFile.delete();
+        streamFile.delete();
+        directory.delete();
+    }
+
+    /**
+     * Mapping the file, nothing is decoded
+     */
+    @Benchmark
+    public int openMapped() throws IOException {
+        return ArticleFile.open(mappedFile).size();
+    }
+
+    /**
+     * Parsing the whole response, which is what opening a JSON file takes
+     */
+    @Benchmark
+    public int openJson() throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(jsonFile));
+        try {
+            return QueryUtils.extractArticlesFromStream(in).size();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reading every record of the stream, which is what opening it takes
+     */
+    @Benchmark
+    public int openStream() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(streamFile)));
+        try {
+            List<Article> articles = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                articles.add(Article.readFrom(in));
+            }
+            return articles.size();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Decoding one row at a random position of a mapped file, as binding a row does
+     */
+    @Benchmark
+    public Article randomRowMapped() {
+        return opened.get(random.nextInt(count));
+    }
+
+    private static void writeJson(File file, List<Article> articles) throws IOException {
+        StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[");
+        for (int i = 0; i < articles.size(); i++) {
+            Article article = articles.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"webTitle\":\"").append(article.getTitle())
+                    .append("\",\"sectionName\":\"").append(article.getSection())
+                    .append("\",\"webUrl\":\"").append(article.getUrl())
+                    .append("\",\"webPublicationDate\":\"").append(Article.formatDateTime(article.getPublishedMillis()))
+                    .append("\",\"fields\":{\"thumbnail\":\"").append(article.getThumbnailUrl())
+                    .append("\"},\"tags\":[");
+            List<String> contributors = article.getContributors();
+            for (int c = 0; c < contributors.size(); c++) {
+                if (c > 0) {
+                    json.append(',');
+                }
+                json.append("{\"webTitle\":\"").append(contributors.get(c)).append("\"}");
+            }
+            json.append("]}");
+        }
+        json.append("]}}");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(json.toString().getBytes(Charset.forName("UTF-8")));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.labtech.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to build an {@link ArticleIndex} from pages of search results, to reload it from its log
+ * file and to search it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArticleIndexBenchmark {
+
+    private static final String[] WORDS = {"brexit", "election", "housing", "climate", "economy",
+            "court", "health", "trade", "police", "study", "growth", "deal", "report", "talks",
+            "vote", "budget", "energy", "school", "transport", "football", "market", "prices",
+            "strike", "summit", "refugees", "tax", "science", "space", "water", "farming"};
+    private static final String[] SECTIONS = {"World news", "Politics", "UK news", "Business",
+            "Opinion", "Sport", "Science", "Environment", "Money", "Technology"};
+    private static final String[] NAMES = {"Jane Doe", "John Smith", "Anna Berg", "Ravi Patel",
+            "Maria Costa", "Tom Baker", "Li Wei", "Sara Cohen"};
+    private static final int PAGE_SIZE = 50;
+    private static final int QUERIES = 1000;
+
+    @Param({"1000", "10000"})
+    public int count;
+
+    private File directory;
+    private File file;
+    private List<Article> articles;
+    private ArticleIndex index;
+    private final String[] queries = new String[QUERIES];
+    private int nextQuery;
+
+    @Setup
+    public void writeIndex() throws IOException {
+        directory = File.createTempFile("index", "");
+        directory.delete();
+        directory.mkdirs();
+        Random random = new Random(42);
+        articles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder title = new StringBuilder();
+            int words = 4 + random.nextInt(6);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) {
+                    title.append(' ');
+                }
+                title.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            String date = String.format("2017-%02d-%02d", 1 + random.nextInt(12), 1 + random.nextInt(28));
+            articles.add(new Article(title.toString(), NAMES[random.nextInt(NAMES.length)], date,
+                    SECTIONS[random.nextInt(SECTIONS.length)], "https://www.theguardian.com/article-" + i));
+        }
+        for (int i = 0; i < queries.length; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            queries[i] = random.nextBoolean()
+                    ? word + " " + WORDS[random.nextInt(WORDS.length)].substring(0, 3)
+                    : word;
+        }
+
+        file = new File(directory, "index");
+        index = new ArticleIndex(file, count);
+        addInPages(index);
+    }
+
+    @TearDown
+    public void deleteIndex() {
+        file.delete();
+        directory.delete();
+    }
+
+    /**
+     * Merging the articles in pages of 50, like the results of successive searches, in memory
+     */
+    @Benchmark
+    public int build() {
+        ArticleIndex built = new ArticleIndex(null, count);
+        addInPages(built);
+        return built.size();
+    }
+
+    /**
+     * Reading the log file back, as the first search after a restart does
+     */
+    @Benchmark
+    public int reload() {
+        return new ArticleIndex(file, count).size();
+    }
+
+    /**
+     * One search of one or two words, the second one a prefix, for the first page of matches
+     */
+    @Benchmark
+    public List<Article> search() {
+        String query = queries[nextQuery];
+        nextQuery = (nextQuery + 1) % queries.length;
+        return index.search(query, 0, 20);
+    }
+
+    private void addInPages(ArticleIndex target) {
+        for (int i = 0; i < articles.size(); i += PAGE_SIZE) {
+            target.addAll(articles.subList(i, Math.min(i + PAGE_SIZE, articles.size())));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.labtech.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Time to aggregate a dozen feeds of the Guardian API, RSS and Atom formats into one timeline
+ * with {@link FeedFanOut#loadSources}, from a local server that answers every feed after its own
+ * latency, with one thread fetching the feeds one after the other and with one thread per feed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FeedAggregationBenchmark {
+
+    private static final String[] FORMATS = {"guardian", "rss", "atom"};
+    private static final int SOURCES = 12;
+    private static final int ARTICLES_PER_SOURCE = 5;
+    private static final long LATENCY_STEP_MILLIS = 50;
+
+    @Param({"1", "12"})
+    public int threads;
+
+    private MockWebServer server;
+    private ExecutorService executor;
+    private final List<FeedSource> sources = new ArrayList<>();
+
+    @Setup
+    public void startServer() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String[] path = request.getRequestUrl().encodedPath().split("/");
+                int source = Integer.parseInt(path[2]);
+                return new MockResponse()
+                        .setBody(feed(path[1], source))
+                        .setBodyDelay((source + 1) * LATENCY_STEP_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+        // Neither retried nor held back by the rate limit of the API key
+        QueryUtils.setTransport(new OkHttpTransport());
+        QueryUtils.setScheduler(new RequestScheduler(Integer.MAX_VALUE, Integer.MAX_VALUE, 0, 0));
+        executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < SOURCES; i++) {
+            String format = FORMATS[i % FORMATS.length];
+            String url = server.url("/" + format + "/" + i).toString();
+            sources.add("guardian".equals(format) ? FeedSource.guardian(url) : FeedSource.xml(url, "Site " + i));
+        }
+    }
+
+    @TearDown
+    public void stopServer() throws IOException {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    /**
+     * Until every feed has been merged into the timeline
+     */
+    @Benchmark
+    public List<Article> dozenSources() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<List<Article>> timeline = new ArrayList<>();
+        new FeedFanOut(executor, null).loadSources(sources, new CancellationToken(), new FeedFanOut.Listener() {
+            @Override
+            public void onTimeline(List<Article> articles, int completed, int total) {
+                if (completed == total) {
+                    timeline.add(articles);
+                    done.countDown();
+                }
+            }
+        });
+        if (!done.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("The feeds did not load");
+        }
+        return timeline.get(0);
+    }
+
+    /**
+     * Returns the feed of the source in the given format, with the story of the day next to its
+     * own articles.
+     */
+    private static String feed(String format, int source) {
+        List<String> titles = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        List<String> dates = new ArrayList<>();
+        for (int i = 0; i < ARTICLES_PER_SOURCE; i++) {
+            titles.add("Report " + (source * ARTICLES_PER_SOURCE + i) + " from the news desk");
+            urls.add("https://site" + source + ".example.com/report/" + i);
+            dates.add(String.format("2017-04-%02dT%02d:00:00Z", 17 - i, source));
+        }
+        titles.add("Theresa May calls snap general election for 8 June");
+        urls.add("https://site" + source + ".example.com/election");
+        dates.add(String.format("2017-04-18T11:%02d:00Z", source));
+
+        StringBuilder feed = new StringBuilder();
+        if ("guardian".equals(format)) {
+            feed.append("{\"response\":{\"status\":\"ok\",\"results\":[");
+            for (int i = 0; i < titles.size(); i++) {
+                feed.append(i > 0 ? "," : "")
+                        .append("{\"webTitle\":\"").append(titles.get(i))
+                        .append("\",\"sectionName\":\"Site ").append(source)
+                        .append("\",\"webUrl\":\"").append(urls.get(i))
+                        .append("\",\"webPublicationDate\":\"").append(dates.get(i))
+                        .append("\",\"tags\":[]}");
+            }
+            return feed.append("]}}").toString();
+        } else if ("rss".equals(format)) {
+            SimpleDateFormat rfc822 = XmlFeedParser.rfc822Formats()[0];
+            feed.append("<?xml version=\"1.0\"?><rss version=\"2.0\"><channel><title>Site ")
+                    .append(source).append("</title>");
+            for (int i = 0; i < titles.size(); i++) {
+                feed.append("<item><title>").append(titles.get(i)).append("</title><link>")
+                        .append(urls.get(i)).append("</link><pubDate>")
+                        .append(rfc822.format(new Date(Article.parseDate(dates.get(i)))))
+                        .append("</pubDate></item>");
+            }
+            return feed.append("</channel></rss>").toString();
+        } else {
+            feed.append("<?xml version=\"1.0\"?><feed xmlns=\"http://www.w3.org/2005/Atom\"><title>Site ")
+                    .append(source).append("</title>");
+            for (int i = 0; i < titles.size(); i++) {
+                feed.append("<entry><title>").append(titles.get(i)).append("</title><link href=\"")
+                        .append(urls.get(i)).append("\"/><updated>")
+                        .append(dates.get(i)).append("</updated></entry>");
+            }
+            return feed.append("</feed>").toString();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.labtech.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Time to load the home feed of {@link FeedFanOut} from a local server that answers every section
+ * after its own latency, and to get its first partial timeline, with one thread fetching the
+ * sections one after the other and with one thread per section.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FeedFanOutBenchmark {
+
+    private static final String[] SECTIONS = {"world", "politics", "business", "sport"};
+    private static final long[] LATENCY_MILLIS = {100, 200, 300, 400};
+    private static final int ARTICLES_PER_SECTION = 5;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private MockWebServer server;
+    private ExecutorService executor;
+    private final List<String> urls = new ArrayList<>();
+
+    @Setup
+    public void startServer() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String section = request.getRequestUrl().queryParameter("section");
+                int index = 0;
+                while (!SECTIONS[index].equals(section)) {
+                    index++;
+                }
+                return new MockResponse()
+                        .setBody(sectionJson(section, index))
+                        .setBodyDelay(LATENCY_MILLIS[index], TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+        // Neither retried nor held back by the rate limit of the API key
+        QueryUtils.setTransport(new OkHttpTransport());
+        QueryUtils.setScheduler(new RequestScheduler(Integer.MAX_VALUE, Integer.MAX_VALUE, 0, 0));
+        executor = Executors.newFixedThreadPool(threads);
+        for (String section : SECTIONS) {
+            urls.add(server.url("/search").toString() + "?section=" + section);
+        }
+    }
+
+    @TearDown
+    public void stopServer() throws IOException {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    /**
+     * Until every section has been merged into the timeline
+     */
+    @Benchmark
+    public List<Article> wholeFeed() throws InterruptedException {
+        return load(SECTIONS.length);
+    }
+
+    /**
+     * Until the first section can be shown, the rest of the feed is canceled
+     */
+    @Benchmark
+    public List<Article> firstTimeline() throws InterruptedException {
+        return load(1);
+    }
+
+    private List<Article> load(final int sections) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<List<Article>> timeline = new ArrayList<>();
+        CancellationToken cancellation = new CancellationToken();
+        new FeedFanOut(executor, null).load(urls, cancellation, new FeedFanOut.Listener() {
+            @Override
+            public void onTimeline(List<Article> articles, int completed, int total) {
+                if (completed == sections) {
+                    timeline.add(articles);
+                    done.countDown();
+                }
+            }
+        });
+        if (!done.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("The feed did not load");
+        }
+        cancellation.cancel();
+        return timeline.get(0);
+    }
+
+    /**
+     * Guardian response with the articles of the section, interleaved in time with the others.
+     */
+    private static String sectionJson(String section, int index) {
+        StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[");
+        for (int i = 0; i < ARTICLES_PER_SECTION; i++) {
+            int hour = 23 - i * SECTIONS.length - index;
+            json.append(i > 0 ? "," : "")
+                    .append("{\"webTitle\":\"").append(section).append(' ').append(i)
+                    .append("\",\"sectionName\":\"").append(section)
+                    .append("\",\"webUrl\":\"https://www.theguardian.com/").append(section).append('/').append(i)
+                    .append("\",\"webPublicationDate\":\"2017-06-24T").append(hour < 10 ? "0" : "").append(hour)
+                    .append(":00:00Z\",\"tags\":[]}");
+        }
+        return json.append("]}}").toString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.labtech.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of building the contributor and date fields of every article of a recorded
+ * Guardian response, the way the legacy parser did and the way {@link Article} does now.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FieldBenchmark {
+
+    @Param({"search_10.json", "search_50.json", "search_200.json"})
+    public String fixture;
+
+    /**
+     * Contributor names and raw webPublicationDate of every result
+     */
+    private List<List<String>> contributors;
+    private List<String> dates;
+    private List<Article> articles;
+
+    @Setup
+    public void readFixture() throws IOException {
+        List<Article> parsed = QueryUtils.extractFeatureFromJson(QueryUtils.readFromStream(
+                new ByteArrayInputStream(ParseBenchmark.readResource(fixture))));
+        contributors = new ArrayList<>();
+        dates = new ArrayList<>();
+        articles = new ArrayList<>();
+        for (Article article : parsed) {
+            contributors.add(article.getContributors());
+            dates.add(article.getDatePublished() + "T13:04:13Z");
+            articles.add(article);
+        }
+    }
+
+    /**
+     * Joining the names with += inside the tags loop, as the legacy parser does
+     */
+    @Benchmark
+    public int contributorsConcatenated() {
+        int length = 0;
+        for (List<String> names : contributors) {
+            String allContributors = "";
+            if (!names.isEmpty()) {
+                for (String name : names) {
+                    allContributors += name + ", ";
+                }
+            } else {
+                allContributors = "Contributors N/A  ";
+            }
+            allContributors = allContributors.substring(0, allContributors.length() - 2);
+            length += allContributors.length();
+        }
+        return length;
+    }
+
+    /**
+     * Joining the stored names when a row is bound
+     */
+    @Benchmark
+    public int contributorsJoinedOnDemand() {
+        int length = 0;
+        for (Article article : articles) {
+            length += article.getContributor().length();
+        }
+        return length;
+    }
+
+    /**
+     * Cutting the time off the date string, as the legacy parser does
+     */
+    @Benchmark
+    public int dateTrimmed() {
+        int length = 0;
+        for (String date : dates) {
+            length += QueryUtils.trimPublicationDate(date).length();
+        }
+        return length;
+    }
+
+    /**
+     * Parsing the date into epoch milliseconds, as the streaming parser does
+     */
+    @Benchmark
+    public long dateParsed() {
+        long sum = 0;
+        for (String date : dates) {
+            sum += Article.parseDate(date);
+        }
+        return sum;
+    }
+
+    /**
+     * Parsing the date and formatting it again when a row is bound
+     */
+    @Benchmark
+    public int dateParsedAndFormatted() {
+        int length = 0;
+        for (String date : dates) {
+            length += Article.formatDate(Article.parseDate(date)).length();
+        }
+        return length;
+    }
+}
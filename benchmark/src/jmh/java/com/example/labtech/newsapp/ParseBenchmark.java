@@ -0,0 +1,89 @@
+package com.example.labtech.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of turning a recorded Guardian response into {@link Article}s, through the legacy
+ * String + JSONObject path step by step and through the streaming parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParseBenchmark {
+
+    @Param({"search_10.json", "search_50.json", "search_200.json"})
+    public String fixture;
+
+    private byte[] body;
+    private String json;
+
+    @Setup
+    public void readFixture() throws IOException {
+        body = readResource(fixture);
+        json = QueryUtils.readFromStream(new ByteArrayInputStream(body));
+    }
+
+    /**
+     * Reading the whole body into a String, the first half of the legacy path
+     */
+    @Benchmark
+    public String readFromStream() throws IOException {
+        return QueryUtils.readFromStream(new ByteArrayInputStream(body));
+    }
+
+    /**
+     * Building the JSONObject tree and the articles from the String, the second half
+     */
+    @Benchmark
+    public List<Article> extractFeatureFromJson() {
+        return QueryUtils.extractFeatureFromJson(json);
+    }
+
+    /**
+     * The whole legacy path, from the body bytes to the articles
+     */
+    @Benchmark
+    public List<Article> legacyPath() throws IOException {
+        return QueryUtils.extractFeatureFromJson(QueryUtils.readFromStream(new ByteArrayInputStream(body)));
+    }
+
+    /**
+     * The streaming parser the app uses, from the body bytes to the articles
+     */
+    @Benchmark
+    public List<Article> extractArticlesFromStream() throws IOException {
+        return QueryUtils.extractArticlesFromStream(new ByteArrayInputStream(body));
+    }
+
+    static byte[] readResource(String name) throws IOException {
+        InputStream in = ParseBenchmark.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.labtech.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Time to fetch a recorded Guardian response from a local server through {@link OkHttpTransport}
+ * and parse it, with the body gzip-compressed and as it is, and to revalidate the cached entry
+ * of the response instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransportBenchmark {
+
+    private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+    private static final String ETAG = "\"d41d8cd98f00\"";
+
+    @Param({"search_10.json", "search_200.json"})
+    public String fixture;
+
+    @Param({"gzip", "identity"})
+    public String encoding;
+
+    private MockWebServer server;
+    private OkHttpTransport transport;
+    private URL url;
+    private ArticleCache.Entry cached;
+
+    @Setup
+    public void startServer() throws IOException {
+        final byte[] body = ParseBenchmark.readResource(fixture);
+        final Buffer compressed = new Buffer();
+        BufferedSink gzip = Okio.buffer(new GzipSink(compressed));
+        gzip.write(body);
+        gzip.close();
+        final boolean gzipped = "gzip".equals(encoding);
+
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (ETAG.equals(request.getHeader("If-None-Match"))) {
+                    return new MockResponse().setResponseCode(304);
+                }
+                // Every response has to be revalidated, the way the API answers searches
+                MockResponse response = new MockResponse()
+                        .setHeader("Content-Type", "application/json")
+                        .setHeader("ETag", ETAG)
+                        .setHeader("Cache-Control", "max-age=0");
+                if (gzipped) {
+                    return response.setHeader("Content-Encoding", "gzip").setBody(compressed.clone());
+                }
+                return response.setBody(new Buffer().write(body));
+            }
+        });
+        server.start();
+        transport = new OkHttpTransport();
+        url = server.url("/search").url();
+        // Neither retried nor held back by the rate limit of the API key
+        QueryUtils.setTransport(transport);
+        QueryUtils.setScheduler(new RequestScheduler(Integer.MAX_VALUE, Integer.MAX_VALUE, 0, 0));
+        cached = QueryUtils.fetchArticlesEntry(url.toString(), null);
+    }
+
+    @TearDown
+    public void stopServer() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * One request on a kept-alive connection, from sending it to the parsed articles
+     */
+    @Benchmark
+    public List<Article> fetchAndParse() throws IOException {
+        HttpTransport.Response response = transport.execute(url, NO_HEADERS, new CancellationToken(),
+                HttpTransport.Gate.OPEN);
+        try {
+            return QueryUtils.extractArticlesFromStream(response.getBody());
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * One request for a cached entry, answered with 304 Not Modified and nothing to parse
+     */
+    @Benchmark
+    public ArticleCache.Entry revalidate() {
+        return QueryUtils.fetchArticlesEntry(url.toString(), cached, new CancellationToken());
+    }
+}